@@ -0,0 +1,137 @@
+package com.ecommerce.analytics.benchmarks;
+
+import com.ecommerce.analytics.aggregate.CategorySalesPartial;
+import com.ecommerce.analytics.aggregate.HyperLogLog;
+import com.ecommerce.analytics.aggregate.TopK;
+import com.ecommerce.analytics.aggregate.TopNPartial;
+import com.ecommerce.analytics.dto.CategorySalesDto;
+import com.ecommerce.analytics.dto.TopProductDto;
+import com.ecommerce.analytics.ingest.RingBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The in-memory aggregation structures: merging a month of per-day partials, HyperLogLog updates and
+ * unions, bounded top-K selection, and the ingestion ring buffer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AggregationBenchmark {
+
+    private static final int DAYS = 30;
+    private static final int PRODUCTS_PER_DAY = 500;
+    private static final int TOP_CANDIDATES = 100;
+    private static final int BATCH = 1_000;
+
+    private List<CategorySalesPartial> categoryPartials;
+    private List<TopNPartial> topPartials;
+    private List<HyperLogLog> dailySketches;
+    private byte[] sketchBytes;
+    private long[] userIds;
+    private long[] counts;
+    private RingBuffer<Long> ringBuffer;
+    private List<Long> drained;
+
+    @Setup
+    public void setUp() {
+        categoryPartials = new ArrayList<>(DAYS);
+        topPartials = new ArrayList<>(DAYS);
+        dailySketches = new ArrayList<>(DAYS);
+        Random random = new Random(7);
+        for (int day = 0; day < DAYS; day++) {
+            categoryPartials.add(CategorySalesPartial.of(Fixtures.categoryProductRows(PRODUCTS_PER_DAY, day)));
+            List<Object[]> ranked = Fixtures.rankedProductRows(PRODUCTS_PER_DAY, day);
+            long total = ranked.stream().mapToLong(r -> (Long) r[2]).sum();
+            topPartials.add(TopNPartial.of(ranked.subList(0, TOP_CANDIDATES), TOP_CANDIDATES, total));
+            HyperLogLog sketch = new HyperLogLog();
+            for (int i = 0; i < 20_000; i++) {
+                sketch.add(random.nextInt(150_000));
+            }
+            dailySketches.add(sketch);
+        }
+        sketchBytes = dailySketches.get(0).toBytes();
+
+        userIds = new long[BATCH];
+        counts = new long[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            userIds[i] = random.nextInt(150_000);
+            counts[i] = random.nextInt(1_000_000);
+        }
+        ringBuffer = new RingBuffer<>(2 * BATCH);
+        drained = new ArrayList<>(BATCH);
+    }
+
+    @Benchmark
+    public List<CategorySalesDto> mergeCategoryPartials() {
+        return CategorySalesPartial.merge(categoryPartials);
+    }
+
+    @Benchmark
+    public List<TopProductDto> mergeTopNPartials() {
+        return TopNPartial.merge(topPartials, 10);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public HyperLogLog hyperLogLogAdd() {
+        HyperLogLog sketch = new HyperLogLog();
+        for (long userId : userIds) {
+            sketch.add(userId);
+        }
+        return sketch;
+    }
+
+    @Benchmark
+    public long hyperLogLogUnionAndEstimate() {
+        HyperLogLog union = new HyperLogLog();
+        for (HyperLogLog sketch : dailySketches) {
+            union.merge(sketch);
+        }
+        return union.estimate();
+    }
+
+    @Benchmark
+    public HyperLogLog hyperLogLogDecode() {
+        return HyperLogLog.fromBytes(sketchBytes);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<Long> topKOffer() {
+        TopK<Long> top = new TopK<>(10, Comparator.naturalOrder());
+        for (long count : counts) {
+            top.offer(count);
+        }
+        return top.toSortedList();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void ringBufferOfferDrain(Blackhole blackhole) {
+        for (int i = 0; i < BATCH; i++) {
+            ringBuffer.offer(counts[i]);
+        }
+        drained.clear();
+        blackhole.consume(ringBuffer.drainTo(drained, BATCH));
+    }
+}
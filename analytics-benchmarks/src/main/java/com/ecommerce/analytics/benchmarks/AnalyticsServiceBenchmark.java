@@ -0,0 +1,139 @@
+package com.ecommerce.analytics.benchmarks;
+
+import com.ecommerce.analytics.cache.PartialRangeCache;
+import com.ecommerce.analytics.columnar.ColumnarStore;
+import com.ecommerce.analytics.dto.ActivitySummaryDto;
+import com.ecommerce.analytics.dto.CategorySalesDto;
+import com.ecommerce.analytics.dto.DailySalesDto;
+import com.ecommerce.analytics.dto.InventoryDto;
+import com.ecommerce.analytics.dto.TopProductDto;
+import com.ecommerce.analytics.inventory.StockIndex;
+import com.ecommerce.analytics.repository.ProductRepository;
+import com.ecommerce.analytics.repository.SaleRepository;
+import com.ecommerce.analytics.repository.SalesDailyRollupRepository;
+import com.ecommerce.analytics.repository.UserActivityRepository;
+import com.ecommerce.analytics.service.AnalyticsService;
+import com.ecommerce.analytics.service.SalesRollupService;
+import com.ecommerce.analytics.service.UniqueUserSketchService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.cache.support.NoOpCacheManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Everything {@link AnalyticsService} does after the database answers: {@code Object[]} rows to
+ * DTOs, partial aggregation and merging, boxed reductions. Repositories return canned rows and
+ * caching is off, so each call runs the full post-query path exactly once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnalyticsServiceBenchmark {
+
+    private static final LocalDate END = LocalDate.of(2024, 12, 31);
+
+    /**
+     * Rows per query result: products for per-product queries, days for the daily series.
+     */
+    @Param({"100", "10000"})
+    int rows;
+
+    private AnalyticsService service;
+    private LocalDate start;
+
+    @Setup
+    public void setUp() {
+        start = END.minusDays(rows - 1);
+        List<Object[]> ranked = Fixtures.rankedProductRows(rows, 2);
+
+        SaleRepository sales = Fixtures.repository(SaleRepository.class, Map.of(
+                "getSalesByCategoryAndProduct", Fixtures.categoryProductRows(rows, 1),
+                "getTopSellingProducts", ranked,
+                "getTotalQuantityBetween", ranked.stream().mapToLong(r -> (Long) r[2]).sum(),
+                "getDailySales", Fixtures.dailyRows(start, rows, 3),
+                "getTotalSalesBetween", new BigDecimal("123456789.12")));
+        UserActivityRepository activities = Fixtures.repository(UserActivityRepository.class, Map.of(
+                "getActivityCountByType", Fixtures.activityCountRows(4),
+                "getMostViewedProducts", ranked,
+                "countProductViewsBetween", ranked.stream().mapToLong(r -> (Long) r[2]).sum(),
+                "getUniqueUsersCount", 42_000L));
+        ProductRepository products = Fixtures.repository(ProductRepository.class, Map.of(
+                "findAll", Fixtures.products(rows, 5),
+                "findLowStockProducts", Fixtures.products(rows, 6)));
+        SalesDailyRollupRepository rollups = Fixtures.repository(SalesDailyRollupRepository.class, Map.of());
+
+        // Rollups, sketches and the stock index disabled: every method reads the (stubbed) raw-table queries
+        service = new AnalyticsService(sales, products, activities, rollups,
+                new SalesRollupService(sales, rollups, null, null, false, false, Duration.ZERO),
+                new PartialRangeCache(new NoOpCacheManager(), true, 100),
+                new UniqueUserSketchService(activities, null, null, null, false, false, Duration.ZERO),
+                new ColumnarStore(sales, activities, products, null, new SimpleMeterRegistry(), false, Duration.ofDays(30),
+                        Duration.ofHours(6), 1000),
+                new StockIndex(products, null, new SimpleMeterRegistry(), false, Duration.ofHours(1),
+                        Duration.ofSeconds(30)));
+    }
+
+    @Benchmark
+    public List<CategorySalesDto> salesByCategory() {
+        return service.getSalesByCategory(start, END);
+    }
+
+    @Benchmark
+    public List<TopProductDto> topSellingProducts() {
+        return service.getTopSellingProducts(start, END, 10);
+    }
+
+    @Benchmark
+    public List<DailySalesDto> dailySales() {
+        return service.getDailySales(start, END);
+    }
+
+    @Benchmark
+    public BigDecimal totalSales() {
+        return service.getTotalSales(start, END);
+    }
+
+    @Benchmark
+    public List<InventoryDto> inventoryStatus() {
+        return service.getInventoryStatus();
+    }
+
+    @Benchmark
+    public List<InventoryDto> lowStockProducts() {
+        return service.getLowStockProducts(50);
+    }
+
+    @Benchmark
+    public List<ActivitySummaryDto> activitySummary() {
+        return service.getActivitySummary(start, END);
+    }
+
+    @Benchmark
+    public List<TopProductDto> mostViewedProducts() {
+        return service.getMostViewedProducts(start, END, 10);
+    }
+
+    @Benchmark
+    public Long uniqueUsers() {
+        return service.getUniqueUsersCount(start, END, false);
+    }
+}
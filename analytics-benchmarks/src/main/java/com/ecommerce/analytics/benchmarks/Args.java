@@ -0,0 +1,68 @@
+package com.ecommerce.analytics.benchmarks;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@code --name=value} command line options; a bare {@code --name} means {@code true}.
+ */
+public final class Args {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    public Args(String[] args) {
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                values.put(arg.substring(2), "true");
+            } else {
+                values.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+    }
+
+    public String get(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    public long getLong(String name, long defaultValue) {
+        String value = values.get(name);
+        return value != null ? parseCount(value) : defaultValue;
+    }
+
+    public int getInt(String name, int defaultValue) {
+        return Math.toIntExact(getLong(name, defaultValue));
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        String value = values.get(name);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+
+    public boolean getBoolean(String name) {
+        return Boolean.parseBoolean(values.getOrDefault(name, "false"));
+    }
+
+    public Duration getDuration(String name, Duration defaultValue) {
+        String value = values.get(name);
+        return value != null ? Duration.parse("PT" + value.toUpperCase()) : defaultValue;
+    }
+
+    /**
+     * Counts may use k / m / b suffixes, e.g. {@code 500m} or {@code 2b}.
+     */
+    public static long parseCount(String value) {
+        String v = value.trim().toLowerCase().replace("_", "");
+        long multiplier = switch (v.charAt(v.length() - 1)) {
+            case 'k' -> 1_000L;
+            case 'm' -> 1_000_000L;
+            case 'b' -> 1_000_000_000L;
+            default -> 1L;
+        };
+        return Long.parseLong(multiplier == 1 ? v : v.substring(0, v.length() - 1)) * multiplier;
+    }
+}
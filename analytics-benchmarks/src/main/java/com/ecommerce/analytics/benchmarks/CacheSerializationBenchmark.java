@@ -0,0 +1,141 @@
+package com.ecommerce.analytics.benchmarks;
+
+import com.ecommerce.analytics.aggregate.CategorySalesPartial;
+import com.ecommerce.analytics.aggregate.TopNPartial;
+import com.ecommerce.analytics.cache.CacheValueSerializer;
+import com.ecommerce.analytics.dto.ActivitySummaryDto;
+import com.ecommerce.analytics.dto.DailySalesDto;
+import com.ecommerce.analytics.dto.InventoryDto;
+import com.ecommerce.analytics.dto.TopProductDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Serialize / deserialize round trip of every value type stored in Redis, with the cache's
+ * {@link CacheValueSerializer} (with and without compression) and with the JDK serialization it
+ * replaced. The encoded size of each value is printed at setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheSerializationBenchmark {
+
+    @Param({"categorySales", "topProducts", "dailySales", "inventory", "activitySummary",
+            "categorySalesPartial", "topNPartial", "activityCounts", "totalSales", "uniqueUsers"})
+    String value;
+
+    @Param({"100"})
+    int rows;
+
+    /**
+     * jdk: Spring's default JdkSerializationRedisSerializer; binary: CacheValueSerializer with the default
+     * 1 KB compression threshold; binary-uncompressed: CacheValueSerializer without compression.
+     */
+    @Param({"jdk", "binary", "binary-uncompressed"})
+    String codec;
+
+    private SerializationPair<Object> serializer;
+    private Object object;
+    private ByteBuffer encoded;
+
+    @Setup
+    public void setUp() {
+        serializer = SerializationPair.fromSerializer(serializer(codec));
+        object = create(value, rows);
+        encoded = serializer.write(object);
+        System.out.printf("%n%s (%s): %d bytes%n", value, codec, encoded.remaining());
+    }
+
+    @Benchmark
+    public ByteBuffer serialize() {
+        return serializer.write(object);
+    }
+
+    @Benchmark
+    public Object deserialize() {
+        return serializer.read(encoded.duplicate());
+    }
+
+    @Benchmark
+    public Object roundTrip() {
+        return serializer.read(serializer.write(object));
+    }
+
+    @SuppressWarnings("unchecked")
+    static RedisSerializer<Object> serializer(String codec) {
+        return switch (codec) {
+            case "jdk" -> (RedisSerializer<Object>) (RedisSerializer<?>) new JdkSerializationRedisSerializer();
+            case "binary" -> new CacheValueSerializer(CacheValueSerializer.Format.BINARY, 1024);
+            case "binary-uncompressed" -> new CacheValueSerializer(CacheValueSerializer.Format.BINARY, -1);
+            default -> throw new IllegalArgumentException("Unknown codec: " + codec);
+        };
+    }
+
+    static Object create(String value, int rows) {
+        LocalDate start = LocalDate.of(2024, 1, 1);
+        return switch (value) {
+            case "categorySales" -> CategorySalesPartial.merge(List.of(
+                    CategorySalesPartial.of(Fixtures.categoryProductRows(rows, 1))));
+            case "topProducts" -> topProducts(rows);
+            case "dailySales" -> {
+                List<DailySalesDto> days = new ArrayList<>(rows);
+                for (Object[] row : Fixtures.dailyRows(start, rows, 3)) {
+                    days.add(new DailySalesDto(((Date) row[0]).toLocalDate(), (BigDecimal) row[1], (Long) row[2]));
+                }
+                yield days;
+            }
+            case "inventory" -> Fixtures.products(rows, 5).stream()
+                    .map(p -> new InventoryDto(p.getId(), p.getName(), p.getCategory(), p.getStockQuantity(), "ADEQUATE"))
+                    .collect(Collectors.toCollection(ArrayList::new));
+            case "activitySummary" -> Fixtures.activityCountRows(4).stream()
+                    .map(r -> new ActivitySummaryDto((String) r[0], (Long) r[1], 20.0))
+                    .collect(Collectors.toCollection(ArrayList::new));
+            case "categorySalesPartial" -> CategorySalesPartial.of(Fixtures.categoryProductRows(rows, 1));
+            case "topNPartial" -> {
+                List<Object[]> ranked = Fixtures.rankedProductRows(rows, 2);
+                yield TopNPartial.of(ranked, rows, ranked.stream().mapToLong(r -> (Long) r[2]).sum() * 2);
+            }
+            case "activityCounts" -> {
+                LinkedHashMap<String, Long> counts = new LinkedHashMap<>();
+                Fixtures.activityCountRows(4).forEach(r -> counts.put((String) r[0], (Long) r[1]));
+                yield counts;
+            }
+            case "totalSales" -> new BigDecimal("123456789.12");
+            case "uniqueUsers" -> 42_000L;
+            default -> throw new IllegalArgumentException("Unknown value type: " + value);
+        };
+    }
+
+    private static List<TopProductDto> topProducts(int rows) {
+        List<TopProductDto> products = new ArrayList<>(rows);
+        for (Object[] row : Fixtures.rankedProductRows(rows, 2)) {
+            products.add(new TopProductDto((String) row[1], (Long) row[2], ((Long) row[2]) * 9.99));
+        }
+        return products;
+    }
+}
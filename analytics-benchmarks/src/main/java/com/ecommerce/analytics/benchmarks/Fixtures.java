@@ -0,0 +1,101 @@
+package com.ecommerce.analytics.benchmarks;
+
+import com.ecommerce.analytics.model.Product;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Deterministic query results shaped like the ones the repositories return, plus a way to stand
+ * repositories up without a database.
+ */
+final class Fixtures {
+
+    static final String[] CATEGORIES = {"Electronics", "Furniture", "Clothing", "Books", "Sports",
+            "Toys", "Garden", "Beauty", "Grocery", "Automotive", "Music", "Office"};
+    static final String[] ACTIVITY_TYPES = {"VIEW", "SEARCH", "ADD_TO_CART", "PURCHASE", "WISHLIST"};
+
+    private Fixtures() {
+    }
+
+    /**
+     * Rows of (category, productId, revenue), one per product.
+     */
+    static List<Object[]> categoryProductRows(int products, long seed) {
+        Random random = new Random(seed);
+        List<Object[]> rows = new ArrayList<>(products);
+        for (int i = 0; i < products; i++) {
+            rows.add(new Object[]{CATEGORIES[i % CATEGORIES.length], (long) i + 1, money(random, 10_000)});
+        }
+        return rows;
+    }
+
+    /**
+     * Rows of (productId, name, count) in descending count order.
+     */
+    static List<Object[]> rankedProductRows(int products, long seed) {
+        Random random = new Random(seed);
+        List<Object[]> rows = new ArrayList<>(products);
+        long count = 1_000L * products;
+        for (int i = 0; i < products; i++) {
+            count -= random.nextInt(900) + 1;
+            rows.add(new Object[]{(long) i + 1, "Product " + (i + 1), Math.max(count, 1L)});
+        }
+        return rows;
+    }
+
+    /**
+     * Rows of (day, revenue, transactions), one per day starting at {@code start}.
+     */
+    static List<Object[]> dailyRows(LocalDate start, int days, long seed) {
+        Random random = new Random(seed);
+        List<Object[]> rows = new ArrayList<>(days);
+        for (int i = 0; i < days; i++) {
+            rows.add(new Object[]{Date.valueOf(start.plusDays(i)), money(random, 100_000), (long) random.nextInt(5_000)});
+        }
+        return rows;
+    }
+
+    static List<Object[]> activityCountRows(long seed) {
+        Random random = new Random(seed);
+        List<Object[]> rows = new ArrayList<>(ACTIVITY_TYPES.length);
+        for (String type : ACTIVITY_TYPES) {
+            rows.add(new Object[]{type, (long) random.nextInt(1_000_000)});
+        }
+        return rows;
+    }
+
+    static List<Product> products(int count, long seed) {
+        Random random = new Random(seed);
+        List<Product> products = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Product product = new Product();
+            product.setId((long) i + 1);
+            product.setName("Product " + (i + 1));
+            product.setCategory(CATEGORIES[i % CATEGORIES.length]);
+            product.setPrice(money(random, 1_000));
+            product.setStockQuantity(random.nextInt(200));
+            products.add(product);
+        }
+        return products;
+    }
+
+    /**
+     * A repository whose methods return canned results by method name; anything else returns null.
+     */
+    @SuppressWarnings("unchecked")
+    static <R> R repository(Class<R> type, Map<String, Object> results) {
+        return (R) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> results.get(method.getName()));
+    }
+
+    private static BigDecimal money(Random random, int max) {
+        return BigDecimal.valueOf(random.nextInt(max * 100), 2);
+    }
+}
@@ -0,0 +1,393 @@
+package com.ecommerce.analytics.benchmarks.data;
+
+import com.ecommerce.analytics.benchmarks.Args;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Populates products, sales and user activities with synthetic but realistically skewed data:
+ * <ul>
+ *   <li>product popularity (for sales and views) and user / customer activity follow Zipf laws,
+ *       with ranks scattered over the id space so popular products are not simply the lowest ids;</li>
+ *   <li>timestamps follow a diurnal curve (quiet at night, peak in the evening) and weekends are busier;</li>
+ *   <li>sale statuses and activity types follow a fixed mix, and searches carry no product.</li>
+ * </ul>
+ * Output depends only on the seed, the volumes and the end date: rows are produced in fixed-size
+ * chunks, each from its own random stream, so the thread count and batch size only affect speed.
+ * Ids are explicit and the sales / activity id sequences are moved past them afterwards.
+ *
+ * <pre>
+ * java ... com.ecommerce.analytics.benchmarks.data.DataGenerator --jdbc-url=jdbc:mysql://localhost:3307/ecommerce_analytics \
+ *     --username=ecommerce_user --password=ecommerce_pass --products=100k --sales=500m --activities=2b --reset
+ * </pre>
+ */
+@Slf4j
+public class DataGenerator {
+
+    /** Rows per random stream; changing it changes the generated data. */
+    static final int CHUNK_SIZE = 10_000;
+
+    static final String[] CATEGORIES = {"Electronics", "Clothing", "Home", "Books", "Sports", "Beauty",
+            "Toys", "Furniture", "Grocery", "Accessories", "Appliances", "Garden"};
+    private static final String[] ADJECTIVES = {"Classic", "Smart", "Portable", "Premium", "Compact",
+            "Wireless", "Eco", "Deluxe", "Ultra", "Essential"};
+    private static final String[] NOUNS = {"Speaker", "Jacket", "Lamp", "Novel", "Racket", "Serum", "Puzzle",
+            "Chair", "Coffee", "Backpack", "Blender", "Planter"};
+
+    private static final String[] STATUSES = {"COMPLETED", "PENDING", "CANCELLED", "REFUNDED"};
+    private static final double[] STATUS_MIX = cumulative(0.88, 0.06, 0.04, 0.02);
+    private static final String[] ACTIVITY_TYPES = {"VIEW", "SEARCH", "ADD_TO_CART", "WISHLIST", "PURCHASE"};
+    private static final double[] ACTIVITY_MIX = cumulative(0.70, 0.14, 0.09, 0.04, 0.03);
+    private static final String[] USER_AGENTS = {
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) Chrome/120.0",
+            "Mozilla/5.0 (Macintosh; Intel Mac OS X 14_1) Safari/605.1.15",
+            "Mozilla/5.0 (iPhone; CPU iPhone OS 17_1 like Mac OS X) Mobile/15E148",
+            "Mozilla/5.0 (Linux; Android 14) Chrome/120.0 Mobile",
+            "Mozilla/5.0 (X11; Linux x86_64) Firefox/121.0"};
+    /** Relative traffic per hour of day: overnight trough, lunch bump, evening peak. */
+    private static final double[] HOURLY_MIX = cumulative(
+            1.0, 0.6, 0.4, 0.3, 0.3, 0.5, 1.0, 2.0, 3.0, 3.5, 3.8, 4.2,
+            4.8, 4.5, 4.0, 3.9, 4.1, 4.6, 5.4, 6.2, 6.6, 5.8, 4.0, 2.2);
+
+    private static final int PRODUCTS = 1, SALES = 2, ACTIVITIES = 3;
+
+    public record Volume(long products, long sales, long activities) {
+
+        /**
+         * {@code products:sales:activities}, counts may use k / m / b suffixes.
+         */
+        public static Volume parse(String value) {
+            String[] parts = value.split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Expected products:sales:activities but got: " + value);
+            }
+            return new Volume(Args.parseCount(parts[0]), Args.parseCount(parts[1]), Args.parseCount(parts[2]));
+        }
+
+        @Override
+        public String toString() {
+            return products + ":" + sales + ":" + activities;
+        }
+    }
+
+    public record Options(long seed, int days, LocalDate endDate, double zipfExponent, int threads, int batchSize) {
+
+        public static Options defaults() {
+            return new Options(42, 365, LocalDate.now(), 1.1, Runtime.getRuntime().availableProcessors(), 1_000);
+        }
+    }
+
+    private final DataSource dataSource;
+    private final Volume volume;
+    private final Options options;
+    private final LocalDate firstDay;
+    private final long productStride;
+    private final long customers;
+    private final long customerStride;
+    private final long users;
+    private final long userStride;
+    private int[] priceCents;
+
+    public DataGenerator(DataSource dataSource, Volume volume, Options options) {
+        if (volume.products() < 1 || volume.products() > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("products must be between 1 and " + Integer.MAX_VALUE);
+        }
+        this.dataSource = dataSource;
+        this.volume = volume;
+        this.options = options;
+        this.firstDay = options.endDate().minusDays(options.days() - 1);
+        this.customers = Math.max(1_000, volume.sales() / 8);
+        this.users = Math.max(1_000, volume.activities() / 25);
+        this.productStride = stride(volume.products());
+        this.customerStride = stride(customers);
+        this.userStride = stride(users);
+    }
+
+    /**
+     * Remove all analytics data, including rollups and sketches derived from it.
+     */
+    public void reset() throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            for (String table : List.of("user_activities", "sales", "products", "sales_daily_rollup",
+                    "user_activity_daily_hll", "rollup_watermarks")) {
+                try {
+                    statement.executeUpdate("DELETE FROM " + table);
+                } catch (SQLException e) {
+                    log.warn("Could not clear {}: {}", table, e.getMessage());
+                }
+            }
+        }
+    }
+
+    public void generate() throws SQLException {
+        long start = System.nanoTime();
+        generateProducts();
+        insertChunked("sales", volume.sales(), SALES,
+                "INSERT INTO sales (id, product_id, quantity, total_amount, sale_date, customer_id, status) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                this::writeSale);
+        insertChunked("user_activities", volume.activities(), ACTIVITIES,
+                "INSERT INTO user_activities (id, user_id, activity_type, product_id, activity_timestamp, ip_address, user_agent) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                this::writeActivity);
+        syncSequence("sales", "sales_seq");
+        syncSequence("user_activities", "user_activities_seq");
+        log.info("Generated {} (products:sales:activities) over {} days ending {} in {} s", volume, options.days(),
+                options.endDate(), (System.nanoTime() - start) / 1_000_000_000);
+    }
+
+    private void generateProducts() throws SQLException {
+        priceCents = new int[(int) volume.products()];
+        ZipfSampler categories = new ZipfSampler(CATEGORIES.length, 0.8);
+        insertChunked("products", volume.products(), PRODUCTS,
+                "INSERT INTO products (id, name, category, price, stock_quantity, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                (statement, id, random) -> {
+                    int cents = (int) Math.min(2_000_000, Math.max(99, Math.round(Math.exp(Math.log(4_000) + random.nextGaussian()))));
+                    priceCents[(int) id - 1] = cents;
+                    Timestamp created = Timestamp.valueOf(firstDay.minusDays(random.nextInt(365)).atTime(9, 0));
+                    statement.setLong(1, id);
+                    statement.setString(2, ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " "
+                            + NOUNS[random.nextInt(NOUNS.length)] + " " + id);
+                    statement.setString(3, CATEGORIES[(int) categories.sample(random) - 1]);
+                    statement.setBigDecimal(4, BigDecimal.valueOf(cents, 2));
+                    statement.setInt(5, random.nextInt(500));
+                    statement.setTimestamp(6, created);
+                    statement.setTimestamp(7, created);
+                });
+    }
+
+    private void writeSale(PreparedStatement statement, long id, SplittableRandom random, ZipfSampler products,
+                           ZipfSampler people) throws SQLException {
+        long productId = scatter(products.sample(random), volume.products(), productStride);
+        int quantity = 1;
+        while (quantity < 10 && random.nextDouble() < 0.35) {
+            quantity++;
+        }
+        statement.setLong(1, id);
+        statement.setLong(2, productId);
+        statement.setInt(3, quantity);
+        statement.setBigDecimal(4, BigDecimal.valueOf((long) priceCents[(int) productId - 1] * quantity, 2));
+        statement.setTimestamp(5, Timestamp.valueOf(timestamp(random)));
+        statement.setLong(6, scatter(people.sample(random), customers, customerStride));
+        statement.setString(7, STATUSES[pick(STATUS_MIX, random)]);
+    }
+
+    private void writeActivity(PreparedStatement statement, long id, SplittableRandom random, ZipfSampler products,
+                               ZipfSampler people) throws SQLException {
+        long userId = scatter(people.sample(random), users, userStride);
+        String type = ACTIVITY_TYPES[pick(ACTIVITY_MIX, random)];
+        statement.setLong(1, id);
+        statement.setLong(2, userId);
+        statement.setString(3, type);
+        if ("SEARCH".equals(type)) {
+            statement.setNull(4, Types.BIGINT);
+        } else {
+            statement.setLong(4, scatter(products.sample(random), volume.products(), productStride));
+        }
+        statement.setTimestamp(5, Timestamp.valueOf(timestamp(random)));
+        statement.setString(6, "10." + ((userId >> 16) & 255) + "." + ((userId >> 8) & 255) + "." + (userId & 255));
+        statement.setString(7, USER_AGENTS[(int) (userId % USER_AGENTS.length)]);
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(PreparedStatement statement, long id, SplittableRandom random) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface SkewedRowWriter {
+        void write(PreparedStatement statement, long id, SplittableRandom random, ZipfSampler products,
+                   ZipfSampler people) throws SQLException;
+    }
+
+    private void insertChunked(String table, long rows, int stream, String sql, SkewedRowWriter writer) throws SQLException {
+        ZipfSampler products = new ZipfSampler(volume.products(), options.zipfExponent());
+        ZipfSampler people = stream == SALES ? new ZipfSampler(customers, 0.6) : new ZipfSampler(users, 0.9);
+        insertChunked(table, rows, stream, sql,
+                (RowWriter) (statement, id, random) -> writer.write(statement, id, random, products, people));
+    }
+
+    private void insertChunked(String table, long rows, int stream, String sql, RowWriter writer) throws SQLException {
+        if (rows == 0) return;
+        long chunks = (rows + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        AtomicLong nextChunk = new AtomicLong();
+        AtomicLong written = new AtomicLong();
+        long reportEvery = Math.max(1, chunks / 20);
+        long start = System.nanoTime();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, options.threads()));
+        try {
+            List<Future<Void>> workers = new ArrayList<>();
+            for (int i = 0; i < Math.max(1, options.threads()); i++) {
+                workers.add(executor.submit(() -> {
+                    try (Connection connection = dataSource.getConnection();
+                         PreparedStatement statement = connection.prepareStatement(sql)) {
+                        connection.setAutoCommit(false);
+                        long chunk;
+                        while ((chunk = nextChunk.getAndIncrement()) < chunks) {
+                            SplittableRandom random = new SplittableRandom(mix(options.seed(), stream, chunk));
+                            long first = chunk * CHUNK_SIZE + 1;
+                            long last = Math.min(rows, first + CHUNK_SIZE - 1);
+                            int batched = 0;
+                            for (long id = first; id <= last; id++) {
+                                writer.write(statement, id, random);
+                                statement.addBatch();
+                                if (++batched == options.batchSize()) {
+                                    statement.executeBatch();
+                                    batched = 0;
+                                }
+                            }
+                            if (batched > 0) {
+                                statement.executeBatch();
+                            }
+                            connection.commit();
+                            long done = written.addAndGet(last - first + 1);
+                            if ((chunk + 1) % reportEvery == 0) {
+                                double seconds = (System.nanoTime() - start) / 1e9;
+                                log.info("{}: {} / {} rows ({} rows/s)", table, done, rows, Math.round(done / seconds));
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> worker : workers) {
+                worker.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while generating " + table, e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof SQLException se ? se : new SQLException("Generating " + table + " failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Move an id sequence past the generated ids: a one-row table on MySQL, a real sequence on H2.
+     */
+    private void syncSequence(String table, String sequence) throws SQLException {
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            long next;
+            try (ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(id), 0) + 1 FROM " + table)) {
+                rs.next();
+                next = rs.getLong(1);
+            }
+            try {
+                if (statement.executeUpdate("UPDATE " + sequence + " SET next_val = " + next) == 0) {
+                    statement.executeUpdate("INSERT INTO " + sequence + " (next_val) VALUES (" + next + ")");
+                }
+            } catch (SQLException notATable) {
+                try {
+                    statement.executeUpdate("ALTER SEQUENCE " + sequence + " RESTART WITH " + next);
+                } catch (SQLException e) {
+                    log.warn("Could not move {} past {}: {}", sequence, next, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private LocalDateTime timestamp(SplittableRandom random) {
+        LocalDate day;
+        do {
+            day = firstDay.plusDays(random.nextInt(options.days()));
+        } while (!isWeekend(day) && random.nextDouble() > 0.8); // weekdays carry 80% of a weekend day's traffic
+        return day.atTime(pick(HOURLY_MIX, random), random.nextInt(60), random.nextInt(60));
+    }
+
+    private static boolean isWeekend(LocalDate day) {
+        return day.getDayOfWeek() == DayOfWeek.SATURDAY || day.getDayOfWeek() == DayOfWeek.SUNDAY;
+    }
+
+    /**
+     * Map Zipf rank {@code [1, n]} to an id in {@code [1, n]}; a stride coprime to n makes it a permutation.
+     */
+    private static long scatter(long rank, long n, long stride) {
+        return Math.floorMod((rank - 1) * stride, n) + 1;
+    }
+
+    private static long stride(long n) {
+        if (n == 1) return 1;
+        long stride = 1_000_003 % n;
+        while (stride == 0 || gcd(stride, n) != 1) {
+            stride = (stride + 1) % n;
+        }
+        return stride;
+    }
+
+    private static long gcd(long a, long b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    private static int pick(double[] cumulative, SplittableRandom random) {
+        double u = random.nextDouble();
+        for (int i = 0; i < cumulative.length - 1; i++) {
+            if (u < cumulative[i]) return i;
+        }
+        return cumulative.length - 1;
+    }
+
+    private static double[] cumulative(double... weights) {
+        double total = 0;
+        for (double weight : weights) total += weight;
+        double[] cumulative = new double[weights.length];
+        double sum = 0;
+        for (int i = 0; i < weights.length; i++) {
+            sum += weights[i];
+            cumulative[i] = sum / total;
+        }
+        return cumulative;
+    }
+
+    private static long mix(long seed, int stream, long chunk) {
+        long z = seed * 0x9E3779B97F4A7C15L + ((long) stream << 48) + chunk;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public static void main(String[] argv) throws SQLException {
+        Args args = new Args(argv);
+        Options defaults = Options.defaults();
+        Options options = new Options(args.getLong("seed", defaults.seed()), args.getInt("days", defaults.days()),
+                LocalDate.parse(args.get("end-date", defaults.endDate().toString())),
+                args.getDouble("zipf", defaults.zipfExponent()), args.getInt("threads", defaults.threads()),
+                args.getInt("batch-size", defaults.batchSize()));
+        Volume volume = new Volume(args.getLong("products", 10_000), args.getLong("sales", 1_000_000),
+                args.getLong("activities", 4_000_000));
+
+        try (HikariDataSource dataSource = new HikariDataSource()) {
+            dataSource.setJdbcUrl(args.get("jdbc-url",
+                    "jdbc:mysql://localhost:3307/ecommerce_analytics?rewriteBatchedStatements=true"));
+            dataSource.setUsername(args.get("username", "ecommerce_user"));
+            dataSource.setPassword(args.get("password", "ecommerce_pass"));
+            dataSource.setMaximumPoolSize(Math.max(1, options.threads()) + 1);
+
+            DataGenerator generator = new DataGenerator(dataSource, volume, options);
+            if (args.getBoolean("reset")) {
+                generator.reset();
+            }
+            generator.generate();
+        }
+    }
+}
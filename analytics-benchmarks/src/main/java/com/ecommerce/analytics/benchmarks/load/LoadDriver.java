@@ -0,0 +1,234 @@
+package com.ecommerce.analytics.benchmarks.load;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Closed-loop load against a running analytics-service: for each endpoint in turn, {@code concurrency}
+ * workers send requests back to back, first for a warmup period and then for the measured period.
+ * Latencies are recorded in an HdrHistogram (successful responses only; others count as errors).
+ *
+ * Date-range endpoints get a window of {@code rangeDays} inside the generated data; with
+ * {@code varyRanges} every request picks a random window, otherwise all use the most recent one.
+ */
+@Slf4j
+public class LoadDriver {
+
+    /**
+     * One endpoint; {@code request} builds a request for a date window using the given random stream. For a
+     * {@code stream} the response is closed once its headers arrive, so the latency is the time to subscribe.
+     */
+    public record Endpoint(String name, BiFunction<Window, SplittableRandom, HttpRequest.Builder> request,
+                           boolean stream) {
+
+        public Endpoint(String name, BiFunction<Window, SplittableRandom, HttpRequest.Builder> request) {
+            this(name, request, false);
+        }
+    }
+
+    public record Window(LocalDate start, LocalDate end) {
+    }
+
+    public record Result(String endpoint, long requests, long errors, double throughputPerSecond,
+                         double p50Millis, double p90Millis, double p99Millis, double maxMillis) {
+    }
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    private final int concurrency;
+    private final Duration warmup;
+    private final Duration duration;
+    private final LocalDate firstDay;
+    private final LocalDate lastDay;
+    private final int rangeDays;
+    private final boolean varyRanges;
+    private final long seed;
+
+    public LoadDriver(int concurrency, Duration warmup, Duration duration, LocalDate firstDay, LocalDate lastDay,
+                      int rangeDays, boolean varyRanges, long seed) {
+        this.concurrency = concurrency;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.firstDay = firstDay;
+        this.lastDay = lastDay;
+        this.rangeDays = rangeDays;
+        this.varyRanges = varyRanges;
+        this.seed = seed;
+    }
+
+    public List<Result> run(List<Endpoint> endpoints) throws InterruptedException {
+        List<Result> results = new ArrayList<>();
+        for (Endpoint endpoint : endpoints) {
+            drive(endpoint, warmup, null);
+            Histogram histogram = new ConcurrentHistogram(TimeUnit.MINUTES.toNanos(1), 3);
+            AtomicLong errors = new AtomicLong();
+            long elapsed = drive(endpoint, duration, new Recording(histogram, errors));
+            long requests = histogram.getTotalCount();
+            Result result = new Result(endpoint.name(), requests, errors.get(), requests / (elapsed / 1e9),
+                    millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(90)),
+                    millis(histogram.getValueAtPercentile(99)), millis(histogram.getMaxValue()));
+            log.info("{}", format(result));
+            results.add(result);
+        }
+        return results;
+    }
+
+    public static String header() {
+        return String.format("%-28s %9s %7s %10s %9s %9s %9s %9s", "endpoint", "requests", "errors", "req/s",
+                "p50 ms", "p90 ms", "p99 ms", "max ms");
+    }
+
+    public static String format(Result r) {
+        return String.format("%-28s %9d %7d %10.1f %9.2f %9.2f %9.2f %9.2f", r.endpoint(), r.requests(), r.errors(),
+                r.throughputPerSecond(), r.p50Millis(), r.p90Millis(), r.p99Millis(), r.maxMillis());
+    }
+
+    private record Recording(Histogram histogram, AtomicLong errors) {
+    }
+
+    private long drive(Endpoint endpoint, Duration period, Recording recording) throws InterruptedException {
+        if (period.isZero()) return 0;
+        long start = System.nanoTime();
+        long deadline = start + period.toNanos();
+        CountDownLatch done = new CountDownLatch(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            SplittableRandom random = new SplittableRandom(seed * 31 + i);
+            Thread worker = new Thread(() -> {
+                try {
+                    while (System.nanoTime() - deadline < 0) {
+                        HttpRequest request = endpoint.request().apply(window(random), random)
+                                .timeout(Duration.ofSeconds(60)).build();
+                        long sent = System.nanoTime();
+                        boolean ok;
+                        try {
+                            int status;
+                            if (endpoint.stream()) {
+                                HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                                response.body().close();
+                                status = response.statusCode();
+                            } else {
+                                status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                            }
+                            ok = status >= 200 && status < 300;
+                        } catch (IOException e) {
+                            ok = false;
+                        }
+                        if (recording == null) continue;
+                        if (ok) {
+                            recording.histogram().recordValue(Math.min(System.nanoTime() - sent,
+                                    recording.histogram().getHighestTrackableValue()));
+                        } else {
+                            recording.errors().incrementAndGet();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "load-" + endpoint.name() + "-" + i);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        done.await();
+        return System.nanoTime() - start;
+    }
+
+    private Window window(SplittableRandom random) {
+        long span = lastDay.toEpochDay() - firstDay.toEpochDay() + 1;
+        int days = (int) Math.min(rangeDays, span);
+        if (!varyRanges) {
+            return new Window(lastDay.minusDays(days - 1), lastDay);
+        }
+        LocalDate start = firstDay.plusDays(random.nextLong(span - days + 1));
+        return new Window(start, start.plusDays(days - 1));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    /**
+     * Every analytics-service controller endpoint; new endpoints must be added here. Exports use a one-day
+     * window; ingestion posts NDJSON batches of {@code ingestBatch} events for random existing products.
+     * Inventory pages start after a random product, changes are read from ten minutes back, and the live
+     * stream is only opened (a dropped stream is noticed at its next heartbeat, so high concurrency can
+     * reach {@code analytics.live.max-subscribers}).
+     */
+    public static List<Endpoint> endpoints(String baseUrl, long products, int ingestBatch) {
+        String api = baseUrl + "/api/analytics";
+        List<Endpoint> endpoints = new ArrayList<>();
+        endpoints.add(get("sales/by-category", w -> api + "/sales/by-category?" + range(w)));
+        endpoints.add(get("sales/top-products", w -> api + "/sales/top-products?limit=10&" + range(w)));
+        endpoints.add(get("sales/daily", w -> api + "/sales/daily?" + range(w)));
+        endpoints.add(get("sales/total", w -> api + "/sales/total?" + range(w)));
+        endpoints.add(get("sales/live", w -> api + "/sales/live?top=5"));
+        endpoints.add(get("inventory/status", w -> api + "/inventory/status"));
+        endpoints.add(get("inventory/low-stock", w -> api + "/inventory/low-stock?threshold=50"));
+        endpoints.add(get("inventory/status-counts", w -> api + "/inventory/status-counts"));
+        endpoints.add(new Endpoint("inventory/items", (w, random) -> HttpRequest.newBuilder(URI.create(
+                api + "/inventory/items?limit=500&cursor=" + random.nextLong(products))).GET()));
+        endpoints.add(get("inventory/changes", w -> api + "/inventory/changes?limit=500&since="
+                + LocalDateTime.now().minusMinutes(10).truncatedTo(ChronoUnit.SECONDS)));
+        endpoints.add(get("user-activity/summary", w -> api + "/user-activity/summary?" + range(w)));
+        endpoints.add(get("user-activity/most-viewed", w -> api + "/user-activity/most-viewed?limit=10&" + range(w)));
+        endpoints.add(get("user-activity/unique-users", w -> api + "/user-activity/unique-users?" + range(w)));
+        endpoints.add(get("dashboard", w -> api + "/dashboard?" + range(w)));
+        endpoints.add(new Endpoint("live/stream", (w, random) -> HttpRequest.newBuilder(URI.create(api + "/live/stream"))
+                .header("Accept", "text/event-stream").GET(), true));
+        endpoints.add(get("export/sales", w -> api + "/export/sales?format=csv&" + range(new Window(w.end(), w.end()))));
+        endpoints.add(get("export/user-activity", w -> api + "/export/user-activity?format=ndjson&" + range(new Window(w.end(), w.end()))));
+        endpoints.add(new Endpoint("ingest/sales", (w, random) -> post(api + "/ingest/sales", ndjson(ingestBatch, i ->
+                "{\"productId\":" + (1 + random.nextLong(products)) + ",\"quantity\":1,\"totalAmount\":19.99,"
+                        + "\"customerId\":" + random.nextInt(1_000_000) + ",\"status\":\"COMPLETED\"}"))));
+        endpoints.add(new Endpoint("ingest/activities", (w, random) -> post(api + "/ingest/activities", ndjson(ingestBatch, i ->
+                "{\"userId\":" + random.nextInt(1_000_000) + ",\"activityType\":\"VIEW\",\"productId\":"
+                        + (1 + random.nextLong(products)) + "}"))));
+        return endpoints;
+    }
+
+    private static Endpoint get(String name, Function<Window, String> url) {
+        return new Endpoint(name, (w, random) -> HttpRequest.newBuilder(URI.create(url.apply(w))).GET());
+    }
+
+    private static HttpRequest.Builder post(String url, String body) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .header("Content-Type", "application/x-ndjson")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+    }
+
+    private static String ndjson(int events, IntFunction<String> event) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < events; i++) {
+            body.append(event.apply(i)).append('\n');
+        }
+        return body.toString();
+    }
+
+    private static String range(Window window) {
+        return "startDate=" + window.start() + "&endDate=" + window.end();
+    }
+}
@@ -0,0 +1,127 @@
+package com.ecommerce.analytics.benchmarks.load;
+
+import com.ecommerce.analytics.AnalyticsServiceApplication;
+import com.ecommerce.analytics.benchmarks.Args;
+import com.ecommerce.analytics.benchmarks.data.DataGenerator;
+import com.ecommerce.analytics.service.SalesRollupService;
+import com.ecommerce.analytics.service.UniqueUserSketchService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.io.File;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * End-to-end scaling run: for each scale point, start analytics-service in-process, fill its
+ * database with {@link DataGenerator}, close the completed days (rollups and sketches) the way the
+ * scheduler would, then drive every endpoint with {@link LoadDriver}.
+ *
+ * Without {@code --jdbc-url} each scale point gets a fresh in-memory H2 database (schema created by
+ * Hibernate); with it, the given MySQL database is reset and reused, so its schema must exist.
+ * Results for all scale points go to one JSON file.
+ *
+ * <pre>
+ * mvn -pl analytics-benchmarks -am verify -Pscaling -DskipTests \
+ *     -Dscaling.args="--scales=1k:100k:400k,10k:1m:4m --duration=20s --concurrency=16"
+ * </pre>
+ */
+@Slf4j
+public class ScalingBenchmark {
+
+    public static void main(String[] argv) throws Exception {
+        Args args = new Args(argv);
+        String[] scales = args.get("scales", "1k:100k:400k,10k:1m:4m").split(",");
+        String jdbcUrl = args.get("jdbc-url", null);
+        File out = new File(args.get("out", "target/scaling-result.json"));
+        DataGenerator.Options defaults = DataGenerator.Options.defaults();
+        DataGenerator.Options options = new DataGenerator.Options(args.getLong("seed", defaults.seed()),
+                args.getInt("days", 90), LocalDate.now().minusDays(1), args.getDouble("zipf", defaults.zipfExponent()),
+                args.getInt("threads", defaults.threads()), args.getInt("batch-size", defaults.batchSize()));
+
+        List<Map<String, Object>> report = new ArrayList<>();
+        StringBuilder summary = new StringBuilder();
+        for (int i = 0; i < scales.length; i++) {
+            DataGenerator.Volume volume = DataGenerator.Volume.parse(scales[i].trim());
+            List<String> properties = properties(args, jdbcUrl != null ? jdbcUrl
+                    : "jdbc:h2:mem:scale" + i + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1", jdbcUrl == null);
+
+            log.info("Scale {}: starting analytics-service", volume);
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(AnalyticsServiceApplication.class)
+                    .run(properties.toArray(String[]::new))) {
+                DataGenerator generator = new DataGenerator(context.getBean(DataSource.class), volume, options);
+                generator.reset();
+                generator.generate();
+                closeCompletedDays(context);
+
+                LoadDriver driver = new LoadDriver(args.getInt("concurrency", 16),
+                        args.getDuration("warmup", Duration.ofSeconds(5)), args.getDuration("duration", Duration.ofSeconds(20)),
+                        options.endDate().minusDays(options.days() - 1), options.endDate(),
+                        args.getInt("range-days", 30), args.getBoolean("vary-ranges"), options.seed());
+                String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+                List<LoadDriver.Endpoint> endpoints = LoadDriver.endpoints(baseUrl, volume.products(), 100).stream()
+                        .filter(e -> args.get("endpoints", "").isEmpty()
+                                || List.of(args.get("endpoints", "").split(",")).contains(e.name()))
+                        .toList();
+
+                summary.append(String.format("%nscale %s (products:sales:activities)%n%s%n", volume, LoadDriver.header()));
+                for (LoadDriver.Result result : driver.run(endpoints)) {
+                    summary.append(LoadDriver.format(result)).append('\n');
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    row.put("products", volume.products());
+                    row.put("sales", volume.sales());
+                    row.put("activities", volume.activities());
+                    row.put("concurrency", args.getInt("concurrency", 16));
+                    row.put("result", result);
+                    report.add(row);
+                }
+            }
+        }
+
+        out.getAbsoluteFile().getParentFile().mkdirs();
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(out, report);
+        System.out.println(summary);
+        System.out.println("Results saved to " + out.getAbsolutePath());
+        System.exit(0); // the embedded services leave non-daemon threads behind
+    }
+
+    /**
+     * Command-line style properties, which take precedence over the service's application.yml.
+     */
+    private static List<String> properties(Args args, String jdbcUrl, boolean h2) {
+        List<String> properties = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.datasource.url=" + jdbcUrl,
+                "--spring.datasource.username=" + args.get("username", h2 ? "sa" : "ecommerce_user"),
+                "--spring.datasource.password=" + args.get("password", h2 ? "" : "ecommerce_pass"),
+                "--spring.cache.type=" + args.get("cache", "none"),
+                "--eureka.client.enabled=false",
+                "--analytics.rollup.initial-delay-ms=" + Long.MAX_VALUE / 2,
+                "--logging.level.org.springframework=ERROR",
+                "--logging.level.com.ecommerce.analytics=WARN",
+                "--logging.level.com.ecommerce.analytics.benchmarks=INFO"));
+        if (h2) {
+            properties.add("--spring.datasource.driver-class-name=org.h2.Driver");
+            properties.add("--spring.jpa.hibernate.ddl-auto=create");
+            properties.add("--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect");
+        }
+        return properties;
+    }
+
+    private static void closeCompletedDays(ConfigurableApplicationContext context) {
+        try {
+            context.getBean(SalesRollupService.class).closeCompletedDays();
+            context.getBean(UniqueUserSketchService.class).closeCompletedDays();
+        } catch (RuntimeException e) {
+            log.warn("Could not close completed days, reads will use the raw tables: {}", e.getMessage());
+        }
+    }
+}
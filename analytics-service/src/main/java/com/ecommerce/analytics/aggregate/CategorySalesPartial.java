@@ -0,0 +1,72 @@
+package com.ecommerce.analytics.aggregate;
+
+import com.ecommerce.analytics.dto.CategorySalesDto;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.stream.LongStream;
+
+/**
+ * Category revenue for one date bucket. Product ids are kept (sorted, distinct) so that the
+ * number of distinct products sold stays exact when buckets are merged.
+ */
+@Data
+@NoArgsConstructor
+public class CategorySalesPartial implements Serializable {
+
+    private Map<String, BigDecimal> revenue = new HashMap<>();
+    private Map<String, long[]> productIds = new HashMap<>();
+
+    /**
+     * Build from rows of (category, productId, revenue).
+     */
+    public static CategorySalesPartial of(List<Object[]> rows) {
+        CategorySalesPartial partial = new CategorySalesPartial();
+        Map<String, LongStream.Builder> ids = new HashMap<>();
+        for (Object[] row : rows) {
+            String category = (String) row[0];
+            partial.revenue.merge(category, (BigDecimal) row[2], BigDecimal::add);
+            ids.computeIfAbsent(category, c -> LongStream.builder()).add(((Number) row[1]).longValue());
+        }
+        ids.forEach((category, builder) -> partial.productIds.put(category, builder.build().sorted().distinct().toArray()));
+        return partial;
+    }
+
+    /**
+     * Merge bucket partials into the endpoint result, ordered by revenue descending.
+     */
+    public static List<CategorySalesDto> merge(List<CategorySalesPartial> partials) {
+        Map<String, BigDecimal> revenue = new HashMap<>();
+        Map<String, long[]> productIds = new HashMap<>();
+        for (CategorySalesPartial partial : partials) {
+            partial.revenue.forEach((category, amount) -> revenue.merge(category, amount, BigDecimal::add));
+            partial.productIds.forEach((category, ids) -> productIds.merge(category, ids, CategorySalesPartial::union));
+        }
+
+        List<CategorySalesDto> result = new ArrayList<>(revenue.size());
+        revenue.forEach((category, amount) -> result.add(new CategorySalesDto(
+                category, amount, (long) productIds.getOrDefault(category, new long[0]).length)));
+        result.sort(Comparator.comparing(CategorySalesDto::getTotalSales).reversed());
+        return result;
+    }
+
+    private static long[] union(long[] a, long[] b) {
+        long[] out = new long[a.length + b.length];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length || j < b.length) {
+            long next;
+            if (j == b.length || (i < a.length && a[i] <= b[j])) {
+                next = a[i++];
+            } else {
+                next = b[j++];
+            }
+            if (n == 0 || out[n - 1] != next) {
+                out[n++] = next;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
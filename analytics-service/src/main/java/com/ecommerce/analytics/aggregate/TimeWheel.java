@@ -0,0 +1,146 @@
+package com.ecommerce.analytics.aggregate;
+
+import java.util.Arrays;
+
+/**
+ * Sliding-window sums over per-second buckets: amount, count and amount per category, for a fixed set
+ * of windows ending at the current second.
+ * <p>
+ * The buckets form a ring of {@code span} seconds in primitive arrays, allocated once; each bucket is
+ * stamped with its second, so a bucket left over from an earlier lap reads as empty and is reset when
+ * next written. Every window keeps running sums; as the clock advances, the seconds leaving a window
+ * are subtracted from them. Reading a window is therefore O(1) (O(categories) for its category sums),
+ * and advancing costs O(windows &times; categories) per elapsed second, at most one lap's worth.
+ * <p>
+ * Not thread-safe; callers serialize access.
+ */
+public final class TimeWheel {
+
+    private final int span;
+    private final int[] windows;
+    private final int categories;
+
+    private final long[] stamps;
+    private final long[] amounts;
+    private final long[] counts;
+    private final long[] categoryAmounts; // span x categories
+
+    private final long[] windowAmounts;
+    private final long[] windowCounts;
+    private final long[] windowCategoryAmounts; // windows x categories
+
+    private long now = Long.MIN_VALUE;
+
+    /**
+     * @param windows    window lengths in seconds; the ring spans the longest
+     * @param categories number of category codes, 0 to {@code categories - 1}
+     */
+    public TimeWheel(int[] windows, int categories) {
+        if (windows.length == 0 || Arrays.stream(windows).anyMatch(w -> w <= 0)) {
+            throw new IllegalArgumentException("Windows must be positive: " + Arrays.toString(windows));
+        }
+        this.windows = windows.clone();
+        this.span = Arrays.stream(windows).max().getAsInt();
+        this.categories = categories;
+        this.stamps = new long[span];
+        Arrays.fill(stamps, Long.MIN_VALUE);
+        this.amounts = new long[span];
+        this.counts = new long[span];
+        this.categoryAmounts = new long[span * categories];
+        this.windowAmounts = new long[windows.length];
+        this.windowCounts = new long[windows.length];
+        this.windowCategoryAmounts = new long[windows.length * categories];
+    }
+
+    /**
+     * Moves the current second forward to {@code second}; earlier seconds are ignored.
+     */
+    public void advance(long second) {
+        if (now == Long.MIN_VALUE || second - now >= span) {
+            // Everything held is older than the longest window
+            Arrays.fill(windowAmounts, 0);
+            Arrays.fill(windowCounts, 0);
+            Arrays.fill(windowCategoryAmounts, 0);
+            now = second;
+            return;
+        }
+        while (now < second) {
+            now++;
+            for (int w = 0; w < windows.length; w++) {
+                long leaving = now - windows[w];
+                int bucket = bucket(leaving);
+                if (stamps[bucket] != leaving) continue;
+                windowAmounts[w] -= amounts[bucket];
+                windowCounts[w] -= counts[bucket];
+                int from = bucket * categories;
+                int to = w * categories;
+                for (int c = 0; c < categories; c++) {
+                    windowCategoryAmounts[to + c] -= categoryAmounts[from + c];
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds one event at {@code second}: to the current second if it is later, nowhere if it is older
+     * than the longest window. {@code category} may be -1 for none.
+     */
+    public void add(long second, int category, long amount) {
+        if (second > now) {
+            second = now;
+        }
+        if (second <= now - span) return;
+
+        int bucket = bucket(second);
+        if (stamps[bucket] != second) {
+            stamps[bucket] = second;
+            amounts[bucket] = 0;
+            counts[bucket] = 0;
+            Arrays.fill(categoryAmounts, bucket * categories, (bucket + 1) * categories, 0);
+        }
+        amounts[bucket] += amount;
+        counts[bucket]++;
+        if (category >= 0) {
+            categoryAmounts[bucket * categories + category] += amount;
+        }
+        for (int w = 0; w < windows.length; w++) {
+            if (second > now - windows[w]) {
+                windowAmounts[w] += amount;
+                windowCounts[w]++;
+                if (category >= 0) {
+                    windowCategoryAmounts[w * categories + category] += amount;
+                }
+            }
+        }
+    }
+
+    /**
+     * The current second, or {@code Long.MIN_VALUE} before the first {@link #advance}.
+     */
+    public long now() {
+        return now;
+    }
+
+    public int[] windows() {
+        return windows.clone();
+    }
+
+    /**
+     * Sum of amounts within window {@code w} (an index into the windows), up to the current second.
+     */
+    public long amount(int w) {
+        return windowAmounts[w];
+    }
+
+    public long count(int w) {
+        return windowCounts[w];
+    }
+
+    public long categoryAmount(int w, int category) {
+        return windowCategoryAmounts[w * categories + category];
+    }
+
+    private int bucket(long second) {
+        return (int) Math.floorMod(second, (long) span);
+    }
+}
@@ -0,0 +1,56 @@
+package com.ecommerce.analytics.aggregate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Streaming top-K selection with a bounded min-heap: memory is O(k) however many
+ * elements are offered, and each offer costs O(log k).
+ */
+public final class TopK<T> {
+
+    private final int k;
+    private final Comparator<? super T> comparator;
+    private final PriorityQueue<T> heap;
+
+    /**
+     * @param comparator ascending order of rank; the k greatest elements are kept
+     */
+    public TopK(int k, Comparator<? super T> comparator) {
+        this.k = Math.max(k, 0);
+        this.comparator = comparator;
+        this.heap = new PriorityQueue<>(this.k + 1, comparator);
+    }
+
+    /**
+     * Offer an element and return the one that is no longer in the top k (the offered element
+     * itself, or the previous minimum it displaced), or null when nothing was dropped.
+     */
+    public T offer(T element) {
+        if (heap.size() < k) {
+            heap.add(element);
+            return null;
+        }
+        if (k == 0 || comparator.compare(element, heap.peek()) <= 0) {
+            return element;
+        }
+        T dropped = heap.poll();
+        heap.add(element);
+        return dropped;
+    }
+
+    public int size() {
+        return heap.size();
+    }
+
+    /**
+     * The retained elements, greatest first.
+     */
+    public List<T> toSortedList() {
+        List<T> result = new ArrayList<>(heap);
+        result.sort(comparator.reversed());
+        return result;
+    }
+}
@@ -0,0 +1,107 @@
+package com.ecommerce.analytics.aggregate;
+
+import com.ecommerce.analytics.dto.TopProductDto;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.*;
+
+/**
+ * The top candidates of one date bucket, plus enough bounds to merge buckets exactly.
+ *
+ * A bucket keeps at most {@code capacity} products ordered by count. When it was truncated,
+ * {@code threshold} is the count of its last candidate: no product missing from the list can
+ * have a higher count in that bucket. {@link #merge} only returns a result when those bounds
+ * prove it is the true top-N for the whole range, otherwise callers fall back to an exact query.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TopNPartial implements Serializable {
+
+    private List<Candidate> candidates = new ArrayList<>();
+    private long threshold;
+    private long total;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Candidate implements Serializable {
+        private Long productId;
+        private String productName;
+        private long count;
+    }
+
+    /**
+     * Build from rows of (productId, productName, count) ordered by count descending.
+     */
+    public static TopNPartial of(List<Object[]> rows, int capacity, Long total) {
+        List<Candidate> candidates = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            candidates.add(new Candidate(((Number) row[0]).longValue(), (String) row[1], ((Number) row[2]).longValue()));
+        }
+        long threshold = candidates.size() >= capacity ? candidates.get(candidates.size() - 1).getCount() : 0L;
+        return new TopNPartial(candidates, threshold, total != null ? total : 0L);
+    }
+
+    /**
+     * Merge bucket partials into the top {@code limit} products, or null when the candidates
+     * kept per bucket are not enough to prove the result exact.
+     */
+    public static List<TopProductDto> merge(List<TopNPartial> partials, int limit) {
+        long total = 0;
+        long unseenBound = 0;
+        Map<Long, Candidate> merged = new HashMap<>();
+        Map<Long, Long> missingBound = new HashMap<>();
+
+        for (TopNPartial partial : partials) {
+            total += partial.total;
+            unseenBound += partial.threshold;
+            for (Candidate c : partial.candidates) {
+                merged.merge(c.getProductId(), new Candidate(c.getProductId(), c.getProductName(), c.getCount()),
+                        (a, b) -> { a.setCount(a.getCount() + b.getCount()); return a; });
+            }
+        }
+        // Upper bound for each candidate: its observed count plus the threshold of every bucket it is missing from
+        for (TopNPartial partial : partials) {
+            if (partial.threshold == 0) continue;
+            Set<Long> present = new HashSet<>();
+            partial.candidates.forEach(c -> present.add(c.getProductId()));
+            for (Long id : merged.keySet()) {
+                if (!present.contains(id)) {
+                    missingBound.merge(id, partial.threshold, Long::sum);
+                }
+            }
+        }
+
+        TopK<Candidate> top = new TopK<>(limit, Comparator.comparingLong(Candidate::getCount));
+        long bestOutside = unseenBound;
+        for (Candidate candidate : merged.values()) {
+            Candidate dropped = top.offer(candidate);
+            if (dropped != null) {
+                bestOutside = Math.max(bestOutside,
+                        dropped.getCount() + missingBound.getOrDefault(dropped.getProductId(), 0L));
+            }
+        }
+
+        List<Candidate> selected = top.toSortedList();
+        for (Candidate candidate : selected) {
+            if (missingBound.getOrDefault(candidate.getProductId(), 0L) > 0) {
+                return null; // count of a selected product is not exact
+            }
+        }
+        long floor = selected.isEmpty() ? 0 : selected.get(selected.size() - 1).getCount();
+        if (selected.size() < limit ? unseenBound > 0 : bestOutside > floor) {
+            return null; // an unselected product could still outrank the last selected one
+        }
+
+        List<TopProductDto> result = new ArrayList<>(selected.size());
+        for (Candidate c : selected) {
+            result.add(new TopProductDto(c.getProductName(), c.getCount(),
+                    total > 0 ? ((double) c.getCount() / total) * 100 : 0.0));
+        }
+        return result;
+    }
+}
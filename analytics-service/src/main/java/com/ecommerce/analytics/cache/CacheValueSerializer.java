@@ -0,0 +1,517 @@
+package com.ecommerce.analytics.cache;
+
+import com.ecommerce.analytics.aggregate.CategorySalesPartial;
+import com.ecommerce.analytics.aggregate.TopNPartial;
+import com.ecommerce.analytics.dto.ActivitySummaryDto;
+import com.ecommerce.analytics.dto.CategorySalesDto;
+import com.ecommerce.analytics.dto.DailySalesDto;
+import com.ecommerce.analytics.dto.InventoryDto;
+import com.ecommerce.analytics.dto.TopProductDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Redis value serializer for the cache. Values are written as a three byte header (magic, version, flags)
+ * and a tagged binary body: the DTOs and partials stored by {@code AnalyticsService} have fixed field
+ * layouts with varint numbers and strings repeated within a value written once, and any other type falls
+ * back to embedded JDK serialization. Bodies larger than {@code compressionThreshold} bytes are deflated
+ * when that makes them smaller.
+ * <p>
+ * Reading accepts both this format and plain JDK serialization, and treats a version or leading byte it
+ * does not know as a cache miss, so instances of different releases can share Redis. Rolling out a new
+ * format therefore takes two deploys: first one that reads it while still writing {@link Format#JDK} (or the
+ * previous version), then one that writes it. Values that cannot be read otherwise raise a
+ * {@link SerializationException}, which {@link EvictingCacheErrorHandler} turns into a miss.
+ */
+@Slf4j
+public class CacheValueSerializer implements RedisSerializer<Object> {
+
+    public enum Format { BINARY, JDK }
+
+    static final byte MAGIC = (byte) 0xCA;
+    static final byte VERSION = 1;
+    private static final byte DEFLATED = 1;
+    private static final byte JDK_STREAM_MAGIC = (byte) 0xAC; // first byte of ObjectOutputStream.STREAM_MAGIC
+
+    // Value tags; never renumber, add new ones and bump VERSION when an existing layout changes
+    private static final int NULL = 0;
+    private static final int NULL_VALUE = 1;
+    private static final int STAMPED = 2;
+    private static final int LONG = 3;
+    private static final int DECIMAL = 4;
+    private static final int STRING = 5;
+    private static final int LIST = 6;
+    private static final int MAP = 7;
+    private static final int INTEGER = 8;
+    private static final int DOUBLE = 9;
+    private static final int LOCAL_DATE = 10;
+    private static final int INVENTORY = 20;
+    private static final int TOP_PRODUCT = 21;
+    private static final int DAILY_SALES = 22;
+    private static final int CATEGORY_SALES = 23;
+    private static final int ACTIVITY_SUMMARY = 24;
+    private static final int CATEGORY_SALES_PARTIAL = 25;
+    private static final int TOP_N_PARTIAL = 26;
+    private static final int JAVA = 127;
+
+    private final JdkSerializationRedisSerializer jdk = new JdkSerializationRedisSerializer();
+    private final Format format;
+    private final int compressionThreshold;
+
+    /**
+     * @param compressionThreshold body size in bytes from which values are deflated; negative disables compression
+     */
+    public CacheValueSerializer(Format format, int compressionThreshold) {
+        this.format = format;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (format == Format.JDK) {
+            return jdk.serialize(value);
+        }
+        Writer writer = new Writer();
+        writer.value(value);
+        byte[] body = writer.toByteArray();
+        byte flags = 0;
+        if (compressionThreshold >= 0 && body.length >= compressionThreshold) {
+            byte[] deflated = deflate(body);
+            if (deflated.length < body.length) {
+                body = deflated;
+                flags = DEFLATED;
+            }
+        }
+        byte[] bytes = new byte[body.length + 3];
+        bytes[0] = MAGIC;
+        bytes[1] = VERSION;
+        bytes[2] = flags;
+        System.arraycopy(body, 0, bytes, 3, body.length);
+        return bytes;
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] == JDK_STREAM_MAGIC) {
+            return jdk.deserialize(bytes);
+        }
+        if (bytes.length < 3 || bytes[0] != MAGIC) {
+            log.debug("Ignoring cache value starting with byte {}", bytes[0]);
+            return null;
+        }
+        if (bytes[1] != VERSION) {
+            log.debug("Ignoring cache value of format version {}", bytes[1]);
+            return null;
+        }
+        byte[] body = Arrays.copyOfRange(bytes, 3, bytes.length);
+        if ((bytes[2] & DEFLATED) != 0) {
+            body = inflate(body);
+        }
+        try {
+            return new Reader(ByteBuffer.wrap(body)).value();
+        } catch (RuntimeException e) {
+            throw new SerializationException("Cannot read cache value", e);
+        }
+    }
+
+    private static byte[] deflate(byte[] body) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(body);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2);
+            byte[] chunk = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] body) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(body);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length * 4);
+            byte[] chunk = new byte[4096];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(chunk);
+                if (n == 0 && inflater.needsInput()) {
+                    throw new SerializationException("Truncated cache value");
+                }
+                out.write(chunk, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new SerializationException("Corrupt cache value", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private class Writer {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(256);
+        private final Map<String, Integer> strings = new HashMap<>();
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        void value(Object value) {
+            if (value == null) {
+                out.write(NULL);
+            } else if (value instanceof NullValue) {
+                out.write(NULL_VALUE);
+            } else if (value instanceof StampedValue stamped) {
+                out.write(STAMPED);
+                varlong(stamped.loadedAt());
+                varlong(stamped.loadMillis());
+                value(stamped.value());
+            } else if (value instanceof Long l) {
+                out.write(LONG);
+                varlong(l);
+            } else if (value instanceof Integer i) {
+                out.write(INTEGER);
+                varlong(i);
+            } else if (value instanceof Double d) {
+                out.write(DOUBLE);
+                fixed64(Double.doubleToRawLongBits(d));
+            } else if (value instanceof BigDecimal decimal) {
+                out.write(DECIMAL);
+                decimal(decimal);
+            } else if (value instanceof String s) {
+                out.write(STRING);
+                string(s);
+            } else if (value instanceof LocalDate date) {
+                out.write(LOCAL_DATE);
+                varlong(date.toEpochDay());
+            } else if (value instanceof InventoryDto dto) {
+                out.write(INVENTORY);
+                presence(dto.getProductId(), dto.getProductName(), dto.getCategory(), dto.getStockQuantity(), dto.getStatus());
+                if (dto.getProductId() != null) varlong(dto.getProductId());
+                if (dto.getProductName() != null) string(dto.getProductName());
+                if (dto.getCategory() != null) string(dto.getCategory());
+                if (dto.getStockQuantity() != null) varlong(dto.getStockQuantity());
+                if (dto.getStatus() != null) string(dto.getStatus());
+            } else if (value instanceof TopProductDto dto) {
+                out.write(TOP_PRODUCT);
+                presence(dto.getProductName(), dto.getQuantitySold(), dto.getPercentageOfTotal());
+                if (dto.getProductName() != null) string(dto.getProductName());
+                if (dto.getQuantitySold() != null) varlong(dto.getQuantitySold());
+                if (dto.getPercentageOfTotal() != null) fixed64(Double.doubleToRawLongBits(dto.getPercentageOfTotal()));
+            } else if (value instanceof DailySalesDto dto) {
+                out.write(DAILY_SALES);
+                presence(dto.getDate(), dto.getTotalSales(), dto.getTransactionCount());
+                if (dto.getDate() != null) varlong(dto.getDate().toEpochDay());
+                if (dto.getTotalSales() != null) decimal(dto.getTotalSales());
+                if (dto.getTransactionCount() != null) varlong(dto.getTransactionCount());
+            } else if (value instanceof CategorySalesDto dto) {
+                out.write(CATEGORY_SALES);
+                presence(dto.getCategory(), dto.getTotalSales(), dto.getProductCount());
+                if (dto.getCategory() != null) string(dto.getCategory());
+                if (dto.getTotalSales() != null) decimal(dto.getTotalSales());
+                if (dto.getProductCount() != null) varlong(dto.getProductCount());
+            } else if (value instanceof ActivitySummaryDto dto) {
+                out.write(ACTIVITY_SUMMARY);
+                presence(dto.getActivityType(), dto.getCount(), dto.getPercentage());
+                if (dto.getActivityType() != null) string(dto.getActivityType());
+                if (dto.getCount() != null) varlong(dto.getCount());
+                if (dto.getPercentage() != null) fixed64(Double.doubleToRawLongBits(dto.getPercentage()));
+            } else if (value instanceof CategorySalesPartial partial) {
+                out.write(CATEGORY_SALES_PARTIAL);
+                varint(partial.getRevenue().size());
+                partial.getRevenue().forEach((category, revenue) -> {
+                    string(category);
+                    decimal(revenue);
+                });
+                varint(partial.getProductIds().size());
+                partial.getProductIds().forEach((category, ids) -> {
+                    string(category);
+                    varint(ids.length);
+                    long previous = 0;
+                    for (long id : ids) { // sorted, so the deltas stay small
+                        varlong(id - previous);
+                        previous = id;
+                    }
+                });
+            } else if (value instanceof TopNPartial partial) {
+                out.write(TOP_N_PARTIAL);
+                varlong(partial.getThreshold());
+                varlong(partial.getTotal());
+                varint(partial.getCandidates().size());
+                for (TopNPartial.Candidate candidate : partial.getCandidates()) {
+                    presence(candidate.getProductId(), candidate.getProductName());
+                    if (candidate.getProductId() != null) varlong(candidate.getProductId());
+                    if (candidate.getProductName() != null) string(candidate.getProductName());
+                    varlong(candidate.getCount());
+                }
+            } else if (value instanceof List<?> list) {
+                out.write(LIST);
+                varint(list.size());
+                list.forEach(this::value);
+            } else if (value instanceof Map<?, ?> map) {
+                out.write(MAP);
+                varint(map.size());
+                map.forEach((k, v) -> {
+                    value(k);
+                    value(v);
+                });
+            } else {
+                out.write(JAVA);
+                byte[] bytes = jdk.serialize(value);
+                varint(bytes.length);
+                out.write(bytes, 0, bytes.length);
+            }
+        }
+
+        private void presence(Object... fields) {
+            int bits = 0;
+            for (int i = 0; i < fields.length; i++) {
+                if (fields[i] != null) bits |= 1 << i;
+            }
+            out.write(bits);
+        }
+
+        /**
+         * A string seen earlier in this value is written as a back reference to it.
+         */
+        private void string(String s) {
+            Integer index = strings.get(s);
+            if (index != null) {
+                varint(index << 1 | 1);
+                return;
+            }
+            strings.put(s, strings.size());
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            varint(bytes.length << 1);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        private void decimal(BigDecimal decimal) {
+            varlong(decimal.scale());
+            BigInteger unscaled = decimal.unscaledValue();
+            if (unscaled.bitLength() < 63) {
+                out.write(0);
+                varlong(unscaled.longValue());
+            } else {
+                byte[] bytes = unscaled.toByteArray();
+                out.write(1);
+                varint(bytes.length);
+                out.write(bytes, 0, bytes.length);
+            }
+        }
+
+        private void varint(int value) {
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+
+        /**
+         * ZigZag varint: small magnitudes of either sign take few bytes.
+         */
+        private void varlong(long value) {
+            long zigzag = (value << 1) ^ (value >> 63);
+            while ((zigzag & ~0x7FL) != 0) {
+                out.write((int) ((zigzag & 0x7F) | 0x80));
+                zigzag >>>= 7;
+            }
+            out.write((int) zigzag);
+        }
+
+        private void fixed64(long value) {
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                out.write((int) (value >>> shift));
+            }
+        }
+    }
+
+    private class Reader {
+
+        private final ByteBuffer in;
+        private final List<String> strings = new ArrayList<>();
+
+        Reader(ByteBuffer in) {
+            this.in = in;
+        }
+
+        Object value() {
+            int tag = in.get() & 0xFF;
+            return switch (tag) {
+                case NULL -> null;
+                case NULL_VALUE -> NullValue.INSTANCE;
+                case STAMPED -> {
+                    long loadedAt = varlong();
+                    long loadMillis = varlong();
+                    yield new StampedValue(value(), loadedAt, loadMillis);
+                }
+                case LONG -> varlong();
+                case INTEGER -> (int) varlong();
+                case DOUBLE -> in.getDouble();
+                case DECIMAL -> decimal();
+                case STRING -> string();
+                case LOCAL_DATE -> LocalDate.ofEpochDay(varlong());
+                case INVENTORY -> {
+                    int bits = in.get();
+                    yield new InventoryDto(
+                            has(bits, 0) ? varlong() : null,
+                            has(bits, 1) ? string() : null,
+                            has(bits, 2) ? string() : null,
+                            has(bits, 3) ? (int) varlong() : null,
+                            has(bits, 4) ? string() : null);
+                }
+                case TOP_PRODUCT -> {
+                    int bits = in.get();
+                    yield new TopProductDto(
+                            has(bits, 0) ? string() : null,
+                            has(bits, 1) ? varlong() : null,
+                            has(bits, 2) ? in.getDouble() : null);
+                }
+                case DAILY_SALES -> {
+                    int bits = in.get();
+                    yield new DailySalesDto(
+                            has(bits, 0) ? LocalDate.ofEpochDay(varlong()) : null,
+                            has(bits, 1) ? decimal() : null,
+                            has(bits, 2) ? varlong() : null);
+                }
+                case CATEGORY_SALES -> {
+                    int bits = in.get();
+                    yield new CategorySalesDto(
+                            has(bits, 0) ? string() : null,
+                            has(bits, 1) ? decimal() : null,
+                            has(bits, 2) ? varlong() : null);
+                }
+                case ACTIVITY_SUMMARY -> {
+                    int bits = in.get();
+                    yield new ActivitySummaryDto(
+                            has(bits, 0) ? string() : null,
+                            has(bits, 1) ? varlong() : null,
+                            has(bits, 2) ? in.getDouble() : null);
+                }
+                case CATEGORY_SALES_PARTIAL -> {
+                    CategorySalesPartial partial = new CategorySalesPartial();
+                    for (int i = varint(); i > 0; i--) {
+                        partial.getRevenue().put(string(), decimal());
+                    }
+                    for (int i = varint(); i > 0; i--) {
+                        String category = string();
+                        long[] ids = new long[varint()];
+                        long previous = 0;
+                        for (int j = 0; j < ids.length; j++) {
+                            previous += varlong();
+                            ids[j] = previous;
+                        }
+                        partial.getProductIds().put(category, ids);
+                    }
+                    yield partial;
+                }
+                case TOP_N_PARTIAL -> {
+                    TopNPartial partial = new TopNPartial();
+                    partial.setThreshold(varlong());
+                    partial.setTotal(varlong());
+                    for (int i = varint(); i > 0; i--) {
+                        int bits = in.get();
+                        Long productId = has(bits, 0) ? varlong() : null;
+                        String productName = has(bits, 1) ? string() : null;
+                        partial.getCandidates().add(new TopNPartial.Candidate(productId, productName, varlong()));
+                    }
+                    yield partial;
+                }
+                case LIST -> {
+                    int size = varint();
+                    List<Object> list = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        list.add(value());
+                    }
+                    yield list;
+                }
+                case MAP -> {
+                    int size = varint();
+                    Map<Object, Object> map = new LinkedHashMap<>();
+                    for (int i = 0; i < size; i++) {
+                        map.put(value(), value());
+                    }
+                    yield map;
+                }
+                case JAVA -> {
+                    byte[] bytes = new byte[varint()];
+                    in.get(bytes);
+                    yield jdk.deserialize(bytes);
+                }
+                default -> throw new IllegalStateException("Unknown value tag " + tag);
+            };
+        }
+
+        private static boolean has(int bits, int field) {
+            return (bits & (1 << field)) != 0;
+        }
+
+        private String string() {
+            int header = varint();
+            if ((header & 1) != 0) {
+                return strings.get(header >>> 1);
+            }
+            byte[] bytes = new byte[header >>> 1];
+            in.get(bytes);
+            String s = new String(bytes, StandardCharsets.UTF_8);
+            strings.add(s);
+            return s;
+        }
+
+        private BigDecimal decimal() {
+            int scale = (int) varlong();
+            if (in.get() == 0) {
+                return BigDecimal.valueOf(varlong(), scale);
+            }
+            byte[] bytes = new byte[varint()];
+            in.get(bytes);
+            return new BigDecimal(new BigInteger(bytes), scale);
+        }
+
+        private int varint() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = in.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) return value;
+            }
+        }
+
+        private long varlong() {
+            long zigzag = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = in.get();
+                zigzag |= (long) (b & 0x7F) << shift;
+                if (b >= 0) break;
+            }
+            return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.ecommerce.analytics.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.interceptor.SimpleCacheErrorHandler;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Treats a cached value that cannot be read, e.g. one written by a newer release or damaged, as a miss
+ * and evicts it so the next load replaces it. Other cache errors are rethrown.
+ */
+@Slf4j
+public class EvictingCacheErrorHandler extends SimpleCacheErrorHandler {
+
+    @Override
+    public void handleCacheGetError(RuntimeException exception, Cache cache, Object key) {
+        if (!isUnreadable(exception)) {
+            super.handleCacheGetError(exception, cache, key);
+            return;
+        }
+        log.warn("Evicting unreadable cache value {}::{}: {}", cache.getName(), key, exception.getMessage());
+        try {
+            cache.evict(key);
+        } catch (RuntimeException e) {
+            log.debug("Could not evict {}::{}: {}", cache.getName(), key, e.getMessage()); // still a miss
+        }
+    }
+
+    /**
+     * Whether {@code exception} means a cached value could not be deserialized.
+     */
+    public static boolean isUnreadable(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SerializationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,159 @@
+package com.ecommerce.analytics.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+/**
+ * Splits a date range into calendar buckets and caches one partial aggregate per bucket,
+ * so overlapping or sliding ranges reuse the buckets they share.
+ *
+ * Whole months that lie completely inside the range and in the past become a single bucket;
+ * every other day is its own bucket. Buckets that end before today are written to
+ * {@code <region>.closed} (long TTL); the bucket containing today goes to {@code <region>.open}
+ * (short TTL). When partials are disabled, or caching is off, the range is one bucket.
+ *
+ * Results that cannot be merged from partials are cached for the whole range with
+ * {@link #loadRange}: in {@code <region>.open} when the range reaches today, otherwise in
+ * {@code <region>.range} (default TTL). A late write for a past day evicts that day's closed partials
+ * ({@link #evictDay}) and all of the region's past ranges ({@link #evictRanges}), as ranges are not indexed by
+ * the days they cover.
+ */
+@Component
+@Slf4j
+public class PartialRangeCache {
+
+    public static final String CLOSED_SUFFIX = ".closed";
+    public static final String OPEN_SUFFIX = ".open";
+    public static final String RANGE_SUFFIX = ".range";
+
+    private final CacheManager cacheManager;
+    private final boolean enabled;
+    private final int topCandidates;
+
+    public PartialRangeCache(CacheManager cacheManager,
+                             @Value("${analytics.cache.partials.enabled:true}") boolean enabled,
+                             @Value("${analytics.cache.partials.top-candidates:100}") int topCandidates) {
+        this.cacheManager = cacheManager;
+        this.enabled = enabled && !(cacheManager instanceof NoOpCacheManager);
+        this.topCandidates = topCandidates;
+    }
+
+    /**
+     * Number of top-N candidates kept per bucket; larger limits bypass the partials.
+     */
+    public int getTopCandidates() {
+        return topCandidates;
+    }
+
+    /**
+     * Load one partial per bucket of {@code [start, end]}, in date order.
+     */
+    public <P> List<P> load(String region, LocalDate start, LocalDate end, BiFunction<LocalDate, LocalDate, P> loader) {
+        LocalDate today = LocalDate.now();
+        List<P> partials = new ArrayList<>();
+        for (DateBucket bucket : buckets(start, end, today)) {
+            boolean open = !bucket.end().isBefore(today);
+            Cache cache = cacheManager.getCache(region + (open ? OPEN_SUFFIX : CLOSED_SUFFIX));
+            if (cache == null) {
+                partials.add(loader.apply(bucket.start(), bucket.end()));
+                continue;
+            }
+            partials.add(get(cache, bucket.key(), () -> loader.apply(bucket.start(), bucket.end())));
+        }
+        return partials;
+    }
+
+    /**
+     * Load the result for the whole of {@code [start, end]}; {@code variant} tells apart results of the same
+     * range, e.g. different limits.
+     */
+    public <R> R loadRange(String region, LocalDate start, LocalDate end, String variant, Supplier<R> loader) {
+        boolean open = !end.isBefore(LocalDate.now());
+        Cache cache = cacheManager.getCache(region + (open ? OPEN_SUFFIX : RANGE_SUFFIX));
+        if (cache == null) {
+            return loader.get();
+        }
+        return get(cache, start + ".." + end + "#" + variant, loader);
+    }
+
+    /**
+     * Drop the closed partials covering {@code day}, e.g. after a late write for a past day.
+     */
+    public void evictDay(LocalDate day, String... regions) {
+        for (String region : regions) {
+            Cache cache = cacheManager.getCache(region + CLOSED_SUFFIX);
+            if (cache != null) {
+                cache.evict(day.toString());
+                cache.evict(YearMonth.from(day).toString());
+            }
+        }
+    }
+
+    /**
+     * Drop the whole-range results of past ranges, e.g. after a late write for a past day.
+     */
+    public void evictRanges(String... regions) {
+        for (String region : regions) {
+            Cache cache = cacheManager.getCache(region + RANGE_SUFFIX);
+            if (cache != null) {
+                cache.clear();
+            }
+        }
+    }
+
+    /**
+     * A value that cannot be read is evicted and loaded again, as through {@link EvictingCacheErrorHandler}.
+     */
+    private static <R> R get(Cache cache, String key, Supplier<R> loader) {
+        try {
+            try {
+                return cache.get(key, loader::get);
+            } catch (SerializationException e) {
+                new EvictingCacheErrorHandler().handleCacheGetError(e, cache, key);
+                return cache.get(key, loader::get);
+            }
+        } catch (Cache.ValueRetrievalException e) {
+            throw e.getCause() instanceof RuntimeException re ? re : e;
+        }
+    }
+
+    List<DateBucket> buckets(LocalDate start, LocalDate end, LocalDate today) {
+        List<DateBucket> buckets = new ArrayList<>();
+        if (start.isAfter(end)) {
+            return buckets;
+        }
+        if (!enabled) {
+            buckets.add(new DateBucket(start, end, start + ".." + end));
+            return buckets;
+        }
+
+        LocalDate day = start;
+        while (!day.isAfter(end)) {
+            YearMonth month = YearMonth.from(day);
+            LocalDate monthEnd = month.atEndOfMonth();
+            if (day.getDayOfMonth() == 1 && !monthEnd.isAfter(end) && monthEnd.isBefore(today)) {
+                buckets.add(new DateBucket(day, monthEnd, month.toString()));
+                day = monthEnd.plusDays(1);
+            } else {
+                buckets.add(new DateBucket(day, day, day.toString()));
+                day = day.plusDays(1);
+            }
+        }
+        return buckets;
+    }
+
+    record DateBucket(LocalDate start, LocalDate end, String key) {
+    }
+}
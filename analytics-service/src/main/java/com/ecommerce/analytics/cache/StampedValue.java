@@ -0,0 +1,16 @@
+package com.ecommerce.analytics.cache;
+
+import java.io.Serializable;
+
+/**
+ * A cached value with the time it was loaded and how long loading took, which early refresh needs
+ * to decide when to recompute it. Both tiers of a {@link TwoTierCache} store values in this form.
+ *
+ * @param loadedAt epoch millis, 0 when unknown (entries written by something else)
+ */
+record StampedValue(Object value, long loadedAt, long loadMillis) implements Serializable {
+
+    static StampedValue of(Object stored) {
+        return stored instanceof StampedValue stamped ? stamped : new StampedValue(stored, 0, 0);
+    }
+}
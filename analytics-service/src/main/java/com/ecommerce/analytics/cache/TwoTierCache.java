@@ -0,0 +1,327 @@
+package com.ecommerce.analytics.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * A {@link Cache} that checks an in-heap Caffeine cache (L1) before the shared Redis cache (L2).
+ *
+ * L2 hits are copied into L1. Puts and evictions are applied to both tiers and then broadcast so that
+ * other instances drop their L1 copy; after a put they read the new value from L2. L1 keys are the string
+ * form of the cache key, which is also what Redis uses, so a key received over pub/sub matches the local
+ * entry.
+ *
+ * Misses loaded through {@link #get(Object, Callable)} are single-flight: concurrent callers for the same
+ * key wait for one load instead of each running it, and with {@code distributedLock} instances wait for
+ * the one holding the key's Redis lock. With early refresh, hits close to expiry may trigger a background
+ * reload while callers keep getting the current value (XFetch, "Optimal Probabilistic Cache Stampede
+ * Prevention").
+ */
+@Slf4j
+public class TwoTierCache implements Cache {
+
+    private static final long LOCK_POLL_MILLIS = 25;
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> local;
+    private final Cache remote;
+    private final TwoTierCacheManager manager;
+    private final ConcurrentMap<String, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+    // Key -> token of the refresh running for it; invalidating the key removes the token
+    private final ConcurrentMap<String, Object> refreshing = new ConcurrentHashMap<>();
+
+    private final Counter l1Hits;
+    private final Counter l1Misses;
+    private final Counter l2Hits;
+    private final Counter l2Misses;
+    private final Counter coalescedLocal;
+    private final Counter coalescedRemote;
+    private final Counter earlyRefreshes;
+
+    TwoTierCache(String name,
+                 com.github.benmanes.caffeine.cache.Cache<String, Object> local,
+                 Cache remote,
+                 TwoTierCacheManager manager,
+                 MeterRegistry meterRegistry) {
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.manager = manager;
+        this.l1Hits = counter(meterRegistry, name, "l1", "hit");
+        this.l1Misses = counter(meterRegistry, name, "l1", "miss");
+        this.l2Hits = counter(meterRegistry, name, "l2", "hit");
+        this.l2Misses = counter(meterRegistry, name, "l2", "miss");
+        this.coalescedLocal = coalesced(meterRegistry, name, "local");
+        this.coalescedRemote = coalesced(meterRegistry, name, "remote");
+        this.earlyRefreshes = Counter.builder("analytics.cache.early-refreshes")
+                .description("Background reloads started before expiry")
+                .tag("cache", name)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        StampedValue stamped = lookup(key);
+        return stamped != null ? new SimpleValueWrapper(stamped.value()) : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper wrapper = get(key);
+        Object value = wrapper != null ? wrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        StampedValue stamped = lookup(key);
+        if (stamped != null) {
+            if (refreshDue(stamped)) {
+                refreshInBackground(key, valueLoader);
+            }
+            return (T) stamped.value();
+        }
+
+        String localKey = String.valueOf(key);
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> running = loading.putIfAbsent(localKey, load);
+        if (running != null) {
+            coalescedLocal.increment();
+            return (T) await(running, key, valueLoader);
+        }
+        try {
+            // The previous load may have finished between our lookup and putIfAbsent
+            Object stored = local.getIfPresent(localKey);
+            Object value = stored != null ? ((StampedValue) stored).value() : loadAcrossInstances(key, valueLoader, true, null);
+            load.complete(value);
+            return (T) value;
+        } catch (Exception e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            load.completeExceptionally(e);
+            throw e instanceof ValueRetrievalException vre ? vre : new ValueRetrievalException(key, valueLoader, e);
+        } finally {
+            loading.remove(localKey, load);
+        }
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        refreshing.remove(String.valueOf(key));
+        store(key, new StampedValue(value, System.currentTimeMillis(), 0));
+        manager.publishEvict(name, String.valueOf(key));
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        evictLocal(String.valueOf(key));
+        manager.publishEvict(name, String.valueOf(key));
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        clearLocal();
+        manager.publishClear(name);
+    }
+
+    void evictLocal(String key) {
+        refreshing.remove(key);
+        local.invalidate(key);
+    }
+
+    void clearLocal() {
+        refreshing.clear();
+        local.invalidateAll();
+    }
+
+    private StampedValue lookup(Object key) {
+        String localKey = String.valueOf(key);
+        Object stored = local.getIfPresent(localKey);
+        if (stored != null) {
+            l1Hits.increment();
+            return (StampedValue) stored;
+        }
+        l1Misses.increment();
+
+        ValueWrapper wrapper = remote.get(key);
+        if (wrapper == null) {
+            l2Misses.increment();
+            return null;
+        }
+        l2Hits.increment();
+        StampedValue stamped = StampedValue.of(wrapper.get());
+        local.put(localKey, stamped);
+        return stamped;
+    }
+
+    private void store(Object key, StampedValue stamped) {
+        remote.put(key, stamped);
+        local.put(String.valueOf(key), stamped);
+    }
+
+    /**
+     * Load and store a value. For a background refresh, {@code refresh} is its token: the value is not kept
+     * when the key was invalidated while it loaded, as it may predate the change.
+     */
+    private Object loadAndStore(Object key, Callable<?> valueLoader, Object refresh) throws Exception {
+        long started = System.nanoTime();
+        Object value = valueLoader.call();
+        if (refresh != null && !refreshing(key, refresh)) {
+            log.debug("Dropped early refresh of {}::{}, invalidated while loading", name, key);
+            return value;
+        }
+        store(key, new StampedValue(value, System.currentTimeMillis(), (System.nanoTime() - started) / 1_000_000));
+        if (refresh != null && !refreshing(key, refresh)) {
+            // Invalidated while storing: drop what we may have written over
+            remote.evict(key);
+            local.invalidate(String.valueOf(key));
+        }
+        return value;
+    }
+
+    private boolean refreshing(Object key, Object refresh) {
+        return refreshing.get(String.valueOf(key)) == refresh;
+    }
+
+    /**
+     * Load under the key's Redis lock when it is enabled. Without the lock, {@code wait} polls Redis for the
+     * holder's value until {@code lockWait} has passed and then loads anyway; otherwise this returns null.
+     */
+    private Object loadAcrossInstances(Object key, Callable<?> valueLoader, boolean wait, Object refresh) throws Exception {
+        TwoTierCacheManager.Loading policy = manager.loading();
+        if (!policy.distributedLock()) {
+            return loadAndStore(key, valueLoader, refresh);
+        }
+        String lockKey = String.valueOf(key);
+        String token = UUID.randomUUID().toString();
+        if (manager.tryLock(name, lockKey, token)) {
+            try {
+                return loadAndStore(key, valueLoader, refresh);
+            } finally {
+                manager.unlock(name, lockKey, token);
+            }
+        }
+        if (!wait) {
+            return null;
+        }
+
+        coalescedRemote.increment();
+        long deadline = System.nanoTime() + policy.lockWait().toNanos();
+        while (System.nanoTime() < deadline) {
+            Thread.sleep(LOCK_POLL_MILLIS);
+            ValueWrapper wrapper = remote.get(key);
+            if (wrapper != null) {
+                StampedValue stamped = StampedValue.of(wrapper.get());
+                local.put(lockKey, stamped);
+                return stamped.value();
+            }
+        }
+        log.debug("Gave up waiting for another instance to load {}::{}", name, key);
+        return loadAndStore(key, valueLoader, null);
+    }
+
+    private Object await(CompletableFuture<Object> running, Object key, Callable<?> valueLoader) {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof ValueRetrievalException vre ? vre.getCause() : e.getCause();
+            throw new ValueRetrievalException(key, valueLoader, cause);
+        }
+    }
+
+    /**
+     * XFetch: due once {@code now - loadTime * beta * ln(random)} passes the entry's expiry.
+     */
+    private boolean refreshDue(StampedValue stamped) {
+        TwoTierCacheManager.Loading policy = manager.loading();
+        if (policy.earlyRefreshBeta() <= 0 || stamped.loadedAt() == 0) {
+            return false;
+        }
+        Duration ttl = policy.remoteTtl().apply(name);
+        if (ttl.isZero()) {
+            return false;
+        }
+        double gap = -Math.max(stamped.loadMillis(), 1) * policy.earlyRefreshBeta()
+                * Math.log(ThreadLocalRandom.current().nextDouble());
+        return System.currentTimeMillis() + gap >= stamped.loadedAt() + ttl.toMillis();
+    }
+
+    /**
+     * Reload a key that is still cached; callers keep getting the current value meanwhile. Skipped when the key
+     * is already being refreshed here, or (with the lock) anywhere. The task goes through the manager's refresh
+     * decorator on the caller's thread, e.g. to carry the caller's database routing.
+     */
+    private void refreshInBackground(Object key, Callable<?> valueLoader) {
+        String localKey = String.valueOf(key);
+        Object token = new Object();
+        if (refreshing.putIfAbsent(localKey, token) != null) {
+            return;
+        }
+        Runnable refresh = () -> {
+            try {
+                loadAcrossInstances(key, valueLoader, false, token);
+            } catch (Exception e) {
+                log.warn("Early refresh of {}::{} failed: {}", name, key, e.toString());
+            } finally {
+                refreshing.remove(localKey, token);
+            }
+        };
+        try {
+            manager.refreshExecutor().execute(manager.refreshDecorator().decorate(refresh));
+            earlyRefreshes.increment();
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(localKey, token); // refresh threads busy; a later hit will try again
+        }
+    }
+
+    private static Counter coalesced(MeterRegistry registry, String cache, String scope) {
+        return Counter.builder("analytics.cache.coalesced")
+                .description("Cache misses that waited for a load already running, here or on another instance")
+                .tag("cache", cache)
+                .tag("scope", scope)
+                .register(registry);
+    }
+
+    private static Counter counter(MeterRegistry registry, String cache, String tier, String result) {
+        return Counter.builder("analytics.cache.requests")
+                .description("Cache lookups per tier")
+                .tag("cache", cache)
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -0,0 +1,209 @@
+package com.ecommerce.analytics.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Wraps the Redis {@link CacheManager} so every cache gets a per-instance L1.
+ *
+ * Invalidation messages on the pub/sub channel have the form {@code origin|cache|key};
+ * an empty key clears the whole cache. Messages sent by this instance are ignored since
+ * they have already been applied locally.
+ *
+ * Loads through {@link Cache#get(Object, java.util.concurrent.Callable)} are coalesced per key
+ * (see {@link TwoTierCache}); {@link Loading} configures the cross-instance lock and early refresh.
+ */
+@Slf4j
+public class TwoTierCacheManager implements CacheManager, MessageListener, AutoCloseable {
+
+    /**
+     * How misses are loaded.
+     *
+     * @param remoteTtl        Redis TTL per cache, which early refresh counts down against
+     * @param earlyRefreshBeta XFetch weight: entries are recomputed in the background with a probability
+     *                         that rises as expiry nears, sooner the longer they took to load; 0 disables it
+     * @param distributedLock  also coalesce across instances with a Redis lock per key
+     * @param lockWait         how long an instance waits for another one's load before loading itself
+     */
+    public record Loading(Function<String, Duration> remoteTtl, double earlyRefreshBeta,
+                          boolean distributedLock, Duration lockWait) {
+
+        public static final Loading LOCAL_ONLY = new Loading(name -> Duration.ZERO, 0, false, Duration.ZERO);
+    }
+
+    private static final String LOCK_PREFIX = "analytics:cache-lock:";
+    private static final RedisScript<Long> UNLOCK = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end", Long.class);
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final ConcurrentMap<String, TwoTierCache> caches = new ConcurrentHashMap<>();
+
+    private final CacheManager remoteCacheManager;
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final String channel;
+    private final long localMaxSize;
+    private final Function<String, Duration> localTtl;
+    private final Loading loading;
+    private final ThreadPoolExecutor refreshExecutor;
+    private volatile TaskDecorator refreshDecorator = task -> task;
+
+    public TwoTierCacheManager(CacheManager remoteCacheManager,
+                               StringRedisTemplate redisTemplate,
+                               MeterRegistry meterRegistry,
+                               String channel,
+                               long localMaxSize,
+                               Function<String, Duration> localTtl) {
+        this(remoteCacheManager, redisTemplate, meterRegistry, channel, localMaxSize, localTtl, Loading.LOCAL_ONLY);
+    }
+
+    public TwoTierCacheManager(CacheManager remoteCacheManager,
+                               StringRedisTemplate redisTemplate,
+                               MeterRegistry meterRegistry,
+                               String channel,
+                               long localMaxSize,
+                               Function<String, Duration> localTtl,
+                               Loading loading) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.channel = channel;
+        this.localMaxSize = localMaxSize;
+        this.localTtl = localTtl;
+        this.loading = loading;
+        // Early refreshes are best effort: when all threads are busy and the queue is full they are rejected
+        AtomicInteger threads = new AtomicInteger();
+        this.refreshExecutor = new ThreadPoolExecutor(2, 2, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(64), r -> {
+            Thread thread = new Thread(r, "cache-refresh-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, this::createCache);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 3);
+        if (parts.length < 3 || instanceId.equals(parts[0])) {
+            return;
+        }
+        TwoTierCache cache = caches.get(parts[1]);
+        if (cache == null) {
+            return;
+        }
+        if (parts[2].isEmpty()) {
+            cache.clearLocal();
+        } else {
+            cache.evictLocal(parts[2]);
+        }
+    }
+
+    void publishEvict(String cacheName, String key) {
+        publish(instanceId + "|" + cacheName + "|" + key);
+    }
+
+    void publishClear(String cacheName) {
+        publish(instanceId + "|" + cacheName + "|");
+    }
+
+    Loading loading() {
+        return loading;
+    }
+
+    Executor refreshExecutor() {
+        return refreshExecutor;
+    }
+
+    TaskDecorator refreshDecorator() {
+        return refreshDecorator;
+    }
+
+    /**
+     * Applied to early refreshes on the thread that triggers them, e.g. to carry its transaction's routing
+     * to the refresh thread.
+     */
+    public void setRefreshDecorator(TaskDecorator refreshDecorator) {
+        this.refreshDecorator = refreshDecorator;
+    }
+
+    /**
+     * Take the cross-instance load lock for a key; true when it is ours, or when Redis cannot be reached
+     * (loading without the lock beats failing the request).
+     */
+    boolean tryLock(String cacheName, String key, String token) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(
+                    LOCK_PREFIX + cacheName + "::" + key, token, loading.lockWait().multipliedBy(2)));
+        } catch (RuntimeException e) {
+            log.debug("Could not take cache load lock: {}", e.getMessage());
+            return true;
+        }
+    }
+
+    void unlock(String cacheName, String key, String token) {
+        try {
+            redisTemplate.execute(UNLOCK, List.of(LOCK_PREFIX + cacheName + "::" + key), token);
+        } catch (RuntimeException e) {
+            log.debug("Could not release cache load lock: {}", e.getMessage()); // expires on its own
+        }
+    }
+
+    @Override
+    public void close() {
+        refreshExecutor.shutdownNow();
+    }
+
+    private void publish(String message) {
+        try {
+            redisTemplate.convertAndSend(channel, message);
+        } catch (RuntimeException e) {
+            // Other instances fall back to L1 expiry
+            log.warn("Could not publish cache invalidation: {}", e.getMessage());
+        }
+    }
+
+    private TwoTierCache createCache(String name) {
+        Cache remote = remoteCacheManager.getCache(name);
+        if (remote == null) {
+            throw new IllegalStateException("No Redis cache named " + name);
+        }
+        com.github.benmanes.caffeine.cache.Cache<String, Object> local = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtl.apply(name))
+                .build();
+        return new TwoTierCache(name, local, remote, this, meterRegistry);
+    }
+}
@@ -0,0 +1,106 @@
+package com.ecommerce.analytics.columnar;
+
+import java.util.Arrays;
+
+/**
+ * User activities as columns: epoch day, user id, product id (0 when there is none) and a type code.
+ */
+final class ActivityColumns extends ColumnTable<ActivityColumns.ActivitySegment> {
+
+    static final class ActivitySegment extends ColumnTable.Segment {
+        final long[] userIds = new long[SEGMENT_ROWS];
+        final int[] productIds = new int[SEGMENT_ROWS];
+        final byte[] types = new byte[SEGMENT_ROWS];
+    }
+
+    @Override
+    protected ActivitySegment newSegment() {
+        return new ActivitySegment();
+    }
+
+    void append(long id, int day, long userId, int productId, byte type) {
+        lock();
+        try {
+            ActivitySegment segment = writable();
+            int i = segment.size;
+            segment.ids[i] = id;
+            segment.days[i] = day;
+            segment.userIds[i] = userId;
+            segment.productIds[i] = productId;
+            segment.types[i] = type;
+            publish(segment, i, day, productId);
+        } finally {
+            unlock();
+        }
+    }
+
+    /**
+     * Row count per type code (the array index).
+     */
+    long[] countByType(int from, int to) {
+        Snapshot<ActivitySegment> snapshot = snapshot();
+        long[] counts = new long[256];
+        for (int k = 0; k < snapshot.segments().size(); k++) {
+            ActivitySegment s = snapshot.segments().get(k);
+            int size = snapshot.sizes()[k];
+            if (!s.overlaps(from, to)) continue;
+            boolean within = s.within(from, to);
+            for (int i = 0; i < size; i++) {
+                int day = s.days[i];
+                if (within || (day >= from && day <= to)) {
+                    counts[s.types[i] & 0xFF]++;
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Rows of one type per product id (the array index); index 0 collects rows without a product.
+     */
+    long[] countByProduct(int from, int to, int type) {
+        Snapshot<ActivitySegment> snapshot = snapshot();
+        long[] counts = new long[snapshot.maxProductId() + 1];
+        for (int k = 0; k < snapshot.segments().size(); k++) {
+            ActivitySegment s = snapshot.segments().get(k);
+            int size = snapshot.sizes()[k];
+            if (!s.overlaps(from, to)) continue;
+            if (s.within(from, to)) {
+                for (int i = 0; i < size; i++) {
+                    counts[s.productIds[i]] += (s.types[i] & 0xFF) == type ? 1 : 0;
+                }
+            } else {
+                for (int i = 0; i < size; i++) {
+                    int day = s.days[i];
+                    counts[s.productIds[i]] += (s.types[i] & 0xFF) == type && day >= from && day <= to ? 1 : 0;
+                }
+            }
+        }
+        return counts;
+    }
+
+    long distinctUsers(int from, int to) {
+        Snapshot<ActivitySegment> snapshot = snapshot();
+        long[] users = new long[1024];
+        int n = 0;
+        for (int k = 0; k < snapshot.segments().size(); k++) {
+            ActivitySegment s = snapshot.segments().get(k);
+            int size = snapshot.sizes()[k];
+            if (!s.overlaps(from, to)) continue;
+            if (users.length - n < size) {
+                users = Arrays.copyOf(users, Math.max(users.length * 2, n + size));
+            }
+            for (int i = 0; i < size; i++) {
+                int day = s.days[i];
+                if (day < from || day > to) continue;
+                users[n++] = s.userIds[i];
+            }
+        }
+        Arrays.sort(users, 0, n);
+        long distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || users[i] != users[i - 1]) distinct++;
+        }
+        return distinct;
+    }
+}
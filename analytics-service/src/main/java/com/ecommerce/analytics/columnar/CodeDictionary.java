@@ -0,0 +1,54 @@
+package com.ecommerce.analytics.columnar;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Byte codes for the values of a low-cardinality string column (sale status, activity type).
+ * Code 0 stands for null; at most 255 distinct values are supported.
+ */
+final class CodeDictionary {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Byte> codes = new ConcurrentHashMap<>();
+    private volatile String[] values = {null};
+
+    byte encode(String value) {
+        if (value == null) return 0;
+        Byte code = codes.get(value);
+        if (code != null) return code;
+
+        lock.lock();
+        try {
+            code = codes.get(value);
+            if (code == null) {
+                String[] current = values;
+                if (current.length > 255) {
+                    throw new IllegalStateException("More than 255 distinct values, cannot encode " + value);
+                }
+                String[] next = Arrays.copyOf(current, current.length + 1);
+                next[current.length] = value;
+                values = next; // published before the code can be looked up
+                code = (byte) current.length;
+                codes.put(value, code);
+            }
+            return code;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Code of a value seen before, or -1.
+     */
+    int find(String value) {
+        Byte code = codes.get(value);
+        return code != null ? code & 0xFF : -1;
+    }
+
+    String decode(int code) {
+        return values[code];
+    }
+}
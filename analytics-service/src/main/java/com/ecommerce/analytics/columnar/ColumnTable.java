@@ -0,0 +1,152 @@
+package com.ecommerce.analytics.columnar;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only rows stored as primitive column arrays in fixed-size segments.
+ *
+ * Appends are serialized by a lock; readers work on a {@link #snapshot} without locking. Each row's
+ * values are written before the segment's row count is published, so readers see every column of
+ * the rows they count. Expired rows are dropped a whole segment at a time.
+ */
+abstract class ColumnTable<S extends ColumnTable.Segment> {
+
+    static final int SEGMENT_ROWS = 1 << 16;
+
+    abstract static class Segment {
+        final long[] ids = new long[SEGMENT_ROWS];
+        final int[] days = new int[SEGMENT_ROWS];
+        int minDay = Integer.MAX_VALUE;
+        int maxDay = Integer.MIN_VALUE;
+        volatile int size;
+
+        boolean overlaps(int from, int to) {
+            return minDay <= to && maxDay >= from;
+        }
+
+        boolean within(int from, int to) {
+            return minDay >= from && maxDay <= to;
+        }
+    }
+
+    /**
+     * Segments with their row counts at one point in time; every product id in them is at most {@code maxProductId}.
+     */
+    record Snapshot<S>(List<S> segments, int[] sizes, int maxProductId, int maxDay) {
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile List<S> segments = List.of();
+    private volatile int maxProductId;
+
+    protected abstract S newSegment();
+
+    /**
+     * The segment the next row goes into; call with the append lock held.
+     */
+    protected S writable() {
+        List<S> current = segments;
+        if (!current.isEmpty()) {
+            S last = current.get(current.size() - 1);
+            if (last.size < SEGMENT_ROWS) return last;
+        }
+        List<S> next = new ArrayList<>(current.size() + 1);
+        next.addAll(current);
+        S segment = newSegment();
+        next.add(segment);
+        segments = List.copyOf(next);
+        return segment;
+    }
+
+    /**
+     * Make row {@code index} of the segment visible to readers; call with the append lock held.
+     */
+    protected void publish(S segment, int index, int day, int productId) {
+        if (day < segment.minDay) segment.minDay = day;
+        if (day > segment.maxDay) segment.maxDay = day;
+        if (productId > maxProductId) maxProductId = productId;
+        segment.size = index + 1;
+    }
+
+    protected void lock() {
+        lock.lock();
+    }
+
+    protected void unlock() {
+        lock.unlock();
+    }
+
+    Snapshot<S> snapshot() {
+        List<S> current = segments;
+        int[] sizes = new int[current.size()];
+        int maxDay = Integer.MIN_VALUE;
+        for (int i = 0; i < sizes.length; i++) {
+            S segment = current.get(i);
+            sizes[i] = segment.size;
+            maxDay = Math.max(maxDay, segment.maxDay);
+        }
+        // Read after the sizes: it is raised before a row is published
+        return new Snapshot<>(current, sizes, maxProductId, maxDay);
+    }
+
+    /**
+     * Drop segments holding only days before {@code day}.
+     */
+    void trimBefore(int day) {
+        lock();
+        try {
+            segments = segments.stream().filter(s -> s.size == 0 || s.maxDay >= day).toList();
+        } finally {
+            unlock();
+        }
+    }
+
+    long rowCount() {
+        long rows = 0;
+        for (S segment : segments) {
+            rows += segment.size;
+        }
+        return rows;
+    }
+
+    /**
+     * The stored ids above {@code floor}.
+     */
+    Set<Long> idsAbove(long floor) {
+        Set<Long> found = new HashSet<>();
+        Snapshot<S> snapshot = snapshot();
+        for (int k = 0; k < snapshot.segments().size(); k++) {
+            long[] segmentIds = snapshot.segments().get(k).ids;
+            for (int i = 0, size = snapshot.sizes()[k]; i < size; i++) {
+                if (segmentIds[i] > floor) {
+                    found.add(segmentIds[i]);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Those of the given ids that are already stored.
+     */
+    Set<Long> findIds(Collection<Long> ids) {
+        Set<Long> wanted = new HashSet<>(ids);
+        Set<Long> found = new HashSet<>();
+        if (wanted.isEmpty()) return found;
+        Snapshot<S> snapshot = snapshot();
+        for (int k = 0; k < snapshot.segments().size(); k++) {
+            long[] segmentIds = snapshot.segments().get(k).ids;
+            for (int i = 0, size = snapshot.sizes()[k]; i < size; i++) {
+                if (wanted.contains(segmentIds[i])) {
+                    found.add(segmentIds[i]);
+                }
+            }
+        }
+        return found;
+    }
+}
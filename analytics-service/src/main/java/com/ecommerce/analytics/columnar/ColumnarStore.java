@@ -0,0 +1,515 @@
+package com.ecommerce.analytics.columnar;
+
+import com.ecommerce.analytics.aggregate.TopK;
+import com.ecommerce.analytics.config.ReplicaRouter;
+import com.ecommerce.analytics.model.Sale;
+import com.ecommerce.analytics.model.UserActivity;
+import com.ecommerce.analytics.repository.ProductRepository;
+import com.ecommerce.analytics.repository.SaleRepository;
+import com.ecommerce.analytics.repository.UserActivityRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Optional in-memory copy of the most recent {@code analytics.columnar.retention} of sales and user
+ * activities, kept as primitive columns (epoch day, int product id, cents, byte codes) instead of
+ * entities. It answers the aggregate range queries of {@link SaleRepository} and
+ * {@link UserActivityRepository} with scans over those arrays, in the same row shapes.
+ *
+ * The window is loaded from the database by {@link #maintain} at startup, retried if that fails, and
+ * reloaded every {@code analytics.columnar.full-reload-interval}. Rows committed by this instance's
+ * ingestion service are appended as they are written; every {@code tail-interval-ms}, {@link #tail} reads
+ * the rows with ids above the highest it has read, so rows written by other instances or by other means
+ * are seen within seconds. Each tail reads the last {@code tail-overlap} ids again, for transactions that
+ * commit out of id order, and skips rows already stored. Writes made while a load runs are held back and
+ * applied when it finishes, skipping the ones the load already read. Updates and deletes, and rows
+ * committed further out of order, are only seen at the next reload.
+ */
+@Service
+@Slf4j
+public class ColumnarStore {
+
+    static final String VIEW = "VIEW";
+    private static final int TAIL_PAGE_SIZE = 5000;
+
+    private record ProductInfo(String name, String category) {
+    }
+
+    private record SaleRow(long id, int day, int productId, int quantity, long cents, String status) {
+    }
+
+    private record ActivityRow(long id, int day, long userId, int productId, String type) {
+    }
+
+    private final SaleRepository saleRepository;
+    private final UserActivityRepository userActivityRepository;
+    private final ProductRepository productRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final long retentionDays;
+    private final Duration fullReloadInterval;
+    private final int tailOverlap;
+
+    private final CodeDictionary statuses = new CodeDictionary();
+    private final CodeDictionary activityTypes = new CodeDictionary();
+    private final Map<Long, ProductInfo> products = new ConcurrentHashMap<>();
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile SalesColumns sales = new SalesColumns();
+    private volatile ActivityColumns activities = new ActivityColumns();
+    private volatile boolean ready;
+    private volatile long loadedAt;
+    // Non-null while a load runs; guarded by writeLock
+    private List<SaleRow> pendingSales;
+    private List<ActivityRow> pendingActivities;
+    // Guarded by writeLock: highest ids read from the database, and the stored ids a tail may read again
+    private long salesTailedId;
+    private long activitiesTailedId;
+    private final TreeSet<Long> recentSales = new TreeSet<>();
+    private final TreeSet<Long> recentActivities = new TreeSet<>();
+
+    public ColumnarStore(SaleRepository saleRepository,
+                         UserActivityRepository userActivityRepository,
+                         ProductRepository productRepository,
+                         PlatformTransactionManager transactionManager,
+                         MeterRegistry meterRegistry,
+                         @Value("${analytics.columnar.enabled:false}") boolean enabled,
+                         @Value("${analytics.columnar.retention:30d}") Duration retention,
+                         @Value("${analytics.columnar.full-reload-interval:6h}") Duration fullReloadInterval,
+                         @Value("${analytics.columnar.tail-overlap:1000}") int tailOverlap) {
+        this.saleRepository = saleRepository;
+        this.userActivityRepository = userActivityRepository;
+        this.productRepository = productRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.retentionDays = Math.max(retention.toDays(), 1);
+        this.fullReloadInterval = fullReloadInterval;
+        this.tailOverlap = tailOverlap;
+
+        Gauge.builder("analytics.columnar.rows", this, store -> store.sales.rowCount())
+                .tag("table", "sales")
+                .description("Rows held by the in-memory columnar store")
+                .register(meterRegistry);
+        Gauge.builder("analytics.columnar.rows", this, store -> store.activities.rowCount())
+                .tag("table", "user_activities")
+                .description("Rows held by the in-memory columnar store")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Whether a range starting at {@code startDate} can be answered from memory.
+     */
+    public boolean covers(LocalDate startDate) {
+        return ready && !startDate.isBefore(windowStart());
+    }
+
+    public LocalDate windowStart() {
+        return LocalDate.now().minusDays(retentionDays - 1);
+    }
+
+    /**
+     * Load the window if it is not loaded yet or is due for a reload, otherwise drop expired days and
+     * refresh product names.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${analytics.columnar.maintenance-interval-ms:3600000}")
+    public void maintain() {
+        if (!enabled) return;
+        if (!ready || System.currentTimeMillis() - loadedAt >= fullReloadInterval.toMillis()) {
+            load();
+            return;
+        }
+        int cutoff = day(windowStart());
+        sales.trimBefore(cutoff);
+        activities.trimBefore(cutoff);
+        try {
+            refreshProducts();
+        } catch (RuntimeException e) {
+            log.warn("Could not refresh products for the columnar store: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Append the rows committed since the last tail that are not stored yet.
+     */
+    @Scheduled(initialDelayString = "${analytics.columnar.tail-interval-ms:5000}",
+            fixedDelayString = "${analytics.columnar.tail-interval-ms:5000}")
+    public void tail() {
+        if (!enabled || !ready) return;
+        long salesAfter;
+        long activitiesAfter;
+        writeLock.lock();
+        try {
+            if (pendingSales != null) return; // the running load reads these rows
+            salesAfter = Math.max(salesTailedId - tailOverlap, 0);
+            activitiesAfter = Math.max(activitiesTailedId - tailOverlap, 0);
+        } finally {
+            writeLock.unlock();
+        }
+
+        LocalDateTime since = windowStart().atStartOfDay();
+        List<SaleRow> readSales = new ArrayList<>();
+        List<ActivityRow> readActivities = new ArrayList<>();
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                ReplicaRouter.requirePrimary();
+                List<Object[]> page;
+                long after = salesAfter;
+                do {
+                    page = saleRepository.findColumnsAfter(after, since, PageRequest.of(0, TAIL_PAGE_SIZE));
+                    page.forEach(r -> readSales.add(saleRow(r)));
+                    after = readSales.isEmpty() ? after : readSales.get(readSales.size() - 1).id();
+                } while (page.size() == TAIL_PAGE_SIZE);
+                after = activitiesAfter;
+                do {
+                    page = userActivityRepository.findColumnsAfter(after, since, PageRequest.of(0, TAIL_PAGE_SIZE));
+                    page.forEach(r -> readActivities.add(activityRow(r)));
+                    after = readActivities.isEmpty() ? after : readActivities.get(readActivities.size() - 1).id();
+                } while (page.size() == TAIL_PAGE_SIZE);
+            });
+        } catch (RuntimeException e) {
+            log.warn("Could not tail sales and activities into the columnar store: {}", e.getMessage());
+            return;
+        }
+
+        int appended = 0;
+        writeLock.lock();
+        try {
+            if (pendingSales != null || !ready) return;
+            for (SaleRow r : readSales) {
+                if (recentSales.add(r.id())) {
+                    append(sales, r);
+                    appended++;
+                }
+                salesTailedId = Math.max(salesTailedId, r.id());
+            }
+            for (ActivityRow r : readActivities) {
+                if (recentActivities.add(r.id())) {
+                    append(activities, r);
+                    appended++;
+                }
+                activitiesTailedId = Math.max(activitiesTailedId, r.id());
+            }
+            recentSales.headSet(salesTailedId - tailOverlap).clear();
+            recentActivities.headSet(activitiesTailedId - tailOverlap).clear();
+        } catch (RuntimeException e) {
+            ready = false;
+            log.warn("Could not append tailed rows to the columnar store, reloading: {}", e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+        if (appended > 0) {
+            log.debug("Columnar store tailed {} rows written elsewhere", appended);
+        }
+    }
+
+    /**
+     * Replace the in-memory window with a fresh copy read from the database. Until it is done, queries are
+     * answered from the current copy, which still receives this instance's writes.
+     */
+    public void load() {
+        LocalDateTime since = windowStart().atStartOfDay();
+        SalesColumns loadedSales = new SalesColumns();
+        ActivityColumns loadedActivities = new ActivityColumns();
+        writeLock.lock();
+        try {
+            pendingSales = new ArrayList<>();
+            pendingActivities = new ArrayList<>();
+        } finally {
+            writeLock.unlock();
+        }
+
+        long started = System.nanoTime();
+        long[] maxIds = new long[2]; // highest sale and activity id read
+        try {
+            refreshProducts();
+            readOnlyTransaction.executeWithoutResult(status -> {
+                // Only writes from this instance after the load started are replayed, so read the latest rows
+                ReplicaRouter.requirePrimary();
+                try (Stream<Object[]> rows = saleRepository.streamColumnsSince(since)) {
+                    rows.forEach(r -> {
+                        SaleRow row = saleRow(r);
+                        append(loadedSales, row);
+                        maxIds[0] = Math.max(maxIds[0], row.id());
+                    });
+                }
+                try (Stream<Object[]> rows = userActivityRepository.streamColumnsSince(since)) {
+                    rows.forEach(r -> {
+                        ActivityRow row = activityRow(r);
+                        append(loadedActivities, row);
+                        maxIds[1] = Math.max(maxIds[1], row.id());
+                    });
+                }
+            });
+
+            writeLock.lock();
+            try {
+                Set<Long> seenSales = loadedSales.findIds(pendingSales.stream().map(SaleRow::id).toList());
+                pendingSales.stream().filter(r -> !seenSales.contains(r.id())).forEach(r -> append(loadedSales, r));
+                Set<Long> seenActivities = loadedActivities.findIds(pendingActivities.stream().map(ActivityRow::id).toList());
+                pendingActivities.stream().filter(r -> !seenActivities.contains(r.id())).forEach(r -> append(loadedActivities, r));
+                salesTailedId = maxIds[0];
+                activitiesTailedId = maxIds[1];
+                recentSales.clear();
+                recentSales.addAll(loadedSales.idsAbove(salesTailedId - tailOverlap));
+                recentActivities.clear();
+                recentActivities.addAll(loadedActivities.idsAbove(activitiesTailedId - tailOverlap));
+                sales = loadedSales;
+                activities = loadedActivities;
+                loadedAt = System.currentTimeMillis();
+                ready = true;
+            } finally {
+                pendingSales = null;
+                pendingActivities = null;
+                writeLock.unlock();
+            }
+            log.info("Columnar store loaded {} sales and {} activities since {} in {} ms", loadedSales.rowCount(),
+                    loadedActivities.rowCount(), since.toLocalDate(), (System.nanoTime() - started) / 1_000_000);
+        } catch (RuntimeException e) {
+            writeLock.lock();
+            try {
+                pendingSales = null;
+                pendingActivities = null;
+            } finally {
+                writeLock.unlock();
+            }
+            log.warn("Could not load the columnar store, range queries stay on the database: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Add committed sales; those dated before the window are ignored.
+     */
+    public void appendSales(Collection<Sale> written) {
+        if (!enabled) return;
+        int cutoff = day(windowStart());
+        List<SaleRow> rows = written.stream()
+                .map(s -> new SaleRow(s.getId(), day(s.getSaleDate().toLocalDate()), productId(s.getProduct().getId()),
+                        s.getQuantity(), cents(s.getTotalAmount()), s.getStatus()))
+                .filter(r -> r.day() >= cutoff)
+                .toList();
+        writeLock.lock();
+        try {
+            if (pendingSales != null) {
+                pendingSales.addAll(rows);
+            }
+            if (ready) {
+                rows.stream().filter(r -> recentSales.add(r.id())).forEach(r -> append(sales, r));
+            }
+        } catch (RuntimeException e) {
+            ready = false; // missing rows would make answers wrong; the next maintenance run reloads
+            log.warn("Could not append sales to the columnar store, reloading: {}", e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Add committed activities; those dated before the window are ignored.
+     */
+    public void appendActivities(Collection<UserActivity> written) {
+        if (!enabled) return;
+        int cutoff = day(windowStart());
+        List<ActivityRow> rows = written.stream()
+                .map(a -> new ActivityRow(a.getId(), day(a.getActivityTimestamp().toLocalDate()), a.getUserId(),
+                        a.getProduct() != null ? productId(a.getProduct().getId()) : 0, a.getActivityType()))
+                .filter(r -> r.day() >= cutoff)
+                .toList();
+        writeLock.lock();
+        try {
+            if (pendingActivities != null) {
+                pendingActivities.addAll(rows);
+            }
+            if (ready) {
+                rows.stream().filter(r -> recentActivities.add(r.id())).forEach(r -> append(activities, r));
+            }
+        } catch (RuntimeException e) {
+            ready = false;
+            log.warn("Could not append activities to the columnar store, reloading: {}", e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Rows of (category, productId, revenue), as {@link SaleRepository#getSalesByCategoryAndProduct}.
+     */
+    public List<Object[]> getSalesByCategoryAndProduct(LocalDate startDate, LocalDate endDate) {
+        SalesColumns.ProductTotals totals = sales.productTotals(day(startDate), day(endDate));
+        List<Long> ids = new ArrayList<>();
+        for (int p = 1; p < totals.rows().length; p++) {
+            if (totals.rows()[p] > 0) ids.add((long) p);
+        }
+        Map<Long, ProductInfo> info = productInfo(ids);
+        List<Object[]> rows = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            ProductInfo product = info.get(id);
+            if (product == null) continue;
+            rows.add(new Object[]{product.category(), id, amount(totals.cents()[id.intValue()])});
+        }
+        return rows;
+    }
+
+    /**
+     * Rows of (productId, productName, quantity) ordered by quantity, as {@link SaleRepository#getTopSellingProducts}.
+     */
+    public List<Object[]> getTopSellingProducts(LocalDate startDate, LocalDate endDate, int limit) {
+        return top(sales.productTotals(day(startDate), day(endDate)).quantities(), limit);
+    }
+
+    public long getTotalQuantity(LocalDate startDate, LocalDate endDate) {
+        long total = 0;
+        for (long quantity : sales.productTotals(day(startDate), day(endDate)).quantities()) {
+            total += quantity;
+        }
+        return total;
+    }
+
+    /**
+     * Rows of (date, revenue, sales) for days with sales, in date order, as {@link SaleRepository#getDailySales}.
+     */
+    public List<Object[]> getDailySales(LocalDate startDate, LocalDate endDate) {
+        SalesColumns.DayTotals totals = sales.dayTotals(day(startDate), day(endDate));
+        List<Object[]> rows = new ArrayList<>();
+        for (int d = 0; d < totals.rows().length; d++) {
+            if (totals.rows()[d] == 0) continue;
+            rows.add(new Object[]{LocalDate.ofEpochDay(totals.firstDay() + d), amount(totals.cents()[d]), totals.rows()[d]});
+        }
+        return rows;
+    }
+
+    public BigDecimal getTotalSales(LocalDate startDate, LocalDate endDate) {
+        return amount(sales.totalCents(day(startDate), day(endDate)));
+    }
+
+    /**
+     * Rows of (activityType, count), as {@link UserActivityRepository#getActivityCountByType}.
+     */
+    public List<Object[]> getActivityCountByType(LocalDate startDate, LocalDate endDate) {
+        long[] counts = activities.countByType(day(startDate), day(endDate));
+        List<Object[]> rows = new ArrayList<>();
+        for (int code = 1; code < counts.length; code++) {
+            if (counts[code] > 0) rows.add(new Object[]{activityTypes.decode(code), counts[code]});
+        }
+        return rows;
+    }
+
+    /**
+     * Rows of (productId, productName, views) ordered by views, as {@link UserActivityRepository#getMostViewedProducts}.
+     */
+    public List<Object[]> getMostViewedProducts(LocalDate startDate, LocalDate endDate, int limit) {
+        int view = activityTypes.find(VIEW);
+        if (view < 0) return new ArrayList<>();
+        return top(activities.countByProduct(day(startDate), day(endDate), view), limit);
+    }
+
+    public long countProductViews(LocalDate startDate, LocalDate endDate) {
+        int view = activityTypes.find(VIEW);
+        if (view < 0) return 0;
+        long[] counts = activities.countByProduct(day(startDate), day(endDate), view);
+        long total = 0;
+        for (int p = 1; p < counts.length; p++) {
+            total += counts[p];
+        }
+        return total;
+    }
+
+    /**
+     * Exact number of distinct users active in the range.
+     */
+    public long getUniqueUsersCount(LocalDate startDate, LocalDate endDate) {
+        return activities.distinctUsers(day(startDate), day(endDate));
+    }
+
+    /**
+     * The {@code limit} product ids with the highest non-zero counts, lower ids first on ties.
+     */
+    private List<Object[]> top(long[] counts, int limit) {
+        TopK<Integer> top = new TopK<>(limit, Comparator.<Integer>comparingLong(p -> counts[p])
+                .thenComparing(Comparator.reverseOrder()));
+        for (int p = 1; p < counts.length; p++) {
+            if (counts[p] > 0) top.offer(p);
+        }
+        List<Integer> ids = top.toSortedList();
+        Map<Long, ProductInfo> info = productInfo(ids.stream().map(Integer::longValue).toList());
+        List<Object[]> rows = new ArrayList<>(ids.size());
+        for (int p : ids) {
+            ProductInfo product = info.get((long) p);
+            if (product != null) rows.add(new Object[]{(long) p, product.name(), counts[p]});
+        }
+        return rows;
+    }
+
+    private Map<Long, ProductInfo> productInfo(Collection<Long> ids) {
+        List<Long> missing = ids.stream().filter(id -> !products.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            productRepository.findNamesAndCategoriesByIds(missing).forEach(this::remember);
+        }
+        return products;
+    }
+
+    private void refreshProducts() {
+        productRepository.findNamesAndCategories().forEach(this::remember);
+    }
+
+    private void remember(Object[] product) {
+        products.put(((Number) product[0]).longValue(), new ProductInfo((String) product[1], (String) product[2]));
+    }
+
+    private static SaleRow saleRow(Object[] r) {
+        return new SaleRow(((Number) r[0]).longValue(), day(((LocalDateTime) r[1]).toLocalDate()),
+                productId((Number) r[2]), ((Number) r[3]).intValue(), cents((BigDecimal) r[4]), (String) r[5]);
+    }
+
+    private static ActivityRow activityRow(Object[] r) {
+        return new ActivityRow(((Number) r[0]).longValue(), day(((LocalDateTime) r[1]).toLocalDate()),
+                ((Number) r[2]).longValue(), productId((Number) r[4]), (String) r[3]);
+    }
+
+    private void append(SalesColumns table, SaleRow r) {
+        table.append(r.id(), r.day(), r.productId(), r.quantity(), r.cents(), statuses.encode(r.status()));
+    }
+
+    private void append(ActivityColumns table, ActivityRow r) {
+        table.append(r.id(), r.day(), r.userId(), r.productId(), activityTypes.encode(r.type()));
+    }
+
+    private static int day(LocalDate date) {
+        return (int) date.toEpochDay();
+    }
+
+    private static int productId(Number id) {
+        return id != null ? Math.toIntExact(id.longValue()) : 0;
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static BigDecimal amount(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
@@ -0,0 +1,121 @@
+package com.ecommerce.analytics.config;
+
+import com.ecommerce.analytics.cache.CacheValueSerializer;
+import com.ecommerce.analytics.cache.EvictingCacheErrorHandler;
+import com.ecommerce.analytics.cache.PartialRangeCache;
+import com.ecommerce.analytics.cache.TwoTierCacheManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.annotation.CachingConfigurer;
+import org.springframework.cache.interceptor.CacheErrorHandler;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializationContext.SerializationPair;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Redis-backed caching with an in-process L1. Only active when {@code spring.cache.type=redis},
+ * so tests that disable caching keep the no-op cache manager.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.cache.type", havingValue = "redis")
+public class CacheConfig implements CachingConfigurer {
+
+    @Value("${spring.cache.redis.time-to-live:600000}")
+    private Duration redisTtl;
+
+    @Value("${analytics.cache.partials.closed-time-to-live:7d}")
+    private Duration closedPartialTtl;
+
+    @Value("${analytics.cache.partials.open-time-to-live:30s}")
+    private Duration openPartialTtl;
+
+    @Value("${analytics.cache.l1.max-size:1000}")
+    private long localMaxSize;
+
+    @Value("${analytics.cache.l1.time-to-live:60s}")
+    private Duration localTtl;
+
+    @Value("${analytics.cache.invalidation-channel:analytics:cache-invalidation}")
+    private String invalidationChannel;
+
+    @Value("${analytics.cache.early-refresh-beta:1.0}")
+    private double earlyRefreshBeta;
+
+    @Value("${analytics.cache.distributed-lock.enabled:false}")
+    private boolean distributedLock;
+
+    @Value("${analytics.cache.distributed-lock.wait:5s}")
+    private Duration lockWait;
+
+    @Value("${analytics.cache.serializer.format:JDK}")
+    private CacheValueSerializer.Format serializerFormat;
+
+    @Value("${analytics.cache.serializer.compression-threshold:1KB}")
+    private DataSize compressionThreshold;
+
+    @Bean
+    public TwoTierCacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                            StringRedisTemplate redisTemplate,
+                                            MeterRegistry meterRegistry) {
+        RedisCacheManager redisCacheManager = new RedisCacheManager(
+                RedisCacheWriter.nonLockingRedisCacheWriter(connectionFactory),
+                RedisCacheConfiguration.defaultCacheConfig()
+                        .entryTtl(redisTtl)
+                        .serializeValuesWith(SerializationPair.fromSerializer(
+                                new CacheValueSerializer(serializerFormat, (int) compressionThreshold.toBytes())))) {
+            @Override
+            protected RedisCache createRedisCache(String name, RedisCacheConfiguration cacheConfig) {
+                return super.createRedisCache(name, cacheConfig.entryTtl(ttlFor(name)));
+            }
+        };
+        redisCacheManager.initializeCaches();
+
+        // L1 must never outlive L2, otherwise an instance could serve entries other instances have expired
+        TwoTierCacheManager cacheManager = new TwoTierCacheManager(redisCacheManager, redisTemplate, meterRegistry,
+                invalidationChannel, localMaxSize, name -> {
+                    Duration remoteTtl = ttlFor(name);
+                    return localTtl.compareTo(remoteTtl) < 0 ? localTtl : remoteTtl;
+                }, new TwoTierCacheManager.Loading(this::ttlFor, earlyRefreshBeta, distributedLock, lockWait));
+        // Early refreshes read where the request that triggered them would, e.g. the primary for the current day
+        cacheManager.setRefreshDecorator(ReplicaRouter::carryRouting);
+        return cacheManager;
+    }
+
+    /**
+     * Cached values that cannot be read are misses, not request failures.
+     */
+    @Override
+    public CacheErrorHandler errorHandler() {
+        return new EvictingCacheErrorHandler();
+    }
+
+    /**
+     * Closed date-range partials never change, so they live much longer than the open-day partials.
+     */
+    private Duration ttlFor(String cacheName) {
+        if (cacheName.endsWith(PartialRangeCache.CLOSED_SUFFIX)) return closedPartialTtl;
+        if (cacheName.endsWith(PartialRangeCache.OPEN_SUFFIX)) return openPartialTtl;
+        return redisTtl;
+    }
+
+    @Bean
+    public RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                            TwoTierCacheManager cacheManager) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(cacheManager, new ChannelTopic(invalidationChannel));
+        return container;
+    }
+}
@@ -0,0 +1,66 @@
+package com.ecommerce.analytics.config;
+
+import com.ecommerce.analytics.service.CacheWarmupService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Wires {@link CacheWarmupService} into the web layer: range requests are reported to it as recently
+ * observed keys, and its progress is exposed as the {@code cacheWarmup} health indicator, which is part of
+ * the readiness group. With {@code analytics.cache.warmup.readiness-gate} the instance reports
+ * OUT_OF_SERVICE there until the first pass is done.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class CacheWarmupConfig implements WebMvcConfigurer {
+
+    private final CacheWarmupService cacheWarmupService;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                if ("GET".equals(request.getMethod())) {
+                    observe(request);
+                }
+                return true;
+            }
+        }).addPathPatterns("/api/analytics/sales/**", "/api/analytics/user-activity/**", "/api/analytics/dashboard");
+    }
+
+    private void observe(HttpServletRequest request) {
+        String startDate = request.getParameter("startDate");
+        String endDate = request.getParameter("endDate");
+        if (startDate == null || endDate == null) return;
+        String limit = request.getParameter("limit") != null ? request.getParameter("limit") : request.getParameter("topLimit");
+        try {
+            cacheWarmupService.observe(LocalDate.parse(startDate), LocalDate.parse(endDate),
+                    limit != null ? Integer.valueOf(limit) : null);
+        } catch (DateTimeParseException | NumberFormatException e) {
+            // left to the controller to reject
+        }
+    }
+
+    @Bean
+    public HealthIndicator cacheWarmupHealthIndicator(
+            @Value("${analytics.cache.warmup.readiness-gate:false}") boolean readinessGate) {
+        return () -> {
+            boolean warm = cacheWarmupService.isWarm();
+            Health.Builder health = warm || !readinessGate ? Health.up() : Health.outOfService();
+            return health.withDetail("warm", warm).build();
+        };
+    }
+}
@@ -0,0 +1,48 @@
+package com.ecommerce.analytics.config;
+
+import com.ecommerce.analytics.service.DataVersionService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+import java.util.List;
+
+import static com.ecommerce.analytics.service.DataVersionService.PRODUCTS;
+import static com.ecommerce.analytics.service.DataVersionService.SALES;
+import static com.ecommerce.analytics.service.DataVersionService.USER_ACTIVITIES;
+
+/**
+ * Adds {@link EtagInterceptor} to the analytics endpoints whose answers only depend on the data and the
+ * request, with the data sources each group reads: not to streams, exports, ingestion or the live sales
+ * windows, which move with the clock. Past ranges of sales and user activity get ETags that do not expire
+ * once their days are closed; the dashboard also shows current stock, so its ETags always do.
+ */
+@Configuration
+@RequiredArgsConstructor
+public class EtagConfig implements WebMvcConfigurer {
+
+    private final DataVersionService dataVersionService;
+
+    @Value("${analytics.etag.max-staleness:10m}")
+    private Duration maxStaleness;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(interceptor(true, SALES, PRODUCTS))
+                .addPathPatterns("/api/analytics/sales/**")
+                .excludePathPatterns("/api/analytics/sales/live/**");
+        registry.addInterceptor(interceptor(true, USER_ACTIVITIES, PRODUCTS))
+                .addPathPatterns("/api/analytics/user-activity/**");
+        registry.addInterceptor(interceptor(false, PRODUCTS))
+                .addPathPatterns("/api/analytics/inventory/**");
+        registry.addInterceptor(interceptor(false, SALES, USER_ACTIVITIES, PRODUCTS))
+                .addPathPatterns("/api/analytics/dashboard/**");
+    }
+
+    private EtagInterceptor interceptor(boolean ranged, String... sources) {
+        return new EtagInterceptor(dataVersionService, maxStaleness, List.of(sources), ranged);
+    }
+}
@@ -0,0 +1,71 @@
+package com.ecommerce.analytics.config;
+
+import com.ecommerce.analytics.service.DataVersionService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Gives GET responses a strong ETag derived from the {@link DataVersionService} version of the data sources
+ * the endpoints read and the request, and answers a matching {@code If-None-Match} with 304 before the handler
+ * runs, so an unchanged aggregate costs neither a query nor a cache lookup. Responses carry
+ * {@code Cache-Control: no-cache}: clients may keep them but revalidate each time.
+ * <p>
+ * The ETag also changes every {@code maxStaleness}. Cached aggregates may lag the version by up to their
+ * time-to-live; without this a client could keep such a response until the next write. For {@code ranged}
+ * endpoints, a range whose {@code endDate} its sources have closed gets an ETag from their closed version
+ * instead, which does not expire.
+ */
+public class EtagInterceptor implements HandlerInterceptor {
+
+    private final DataVersionService dataVersionService;
+    private final long maxStalenessMillis;
+    private final List<String> sources;
+    private final boolean ranged;
+
+    public EtagInterceptor(DataVersionService dataVersionService, Duration maxStaleness, List<String> sources,
+                           boolean ranged) {
+        this.dataVersionService = dataVersionService;
+        this.maxStalenessMillis = maxStaleness.toMillis();
+        this.sources = sources;
+        this.ranged = ranged;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!"GET".equals(request.getMethod())) return true;
+        String closed = ranged ? closedVersion(request) : null;
+        String version = closed != null ? closed : withPeriod(dataVersionService.version(sources));
+        if (version == null) return true;
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        return !new ServletWebRequest(request, response).checkNotModified(etag(version, request));
+    }
+
+    private String closedVersion(HttpServletRequest request) {
+        String endDate = request.getParameter("endDate");
+        if (endDate == null) return null;
+        try {
+            return dataVersionService.closedVersion(sources, LocalDate.parse(endDate));
+        } catch (DateTimeParseException e) {
+            return null; // rejected by the handler
+        }
+    }
+
+    private String withPeriod(String version) {
+        return version != null ? version + '\n' + System.currentTimeMillis() / maxStalenessMillis : null;
+    }
+
+    private static String etag(String version, HttpServletRequest request) {
+        String key = version + '\n' + request.getRequestURI() + '?' + request.getQueryString();
+        return '"' + DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8)) + '"';
+    }
+}
@@ -0,0 +1,73 @@
+package com.ecommerce.analytics.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+
+/**
+ * Reports virtual threads that stay pinned to their carrier, typically by blocking inside a
+ * {@code synchronized} block, through an in-process JFR stream of {@code jdk.VirtualThreadPinned}.
+ *
+ * Every event is counted in {@code analytics.threads.pinned}, tagged with whether our own code was
+ * on the stack. Pins in our code are logged as warnings with the offending frame; pins that happen
+ * entirely inside libraries (the JDBC driver, mostly) are only logged at debug.
+ */
+@Slf4j
+public class PinnedThreadMonitor {
+
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+    private static final String OWN_PACKAGE = "com.ecommerce.";
+
+    private final MeterRegistry meterRegistry;
+    private final Duration threshold;
+    private RecordingStream stream;
+
+    public PinnedThreadMonitor(MeterRegistry meterRegistry, Duration threshold) {
+        this.meterRegistry = meterRegistry;
+        this.threshold = threshold;
+    }
+
+    @PostConstruct
+    public void start() {
+        stream = new RecordingStream();
+        stream.enable(EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(EVENT, this::onPinned);
+        stream.startAsync();
+        log.info("Watching for virtual threads pinned longer than {}", threshold);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) {
+            stream.close();
+        }
+    }
+
+    void onPinned(RecordedEvent event) {
+        RecordedFrame frame = ownFrame(event.getStackTrace());
+        meterRegistry.counter("analytics.threads.pinned", "source", frame != null ? "application" : "library").increment();
+        if (frame != null) {
+            log.warn("Virtual thread pinned for {} ms at {}.{}:{}", event.getDuration().toMillis(),
+                    frame.getMethod().getType().getName(), frame.getMethod().getName(), frame.getLineNumber());
+        } else {
+            log.debug("Virtual thread pinned for {} ms in library code", event.getDuration().toMillis());
+        }
+    }
+
+    private static RecordedFrame ownFrame(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) return null;
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (frame.isJavaFrame() && frame.getMethod().getType().getName().startsWith(OWN_PACKAGE)) {
+                return frame;
+            }
+        }
+        return null;
+    }
+}
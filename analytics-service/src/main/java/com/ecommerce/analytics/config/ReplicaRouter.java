@@ -0,0 +1,297 @@
+package com.ecommerce.analytics.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+
+/**
+ * Sends read-only transactions to a healthy replica, round robin, and everything else (writes, and
+ * statements outside a transaction) to the primary. Replicas are probed every
+ * {@code analytics.datasource.replicas.health-check-interval-ms} and start out of rotation until the
+ * first probe succeeds; with no replica usable, reads fall back to the primary.
+ * <p>
+ * On MySQL the probe also reads the replica's lag from {@code SHOW REPLICA STATUS}. With {@code maxLag}
+ * set, replicas further behind are skipped. With {@code pinCurrentDay}, read-only transactions that
+ * declared through {@link #readsThrough} a range reaching into the last {@code maxLag} before now (at
+ * least the current day) stay on the primary, so fresh rows are never missing from their answers. Older
+ * ranges can still miss late writes for {@code analytics.datasource.replicas.catch-up-time}; what is cached
+ * from them is evicted again after it (see {@code IngestionService}).
+ * <p>
+ * The pool is picked when a connection is requested, so {@link #dataSource()} has to be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: the transaction's read-only
+ * flag is only set after the transaction manager asked for its connection.
+ */
+@Slf4j
+public class ReplicaRouter implements AutoCloseable {
+
+    private static final String RANGE_END = ReplicaRouter.class.getName() + ".rangeEnd";
+    private static final String PRIMARY_REQUIRED = ReplicaRouter.class.getName() + ".primaryRequired";
+    private static final Duration STOPPED = ChronoUnit.FOREVER.getDuration();
+    private static final ThreadLocal<Routing> CARRIED = new ThreadLocal<>();
+
+    /**
+     * Routing of a transaction, carried to work it hands to another thread.
+     */
+    private record Routing(boolean readOnly, boolean primaryRequired, LocalDate rangeEnd) {
+    }
+
+    static final class Replica {
+        final String name;
+        final DataSource dataSource;
+        volatile DataSource connections; // dataSource as handed out, see wrapPools
+        volatile boolean healthy;
+        volatile Duration lag; // null when the replica does not report one
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.connections = dataSource;
+        }
+    }
+
+    private final DataSource primary;
+    private volatile DataSource primaryConnections;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final boolean pinCurrentDay;
+    private final Duration maxLag;
+    private final AtomicInteger next = new AtomicInteger();
+    private final DataSource dataSource = new RoutingDataSource();
+    private final Counter primaryRoutes;
+    private final Counter replicaRoutes;
+
+    public ReplicaRouter(DataSource primary, Map<String, DataSource> replicas, boolean pinCurrentDay, Duration maxLag,
+                         MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.primaryConnections = primary;
+        this.pinCurrentDay = pinCurrentDay;
+        this.maxLag = maxLag;
+        replicas.forEach((name, replica) -> this.replicas.add(new Replica(name, replica)));
+        this.primaryRoutes = Counter.builder("analytics.db.routed").tag("target", "primary")
+                .description("Connections handed out, by target").register(meterRegistry);
+        this.replicaRoutes = Counter.builder("analytics.db.routed").tag("target", "replica")
+                .description("Connections handed out, by target").register(meterRegistry);
+        for (Replica replica : this.replicas) {
+            Gauge.builder("analytics.db.replica.healthy", replica, r -> r.healthy ? 1 : 0)
+                    .tag("replica", replica.name).register(meterRegistry);
+            Gauge.builder("analytics.db.replica.lag", replica, r -> r.lag != null ? r.lag.toMillis() / 1000.0 : Double.NaN)
+                    .tag("replica", replica.name).baseUnit("seconds").register(meterRegistry);
+        }
+    }
+
+    /**
+     * The routing DataSource; wrap it in a {@code LazyConnectionDataSourceProxy} (see the class comment).
+     */
+    public DataSource dataSource() {
+        return dataSource;
+    }
+
+    /**
+     * Wraps the pools as {@link #dataSource()} hands them out, e.g. to limit each pool's concurrent
+     * connections by its own size; health checks and {@link #close} keep using the pools themselves.
+     * Call before the router is used. {@code wrapper} gets the pool name ("primary" for the primary).
+     */
+    public void wrapPools(BiFunction<String, DataSource, DataSource> wrapper) {
+        primaryConnections = wrapper.apply("primary", primary);
+        for (Replica replica : replicas) {
+            replica.connections = wrapper.apply(replica.name, replica.dataSource);
+        }
+    }
+
+    /**
+     * Whether {@code dataSource} is, or delegates to, the routing DataSource of a router.
+     */
+    public static boolean isRouting(DataSource dataSource) {
+        while (dataSource instanceof DelegatingDataSource delegating) {
+            dataSource = delegating.getTargetDataSource();
+        }
+        return dataSource instanceof RoutingDataSource;
+    }
+
+    /**
+     * Notes that the current transaction reads data up to {@code endDate}, so that it can be kept on the
+     * primary when that is recent enough. Has to be called before the transaction's first statement.
+     */
+    public static void readsThrough(LocalDate endDate) {
+        LocalDate previous = (LocalDate) TransactionSynchronizationManager.getResource(RANGE_END);
+        if (previous == null || endDate.isAfter(previous)) {
+            bind(RANGE_END, endDate);
+        }
+    }
+
+    /**
+     * Keeps the current transaction on the primary. Has to be called before the transaction's first statement.
+     */
+    public static void requirePrimary() {
+        bind(PRIMARY_REQUIRED, Boolean.TRUE);
+    }
+
+    /**
+     * Wraps a task about to run on another thread (a {@link org.springframework.core.task.TaskDecorator}) so
+     * that it is routed like the current transaction: statements it runs outside a transaction are treated as
+     * in a read-only one if this transaction is read-only, and the hints given here through
+     * {@link #readsThrough} and {@link #requirePrimary} also apply to its own transactions.
+     */
+    public static Runnable carryRouting(Runnable task) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return task;
+        }
+        Routing routing = new Routing(TransactionSynchronizationManager.isCurrentTransactionReadOnly(),
+                TransactionSynchronizationManager.hasResource(PRIMARY_REQUIRED),
+                (LocalDate) TransactionSynchronizationManager.getResource(RANGE_END));
+        return () -> {
+            Routing previous = CARRIED.get();
+            CARRIED.set(routing);
+            try {
+                task.run();
+            } finally {
+                if (previous != null) {
+                    CARRIED.set(previous);
+                } else {
+                    CARRIED.remove();
+                }
+            }
+        };
+    }
+
+    private static void bind(String key, Object value) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return; // outside a transaction everything goes to the primary anyway
+        }
+        if (TransactionSynchronizationManager.unbindResourceIfPossible(key) == null) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(key);
+                }
+            });
+        }
+        TransactionSynchronizationManager.bindResource(key, value);
+    }
+
+    DataSource route() {
+        Routing carried = CARRIED.get();
+        boolean readOnly = TransactionSynchronizationManager.isActualTransactionActive()
+                ? TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                : carried != null && carried.readOnly();
+        boolean primaryRequired = TransactionSynchronizationManager.hasResource(PRIMARY_REQUIRED)
+                || carried != null && carried.primaryRequired();
+        LocalDate rangeEnd = (LocalDate) TransactionSynchronizationManager.getResource(RANGE_END);
+        if (carried != null && carried.rangeEnd() != null && (rangeEnd == null || carried.rangeEnd().isAfter(rangeEnd))) {
+            rangeEnd = carried.rangeEnd();
+        }
+        Replica replica = replicaFor(readOnly, primaryRequired, rangeEnd);
+        if (replica == null) {
+            primaryRoutes.increment();
+            return primaryConnections;
+        }
+        replicaRoutes.increment();
+        return replica.connections;
+    }
+
+    private Replica replicaFor(boolean readOnly, boolean primaryRequired, LocalDate rangeEnd) {
+        if (!readOnly || primaryRequired || replicas.isEmpty()) {
+            return null;
+        }
+        if (pinCurrentDay && rangeEnd != null && !rangeEnd.isBefore(LocalDateTime.now().minus(maxLag).toLocalDate())) {
+            return null;
+        }
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (usable(replica)) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private boolean usable(Replica replica) {
+        Duration lag = replica.lag;
+        return replica.healthy && (maxLag.isZero() || lag == null || lag.compareTo(maxLag) <= 0);
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${analytics.datasource.replicas.health-check-interval-ms:5000}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            boolean wasUsable = usable(replica);
+            try (Connection connection = replica.dataSource.getConnection()) {
+                if (!connection.isValid(2)) {
+                    throw new SQLException("connection is not valid");
+                }
+                replica.lag = lag(connection);
+                replica.healthy = true;
+            } catch (SQLException | RuntimeException e) {
+                if (replica.healthy) {
+                    log.warn("Replica {} failed its health check: {}", replica.name, e.getMessage());
+                }
+                replica.healthy = false;
+            }
+            boolean isUsable = usable(replica);
+            if (isUsable != wasUsable) {
+                String lag = replica.lag != null ? replica.lag.toString() : "unknown";
+                if (isUsable) {
+                    log.info("Replica {} is in rotation (lag {})", replica.name, lag);
+                } else {
+                    log.warn("Replica {} is out of rotation (healthy {}, lag {})", replica.name, replica.healthy, lag);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replication delay as MySQL reports it, {@link #STOPPED} while replication is not running,
+     * or null when the database is not a replica or cannot tell.
+     */
+    private static Duration lag(Connection connection) {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SHOW REPLICA STATUS")) {
+            if (!rs.next()) return null;
+            long seconds = rs.getLong("Seconds_Behind_Source");
+            return rs.wasNull() ? STOPPED : Duration.ofSeconds(seconds);
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) closeable.close();
+        }
+        if (primary instanceof AutoCloseable closeable) closeable.close();
+    }
+
+    private class RoutingDataSource extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return route().getConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return route().getConnection(username, password);
+        }
+    }
+}
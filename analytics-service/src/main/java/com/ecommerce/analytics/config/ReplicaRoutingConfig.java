@@ -0,0 +1,86 @@
+package com.ecommerce.analytics.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Read/write splitting ({@code analytics.datasource.replicas.enabled=true}): the primary pool is built
+ * from {@code spring.datasource.*} as usual, one read-only pool per entry of
+ * {@code analytics.datasource.replicas.nodes}, and {@link ReplicaRouter} picks between them per transaction.
+ */
+@Configuration
+@ConditionalOnProperty(name = "analytics.datasource.replicas.enabled", havingValue = "true")
+@Slf4j
+public class ReplicaRoutingConfig {
+
+    /**
+     * One replica; username and password default to the primary's.
+     */
+    public record Node(String url, String username, String password) {
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReplicaRouter replicaRouter(DataSourceProperties properties, Environment environment, MeterRegistry meterRegistry,
+                                       @Value("${analytics.datasource.replicas.pin-current-day:true}") boolean pinCurrentDay,
+                                       @Value("${analytics.datasource.replicas.max-lag:30s}") Duration maxLag) {
+        Binder binder = Binder.get(environment);
+        MicrometerMetricsTrackerFactory metrics = new MicrometerMetricsTrackerFactory(meterRegistry);
+
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName("analytics-primary");
+        primary.setMetricsTrackerFactory(metrics);
+
+        List<Node> nodes = binder.bind("analytics.datasource.replicas.nodes", Bindable.listOf(Node.class)).orElse(List.of());
+        int poolSize = environment.getProperty("analytics.datasource.replicas.maximum-pool-size", Integer.class,
+                primary.getMaximumPoolSize());
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        for (Node node : nodes) {
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(node.url())
+                    .username(node.username() != null ? node.username() : properties.determineUsername())
+                    .password(node.password() != null ? node.password() : properties.determinePassword())
+                    .build();
+            replica.setPoolName("analytics-replica-" + replicas.size());
+            replica.setMaximumPoolSize(poolSize);
+            replica.setConnectionTimeout(primary.getConnectionTimeout());
+            replica.setReadOnly(true);
+            replica.setMetricsTrackerFactory(metrics);
+            replicas.put(replica.getPoolName(), replica);
+        }
+
+        log.info("Routing read-only transactions to {} replica(s) (pin current day: {}, max lag: {})",
+                replicas.size(), pinCurrentDay, maxLag);
+        return new ReplicaRouter(primary, replicas, pinCurrentDay, maxLag, meterRegistry);
+    }
+
+    /**
+     * The application's DataSource. Connections are fetched on the first statement, once the transaction
+     * has set its read-only flag, so the router sees it.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRouter replicaRouter) {
+        return new LazyConnectionDataSourceProxy(replicaRouter.dataSource());
+    }
+}
@@ -0,0 +1,79 @@
+package com.ecommerce.analytics.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Safeguards for the virtual-thread mode ({@code spring.threads.virtual.enabled=true} on Java 21+).
+ * Spring Boot then runs Tomcat requests on virtual threads and {@code DashboardService} fans out on
+ * them as well; in platform mode nothing here is active.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+@Slf4j
+public class ThreadingConfig {
+
+    /**
+     * Wraps the DataSource so no more requests borrow connections at once than the pool holds. With read/write
+     * splitting, each pool behind the {@link ReplicaRouter} is limited by its own size instead of the routing
+     * DataSource by the primary's.
+     */
+    @Bean
+    public static BeanPostProcessor connectionLimitingPostProcessor(Environment environment,
+                                                                    ObjectProvider<MeterRegistry> meterRegistry) {
+        int maxConnections = environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10);
+        Duration permitTimeout = environment.getProperty("analytics.threads.db-permit-timeout", Duration.class,
+                Duration.ofSeconds(5));
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof ReplicaRouter router) {
+                    router.wrapPools((name, pool) -> limit(name, pool,
+                            pool instanceof HikariDataSource hikari ? hikari.getMaximumPoolSize() : maxConnections));
+                    return bean;
+                }
+                if (!(bean instanceof DataSource dataSource) || bean instanceof ConnectionLimitingDataSource
+                        || ReplicaRouter.isRouting(dataSource)) {
+                    return bean;
+                }
+                return limit(beanName, dataSource, maxConnections);
+            }
+
+            private DataSource limit(String name, DataSource dataSource, int permits) {
+                ConnectionLimitingDataSource limited = new ConnectionLimitingDataSource(dataSource, permits, permitTimeout);
+                meterRegistry.ifAvailable(registry -> {
+                    Gauge.builder("analytics.db.permits.available", limited, ConnectionLimitingDataSource::availablePermits)
+                            .description("Connection permits not currently held")
+                            .tag("datasource", name)
+                            .register(registry);
+                    Gauge.builder("analytics.db.permits.waiting", limited, ConnectionLimitingDataSource::waiting)
+                            .description("Threads waiting for a connection permit")
+                            .tag("datasource", name)
+                            .register(registry);
+                });
+                log.info("Limiting DataSource '{}' to {} concurrent connections", name, permits);
+                return limited;
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "analytics.threads.pinning-detection.enabled", havingValue = "true", matchIfMissing = true)
+    public PinnedThreadMonitor pinnedThreadMonitor(MeterRegistry meterRegistry, Environment environment) {
+        return new PinnedThreadMonitor(meterRegistry, environment.getProperty(
+                "analytics.threads.pinning-detection.threshold", Duration.class, Duration.ofMillis(20)));
+    }
+}
@@ -0,0 +1,35 @@
+package com.ecommerce.analytics.controller;
+
+import com.ecommerce.analytics.dto.DashboardDto;
+import com.ecommerce.analytics.service.DashboardService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+
+@RestController
+@RequestMapping("/api/analytics/dashboard")
+@RequiredArgsConstructor
+@Slf4j
+public class DashboardController {
+
+    private final DashboardService dashboardService;
+
+    /**
+     * GET /api/analytics/dashboard?startDate=2024-01-01&endDate=2024-12-31&topLimit=5&lowStockThreshold=50
+     */
+    @GetMapping
+    public ResponseEntity<DashboardDto> getDashboard(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "5") int topLimit,
+            @RequestParam(defaultValue = "50") int lowStockThreshold) {
+
+        log.info("Request received: Get dashboard from {} to {}", startDate, endDate);
+        DashboardDto result = dashboardService.getDashboard(startDate, endDate, topLimit, lowStockThreshold);
+        return ResponseEntity.ok(result);
+    }
+}
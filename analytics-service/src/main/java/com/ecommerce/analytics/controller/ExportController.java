@@ -0,0 +1,80 @@
+package com.ecommerce.analytics.controller;
+
+import com.ecommerce.analytics.service.ExportService;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * Raw data exports, streamed to the response as they are read.
+ */
+@RestController
+@RequestMapping("/api/analytics/export")
+@RequiredArgsConstructor
+@Slf4j
+public class ExportController {
+
+    private static final MediaType TEXT_CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+
+    private final ExportService exportService;
+
+    /**
+     * GET /api/analytics/export/sales?startDate=2024-01-01&endDate=2024-01-31&format=csv
+     */
+    @GetMapping("/sales")
+    public void exportSales(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "csv") String format,
+            HttpServletResponse response) throws IOException {
+
+        log.info("Request received: Export sales from {} to {} as {}", startDate, endDate, format);
+        ExportService.Format exportFormat = ExportService.Format.parse(format);
+        prepare(response, "sales", startDate, endDate, exportFormat);
+        long rows = exportService.exportSales(startDate, endDate, exportFormat, response.getOutputStream());
+        log.info("Exported {} sales", rows);
+    }
+
+    /**
+     * GET /api/analytics/export/user-activity?startDate=2024-01-01&endDate=2024-01-31&format=ndjson
+     */
+    @GetMapping("/user-activity")
+    public void exportActivities(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "csv") String format,
+            HttpServletResponse response) throws IOException {
+
+        log.info("Request received: Export user activities from {} to {} as {}", startDate, endDate, format);
+        ExportService.Format exportFormat = ExportService.Format.parse(format);
+        prepare(response, "user-activity", startDate, endDate, exportFormat);
+        long rows = exportService.exportActivities(startDate, endDate, exportFormat, response.getOutputStream());
+        log.info("Exported {} user activities", rows);
+    }
+
+    private static void prepare(HttpServletResponse response, String name, LocalDate startDate, LocalDate endDate,
+                                ExportService.Format format) {
+        boolean csv = format == ExportService.Format.CSV;
+        response.setContentType((csv ? TEXT_CSV : MediaType.APPLICATION_NDJSON).toString());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(name + "_" + startDate + "_" + endDate + (csv ? ".csv" : ".ndjson"))
+                .build().toString());
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+}
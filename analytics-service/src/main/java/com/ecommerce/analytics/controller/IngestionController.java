@@ -0,0 +1,97 @@
+package com.ecommerce.analytics.controller;
+
+import com.ecommerce.analytics.dto.IngestResultDto;
+import com.ecommerce.analytics.dto.SaleEventDto;
+import com.ecommerce.analytics.dto.UserActivityEventDto;
+import com.ecommerce.analytics.ingest.IngestionPipeline;
+import com.ecommerce.analytics.ingest.IngestionRejectedException;
+import com.ecommerce.analytics.ingest.IngestionTimeoutException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+/**
+ * Bulk writes. Bodies are either a JSON array or NDJSON (one event per line); both are parsed
+ * incrementally from the request stream.
+ *
+ * Responds 202 when events are acknowledged once queued, 200 once committed, 400 for invalid events
+ * or unknown products, 409 when an event violates a database constraint, 429 when the ingestion buffer
+ * is full, and 503 when queued events were not confirmed as committed in time.
+ */
+@RestController
+@RequestMapping("/api/analytics/ingest")
+@RequiredArgsConstructor
+@Slf4j
+public class IngestionController {
+
+    private final IngestionPipeline ingestionPipeline;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * POST /api/analytics/ingest/sales
+     */
+    @PostMapping(value = "/sales", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<IngestResultDto> ingestSales(InputStream body) throws IOException {
+        try (MappingIterator<SaleEventDto> events = objectMapper.readerFor(SaleEventDto.class).readValues(body)) {
+            long accepted = ingestionPipeline.ingestSales(events);
+            log.info("Ingested {} sales", accepted);
+            return respond(accepted);
+        }
+    }
+
+    /**
+     * POST /api/analytics/ingest/activities
+     */
+    @PostMapping(value = "/activities", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<IngestResultDto> ingestActivities(InputStream body) throws IOException {
+        try (MappingIterator<UserActivityEventDto> events = objectMapper.readerFor(UserActivityEventDto.class).readValues(body)) {
+            long accepted = ingestionPipeline.ingestActivities(events);
+            log.info("Ingested {} user activities", accepted);
+            return respond(accepted);
+        }
+    }
+
+    private ResponseEntity<IngestResultDto> respond(long accepted) {
+        HttpStatus status = ingestionPipeline.isAckOnEnqueue() ? HttpStatus.ACCEPTED : HttpStatus.OK;
+        return ResponseEntity.status(status).body(new IngestResultDto(accepted));
+    }
+
+    @ExceptionHandler({IllegalArgumentException.class, JsonProcessingException.class, RuntimeJsonMappingException.class})
+    public ResponseEntity<Map<String, String>> handleInvalidEvents(Exception e) {
+        log.warn("Rejected ingestion request: {}", e.getMessage());
+        return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage())));
+    }
+
+    @ExceptionHandler(IngestionRejectedException.class)
+    public ResponseEntity<Map<String, Object>> handleRejected(IngestionRejectedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("error", e.getMessage(), "accepted", e.getAccepted()));
+    }
+
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<Map<String, String>> handleConstraintViolation(DataIntegrityViolationException e) {
+        log.warn("Rejected ingestion request: {}", e.getMostSpecificCause().getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("error", "Events violate a database constraint"));
+    }
+
+    @ExceptionHandler(IngestionTimeoutException.class)
+    public ResponseEntity<Map<String, String>> handleCommitTimeout(IngestionTimeoutException e) {
+        log.warn("Ingestion request not confirmed: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", String.valueOf(e.getMessage())));
+    }
+}
@@ -1,13 +1,19 @@
 package com.ecommerce.analytics.controller;
 
 import com.ecommerce.analytics.dto.InventoryDto;
+import com.ecommerce.analytics.dto.InventoryPageDto;
+import com.ecommerce.analytics.dto.StockStatus;
 import com.ecommerce.analytics.service.AnalyticsService;
+import com.ecommerce.analytics.service.InventoryService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/analytics/inventory")
@@ -16,6 +22,7 @@ import java.util.List;
 public class InventoryAnalyticsController {
 
     private final AnalyticsService analyticsService;
+    private final InventoryService inventoryService;
 
     /**
      * GET /api/analytics/inventory/status
@@ -28,14 +35,63 @@ public class InventoryAnalyticsController {
     }
 
     /**
-     * GET /api/analytics/inventory/low-stock?threshold=50
+     * GET /api/analytics/inventory/low-stock?threshold=50&category=Electronics
      */
     @GetMapping("/low-stock")
     public ResponseEntity<List<InventoryDto>> getLowStockProducts(
-            @RequestParam(defaultValue = "50") int threshold) {
+            @RequestParam(defaultValue = "50") int threshold,
+            @RequestParam(required = false) String category) {
 
         log.info("Request received: Get low stock products with threshold {}", threshold);
-        List<InventoryDto> result = analyticsService.getLowStockProducts(threshold);
+        List<InventoryDto> result = category != null
+                ? inventoryService.getLowStock(threshold, category)
+                : analyticsService.getLowStockProducts(threshold);
         return ResponseEntity.ok(result);
     }
+
+    /**
+     * GET /api/analytics/inventory/status-counts?category=Electronics
+     */
+    @GetMapping("/status-counts")
+    public ResponseEntity<Map<String, Long>> getStatusCounts(@RequestParam(required = false) String category) {
+        log.info("Request received: Get stock status counts (category {})", category);
+        Map<String, Long> result = inventoryService.getStatusCounts(category);
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * GET /api/analytics/inventory/items?category=Electronics&status=LOW&cursor=1200&limit=500
+     */
+    @GetMapping("/items")
+    public ResponseEntity<InventoryPageDto> getInventoryPage(
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) StockStatus status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "500") int limit) {
+
+        log.info("Request received: Get inventory page after {} (category {}, status {})", cursor, category, status);
+        InventoryPageDto result = inventoryService.getInventoryPage(category, status, cursor, limit);
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * GET /api/analytics/inventory/changes?since=2024-01-01T00:00:00&limit=500, then
+     * GET /api/analytics/inventory/changes?cursor={nextCursor of the previous response}
+     * Recent changes can be returned again; drop repeats by (productId, updatedAt). Deletes are not reported.
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<InventoryPageDto> getInventoryChanges(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime since,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "500") int limit) {
+
+        log.info("Request received: Get inventory changes since {}", cursor != null ? cursor : since);
+        InventoryPageDto result = inventoryService.getChanges(since, cursor, limit);
+        return ResponseEntity.ok(result);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
 }
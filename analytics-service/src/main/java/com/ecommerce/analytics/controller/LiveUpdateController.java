@@ -0,0 +1,40 @@
+package com.ecommerce.analytics.controller;
+
+import com.ecommerce.analytics.live.LiveUpdateService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@RestController
+@RequestMapping("/api/analytics/live")
+@RequiredArgsConstructor
+@Slf4j
+public class LiveUpdateController {
+
+    private final LiveUpdateService liveUpdateService;
+
+    /**
+     * GET /api/analytics/live/stream
+     * Server-sent events: "stock", "sales" and "reset". EventSource resumes with the Last-Event-ID header;
+     * a client that opens a new connection itself can pass the id as {@code lastEventId} instead.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+                             @RequestParam(required = false) String lastEventId) {
+        String resumeFrom = lastEventIdHeader != null ? lastEventIdHeader : lastEventId;
+        log.debug("Live update stream opened (resuming from {})", resumeFrom);
+        return liveUpdateService.subscribe(resumeFrom);
+    }
+
+    // No body: the client asked for an event stream, which an error object cannot be written as
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<Void> handleUnavailable(IllegalStateException e) {
+        log.warn("Live update stream refused: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "10").build();
+    }
+}
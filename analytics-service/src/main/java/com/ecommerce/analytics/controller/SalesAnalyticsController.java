@@ -1,16 +1,20 @@
 package com.ecommerce.analytics.controller;
 
 import com.ecommerce.analytics.dto.*;
+import com.ecommerce.analytics.live.LiveSalesService;
 import com.ecommerce.analytics.service.AnalyticsService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.convert.DurationStyle;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/analytics/sales")
@@ -19,6 +23,7 @@ import java.util.List;
 public class SalesAnalyticsController {
 
     private final AnalyticsService analyticsService;
+    private final LiveSalesService liveSalesService;
 
     /**
      * GET /api/analytics/sales/by-category?startDate=2024-01-01&endDate=2024-12-31
@@ -72,4 +77,33 @@ public class SalesAnalyticsController {
         BigDecimal result = analyticsService.getTotalSales(startDate, endDate);
         return ResponseEntity.ok(result);
     }
+
+    /**
+     * GET /api/analytics/sales/live?top=5
+     */
+    @GetMapping("/live")
+    public ResponseEntity<List<LiveSalesWindowDto>> getLiveSales(@RequestParam(defaultValue = "5") int top) {
+        log.info("Request received: Get live sales with top {} categories", top);
+        return ResponseEntity.ok(liveSalesService.getSales(top));
+    }
+
+    /**
+     * GET /api/analytics/sales/live/5m?top=5
+     */
+    @GetMapping("/live/{window}")
+    public ResponseEntity<LiveSalesWindowDto> getLiveSales(@PathVariable String window,
+                                                           @RequestParam(defaultValue = "5") int top) {
+        log.info("Request received: Get live sales of the last {} with top {} categories", window, top);
+        return ResponseEntity.ok(liveSalesService.getSales(DurationStyle.detectAndParse(window), top));
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleInvalidRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", String.valueOf(e.getMessage())));
+    }
+
+    @ExceptionHandler(IllegalStateException.class)
+    public ResponseEntity<Map<String, String>> handleUnavailable(IllegalStateException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of("error", String.valueOf(e.getMessage())));
+    }
 }
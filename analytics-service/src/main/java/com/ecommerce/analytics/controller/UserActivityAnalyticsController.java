@@ -48,15 +48,16 @@ public class UserActivityAnalyticsController {
     }
 
     /**
-     * GET /api/analytics/user-activity/unique-users?startDate=2024-01-01&endDate=2024-12-31
+     * GET /api/analytics/user-activity/unique-users?startDate=2024-01-01&endDate=2024-12-31&exact=false
      */
     @GetMapping("/unique-users")
     public ResponseEntity<Long> getUniqueUsersCount(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(defaultValue = "false") boolean exact) {
 
-        log.info("Request received: Get unique users count from {} to {}", startDate, endDate);
-        Long result = analyticsService.getUniqueUsersCount(startDate, endDate);
+        log.info("Request received: Get unique users count from {} to {} (exact={})", startDate, endDate, exact);
+        Long result = analyticsService.getUniqueUsersCount(startDate, endDate, exact);
         return ResponseEntity.ok(result);
     }
 }
@@ -0,0 +1,27 @@
+package com.ecommerce.analytics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DashboardDto implements Serializable {
+    private List<CategorySalesDto> salesByCategory;
+    private List<TopProductDto> topProducts;
+    private List<DailySalesDto> dailySales;
+    private BigDecimal totalSales;
+    // Products per stock status: LOW, MEDIUM, ADEQUATE
+    private Map<String, Long> stockStatus;
+    private List<InventoryDto> lowStock;
+    private Long uniqueUsers;
+    // Widgets left out of this payload, mapped to "timeout", "busy" or "error"
+    private Map<String, String> unavailable = new LinkedHashMap<>();
+}
@@ -1,9 +1,11 @@
 package com.ecommerce.analytics.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import java.io.Serializable;
+import java.time.LocalDateTime;
 
 @Data
 @NoArgsConstructor
@@ -14,4 +16,10 @@ public class InventoryDto implements Serializable {
     private String category;
     private Integer stockQuantity;
     private String status; // LOW, MEDIUM, ADEQUATE
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private LocalDateTime updatedAt; // only in lists of changes
+
+    public InventoryDto(Long productId, String productName, String category, Integer stockQuantity, String status) {
+        this(productId, productName, category, stockQuantity, status, null);
+    }
 }
@@ -0,0 +1,20 @@
+package com.ecommerce.analytics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One page of inventory. {@code nextCursor} is passed back to fetch the following page; for a list of
+ * changes it is the watermark to poll with next time even when {@code hasMore} is false.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InventoryPageDto {
+    private List<InventoryDto> items;
+    private String nextCursor;
+    private boolean hasMore;
+}
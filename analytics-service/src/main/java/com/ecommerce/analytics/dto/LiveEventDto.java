@@ -0,0 +1,18 @@
+package com.ecommerce.analytics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One message of the live update stream. {@code type} is "stock" (a list of {@link InventoryDto}),
+ * "sales" (a {@link SalesUpdateDto}) or "reset" (no data: reload everything, then apply what follows).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LiveEventDto {
+    private long version;
+    private String type;
+    private Object data;
+}
@@ -0,0 +1,25 @@
+package com.ecommerce.analytics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Sales in the last {@code windowSeconds}, up to and including the second {@code to}. {@code topCategories}
+ * holds the categories with the most revenue, highest first.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LiveSalesWindowDto {
+    private Long windowSeconds;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private BigDecimal revenue;
+    private Long orders;
+    private Map<String, BigDecimal> topCategories;
+}
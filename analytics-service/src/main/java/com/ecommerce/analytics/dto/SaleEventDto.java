@@ -0,0 +1,28 @@
+package com.ecommerce.analytics.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SaleEventDto {
+    @NotNull
+    private Long productId;
+    @NotNull @Positive
+    private Integer quantity;
+    @NotNull @PositiveOrZero
+    private BigDecimal totalAmount;
+    private LocalDateTime saleDate;
+    private Long customerId;
+    @Size(max = 50)
+    private String status;
+}
@@ -0,0 +1,23 @@
+package com.ecommerce.analytics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SaleExportRow {
+    private Long id;
+    private LocalDateTime saleDate;
+    private Long productId;
+    private String productName;
+    private String category;
+    private Integer quantity;
+    private BigDecimal totalAmount;
+    private Long customerId;
+    private String status;
+}
@@ -0,0 +1,23 @@
+package com.ecommerce.analytics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * The current day's sales after new sales were folded in. Totals are absolute, not increments, so
+ * applying an update twice is harmless; {@code categorySales} only lists the categories that changed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesUpdateDto {
+    private LocalDate date;
+    private BigDecimal totalSales;
+    private Long transactionCount;
+    private Map<String, BigDecimal> categorySales;
+}
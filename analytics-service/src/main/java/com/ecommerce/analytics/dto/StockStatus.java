@@ -0,0 +1,33 @@
+package com.ecommerce.analytics.dto;
+
+/**
+ * Stock level of a product, as reported in {@link InventoryDto#getStatus()}: each status covers the
+ * stock quantities from {@code minQuantity} (inclusive) to {@code maxQuantity} (exclusive).
+ */
+public enum StockStatus {
+    LOW(Integer.MIN_VALUE, 20),
+    MEDIUM(20, 50),
+    ADEQUATE(50, Integer.MAX_VALUE);
+
+    private final int minQuantity;
+    private final int maxQuantity;
+
+    StockStatus(int minQuantity, int maxQuantity) {
+        this.minQuantity = minQuantity;
+        this.maxQuantity = maxQuantity;
+    }
+
+    public int getMinQuantity() {
+        return minQuantity;
+    }
+
+    public int getMaxQuantity() {
+        return maxQuantity;
+    }
+
+    public static StockStatus of(int quantity) {
+        if (quantity < LOW.maxQuantity) return LOW;
+        if (quantity < MEDIUM.maxQuantity) return MEDIUM;
+        return ADEQUATE;
+    }
+}
@@ -0,0 +1,26 @@
+package com.ecommerce.analytics.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserActivityEventDto {
+    @NotNull
+    private Long userId;
+    @NotBlank @Size(max = 50)
+    private String activityType;
+    private Long productId;
+    private LocalDateTime activityTimestamp;
+    @Size(max = 45)
+    private String ipAddress;
+    @Size(max = 255)
+    private String userAgent;
+}
@@ -0,0 +1,20 @@
+package com.ecommerce.analytics.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserActivityExportRow {
+    private Long id;
+    private LocalDateTime activityTimestamp;
+    private Long userId;
+    private String activityType;
+    private Long productId;
+    private String ipAddress;
+    private String userAgent;
+}
@@ -0,0 +1,11 @@
+package com.ecommerce.analytics.ingest;
+
+/**
+ * When an ingestion request is acknowledged.
+ */
+public enum DurabilityMode {
+    /** Respond once the events are queued; queued events are lost if the instance dies. */
+    ENQUEUE,
+    /** Respond once the group commit containing the last event of the request has succeeded. */
+    COMMIT
+}
@@ -0,0 +1,324 @@
+package com.ecommerce.analytics.ingest;
+
+import com.ecommerce.analytics.dto.SaleEventDto;
+import com.ecommerce.analytics.dto.UserActivityEventDto;
+import com.ecommerce.analytics.service.IngestionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Decouples ingestion requests from database commits. Request threads validate events and put them
+ * on a bounded {@link RingBuffer}; a few writer threads drain it and write each drained batch with
+ * {@link IngestionService}, so concurrent requests share commits.
+ *
+ * A writer commits as soon as it has {@code analytics.ingest.batch-size} events or the first event has
+ * waited {@code max-linger}. When the buffer is full a request waits up to {@code enqueue-timeout} for
+ * space and is then rejected with {@link IngestionRejectedException}. With {@link DurabilityMode#COMMIT}
+ * the request also waits until all of its events are committed.
+ *
+ * Product references are checked before a request's events are queued, so unknown products are rejected
+ * with the request rather than dropped by a writer. If a batch still fails because of bad data, it is
+ * split and retried so only the offending events fail.
+ * When the pipeline is disabled, requests are written synchronously.
+ */
+@Component
+@Slf4j
+public class IngestionPipeline {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long LINGER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final IngestionService ingestionService;
+    private final RingBuffer<Pending> buffer;
+    private final boolean enabled;
+    private final DurabilityMode durability;
+    private final int writers;
+    private final int batchSize;
+    private final long maxLingerNanos;
+    private final long enqueueTimeoutNanos;
+    private final Duration commitTimeout;
+
+    private final DistributionSummary batchSizes;
+    private final Timer commitLatency;
+    private final Counter rejected;
+    private final Counter failed;
+
+    private final List<Thread> writerThreads = new ArrayList<>();
+    private volatile boolean running;
+
+    public IngestionPipeline(IngestionService ingestionService,
+                             MeterRegistry meterRegistry,
+                             @Value("${analytics.ingest.pipeline.enabled:true}") boolean enabled,
+                             @Value("${analytics.ingest.pipeline.durability:ENQUEUE}") DurabilityMode durability,
+                             @Value("${analytics.ingest.pipeline.capacity:65536}") int capacity,
+                             @Value("${analytics.ingest.pipeline.writers:2}") int writers,
+                             @Value("${analytics.ingest.batch-size:500}") int batchSize,
+                             @Value("${analytics.ingest.pipeline.max-linger:5ms}") Duration maxLinger,
+                             @Value("${analytics.ingest.pipeline.enqueue-timeout:50ms}") Duration enqueueTimeout,
+                             @Value("${analytics.ingest.pipeline.commit-timeout:30s}") Duration commitTimeout) {
+        this.ingestionService = ingestionService;
+        this.buffer = new RingBuffer<>(capacity);
+        this.enabled = enabled;
+        this.durability = durability;
+        this.writers = writers;
+        this.batchSize = batchSize;
+        this.maxLingerNanos = maxLinger.toNanos();
+        this.enqueueTimeoutNanos = enqueueTimeout.toNanos();
+        this.commitTimeout = commitTimeout;
+
+        Gauge.builder("analytics.ingest.pipeline.depth", buffer, RingBuffer::size)
+                .description("Events waiting to be written")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("analytics.ingest.pipeline.batch.size")
+                .description("Events per group commit")
+                .register(meterRegistry);
+        this.commitLatency = Timer.builder("analytics.ingest.pipeline.commit.latency")
+                .description("Time to write and commit one batch")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("analytics.ingest.pipeline.rejected")
+                .description("Events rejected because the buffer was full")
+                .register(meterRegistry);
+        this.failed = Counter.builder("analytics.ingest.pipeline.failed")
+                .description("Queued events that could not be written")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        running = true;
+        for (int i = 0; i < writers; i++) {
+            Thread thread = new Thread(this::runWriter, "ingest-writer-" + i);
+            thread.setDaemon(true); // stop() drains the buffer; nothing else should keep the JVM alive
+            thread.start();
+            writerThreads.add(thread);
+        }
+        log.info("Ingestion pipeline started: {} writers, capacity {}, durability {}", writers, buffer.capacity(), durability);
+    }
+
+    /**
+     * Stop accepting events and let the writers drain what is already queued.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        for (Thread thread : writerThreads) {
+            try {
+                thread.join(commitTimeout.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (!buffer.isEmpty()) {
+            log.warn("Ingestion pipeline stopped with {} events still queued", buffer.size());
+        }
+    }
+
+    /**
+     * True when a successful response only means the events were queued.
+     */
+    public boolean isAckOnEnqueue() {
+        return enabled && durability == DurabilityMode.ENQUEUE;
+    }
+
+    public long ingestSales(Iterator<SaleEventDto> events) {
+        return enabled ? submit(events) : ingestionService.ingestSales(events);
+    }
+
+    public long ingestActivities(Iterator<UserActivityEventDto> events) {
+        return enabled ? submit(events) : ingestionService.ingestActivities(events);
+    }
+
+    private long submit(Iterator<?> events) {
+        if (!running) {
+            throw new IngestionRejectedException("Ingestion is shutting down", 0);
+        }
+        Ack ack = durability == DurabilityMode.COMMIT ? new Ack() : null;
+        List<Object> slice = new ArrayList<>(batchSize);
+        long sliceStarted = 0;
+        long queued = 0;
+        try {
+            while (events.hasNext()) {
+                Object event = ingestionService.validate(events.next());
+                if (slice.isEmpty()) {
+                    sliceStarted = System.nanoTime();
+                }
+                slice.add(event);
+                if (slice.size() >= batchSize || System.nanoTime() - sliceStarted >= maxLingerNanos) {
+                    queued = enqueue(slice, ack, queued);
+                }
+            }
+            if (!slice.isEmpty()) {
+                queued = enqueue(slice, ack, queued);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(e.getMessage() + " (" + queued + " earlier events were queued)", e);
+        }
+        return ack != null ? ack.await(queued, commitTimeout) : queued;
+    }
+
+    /**
+     * Queue a slice of one request once its product references are known to exist: a queued event that
+     * fails later can only be logged and counted. Returns the new number of queued events.
+     */
+    private long enqueue(List<Object> slice, Ack ack, long queued) {
+        ingestionService.checkProducts(slice);
+        for (Object event : slice) {
+            if (ack != null) {
+                ack.add();
+            }
+            enqueue(new Pending(event, ack), queued);
+            queued++;
+        }
+        slice.clear();
+        return queued;
+    }
+
+    private void enqueue(Pending pending, long queued) {
+        long deadline = System.nanoTime() + enqueueTimeoutNanos;
+        while (!buffer.offer(pending)) {
+            if (!running) {
+                throw new IngestionRejectedException("Ingestion is shutting down", queued);
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                rejected.increment();
+                throw new IngestionRejectedException("Ingestion buffer is full", queued);
+            }
+            LockSupport.parkNanos(LINGER_PARK_NANOS);
+        }
+    }
+
+    private void runWriter() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            if (buffer.drainTo(batch, batchSize) == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            long lingerUntil = System.nanoTime() + maxLingerNanos;
+            while (batch.size() < batchSize && System.nanoTime() - lingerUntil < 0) {
+                if (buffer.drainTo(batch, batchSize - batch.size()) == 0) {
+                    LockSupport.parkNanos(LINGER_PARK_NANOS);
+                }
+            }
+            try {
+                commit(batch);
+            } catch (RuntimeException e) {
+                log.error("Ingestion writer failed to commit {} events", batch.size(), e);
+            }
+            batch.clear();
+        }
+    }
+
+    private void commit(List<Pending> batch) {
+        batchSizes.record(batch.size());
+        List<Pending> sales = new ArrayList<>();
+        List<Pending> activities = new ArrayList<>();
+        for (Pending pending : batch) {
+            (pending.event() instanceof SaleEventDto ? sales : activities).add(pending);
+        }
+        long start = System.nanoTime();
+        write(sales, group -> ingestionService.writeSales(
+                group.stream().map(p -> (SaleEventDto) p.event()).toList()));
+        write(activities, group -> ingestionService.writeActivities(
+                group.stream().map(p -> (UserActivityEventDto) p.event()).toList()));
+        commitLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    private void write(List<Pending> group, Consumer<List<Pending>> writer) {
+        if (group.isEmpty()) return;
+        try {
+            writer.accept(group);
+            group.forEach(Pending::committed);
+        } catch (IllegalArgumentException | DataIntegrityViolationException e) {
+            if (group.size() == 1) {
+                fail(group, e);
+                return;
+            }
+            // Bad data in one request must not fail the events of others sharing the commit
+            int middle = group.size() / 2;
+            write(group.subList(0, middle), writer);
+            write(group.subList(middle, group.size()), writer);
+        } catch (RuntimeException e) {
+            fail(group, e);
+        }
+    }
+
+    private void fail(List<Pending> group, RuntimeException e) {
+        log.warn("Dropping {} queued events: {}", group.size(), e.getMessage());
+        failed.increment(group.size());
+        group.forEach(pending -> pending.failed(e));
+    }
+
+    private record Pending(Object event, Ack ack) {
+
+        void committed() {
+            if (ack != null) ack.committed();
+        }
+
+        void failed(RuntimeException e) {
+            if (ack != null) ack.failed(e);
+        }
+    }
+
+    /**
+     * Completes once every event of one request is committed. Starts at one so it cannot complete
+     * while the request is still queueing.
+     */
+    private static final class Ack {
+
+        private final AtomicLong pending = new AtomicLong(1);
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        void add() {
+            pending.incrementAndGet();
+        }
+
+        void committed() {
+            if (pending.decrementAndGet() == 0) {
+                done.complete(null);
+            }
+        }
+
+        void failed(RuntimeException e) {
+            done.completeExceptionally(e);
+        }
+
+        long await(long queued, Duration timeout) {
+            committed();
+            try {
+                done.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+                return queued;
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : new IllegalStateException(e.getCause());
+            } catch (TimeoutException e) {
+                throw new IngestionTimeoutException("Timed out after " + timeout + " waiting for " + queued + " events to commit");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IngestionTimeoutException("Interrupted while waiting for events to commit");
+            }
+        }
+    }
+}
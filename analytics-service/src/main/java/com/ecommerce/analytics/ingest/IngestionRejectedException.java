@@ -0,0 +1,21 @@
+package com.ecommerce.analytics.ingest;
+
+/**
+ * The ingestion buffer stayed full for longer than the enqueue timeout; the client should retry later.
+ */
+public class IngestionRejectedException extends RuntimeException {
+
+    private final long accepted;
+
+    public IngestionRejectedException(String message, long accepted) {
+        super(message);
+        this.accepted = accepted;
+    }
+
+    /**
+     * Events of the request that were queued before the buffer filled up; they will still be written.
+     */
+    public long getAccepted() {
+        return accepted;
+    }
+}
@@ -0,0 +1,12 @@
+package com.ecommerce.analytics.ingest;
+
+/**
+ * The events of a request were queued but not confirmed as committed within the commit timeout; they may
+ * still be written.
+ */
+public class IngestionTimeoutException extends RuntimeException {
+
+    public IngestionTimeoutException(String message) {
+        super(message);
+    }
+}
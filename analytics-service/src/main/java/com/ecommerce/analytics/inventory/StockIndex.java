@@ -0,0 +1,500 @@
+package com.ecommerce.analytics.inventory;
+
+import com.ecommerce.analytics.config.ReplicaRouter;
+import com.ecommerce.analytics.dto.InventoryDto;
+import com.ecommerce.analytics.dto.StockStatus;
+import com.ecommerce.analytics.model.Product;
+import com.ecommerce.analytics.repository.ProductRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * In-memory index of every product's stock level, answering low-stock lists for any threshold and
+ * category, and counts per {@link StockStatus}, with binary searches instead of queries.
+ * <p>
+ * Products are held in primitive columns, in id order, and referenced from arrays of {@code long} keys
+ * ({@code stock << 32 | slot}) sorted by stock then id: one array for the whole catalog and one per
+ * category. The arrays form an immutable snapshot that readers use without locking; changes replace it.
+ * <p>
+ * The index is built from the products table when the application starts. Stock changes come from other
+ * services, so every {@code analytics.inventory.index.refresh-interval-ms} the index reads the products
+ * updated since its last read (the {@code updated_at} feed behind {@code /inventory/changes}) and every
+ * {@code full-rebuild-interval} it is rebuilt, which also drops deleted products. Like that feed, each read
+ * starts at most {@code analytics.inventory.changes-overlap} before now, so updates committed behind the
+ * last one read are still seen; products read again unchanged are skipped. Changes are patched into a copy
+ * of the snapshot, merging the keys that moved into the sorted arrays rather than sorting them again.
+ * Products whose stock changed in a refresh are passed to the {@link #onStockChange} listeners.
+ */
+@Service
+@Slf4j
+public class StockIndex {
+
+    private static final int PAGE_SIZE = 5000;
+
+    private record Row(long id, String name, String category, int stock) {
+    }
+
+    private final ProductRepository productRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final Duration fullRebuildInterval;
+    private final Duration changeOverlap;
+
+    private final List<Consumer<List<InventoryDto>>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile Snapshot snapshot = Snapshot.of(List.of());
+    private volatile boolean ready;
+    // Only touched by the scheduler thread
+    private LocalDateTime changedAt;
+    private long changedId;
+    private long rebuiltAt;
+
+    public StockIndex(ProductRepository productRepository,
+                      PlatformTransactionManager transactionManager,
+                      MeterRegistry meterRegistry,
+                      @Value("${analytics.inventory.index.enabled:true}") boolean enabled,
+                      @Value("${analytics.inventory.index.full-rebuild-interval:1h}") Duration fullRebuildInterval,
+                      @Value("${analytics.inventory.changes-overlap:30s}") Duration changeOverlap) {
+        this.productRepository = productRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.fullRebuildInterval = fullRebuildInterval;
+        this.changeOverlap = changeOverlap;
+
+        Gauge.builder("analytics.inventory.index.products", this, index -> index.snapshot.size())
+                .description("Products held by the in-memory stock index")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Whether the index has been built and answers queries.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Registers a listener for products that are new or whose stock changed; it is called on the refresh
+     * thread after each refresh that found any, and should return quickly.
+     */
+    public void onStockChange(Consumer<List<InventoryDto>> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Category of a product, or null when it is not in the index.
+     */
+    public String category(long productId) {
+        Snapshot current = snapshot;
+        int slot = Arrays.binarySearch(current.ids, productId);
+        return slot >= 0 ? current.categoryNames[current.categories[slot]] : null;
+    }
+
+    /**
+     * Categories of the given products: from the index where it knows them, from the database otherwise.
+     */
+    public Map<Long, String> categories(Collection<Long> productIds) {
+        Map<Long, String> categories = new HashMap<>();
+        Set<Long> unknown = new HashSet<>();
+        for (Long id : productIds) {
+            String category = category(id);
+            if (category != null) {
+                categories.put(id, category);
+            } else {
+                unknown.add(id);
+            }
+        }
+        if (!unknown.isEmpty()) {
+            for (Product product : productRepository.findAllById(unknown)) {
+                categories.put(product.getId(), product.getCategory());
+            }
+        }
+        return categories;
+    }
+
+    /**
+     * Products with less than {@code threshold} in stock, lowest stock first, optionally of one category.
+     * They are reported with status LOW, like {@code AnalyticsService#getLowStockProducts}.
+     */
+    public List<InventoryDto> lowStock(int threshold, String category) {
+        Snapshot current = snapshot;
+        long[] keys = current.keys(category);
+        int end = lowerBound(keys, threshold);
+        List<InventoryDto> result = new ArrayList<>(end);
+        for (int i = 0; i < end; i++) {
+            int slot = (int) keys[i];
+            result.add(new InventoryDto(current.ids[slot], current.names[slot],
+                    current.categoryNames[current.categories[slot]], current.stock[slot], StockStatus.LOW.name()));
+        }
+        return result;
+    }
+
+    /**
+     * Number of products with less than {@code threshold} in stock, optionally of one category.
+     */
+    public int countBelow(int threshold, String category) {
+        return lowerBound(snapshot.keys(category), threshold);
+    }
+
+    /**
+     * Number of products per stock status, optionally of one category.
+     */
+    public Map<StockStatus, Integer> countByStatus(String category) {
+        long[] keys = snapshot.keys(category);
+        Map<StockStatus, Integer> counts = new EnumMap<>(StockStatus.class);
+        int below = 0;
+        for (StockStatus status : StockStatus.values()) {
+            int upTo = status.getMaxQuantity() == Integer.MAX_VALUE ? keys.length : lowerBound(keys, status.getMaxQuantity());
+            counts.put(status, upTo - below);
+            below = upTo;
+        }
+        return counts;
+    }
+
+    /**
+     * Index of the first key whose stock is at least {@code stock}.
+     */
+    private static int lowerBound(long[] keys, int stock) {
+        int index = Arrays.binarySearch(keys, (long) stock << 32);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    /**
+     * Builds the index if it is not built yet or is due for a rebuild, otherwise applies changed products.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${analytics.inventory.index.refresh-interval-ms:5000}")
+    public void refresh() {
+        if (!enabled) return;
+        try {
+            if (!ready || System.currentTimeMillis() - rebuiltAt >= fullRebuildInterval.toMillis()) {
+                rebuild();
+            } else {
+                applyChanges();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not refresh the stock index{}: {}", ready ? "" : ", low-stock queries stay on the database",
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces the index with every product read from the database.
+     */
+    public void rebuild() {
+        long started = System.currentTimeMillis();
+        LocalDateTime since = LocalDateTime.now().minus(changeOverlap);
+        List<Row> rows = new ArrayList<>();
+        readOnlyTransaction.executeWithoutResult(status -> {
+            ReplicaRouter.requirePrimary();
+            long afterId = 0;
+            List<Object[]> page;
+            do {
+                page = productRepository.findInventoryPage(afterId, Integer.MIN_VALUE, Integer.MAX_VALUE,
+                        PageRequest.of(0, PAGE_SIZE));
+                for (Object[] r : page) {
+                    rows.add(row(r));
+                }
+                if (!page.isEmpty()) {
+                    afterId = rows.get(rows.size() - 1).id();
+                }
+            } while (page.size() == PAGE_SIZE);
+        });
+        snapshot = Snapshot.of(rows);
+        changedAt = since;
+        changedId = 0;
+        rebuiltAt = started;
+        ready = true;
+        log.info("Stock index built with {} products in {} ms", rows.size(), System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Reads the products updated since the last read and swaps in a snapshot that includes them.
+     */
+    void applyChanges() {
+        Snapshot current = snapshot;
+        Map<Long, Row> changed = new LinkedHashMap<>();
+        List<InventoryDto> stockChanges = new ArrayList<>();
+        readOnlyTransaction.executeWithoutResult(status -> {
+            ReplicaRouter.requirePrimary();
+            List<Object[]> page;
+            do {
+                page = productRepository.findInventoryChanges(changedAt, changedId, PageRequest.of(0, PAGE_SIZE));
+                for (Object[] r : page) {
+                    Row row = row(r);
+                    changedAt = (LocalDateTime) r[4];
+                    changedId = row.id();
+                    int slot = Arrays.binarySearch(current.ids, row.id());
+                    if (slot >= 0 && row.equals(current.row(slot))) {
+                        continue; // read again from the overlap window
+                    }
+                    if (slot < 0 || row.stock() != current.stock[slot]) {
+                        stockChanges.add(dto(row));
+                    }
+                    changed.put(row.id(), row);
+                }
+            } while (page.size() == PAGE_SIZE);
+        });
+        // Updates stamped after `settled` may still commit; read them again next time
+        LocalDateTime settled = LocalDateTime.now().minus(changeOverlap);
+        if (changedAt.isAfter(settled)) {
+            changedAt = settled;
+            changedId = 0;
+        }
+        if (changed.isEmpty()) return;
+
+        int changes = changed.size();
+        Snapshot patched = current.patch(changed.values());
+        if (patched == null) { // a new product took an id below existing ones, so slots move
+            List<Row> rows = new ArrayList<>(current.size() + changed.size());
+            for (int slot = 0; slot < current.size(); slot++) {
+                Row row = changed.remove(current.ids[slot]);
+                rows.add(row != null ? row : current.row(slot));
+            }
+            rows.addAll(changed.values());
+            patched = Snapshot.of(rows);
+        }
+        snapshot = patched;
+        log.debug("Stock index updated with {} changed products", changes);
+
+        if (stockChanges.isEmpty()) return;
+        for (Consumer<List<InventoryDto>> listener : listeners) {
+            try {
+                listener.accept(stockChanges);
+            } catch (RuntimeException e) {
+                log.warn("Stock change listener failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static InventoryDto dto(Row row) {
+        return new InventoryDto(row.id(), row.name(), row.category(), row.stock(), StockStatus.of(row.stock()).name());
+    }
+
+    private static Row row(Object[] r) {
+        return new Row(((Number) r[0]).longValue(), (String) r[1], (String) r[2], ((Number) r[3]).intValue());
+    }
+
+    /**
+     * Keys to take out of and put into one sorted key array.
+     */
+    private static final class KeyChanges {
+
+        final List<Long> removed = new ArrayList<>();
+        final List<Long> added = new ArrayList<>();
+
+        void move(long oldKey, long newKey) {
+            removed.add(oldKey);
+            added.add(newKey);
+        }
+
+        /**
+         * A sorted copy of {@code keys} without the removed keys and with the added ones, in one merge pass.
+         */
+        long[] applyTo(long[] keys) {
+            long[] out = removed.stream().mapToLong(Long::longValue).sorted().toArray();
+            long[] in = added.stream().mapToLong(Long::longValue).sorted().toArray();
+            long[] result = new long[keys.length - out.length + in.length];
+            int r = 0;
+            int o = 0;
+            int a = 0;
+            for (long key : keys) {
+                while (o < out.length && out[o] < key) o++;
+                if (o < out.length && out[o] == key) {
+                    o++;
+                    continue;
+                }
+                while (a < in.length && in[a] < key) result[r++] = in[a++];
+                result[r++] = key;
+            }
+            while (a < in.length) result[r++] = in[a++];
+            return result;
+        }
+    }
+
+    private static final class Snapshot {
+
+        final long[] ids;
+        final String[] names;
+        final int[] categories;
+        final int[] stock;
+        final String[] categoryNames;
+        final Map<String, Integer> categoryCodes;
+        final long[] byStock;
+        final long[][] byCategoryStock;
+
+        private Snapshot(Collection<Row> rows) {
+            int n = rows.size();
+            ids = new long[n];
+            names = new String[n];
+            categories = new int[n];
+            stock = new int[n];
+            categoryCodes = new HashMap<>();
+            List<String> categoryList = new ArrayList<>();
+            int[] categorySizes = new int[n];
+            int slot = 0;
+            for (Row row : rows) {
+                ids[slot] = row.id();
+                names[slot] = row.name();
+                stock[slot] = row.stock();
+                int code = categoryCodes.computeIfAbsent(row.category(), c -> {
+                    categoryList.add(c);
+                    return categoryList.size() - 1;
+                });
+                categories[slot] = code;
+                categorySizes[code]++;
+                slot++;
+            }
+            categoryNames = categoryList.toArray(String[]::new);
+
+            // Slots are in id order, so equal stock levels stay ordered by id
+            byStock = new long[n];
+            byCategoryStock = new long[categoryNames.length][];
+            int[] filled = new int[categoryNames.length];
+            for (int code = 0; code < categoryNames.length; code++) {
+                byCategoryStock[code] = new long[categorySizes[code]];
+            }
+            for (slot = 0; slot < n; slot++) {
+                long key = (long) stock[slot] << 32 | slot;
+                byStock[slot] = key;
+                int code = categories[slot];
+                byCategoryStock[code][filled[code]++] = key;
+            }
+            Arrays.sort(byStock);
+            for (long[] keys : byCategoryStock) {
+                Arrays.sort(keys);
+            }
+        }
+
+        private Snapshot(long[] ids, String[] names, int[] categories, int[] stock, String[] categoryNames,
+                         Map<String, Integer> categoryCodes, long[] byStock, long[][] byCategoryStock) {
+            this.ids = ids;
+            this.names = names;
+            this.categories = categories;
+            this.stock = stock;
+            this.categoryNames = categoryNames;
+            this.categoryCodes = categoryCodes;
+            this.byStock = byStock;
+            this.byCategoryStock = byCategoryStock;
+        }
+
+        /**
+         * This snapshot with {@code changes} applied: columns are copied, and the keys that moved are removed
+         * from and merged into the sorted arrays they belong to; arrays of untouched categories are shared.
+         * Null when a new product's id is below an indexed one, as every later slot would move.
+         */
+        Snapshot patch(Collection<Row> changes) {
+            int n = size();
+            List<Row> added = new ArrayList<>();
+            Map<Integer, Row> updated = new HashMap<>();
+            for (Row row : changes) {
+                int slot = Arrays.binarySearch(ids, row.id());
+                if (slot >= 0) {
+                    updated.put(slot, row);
+                } else {
+                    added.add(row);
+                }
+            }
+            added.sort(Comparator.comparingLong(Row::id));
+            if (!added.isEmpty() && n > 0 && added.get(0).id() < ids[n - 1]) {
+                return null;
+            }
+
+            int total = n + added.size();
+            long[] newIds = Arrays.copyOf(ids, total);
+            String[] newNames = Arrays.copyOf(names, total);
+            int[] newCategories = Arrays.copyOf(categories, total);
+            int[] newStock = Arrays.copyOf(stock, total);
+            Map<String, Integer> newCodes = new HashMap<>(categoryCodes);
+            List<String> newCategoryNames = new ArrayList<>(Arrays.asList(categoryNames));
+            KeyChanges all = new KeyChanges();
+            Map<Integer, KeyChanges> byCategory = new HashMap<>();
+
+            for (Map.Entry<Integer, Row> entry : updated.entrySet()) {
+                int slot = entry.getKey();
+                Row row = entry.getValue();
+                int code = code(row.category(), newCodes, newCategoryNames);
+                long oldKey = (long) stock[slot] << 32 | slot;
+                long newKey = (long) row.stock() << 32 | slot;
+                if (oldKey != newKey || code != categories[slot]) {
+                    all.move(oldKey, newKey);
+                    byCategory.computeIfAbsent(categories[slot], c -> new KeyChanges()).removed.add(oldKey);
+                    byCategory.computeIfAbsent(code, c -> new KeyChanges()).added.add(newKey);
+                }
+                newNames[slot] = row.name();
+                newCategories[slot] = code;
+                newStock[slot] = row.stock();
+            }
+            for (int i = 0; i < added.size(); i++) {
+                int slot = n + i;
+                Row row = added.get(i);
+                int code = code(row.category(), newCodes, newCategoryNames);
+                long key = (long) row.stock() << 32 | slot;
+                all.added.add(key);
+                byCategory.computeIfAbsent(code, c -> new KeyChanges()).added.add(key);
+                newIds[slot] = row.id();
+                newNames[slot] = row.name();
+                newCategories[slot] = code;
+                newStock[slot] = row.stock();
+            }
+
+            long[][] newByCategoryStock = Arrays.copyOf(byCategoryStock, newCategoryNames.size());
+            for (int code = byCategoryStock.length; code < newByCategoryStock.length; code++) {
+                newByCategoryStock[code] = new long[0];
+            }
+            byCategory.forEach((code, keyChanges) -> newByCategoryStock[code] = keyChanges.applyTo(newByCategoryStock[code]));
+            return new Snapshot(newIds, newNames, newCategories, newStock, newCategoryNames.toArray(String[]::new),
+                    newCodes, all.applyTo(byStock), newByCategoryStock);
+        }
+
+        private static int code(String category, Map<String, Integer> codes, List<String> names) {
+            return codes.computeIfAbsent(category, c -> {
+                names.add(c);
+                return names.size() - 1;
+            });
+        }
+
+        static Snapshot of(List<Row> rows) {
+            List<Row> sorted = new ArrayList<>(rows);
+            sorted.sort(Comparator.comparingLong(Row::id));
+            return new Snapshot(sorted);
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        Row row(int slot) {
+            return new Row(ids[slot], names[slot], categoryNames[categories[slot]], stock[slot]);
+        }
+
+        long[] keys(String category) {
+            if (category == null) return byStock;
+            Integer code = categoryCodes.get(category);
+            return code != null ? byCategoryStock[code] : new long[0];
+        }
+    }
+}
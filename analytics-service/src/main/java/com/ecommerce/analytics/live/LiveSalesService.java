@@ -0,0 +1,356 @@
+package com.ecommerce.analytics.live;
+
+import com.ecommerce.analytics.aggregate.TimeWheel;
+import com.ecommerce.analytics.aggregate.TopK;
+import com.ecommerce.analytics.config.ReplicaRouter;
+import com.ecommerce.analytics.dto.LiveSalesWindowDto;
+import com.ecommerce.analytics.inventory.StockIndex;
+import com.ecommerce.analytics.model.Sale;
+import com.ecommerce.analytics.repository.SaleRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Revenue, order count and top categories of the last few minutes or hours ({@code analytics.sales-live.windows}),
+ * answered from a {@link TimeWheel} of per-second buckets instead of the database.
+ * <p>
+ * The wheel is filled from the database by {@link #load} at startup, and reloaded if that fails. After that,
+ * sales committed by this instance's ingestion service are added as they are written; writes made while the
+ * load runs are held back and applied when it finishes, skipping the ones it already read. Every
+ * {@code tail-interval-ms}, {@link #tail} reads the sales with ids above the highest it has read, so sales
+ * written by other instances or by other means are counted within seconds. Each tail reads the last
+ * {@code tail-overlap} ids again, for transactions that commit out of id order, and skips sales already
+ * counted. Updates and deletes are not seen.
+ * <p>
+ * Categories get a code each, up to {@code max-categories}; sales of categories beyond that are summed
+ * under {@value #OTHER}.
+ */
+@Service
+@Slf4j
+public class LiveSalesService {
+
+    static final String OTHER = "Other";
+
+    private static final int TAIL_PAGE_SIZE = 5000;
+
+    private record SaleRow(long id, long second, long productId, long cents) {
+    }
+
+    private final SaleRepository saleRepository;
+    private final StockIndex stockIndex;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final List<Duration> windows;
+    private final int maxCategories;
+    private final int tailOverlap;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Guarded by lock
+    private final TimeWheel wheel;
+    private final Map<String, Integer> categoryCodes = new HashMap<>();
+    private final List<String> categoryNames = new ArrayList<>();
+    private boolean ready;
+    // Non-null while a load runs
+    private List<SaleRow> pendingSales;
+    private Map<Long, String> pendingCategories;
+    // Highest id read from the database, and the counted ids a tail may read again
+    private long tailedId;
+    private final TreeSet<Long> recentSales = new TreeSet<>();
+
+    public LiveSalesService(SaleRepository saleRepository,
+                            StockIndex stockIndex,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${analytics.sales-live.enabled:true}") boolean enabled,
+                            @Value("${analytics.sales-live.windows:5m,1h}") List<Duration> windows,
+                            @Value("${analytics.sales-live.max-categories:64}") int maxCategories,
+                            @Value("${analytics.sales-live.tail-overlap:1000}") int tailOverlap) {
+        this.saleRepository = saleRepository;
+        this.stockIndex = stockIndex;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.windows = windows.stream().sorted().distinct().toList();
+        this.maxCategories = maxCategories;
+        this.tailOverlap = tailOverlap;
+        this.wheel = new TimeWheel(this.windows.stream().mapToInt(w -> Math.toIntExact(w.toSeconds())).toArray(),
+                maxCategories);
+    }
+
+    public List<Duration> getWindows() {
+        return windows;
+    }
+
+    /**
+     * Fill the wheel with the sales of the longest window, unless it is filled already.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${analytics.sales-live.load-retry-interval-ms:60000}")
+    public void load() {
+        if (!enabled) return;
+        lock.lock();
+        try {
+            if (ready) return;
+            pendingSales = new ArrayList<>();
+            pendingCategories = new HashMap<>();
+        } finally {
+            lock.unlock();
+        }
+
+        long started = System.nanoTime();
+        LocalDateTime since = LocalDateTime.now().minus(windows.get(windows.size() - 1));
+        try {
+            List<SaleRow> loaded = readOnlyTransaction.execute(status -> {
+                // Only writes from this instance after the load started are replayed, so read the latest rows
+                ReplicaRouter.requirePrimary();
+                try (Stream<Object[]> rows = saleRepository.streamColumnsSince(since)) {
+                    return rows.map(LiveSalesService::saleRow).toList();
+                }
+            });
+            Map<Long, String> categories = stockIndex.categories(
+                    loaded.stream().map(SaleRow::productId).collect(Collectors.toSet()));
+
+            lock.lock();
+            try {
+                Set<Long> seen = loaded.stream().map(SaleRow::id).collect(Collectors.toCollection(HashSet::new));
+                add(loaded, categories);
+                add(pendingSales.stream().filter(r -> !seen.contains(r.id())).toList(), pendingCategories);
+                tailedId = loaded.stream().mapToLong(SaleRow::id).max().orElse(0);
+                recentSales.clear();
+                seen.stream().filter(id -> id >= tailedId - tailOverlap).forEach(recentSales::add);
+                pendingSales.forEach(r -> recentSales.add(r.id()));
+                ready = true;
+            } finally {
+                pendingSales = null;
+                pendingCategories = null;
+                lock.unlock();
+            }
+            log.info("Live sales loaded {} sales since {} in {} ms", loaded.size(), since,
+                    (System.nanoTime() - started) / 1_000_000);
+        } catch (RuntimeException e) {
+            lock.lock();
+            try {
+                pendingSales = null;
+                pendingCategories = null;
+            } finally {
+                lock.unlock();
+            }
+            log.warn("Could not load live sales, retrying later: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Add the sales committed since the last tail that are not counted yet.
+     */
+    @Scheduled(initialDelayString = "${analytics.sales-live.tail-interval-ms:2000}",
+            fixedDelayString = "${analytics.sales-live.tail-interval-ms:2000}")
+    public void tail() {
+        if (!enabled) return;
+        long tailAfter;
+        lock.lock();
+        try {
+            if (!ready || pendingSales != null) return; // the load reads these sales
+            tailAfter = Math.max(tailedId - tailOverlap, 0);
+        } finally {
+            lock.unlock();
+        }
+
+        LocalDateTime since = LocalDateTime.now().minus(windows.get(windows.size() - 1));
+        List<SaleRow> read = new ArrayList<>();
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                ReplicaRouter.requirePrimary();
+                List<Object[]> page;
+                long after = tailAfter;
+                do {
+                    page = saleRepository.findColumnsAfter(after, since, PageRequest.of(0, TAIL_PAGE_SIZE));
+                    page.forEach(r -> read.add(saleRow(r)));
+                    after = read.isEmpty() ? after : read.get(read.size() - 1).id();
+                } while (page.size() == TAIL_PAGE_SIZE);
+            });
+        } catch (RuntimeException e) {
+            log.warn("Could not tail live sales: {}", e.getMessage());
+            return;
+        }
+        if (read.isEmpty()) return;
+        Map<Long, String> categories = stockIndex.categories(
+                read.stream().map(SaleRow::productId).collect(Collectors.toSet()));
+
+        int added;
+        lock.lock();
+        try {
+            if (!ready || pendingSales != null) return;
+            List<SaleRow> unseen = read.stream().filter(r -> recentSales.add(r.id())).toList();
+            add(unseen, categories);
+            added = unseen.size();
+            tailedId = Math.max(tailedId, read.get(read.size() - 1).id());
+            recentSales.headSet(tailedId - tailOverlap).clear();
+        } finally {
+            lock.unlock();
+        }
+        if (added > 0) {
+            log.debug("Live sales tailed {} sales written elsewhere", added);
+        }
+    }
+
+    /**
+     * Add committed sales; called by ingestion after each commit. Sales older than the longest window are
+     * ignored, sales dated in the future are counted at the current second.
+     */
+    public void record(Collection<Sale> written) {
+        if (!enabled || written.isEmpty()) return;
+        List<SaleRow> rows = written.stream()
+                .map(s -> new SaleRow(s.getId(), second(s.getSaleDate()), s.getProduct().getId(),
+                        cents(s.getTotalAmount())))
+                .toList();
+        Map<Long, String> categories = stockIndex.categories(
+                rows.stream().map(SaleRow::productId).collect(Collectors.toSet()));
+        lock.lock();
+        try {
+            if (pendingSales != null) {
+                pendingSales.addAll(rows);
+                pendingCategories.putAll(categories);
+            } else if (ready) {
+                add(rows.stream().filter(r -> recentSales.add(r.id())).toList(), categories);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sales of every window, shortest first, with up to {@code top} categories each.
+     *
+     * @throws IllegalStateException when live sales are disabled or not loaded yet
+     */
+    public List<LiveSalesWindowDto> getSales(int top) {
+        List<LiveSalesWindowDto> result = new ArrayList<>(windows.size());
+        lock.lock();
+        try {
+            long now = advance();
+            for (int w = 0; w < windows.size(); w++) {
+                result.add(window(w, now, top));
+            }
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Sales of one window, with up to {@code top} categories.
+     *
+     * @throws IllegalArgumentException when {@code window} is not one of {@link #getWindows()}
+     * @throws IllegalStateException    when live sales are disabled or not loaded yet
+     */
+    public LiveSalesWindowDto getSales(Duration window, int top) {
+        int w = windows.indexOf(window);
+        if (w < 0) {
+            throw new IllegalArgumentException("Unknown window " + window + ", expected one of " + windows);
+        }
+        lock.lock();
+        try {
+            return window(w, advance(), top);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Callers hold the lock
+    private long advance() {
+        if (!enabled) {
+            throw new IllegalStateException("Live sales are disabled");
+        }
+        if (!ready) {
+            throw new IllegalStateException("Live sales are still loading");
+        }
+        long now = System.currentTimeMillis() / 1000;
+        wheel.advance(now);
+        return now;
+    }
+
+    // Callers hold the lock
+    private void add(List<SaleRow> rows, Map<Long, String> categories) {
+        wheel.advance(System.currentTimeMillis() / 1000);
+        for (SaleRow row : rows) {
+            wheel.add(row.second(), code(categories.get(row.productId())), row.cents());
+        }
+    }
+
+    // Callers hold the lock
+    private LiveSalesWindowDto window(int w, long now, int top) {
+        if (top < 0) {
+            throw new IllegalArgumentException("top must not be negative: " + top);
+        }
+        Map<String, BigDecimal> topCategories = new LinkedHashMap<>();
+        if (top > 0) {
+            TopK<Integer> best = new TopK<>(top, Comparator.comparingLong((Integer c) -> wheel.categoryAmount(w, c))
+                    .thenComparing(c -> categoryNames.get(c), Comparator.reverseOrder()));
+            for (int c = 0; c < categoryNames.size(); c++) {
+                if (wheel.categoryAmount(w, c) > 0) {
+                    best.offer(c);
+                }
+            }
+            for (int c : best.toSortedList()) {
+                topCategories.put(categoryNames.get(c), amount(wheel.categoryAmount(w, c)));
+            }
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        long seconds = windows.get(w).toSeconds();
+        return new LiveSalesWindowDto(seconds,
+                LocalDateTime.ofInstant(Instant.ofEpochSecond(now - seconds + 1), zone),
+                LocalDateTime.ofInstant(Instant.ofEpochSecond(now), zone),
+                amount(wheel.amount(w)), wheel.count(w), topCategories);
+    }
+
+    // Callers hold the lock
+    private int code(String category) {
+        if (category == null) return -1;
+        Integer code = categoryCodes.get(category);
+        if (code != null) return code;
+        return categoryCodes.computeIfAbsent(categoryNames.size() < maxCategories - 1 ? category : OTHER, name -> {
+            categoryNames.add(name);
+            return categoryNames.size() - 1;
+        });
+    }
+
+    private static SaleRow saleRow(Object[] r) {
+        return new SaleRow(((Number) r[0]).longValue(), second((LocalDateTime) r[1]),
+                ((Number) r[2]).longValue(), cents((BigDecimal) r[4]));
+    }
+
+    private static long second(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+
+    private static long cents(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static BigDecimal amount(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
@@ -0,0 +1,560 @@
+package com.ecommerce.analytics.live;
+
+import com.ecommerce.analytics.config.ReplicaRouter;
+import com.ecommerce.analytics.dto.InventoryDto;
+import com.ecommerce.analytics.dto.LiveEventDto;
+import com.ecommerce.analytics.dto.SalesUpdateDto;
+import com.ecommerce.analytics.inventory.StockIndex;
+import com.ecommerce.analytics.model.Sale;
+import com.ecommerce.analytics.repository.SaleRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pushes changes to dashboards over server-sent events, so that they do not have to poll: the stock
+ * levels of products that changed (reported by the {@link StockIndex} refreshes) and the current day's
+ * sales totals and category sums with newly ingested sales folded in.
+ * <p>
+ * Changes are collected as they happen and sent every {@code analytics.live.flush-interval-ms} as at most
+ * one "stock" and one "sales" event, so a burst of ingestion costs a subscriber one message. Each event
+ * has a version, one higher than the previous event's; its SSE id is {@code <stream>-<version>}, where the
+ * stream identifies this run of this instance. A client that reconnects with {@code Last-Event-ID} is sent
+ * the events it missed out of the last {@code replay-size}, or a "reset" event when they are gone or were
+ * sent by another instance. A new client first receives the current day's totals.
+ * <p>
+ * The day's totals are read from the database at startup, when the day changes and every
+ * {@code resync-interval}. Sales folded in while they are read are applied on top of what was read,
+ * unless the read already saw them. Sales dated on other days are not pushed.
+ * <p>
+ * Changes are collected on a thread of its own, which also queues a comment every {@code heartbeat-interval}
+ * while nothing changes: that keeps idle connections open through proxies and detects clients that went
+ * away. Each subscriber has a queue of at most {@code subscriber-queue-size} messages, sent by a thread of
+ * its own while the queue is not empty. A subscriber whose queue is full, or whose send has not returned
+ * within {@code send-timeout}, is dropped, so a slow client does not hold up the others; EventSource then
+ * reconnects and resumes from its last event. Connections are closed after {@code timeout}.
+ */
+@Service
+@Slf4j
+public class LiveUpdateService {
+
+    static final String STOCK = "stock";
+    static final String SALES = "sales";
+    static final String RESET = "reset";
+
+    private record DayTotals(BigDecimal sales, long transactions, Map<String, BigDecimal> categories,
+                             Set<Long> seen) {
+    }
+
+    private record SaleDelta(Long id, BigDecimal amount, String category) {
+    }
+
+    private final SaleRepository saleRepository;
+    private final StockIndex stockIndex;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final int maxSubscribers;
+    private final int replaySize;
+    private final long flushIntervalMillis;
+    private final long timeoutMillis;
+    private final long resyncIntervalMillis;
+    private final long heartbeatIntervalMillis;
+    private final int subscriberQueueSize;
+    private final long sendTimeoutMillis;
+    private final String stream = Long.toString(System.currentTimeMillis(), 36);
+    private final ScheduledExecutorService executor;
+    private final ExecutorService sendExecutor;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Counter> sent = new ConcurrentHashMap<>();
+    private final Counter dropped;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Guarded by lock
+    private long version;
+    private final Deque<LiveEventDto> replay = new ArrayDeque<>();
+    private LocalDate day;
+    private BigDecimal daySales = BigDecimal.ZERO;
+    private long dayTransactions;
+    private final Map<String, BigDecimal> categorySales = new HashMap<>();
+    private final Set<String> changedCategories = new HashSet<>();
+    private boolean salesChanged;
+    private final Map<Long, InventoryDto> changedStock = new LinkedHashMap<>();
+    // Sales folded in since the running resync started reading, or null
+    private List<SaleDelta> foldedDuringResync;
+    private LocalDate resyncingDay;
+
+    // Only touched by the live-updates thread
+    private LocalDate resyncedDay;
+    private long resyncedAt;
+    private long lastSentAt;
+
+    public LiveUpdateService(SaleRepository saleRepository,
+                             StockIndex stockIndex,
+                             ObjectMapper objectMapper,
+                             PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${analytics.live.enabled:true}") boolean enabled,
+                             @Value("${analytics.live.max-subscribers:1000}") int maxSubscribers,
+                             @Value("${analytics.live.replay-size:256}") int replaySize,
+                             @Value("${analytics.live.flush-interval-ms:500}") long flushIntervalMillis,
+                             @Value("${analytics.live.heartbeat-interval:15s}") Duration heartbeatInterval,
+                             @Value("${analytics.live.resync-interval:5m}") Duration resyncInterval,
+                             @Value("${analytics.live.timeout:30m}") Duration timeout,
+                             @Value("${analytics.live.subscriber-queue-size:64}") int subscriberQueueSize,
+                             @Value("${analytics.live.send-timeout:10s}") Duration sendTimeout) {
+        this.saleRepository = saleRepository;
+        this.stockIndex = stockIndex;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // The check for sales folded in during the resync must see what the sums saw
+        this.readOnlyTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.maxSubscribers = maxSubscribers;
+        this.replaySize = replaySize;
+        this.timeoutMillis = timeout.toMillis();
+        this.resyncIntervalMillis = resyncInterval.toMillis();
+        this.heartbeatIntervalMillis = heartbeatInterval.toMillis();
+        this.subscriberQueueSize = subscriberQueueSize;
+        this.sendTimeoutMillis = sendTimeout.toMillis();
+
+        Gauge.builder("analytics.live.subscribers", subscribers, List::size)
+                .description("Open live update streams")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("analytics.live.dropped")
+                .description("Subscribers dropped for not keeping up")
+                .register(meterRegistry);
+        this.flushIntervalMillis = flushIntervalMillis;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("live-updates-");
+        threadFactory.setDaemon(true);
+        this.executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        // At most one thread per subscriber: each drains its own queue
+        CustomizableThreadFactory sendThreadFactory = new CustomizableThreadFactory("live-send-");
+        sendThreadFactory.setDaemon(true);
+        this.sendExecutor = Executors.newCachedThreadPool(sendThreadFactory);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        stockIndex.onStockChange(this::stockChanged);
+        executor.scheduleWithFixedDelay(this::flush, 0, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        sendExecutor.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    /**
+     * Opens a stream for one client. {@code lastEventId} is the id of the last event it received before
+     * reconnecting, or null for a new client.
+     *
+     * @throws IllegalStateException when live updates are disabled or {@code max-subscribers} are connected
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        return subscribe(lastEventId, new SseEmitter(timeoutMillis));
+    }
+
+    SseEmitter subscribe(String lastEventId, SseEmitter emitter) {
+        if (!enabled) {
+            throw new IllegalStateException("Live updates are disabled");
+        }
+        if (subscribers.size() >= maxSubscribers) {
+            throw new IllegalStateException("Too many live update subscribers");
+        }
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> subscribers.remove(subscriber));
+        // On the flushing thread, so that no event is queued between the backlog and the first flush
+        executor.execute(() -> {
+            for (LiveEventDto event : backlog(lastEventId)) {
+                subscriber.enqueue(message(event));
+            }
+            subscribers.add(subscriber);
+        });
+        return emitter;
+    }
+
+    /**
+     * Folds committed sales into the current day's totals; called by ingestion after each commit.
+     */
+    public void salesCommitted(Collection<Sale> written) {
+        if (!enabled) return;
+        LocalDate today = LocalDate.now();
+        List<Sale> sales = written.stream().filter(s -> s.getSaleDate().toLocalDate().equals(today)).toList();
+        if (sales.isEmpty()) return;
+        Map<Long, String> categories = stockIndex.categories(sales.stream().map(s -> s.getProduct().getId()).toList());
+
+        lock.lock();
+        try {
+            if (foldedDuringResync != null && today.equals(resyncingDay)) {
+                for (Sale sale : sales) {
+                    foldedDuringResync.add(new SaleDelta(sale.getId(), sale.getTotalAmount(),
+                            categories.get(sale.getProduct().getId())));
+                }
+            }
+            if (!today.equals(day)) return; // the resync for the new day reads them
+            for (Sale sale : sales) {
+                daySales = daySales.add(sale.getTotalAmount());
+                dayTransactions++;
+                String category = categories.get(sale.getProduct().getId());
+                if (category != null) {
+                    categorySales.merge(category, sale.getTotalAmount(), BigDecimal::add);
+                    changedCategories.add(category);
+                }
+            }
+            salesChanged = true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void stockChanged(List<InventoryDto> products) {
+        lock.lock();
+        try {
+            for (InventoryDto product : products) {
+                changedStock.put(product.getProductId(), product);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends the changes collected since the last run, after reading the day's totals again when due.
+     */
+    void flush() {
+        try {
+            long now = System.currentTimeMillis();
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.stalled(now)) {
+                    drop(subscriber, "send did not return within the send timeout");
+                }
+            }
+            if (!LocalDate.now().equals(resyncedDay) || now - resyncedAt >= resyncIntervalMillis) {
+                resync();
+            }
+            List<LiveEventDto> events = drain();
+            for (LiveEventDto event : events) {
+                broadcast(message(event));
+                sent.computeIfAbsent(event.getType(), type -> Counter.builder("analytics.live.events").tag("type", type)
+                        .description("Live update events sent, per subscriber").register(meterRegistry))
+                        .increment(subscribers.size());
+            }
+            if (!events.isEmpty()) {
+                lastSentAt = now;
+            } else if (now - lastSentAt >= heartbeatIntervalMillis) {
+                broadcast(SseEmitter.event().comment("heartbeat").build());
+                lastSentAt = now;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not send live updates: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the current day's totals from the database and queues a sales event if they differ from
+     * what was sent. Sales folded in from the start of the read are applied on top of it, except those
+     * the read saw; sales folded in after it are folded into the result as usual.
+     */
+    private void resync() {
+        LocalDate today = LocalDate.now();
+        LocalDateTime start = today.atStartOfDay();
+        LocalDateTime end = today.atTime(23, 59, 59);
+        lock.lock();
+        try {
+            foldedDuringResync = new ArrayList<>();
+            resyncingDay = today;
+        } finally {
+            lock.unlock();
+        }
+        try {
+            resync(today, start, end);
+        } finally {
+            lock.lock();
+            try {
+                foldedDuringResync = null;
+            } finally {
+                lock.unlock();
+            }
+        }
+        resyncedDay = today;
+        resyncedAt = System.currentTimeMillis();
+    }
+
+    private void resync(LocalDate today, LocalDateTime start, LocalDateTime end) {
+        DayTotals totals = readOnlyTransaction.execute(status -> {
+            ReplicaRouter.requirePrimary();
+            BigDecimal sales = BigDecimal.ZERO;
+            long transactions = 0;
+            for (Object[] row : saleRepository.getDailySales(start, end)) {
+                sales = (BigDecimal) row[1];
+                transactions = ((Number) row[2]).longValue();
+            }
+            Map<String, BigDecimal> categories = new HashMap<>();
+            for (Object[] row : saleRepository.getSalesByCategory(start, end)) {
+                categories.put((String) row[0], (BigDecimal) row[1]);
+            }
+            // Which of the sales folded in so far the sums above include, in the same snapshot
+            List<Long> folded = foldedIds();
+            Set<Long> seen = folded.isEmpty() ? Set.of() : new HashSet<>(saleRepository.findIdsBetween(folded, start, end));
+            return new DayTotals(sales, transactions, categories, seen);
+        });
+
+        lock.lock();
+        try {
+            BigDecimal sales = totals.sales();
+            long transactions = totals.transactions();
+            Map<String, BigDecimal> categories = new HashMap<>(totals.categories());
+            for (SaleDelta delta : foldedDuringResync) {
+                if (delta.id() != null && totals.seen().contains(delta.id())) continue;
+                sales = sales.add(delta.amount());
+                transactions++;
+                if (delta.category() != null) {
+                    categories.merge(delta.category(), delta.amount(), BigDecimal::add);
+                }
+            }
+
+            boolean newDay = !today.equals(day);
+            if (newDay || daySales.compareTo(sales) != 0 || dayTransactions != transactions
+                    || !categorySales.equals(categories)) {
+                if (newDay) {
+                    changedCategories.clear();
+                }
+                changedCategories.addAll(categorySales.keySet());
+                changedCategories.addAll(categories.keySet());
+                categorySales.clear();
+                categorySales.putAll(categories);
+                salesChanged = true;
+            }
+            day = today;
+            daySales = sales;
+            dayTransactions = transactions;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Long> foldedIds() {
+        lock.lock();
+        try {
+            return foldedDuringResync.stream().map(SaleDelta::id).filter(Objects::nonNull).toList();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<LiveEventDto> drain() {
+        lock.lock();
+        try {
+            List<LiveEventDto> events = new ArrayList<>(2);
+            if (!changedStock.isEmpty()) {
+                events.add(append(STOCK, new ArrayList<>(changedStock.values())));
+                changedStock.clear();
+            }
+            if (salesChanged) {
+                events.add(append(SALES, salesUpdate(changedCategories)));
+                changedCategories.clear();
+                salesChanged = false;
+            }
+            return events;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * What a client connecting with {@code lastEventId} is sent before the next flush.
+     */
+    private List<LiveEventDto> backlog(String lastEventId) {
+        lock.lock();
+        try {
+            if (lastEventId == null) {
+                return day != null ? List.of(new LiveEventDto(version, SALES, salesUpdate(categorySales.keySet()))) : List.of();
+            }
+            Long after = resumedVersion(lastEventId);
+            LiveEventDto oldest = replay.peekFirst();
+            if (after != null && after <= version && (after == version || oldest != null && after >= oldest.getVersion() - 1)) {
+                return replay.stream().filter(event -> event.getVersion() > after).toList();
+            }
+            return List.of(new LiveEventDto(version, RESET, null));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The version in an event id of this stream, or null for ids of another instance or run.
+     */
+    private Long resumedVersion(String lastEventId) {
+        int separator = lastEventId.lastIndexOf('-');
+        if (separator < 0 || !lastEventId.substring(0, separator).equals(stream)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(lastEventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // Callers hold the lock
+    private LiveEventDto append(String type, Object data) {
+        LiveEventDto event = new LiveEventDto(++version, type, data);
+        replay.addLast(event);
+        while (replay.size() > replaySize) {
+            replay.removeFirst();
+        }
+        return event;
+    }
+
+    // Callers hold the lock
+    private SalesUpdateDto salesUpdate(Collection<String> categories) {
+        Map<String, BigDecimal> sales = new TreeMap<>();
+        for (String category : categories) {
+            sales.put(category, categorySales.getOrDefault(category, BigDecimal.ZERO));
+        }
+        return new SalesUpdateDto(day, daySales, dayTransactions, sales);
+    }
+
+    /**
+     * The event as sent, serialized once for all subscribers.
+     */
+    private Set<ResponseBodyEmitter.DataWithMediaType> message(LiveEventDto event) {
+        try {
+            return SseEmitter.event()
+                    .id(stream + "-" + event.getVersion())
+                    .name(event.getType())
+                    .data(objectMapper.writeValueAsString(event))
+                    .build();
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize live update " + event.getVersion(), e);
+        }
+    }
+
+    private void broadcast(Set<ResponseBodyEmitter.DataWithMediaType> message) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.queue.size() >= subscriberQueueSize) {
+                drop(subscriber, "queue full");
+            } else {
+                subscriber.enqueue(message);
+            }
+        }
+    }
+
+    private void drop(Subscriber subscriber, String reason) {
+        if (!subscribers.remove(subscriber)) return;
+        dropped.increment();
+        log.debug("Dropped live update subscriber: {}", reason);
+        // Not on this thread: complete() waits for a send that is stuck
+        sendExecutor.execute(subscriber.emitter::complete);
+    }
+
+    private static boolean send(SseEmitter emitter, Set<ResponseBodyEmitter.DataWithMediaType> message) {
+        try {
+            emitter.send(message);
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            // The client went away or the stream timed out; the container completes the emitter
+            return false;
+        }
+    }
+
+    /**
+     * One open stream and the messages queued for it, sent in order by at most one thread at a time.
+     */
+    private final class Subscriber {
+
+        final SseEmitter emitter;
+        final BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> queue = new LinkedBlockingQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+        // When the send in progress started, or 0
+        private volatile long sendingSince;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void enqueue(Set<ResponseBodyEmitter.DataWithMediaType> message) {
+            queue.add(message);
+            if (draining.compareAndSet(false, true)) {
+                sendExecutor.execute(this::drain);
+            }
+        }
+
+        boolean stalled(long now) {
+            long since = sendingSince;
+            return since != 0 && now - since >= sendTimeoutMillis;
+        }
+
+        private void drain() {
+            try {
+                Set<ResponseBodyEmitter.DataWithMediaType> message;
+                while ((message = queue.poll()) != null) {
+                    sendingSince = System.currentTimeMillis();
+                    boolean delivered = send(emitter, message);
+                    sendingSince = 0;
+                    if (!delivered) {
+                        subscribers.remove(this);
+                        queue.clear();
+                        return;
+                    }
+                }
+            } finally {
+                draining.set(false);
+            }
+            // A message queued after the last poll but before draining was cleared
+            if (!queue.isEmpty() && draining.compareAndSet(false, true)) {
+                sendExecutor.execute(this::drain);
+            }
+        }
+    }
+}
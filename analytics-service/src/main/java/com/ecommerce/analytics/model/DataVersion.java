@@ -0,0 +1,29 @@
+package com.ecommerce.analytics.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One slot of a counter of changes written through analytics-service, shared by all instances; the counter
+ * is the sum of its slots.
+ */
+@Entity
+@Table(name = "data_versions")
+@IdClass(DataVersionId.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DataVersion {
+
+    @Id
+    @Column(length = 50)
+    private String name;
+
+    @Id
+    private Integer slot;
+
+    @Column(nullable = false)
+    private Long version;
+}
@@ -0,0 +1,15 @@
+package com.ecommerce.analytics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DataVersionId implements Serializable {
+    private String name;
+    private Integer slot;
+}
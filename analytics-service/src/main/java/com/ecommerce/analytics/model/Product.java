@@ -11,7 +11,9 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "products", indexes = {
     @Index(name = "idx_category", columnList = "category"),
-    @Index(name = "idx_name", columnList = "name")
+    @Index(name = "idx_name", columnList = "name"),
+    @Index(name = "idx_stock_quantity", columnList = "stock_quantity"),
+    @Index(name = "idx_updated_at", columnList = "updated_at, id")
 })
 @Data
 @NoArgsConstructor
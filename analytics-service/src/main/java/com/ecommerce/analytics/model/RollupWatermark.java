@@ -0,0 +1,27 @@
+package com.ecommerce.analytics.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Last fully aggregated day of a rollup table, null until the first day is closed. Days after the watermark
+ * are read from raw rows.
+ */
+@Entity
+@Table(name = "rollup_watermarks")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RollupWatermark {
+
+    @Id
+    @Column(length = 50)
+    private String name;
+
+    @Column(name = "last_closed_day")
+    private LocalDate lastClosedDay;
+}
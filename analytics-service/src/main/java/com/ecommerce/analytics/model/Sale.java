@@ -11,6 +11,8 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "sales", indexes = {
     @Index(name = "idx_sale_date", columnList = "sale_date"),
+    // Covers every range aggregate and the rollup/columnar loads without touching the clustered rows
+    @Index(name = "idx_sale_date_covering", columnList = "sale_date, product_id, quantity, total_amount, status"),
     @Index(name = "idx_product_id", columnList = "product_id"),
     @Index(name = "idx_customer_id", columnList = "customer_id")
 })
@@ -19,8 +21,10 @@ import java.time.LocalDateTime;
 @AllArgsConstructor
 public class Sale {
 
+    // Pooled sequence ids (a table on MySQL) so inserts can be JDBC-batched; IDENTITY would disable batching
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "sales_seq")
+    @SequenceGenerator(name = "sales_seq", sequenceName = "sales_seq", allocationSize = 500)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -33,7 +37,7 @@ public class Sale {
     @Column(name = "total_amount", nullable = false, precision = 10, scale = 2)
     private BigDecimal totalAmount;
 
-    @Column(name = "sale_date")
+    @Column(name = "sale_date", nullable = false) // part of the primary key of the partitioned table
     private LocalDateTime saleDate;
 
     @Column(name = "customer_id")
@@ -0,0 +1,49 @@
+package com.ecommerce.analytics.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Pre-aggregated sales for one day x product x category x status.
+ * Rows are written by {@link com.ecommerce.analytics.service.SalesRollupService}.
+ */
+@Entity
+@Table(name = "sales_daily_rollup", indexes = {
+    @Index(name = "idx_rollup_day_category", columnList = "sale_day, category")
+})
+@IdClass(SalesDailyRollupId.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesDailyRollup {
+
+    @Id
+    @Column(name = "sale_day", nullable = false)
+    private LocalDate saleDay;
+
+    @Id
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Id
+    @Column(nullable = false, length = 100)
+    private String category;
+
+    @Id
+    @Column(nullable = false, length = 50)
+    private String status;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal revenue = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    private Long quantity = 0L;
+
+    @Column(name = "transaction_count", nullable = false)
+    private Long transactionCount = 0L;
+}
@@ -0,0 +1,18 @@
+package com.ecommerce.analytics.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesDailyRollupId implements Serializable {
+    private LocalDate saleDay;
+    private Long productId;
+    private String category;
+    private String status;
+}
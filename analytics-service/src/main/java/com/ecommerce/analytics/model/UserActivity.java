@@ -10,8 +10,12 @@ import java.time.LocalDateTime;
 @Entity
 @Table(name = "user_activities", indexes = {
     @Index(name = "idx_user_id", columnList = "user_id"),
-    @Index(name = "idx_activity_type", columnList = "activity_type"),
-    @Index(name = "idx_activity_timestamp", columnList = "activity_timestamp")
+    // Views of a range (most viewed, view counts); also serves lookups by type
+    @Index(name = "idx_activity_type_timestamp", columnList = "activity_type, activity_timestamp, product_id"),
+    @Index(name = "idx_activity_timestamp", columnList = "activity_timestamp"),
+    // Per-range counts by type, distinct users and the columnar load
+    @Index(name = "idx_activity_timestamp_covering", columnList = "activity_timestamp, activity_type, user_id, product_id"),
+    @Index(name = "idx_activity_product_id", columnList = "product_id")
 })
 @Data
 @NoArgsConstructor
@@ -19,7 +23,8 @@ import java.time.LocalDateTime;
 public class UserActivity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_activities_seq")
+    @SequenceGenerator(name = "user_activities_seq", sequenceName = "user_activities_seq", allocationSize = 500)
     private Long id;
 
     @Column(name = "user_id", nullable = false)
@@ -32,7 +37,7 @@ public class UserActivity {
     @JoinColumn(name = "product_id")
     private Product product;
 
-    @Column(name = "activity_timestamp")
+    @Column(name = "activity_timestamp", nullable = false) // part of the primary key of the partitioned table
     private LocalDateTime activityTimestamp;
 
     @Column(name = "ip_address", length = 45)
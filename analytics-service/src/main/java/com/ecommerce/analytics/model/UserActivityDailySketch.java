@@ -0,0 +1,26 @@
+package com.ecommerce.analytics.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Serialized {@link com.ecommerce.analytics.aggregate.HyperLogLog} of the user ids active on one day.
+ */
+@Entity
+@Table(name = "user_activity_daily_hll")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserActivityDailySketch {
+
+    @Id
+    @Column(name = "activity_day")
+    private LocalDate activityDay;
+
+    @Column(nullable = false, columnDefinition = "MEDIUMBLOB")
+    private byte[] sketch;
+}
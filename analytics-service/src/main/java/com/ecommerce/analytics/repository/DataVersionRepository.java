@@ -0,0 +1,26 @@
+package com.ecommerce.analytics.repository;
+
+import com.ecommerce.analytics.model.DataVersion;
+import com.ecommerce.analytics.model.DataVersionId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface DataVersionRepository extends JpaRepository<DataVersion, DataVersionId> {
+
+    @Modifying
+    @Query(value = "INSERT INTO data_versions (name, slot, version) VALUES (:name, :slot, 1) " +
+           "ON DUPLICATE KEY UPDATE version = version + 1", nativeQuery = true)
+    int increment(@Param("name") String name, @Param("slot") int slot);
+
+    /**
+     * Rows of (name, version): each counter summed over its slots.
+     */
+    @Query("SELECT v.name, SUM(v.version) FROM DataVersion v GROUP BY v.name")
+    List<Object[]> sumByName();
+}
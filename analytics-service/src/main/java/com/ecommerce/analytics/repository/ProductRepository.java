@@ -1,10 +1,13 @@
 package com.ecommerce.analytics.repository;
 
 import com.ecommerce.analytics.model.Product;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -15,6 +18,61 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     @Query("SELECT p FROM Product p WHERE p.stockQuantity < :threshold ORDER BY p.stockQuantity ASC")
     List<Product> findLowStockProducts(int threshold);
 
+    @Query("SELECT p FROM Product p WHERE p.category = :category AND p.stockQuantity < :threshold ORDER BY p.stockQuantity ASC, p.id ASC")
+    List<Product> findLowStockProductsByCategory(String category, int threshold);
+
+    long countByStockQuantityGreaterThanEqualAndStockQuantityLessThan(int minStock, int maxStock);
+
+    long countByCategoryAndStockQuantityGreaterThanEqualAndStockQuantityLessThan(String category, int minStock, int maxStock);
+
     @Query("SELECT p.category, COUNT(p) FROM Product p GROUP BY p.category")
     List<Object[]> countProductsByCategory();
+
+    @Query("SELECT p.id FROM Product p WHERE p.id IN :ids")
+    List<Long> findExistingIds(Collection<Long> ids);
+
+    /**
+     * Rows of (id, name, category) of every product.
+     */
+    @Query("SELECT p.id, p.name, p.category FROM Product p")
+    List<Object[]> findNamesAndCategories();
+
+    /**
+     * Rows of (id, name, category) of the given products.
+     */
+    @Query("SELECT p.id, p.name, p.category FROM Product p WHERE p.id IN :ids")
+    List<Object[]> findNamesAndCategoriesByIds(Collection<Long> ids);
+
+    /**
+     * Keyset page of (id, name, category, stockQuantity) after {@code afterId}, in id order.
+     */
+    @Query("SELECT p.id, p.name, p.category, p.stockQuantity FROM Product p " +
+           "WHERE p.id > :afterId AND p.stockQuantity >= :minStock AND p.stockQuantity < :maxStock " +
+           "ORDER BY p.id")
+    List<Object[]> findInventoryPage(long afterId, int minStock, int maxStock, Pageable page);
+
+    /**
+     * Same as {@link #findInventoryPage} within one category (idx_category ends with the primary key).
+     */
+    @Query("SELECT p.id, p.name, p.category, p.stockQuantity FROM Product p " +
+           "WHERE p.category = :category AND p.id > :afterId " +
+           "AND p.stockQuantity >= :minStock AND p.stockQuantity < :maxStock " +
+           "ORDER BY p.id")
+    List<Object[]> findInventoryPageByCategory(String category, long afterId, int minStock, int maxStock, Pageable page);
+
+    /**
+     * Products updated after (updatedAt, id), as rows of (id, name, category, stockQuantity, updatedAt) in
+     * that order. updatedAt is stamped by the application when the update is flushed, so updates can commit
+     * (and become visible) behind rows already returned; callers re-read an overlap window to catch them.
+     */
+    @Query("SELECT p.id, p.name, p.category, p.stockQuantity, p.updatedAt FROM Product p " +
+           "WHERE (p.updatedAt > :updatedAt OR (p.updatedAt = :updatedAt AND p.id > :afterId)) " +
+           "ORDER BY p.updatedAt, p.id")
+    List<Object[]> findInventoryChanges(LocalDateTime updatedAt, long afterId, Pageable page);
+
+    /**
+     * (latest updatedAt, product count): changes when a product is added, updated or removed.
+     */
+    @Query("SELECT MAX(p.updatedAt), COUNT(p) FROM Product p")
+    List<Object[]> getChangeWatermark();
 }
@@ -0,0 +1,35 @@
+package com.ecommerce.analytics.repository;
+
+import com.ecommerce.analytics.model.RollupWatermark;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface RollupWatermarkRepository extends JpaRepository<RollupWatermark, String> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT w FROM RollupWatermark w WHERE w.name = :name")
+    Optional<RollupWatermark> findByNameForUpdate(@Param("name") String name);
+
+    /**
+     * Shared lock: writers of late rows hold it against a concurrent close, without waiting on each other.
+     */
+    @Lock(LockModeType.PESSIMISTIC_READ)
+    @Query("SELECT w FROM RollupWatermark w WHERE w.name = :name")
+    Optional<RollupWatermark> findByNameForShare(@Param("name") String name);
+
+    /**
+     * Create the watermark with no day closed, unless it exists.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO rollup_watermarks (name, last_closed_day) VALUES (:name, NULL) " +
+           "ON DUPLICATE KEY UPDATE name = name", nativeQuery = true)
+    void insertIfAbsent(@Param("name") String name);
+}
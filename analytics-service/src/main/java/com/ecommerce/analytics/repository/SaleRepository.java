@@ -1,35 +1,88 @@
 package com.ecommerce.analytics.repository;
 
+import com.ecommerce.analytics.dto.SaleExportRow;
 import com.ecommerce.analytics.model.Sale;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface SaleRepository extends JpaRepository<Sale, Long> {
 
     List<Sale> findBySaleDateBetween(LocalDateTime start, LocalDateTime end);
 
+    /**
+     * Forward-only export of {@code [start, end)} as flat rows; the product is joined in the same
+     * statement and nothing is attached to the persistence context. Must be consumed inside a transaction.
+     */
+    @Query("SELECT new com.ecommerce.analytics.dto.SaleExportRow(s.id, s.saleDate, p.id, p.name, p.category, " +
+           "s.quantity, s.totalAmount, s.customerId, s.status) FROM Sale s JOIN s.product p " +
+           "WHERE s.saleDate >= :start AND s.saleDate < :end ORDER BY s.saleDate, s.id")
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    Stream<SaleExportRow> streamExportRows(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    /**
+     * Sales since {@code start} as (id, saleDate, productId, quantity, totalAmount, status), for the
+     * columnar store. Must be consumed inside a transaction.
+     */
+    @Query("SELECT s.id, s.saleDate, s.product.id, s.quantity, s.totalAmount, s.status FROM Sale s " +
+           "WHERE s.saleDate >= :start")
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "10000"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    Stream<Object[]> streamColumnsSince(@Param("start") LocalDateTime start);
+
+    /**
+     * Rows shaped like {@link #streamColumnsSince} with ids above {@code afterId}, in id order.
+     */
+    @Query("SELECT s.id, s.saleDate, s.product.id, s.quantity, s.totalAmount, s.status FROM Sale s " +
+           "WHERE s.id > :afterId AND s.saleDate >= :start ORDER BY s.id")
+    List<Object[]> findColumnsAfter(@Param("afterId") long afterId, @Param("start") LocalDateTime start, Pageable page);
+
+    /**
+     * Those of the given sales dated between {@code start} and {@code end} that this transaction sees.
+     */
+    @Query("SELECT s.id FROM Sale s WHERE s.id IN :ids AND s.saleDate BETWEEN :start AND :end")
+    List<Long> findIdsBetween(@Param("ids") Collection<Long> ids, @Param("start") LocalDateTime start,
+                              @Param("end") LocalDateTime end);
+
     @Query("SELECT SUM(s.totalAmount) FROM Sale s WHERE s.saleDate BETWEEN :start AND :end")
     BigDecimal getTotalSalesBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
-    @Query("SELECT p.category, SUM(s.totalAmount) FROM Sale s JOIN s.product p " +
+    @Query("SELECT p.category, SUM(s.totalAmount), COUNT(DISTINCT p.id) FROM Sale s JOIN s.product p " +
            "WHERE s.saleDate BETWEEN :start AND :end GROUP BY p.category ORDER BY SUM(s.totalAmount) DESC")
     List<Object[]> getSalesByCategory(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
-    @Query("SELECT p.name, SUM(s.quantity) as totalQty FROM Sale s JOIN s.product p " +
+    @Query("SELECT p.category, p.id, SUM(s.totalAmount) FROM Sale s JOIN s.product p " +
+           "WHERE s.saleDate BETWEEN :start AND :end GROUP BY p.category, p.id")
+    List<Object[]> getSalesByCategoryAndProduct(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    @Query("SELECT p.id, p.name, SUM(s.quantity) as totalQty FROM Sale s JOIN s.product p " +
            "WHERE s.saleDate BETWEEN :start AND :end GROUP BY p.id, p.name ORDER BY totalQty DESC")
-    List<Object[]> getTopSellingProducts(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    List<Object[]> getTopSellingProducts(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end,
+                                         Pageable pageable);
 
-    @Query("SELECT DATE(s.saleDate), SUM(s.totalAmount) FROM Sale s " +
+    @Query("SELECT SUM(s.quantity) FROM Sale s WHERE s.saleDate BETWEEN :start AND :end")
+    Long getTotalQuantityBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    @Query("SELECT DATE(s.saleDate), SUM(s.totalAmount), COUNT(s) FROM Sale s " +
            "WHERE s.saleDate BETWEEN :start AND :end GROUP BY DATE(s.saleDate) ORDER BY DATE(s.saleDate)")
     List<Object[]> getDailySales(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
+    @Query("SELECT MIN(s.saleDate) FROM Sale s")
+    LocalDateTime findEarliestSaleDate();
+
     @Query("SELECT COUNT(s) FROM Sale s WHERE s.status = :status")
     Long countByStatus(@Param("status") String status);
 }
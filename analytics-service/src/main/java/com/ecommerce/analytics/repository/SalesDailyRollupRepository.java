@@ -0,0 +1,102 @@
+package com.ecommerce.analytics.repository;
+
+import com.ecommerce.analytics.model.SalesDailyRollup;
+import com.ecommerce.analytics.model.SalesDailyRollupId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Reads combine closed days from the rollup with raw sales after the watermark
+ * ({@code rawStart..end}), so a range costs one round trip regardless of where it ends.
+ */
+@Repository
+public interface SalesDailyRollupRepository extends JpaRepository<SalesDailyRollup, SalesDailyRollupId> {
+
+    @Modifying
+    @Query(value = "DELETE FROM sales_daily_rollup WHERE sale_day = :day", nativeQuery = true)
+    int deleteDay(@Param("day") LocalDate day);
+
+    @Modifying
+    @Query(value = "INSERT INTO sales_daily_rollup " +
+           "(sale_day, product_id, category, status, revenue, quantity, transaction_count) " +
+           "SELECT DATE(s.sale_date), s.product_id, p.category, COALESCE(s.status, 'UNKNOWN'), " +
+           "SUM(s.total_amount), SUM(s.quantity), COUNT(*) " +
+           "FROM sales s JOIN products p ON p.id = s.product_id " +
+           "WHERE s.sale_date >= :start AND s.sale_date < :end " +
+           "GROUP BY DATE(s.sale_date), s.product_id, p.category, s.status", nativeQuery = true)
+    int rollupRange(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    @Modifying
+    @Query(value = "INSERT INTO sales_daily_rollup " +
+           "(sale_day, product_id, category, status, revenue, quantity, transaction_count) " +
+           "SELECT :day, p.id, p.category, :status, :revenue, :quantity, 1 FROM products p WHERE p.id = :productId " +
+           "ON DUPLICATE KEY UPDATE revenue = revenue + VALUES(revenue), quantity = quantity + VALUES(quantity), " +
+           "transaction_count = transaction_count + 1", nativeQuery = true)
+    int increment(@Param("day") LocalDate day, @Param("productId") Long productId, @Param("status") String status,
+                  @Param("revenue") BigDecimal revenue, @Param("quantity") Integer quantity);
+
+    @Query(value = "SELECT t.category, t.product_id, SUM(t.revenue) FROM (" +
+           "SELECT r.category AS category, r.product_id AS product_id, r.revenue AS revenue " +
+           "FROM sales_daily_rollup r WHERE r.sale_day BETWEEN :startDay AND :closedThrough " +
+           "UNION ALL " +
+           "SELECT p.category, s.product_id, s.total_amount FROM sales s JOIN products p ON p.id = s.product_id " +
+           "WHERE s.sale_date BETWEEN :rawStart AND :end" +
+           ") t GROUP BY t.category, t.product_id", nativeQuery = true)
+    List<Object[]> getSalesByCategoryAndProduct(@Param("startDay") LocalDate startDay,
+                                                @Param("closedThrough") LocalDate closedThrough,
+                                                @Param("rawStart") LocalDateTime rawStart,
+                                                @Param("end") LocalDateTime end);
+
+    @Query(value = "SELECT t.product_id, p.name, SUM(t.qty) AS total_qty FROM (" +
+           "SELECT r.product_id AS product_id, r.quantity AS qty " +
+           "FROM sales_daily_rollup r WHERE r.sale_day BETWEEN :startDay AND :closedThrough " +
+           "UNION ALL " +
+           "SELECT s.product_id, s.quantity FROM sales s WHERE s.sale_date BETWEEN :rawStart AND :end" +
+           ") t JOIN products p ON p.id = t.product_id " +
+           "GROUP BY t.product_id, p.name ORDER BY total_qty DESC LIMIT :limit", nativeQuery = true)
+    List<Object[]> getTopSellingProducts(@Param("startDay") LocalDate startDay,
+                                         @Param("closedThrough") LocalDate closedThrough,
+                                         @Param("rawStart") LocalDateTime rawStart,
+                                         @Param("end") LocalDateTime end,
+                                         @Param("limit") int limit);
+
+    @Query(value = "SELECT " +
+           "(SELECT COALESCE(SUM(r.quantity), 0) FROM sales_daily_rollup r " +
+           "WHERE r.sale_day BETWEEN :startDay AND :closedThrough) + " +
+           "(SELECT COALESCE(SUM(s.quantity), 0) FROM sales s WHERE s.sale_date BETWEEN :rawStart AND :end)",
+           nativeQuery = true)
+    Long getTotalQuantity(@Param("startDay") LocalDate startDay,
+                          @Param("closedThrough") LocalDate closedThrough,
+                          @Param("rawStart") LocalDateTime rawStart,
+                          @Param("end") LocalDateTime end);
+
+    @Query(value = "SELECT t.sale_day, SUM(t.revenue), SUM(t.txn) FROM (" +
+           "SELECT r.sale_day AS sale_day, r.revenue AS revenue, r.transaction_count AS txn " +
+           "FROM sales_daily_rollup r WHERE r.sale_day BETWEEN :startDay AND :closedThrough " +
+           "UNION ALL " +
+           "SELECT DATE(s.sale_date), s.total_amount, 1 FROM sales s " +
+           "WHERE s.sale_date BETWEEN :rawStart AND :end" +
+           ") t GROUP BY t.sale_day ORDER BY t.sale_day", nativeQuery = true)
+    List<Object[]> getDailySales(@Param("startDay") LocalDate startDay,
+                                 @Param("closedThrough") LocalDate closedThrough,
+                                 @Param("rawStart") LocalDateTime rawStart,
+                                 @Param("end") LocalDateTime end);
+
+    @Query(value = "SELECT " +
+           "(SELECT COALESCE(SUM(r.revenue), 0) FROM sales_daily_rollup r " +
+           "WHERE r.sale_day BETWEEN :startDay AND :closedThrough) + " +
+           "(SELECT COALESCE(SUM(s.total_amount), 0) FROM sales s WHERE s.sale_date BETWEEN :rawStart AND :end)",
+           nativeQuery = true)
+    BigDecimal getTotalSales(@Param("startDay") LocalDate startDay,
+                             @Param("closedThrough") LocalDate closedThrough,
+                             @Param("rawStart") LocalDateTime rawStart,
+                             @Param("end") LocalDateTime end);
+}
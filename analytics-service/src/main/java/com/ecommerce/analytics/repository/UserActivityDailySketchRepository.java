@@ -0,0 +1,23 @@
+package com.ecommerce.analytics.repository;
+
+import com.ecommerce.analytics.model.UserActivityDailySketch;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UserActivityDailySketchRepository extends JpaRepository<UserActivityDailySketch, LocalDate> {
+
+    List<UserActivityDailySketch> findByActivityDayBetween(LocalDate start, LocalDate end);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM UserActivityDailySketch s WHERE s.activityDay = :day")
+    Optional<UserActivityDailySketch> findByDayForUpdate(@Param("day") LocalDate day);
+}
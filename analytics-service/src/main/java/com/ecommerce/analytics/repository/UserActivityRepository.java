@@ -1,13 +1,21 @@
 package com.ecommerce.analytics.repository;
 
+import com.ecommerce.analytics.dto.UserActivityExportRow;
 import com.ecommerce.analytics.model.UserActivity;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @Repository
 public interface UserActivityRepository extends JpaRepository<UserActivity, Long> {
@@ -20,12 +28,50 @@ public interface UserActivityRepository extends JpaRepository<UserActivity, Long
            "WHERE ua.activityTimestamp BETWEEN :start AND :end GROUP BY ua.activityType")
     List<Object[]> getActivityCountByType(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
-    @Query("SELECT p.name, COUNT(ua) as viewCount FROM UserActivity ua JOIN ua.product p " +
+    @Query("SELECT p.id, p.name, COUNT(ua) as viewCount FROM UserActivity ua JOIN ua.product p " +
            "WHERE ua.activityType = 'VIEW' AND ua.activityTimestamp BETWEEN :start AND :end " +
            "GROUP BY p.id, p.name ORDER BY viewCount DESC")
-    List<Object[]> getMostViewedProducts(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    List<Object[]> getMostViewedProducts(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end,
+                                         Pageable pageable);
+
+    @Query("SELECT COUNT(ua) FROM UserActivity ua " +
+           "WHERE ua.activityType = 'VIEW' AND ua.product IS NOT NULL AND ua.activityTimestamp BETWEEN :start AND :end")
+    Long countProductViewsBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
     @Query("SELECT COUNT(DISTINCT ua.userId) FROM UserActivity ua " +
            "WHERE ua.activityTimestamp BETWEEN :start AND :end")
     Long getUniqueUsersCount(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    @Query("SELECT DISTINCT ua.userId FROM UserActivity ua " +
+           "WHERE ua.activityTimestamp >= :start AND ua.activityTimestamp < :end")
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "10000"))
+    Stream<Long> streamDistinctUserIds(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    /**
+     * Forward-only export of {@code [start, end)} as flat rows. Must be consumed inside a transaction.
+     */
+    @Query("SELECT new com.ecommerce.analytics.dto.UserActivityExportRow(ua.id, ua.activityTimestamp, ua.userId, " +
+           "ua.activityType, p.id, ua.ipAddress, ua.userAgent) FROM UserActivity ua LEFT JOIN ua.product p " +
+           "WHERE ua.activityTimestamp >= :start AND ua.activityTimestamp < :end ORDER BY ua.activityTimestamp, ua.id")
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    Stream<UserActivityExportRow> streamExportRows(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    /**
+     * Activities since {@code start} as (id, activityTimestamp, userId, activityType, productId), for the
+     * columnar store. Must be consumed inside a transaction.
+     */
+    @Query("SELECT ua.id, ua.activityTimestamp, ua.userId, ua.activityType, p.id FROM UserActivity ua " +
+           "LEFT JOIN ua.product p WHERE ua.activityTimestamp >= :start")
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "10000"), @QueryHint(name = HINT_READ_ONLY, value = "true")})
+    Stream<Object[]> streamColumnsSince(@Param("start") LocalDateTime start);
+
+    /**
+     * Rows shaped like {@link #streamColumnsSince} with ids above {@code afterId}, in id order.
+     */
+    @Query("SELECT ua.id, ua.activityTimestamp, ua.userId, ua.activityType, p.id FROM UserActivity ua " +
+           "LEFT JOIN ua.product p WHERE ua.id > :afterId AND ua.activityTimestamp >= :start ORDER BY ua.id")
+    List<Object[]> findColumnsAfter(@Param("afterId") long afterId, @Param("start") LocalDateTime start, Pageable page);
+
+    @Query("SELECT MIN(ua.activityTimestamp) FROM UserActivity ua")
+    LocalDateTime findEarliestActivityTimestamp();
 }
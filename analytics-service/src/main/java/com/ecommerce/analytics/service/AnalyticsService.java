@@ -1,23 +1,39 @@
 package com.ecommerce.analytics.service;
 
+import com.ecommerce.analytics.aggregate.CategorySalesPartial;
+import com.ecommerce.analytics.aggregate.TopNPartial;
+import com.ecommerce.analytics.cache.PartialRangeCache;
+import com.ecommerce.analytics.columnar.ColumnarStore;
+import com.ecommerce.analytics.config.ReplicaRouter;
 import com.ecommerce.analytics.dto.*;
+import com.ecommerce.analytics.inventory.StockIndex;
 import com.ecommerce.analytics.model.Product;
 import com.ecommerce.analytics.repository.ProductRepository;
 import com.ecommerce.analytics.repository.SaleRepository;
+import com.ecommerce.analytics.repository.SalesDailyRollupRepository;
 import com.ecommerce.analytics.repository.UserActivityRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
+/**
+ * Range queries that start inside the window of the in-memory {@link ColumnarStore} are answered
+ * from it; all others go through the rollups, sketches and cached partials. With read replicas
+ * configured, ranges reaching the current day are read from the primary (see {@link ReplicaRouter}).
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -27,94 +43,95 @@ public class AnalyticsService {
     private final SaleRepository saleRepository;
     private final ProductRepository productRepository;
     private final UserActivityRepository userActivityRepository;
+    private final SalesDailyRollupRepository salesDailyRollupRepository;
+    private final SalesRollupService salesRollupService;
+    private final PartialRangeCache partialRangeCache;
+    private final UniqueUserSketchService uniqueUserSketchService;
+    private final ColumnarStore columnarStore;
+    private final StockIndex stockIndex;
 
     /**
      * Get sales analytics by category for a given date range
      */
-    @Cacheable(value = "salesByCategory", key = "#startDate + '-' + #endDate")
     public List<CategorySalesDto> getSalesByCategory(LocalDate startDate, LocalDate endDate) {
         log.info("Fetching sales by category from {} to {}", startDate, endDate);
+        ReplicaRouter.readsThrough(endDate);
 
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(23, 59, 59);
-
-        List<Object[]> results = saleRepository.getSalesByCategory(start, end);
+        if (columnarStore.covers(startDate)) {
+            return CategorySalesPartial.merge(List.of(CategorySalesPartial.of(
+                    columnarStore.getSalesByCategoryAndProduct(startDate, endDate))));
+        }
 
-        return results.stream()
-                .map(result -> new CategorySalesDto(
-                        (String) result[0],
-                        (BigDecimal) result[1],
-                        null // Can be enhanced with product count
-                ))
-                .collect(Collectors.toList());
+        List<CategorySalesPartial> partials = partialRangeCache.load(
+                "salesByCategory", startDate, endDate, this::loadCategorySalesPartial);
+        return CategorySalesPartial.merge(partials);
     }
 
     /**
      * Get top selling products for a given date range
      */
-    @Cacheable(value = "topProducts", key = "#startDate + '-' + #endDate + '-' + #limit")
     public List<TopProductDto> getTopSellingProducts(LocalDate startDate, LocalDate endDate, int limit) {
         log.info("Fetching top {} selling products from {} to {}", limit, startDate, endDate);
-
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(23, 59, 59);
-
-        List<Object[]> results = saleRepository.getTopSellingProducts(start, end);
-
-        // Calculate total for percentage
-        Long total = results.stream()
-                .mapToLong(r -> ((Number) r[1]).longValue())
-                .sum();
-
-        return results.stream()
-                .limit(limit)
-                .map(result -> new TopProductDto(
-                        (String) result[0],
-                        ((Number) result[1]).longValue(),
-                        total > 0 ? (((Number) result[1]).doubleValue() / total) * 100 : 0.0
-                ))
-                .collect(Collectors.toList());
+        ReplicaRouter.readsThrough(endDate);
+
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        if (columnarStore.covers(startDate)) {
+            return TopNPartial.merge(List.of(TopNPartial.of(columnarStore.getTopSellingProducts(startDate, endDate, limit),
+                    limit, columnarStore.getTotalQuantity(startDate, endDate))), limit);
+        }
+        if (limit <= partialRangeCache.getTopCandidates()) {
+            List<TopNPartial> partials = partialRangeCache.load("topProducts", startDate, endDate,
+                    (from, to) -> loadTopSellingPartial(from, to, partialRangeCache.getTopCandidates()));
+            List<TopProductDto> merged = TopNPartial.merge(partials, limit);
+            if (merged != null) {
+                return merged;
+            }
+            log.debug("Top product candidates inconclusive for {} to {}, querying full range", startDate, endDate);
+        }
+
+        // A single partial holding exactly `limit` candidates is always exact
+        return partialRangeCache.loadRange("topProducts", startDate, endDate, String.valueOf(limit),
+                () -> TopNPartial.merge(List.of(loadTopSellingPartial(startDate, endDate, limit)), limit));
     }
 
     /**
      * Get daily sales for a given date range
      */
-    @Cacheable(value = "dailySales", key = "#startDate + '-' + #endDate")
     public List<DailySalesDto> getDailySales(LocalDate startDate, LocalDate endDate) {
         log.info("Fetching daily sales from {} to {}", startDate, endDate);
+        ReplicaRouter.readsThrough(endDate);
 
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(23, 59, 59);
+        if (columnarStore.covers(startDate)) {
+            return toDailySales(columnarStore.getDailySales(startDate, endDate));
+        }
 
-        List<Object[]> results = saleRepository.getDailySales(start, end);
-
-        return results.stream()
-                .map(result -> new DailySalesDto(
-                        ((java.sql.Date) result[0]).toLocalDate(),
-                        (BigDecimal) result[1],
-                        null // Can be enhanced with transaction count
-                ))
-                .collect(Collectors.toList());
+        // Buckets are disjoint and in date order, so concatenation keeps the series sorted
+        List<DailySalesDto> result = new ArrayList<>();
+        partialRangeCache.load("dailySales", startDate, endDate, this::loadDailySales).forEach(result::addAll);
+        return result;
     }
 
     /**
      * Get total sales amount for a given date range
      */
-    @Cacheable(value = "totalSales", key = "#startDate + '-' + #endDate")
     public BigDecimal getTotalSales(LocalDate startDate, LocalDate endDate) {
         log.info("Fetching total sales from {} to {}", startDate, endDate);
+        ReplicaRouter.readsThrough(endDate);
 
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(23, 59, 59);
+        if (columnarStore.covers(startDate)) {
+            return columnarStore.getTotalSales(startDate, endDate);
+        }
 
-        BigDecimal total = saleRepository.getTotalSalesBetween(start, end);
-        return total != null ? total : BigDecimal.ZERO;
+        return partialRangeCache.load("totalSales", startDate, endDate, this::loadTotalSales).stream()
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
     }
 
     /**
      * Get inventory status with stock levels
      */
-    @Cacheable(value = "inventoryStatus")
+    @Cacheable(value = "inventoryStatus", sync = true)
     public List<InventoryDto> getInventoryStatus() {
         log.info("Fetching inventory status");
 
@@ -135,12 +152,18 @@ public class AnalyticsService {
     }
 
     /**
-     * Get low stock products
+     * Get low stock products. Answered from the stock index once it is built, and only cached per
+     * threshold until then; no transaction is started, so the index answers without a connection.
      */
-    @Cacheable(value = "lowStock", key = "#threshold")
+    @Cacheable(value = "lowStock", key = "#threshold", sync = true, condition = "!@stockIndex.ready")
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public List<InventoryDto> getLowStockProducts(int threshold) {
         log.info("Fetching low stock products with threshold {}", threshold);
 
+        if (stockIndex.isReady()) {
+            return stockIndex.lowStock(threshold, null);
+        }
+
         List<Product> products = productRepository.findLowStockProducts(threshold);
 
         return products.stream()
@@ -157,24 +180,26 @@ public class AnalyticsService {
     /**
      * Get user activity summary for a given date range
      */
-    @Cacheable(value = "activitySummary", key = "#startDate + '-' + #endDate")
     public List<ActivitySummaryDto> getActivitySummary(LocalDate startDate, LocalDate endDate) {
         log.info("Fetching activity summary from {} to {}", startDate, endDate);
-
-        LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.atTime(23, 59, 59);
-
-        List<Object[]> results = userActivityRepository.getActivityCountByType(start, end);
-
-        Long total = results.stream()
-                .mapToLong(r -> ((Number) r[1]).longValue())
-                .sum();
-
-        return results.stream()
-                .map(result -> new ActivitySummaryDto(
-                        (String) result[0],
-                        ((Number) result[1]).longValue(),
-                        total > 0 ? (((Number) result[1]).doubleValue() / total) * 100 : 0.0
+        ReplicaRouter.readsThrough(endDate);
+
+        Map<String, Long> counts = new LinkedHashMap<>();
+        if (columnarStore.covers(startDate)) {
+            columnarStore.getActivityCountByType(startDate, endDate)
+                    .forEach(r -> counts.put((String) r[0], ((Number) r[1]).longValue()));
+        } else {
+            partialRangeCache.load("activitySummary", startDate, endDate, this::loadActivityCounts)
+                    .forEach(partial -> partial.forEach((type, count) -> counts.merge(type, count, Long::sum)));
+        }
+
+        long total = counts.values().stream().mapToLong(Long::longValue).sum();
+
+        return counts.entrySet().stream()
+                .map(entry -> new ActivitySummaryDto(
+                        entry.getKey(),
+                        entry.getValue(),
+                        total > 0 ? (entry.getValue().doubleValue() / total) * 100 : 0.0
                 ))
                 .collect(Collectors.toList());
     }
@@ -182,45 +207,145 @@ public class AnalyticsService {
     /**
      * Get most viewed products
      */
-    @Cacheable(value = "mostViewed", key = "#startDate + '-' + #endDate + '-' + #limit")
     public List<TopProductDto> getMostViewedProducts(LocalDate startDate, LocalDate endDate, int limit) {
         log.info("Fetching most viewed products from {} to {}", startDate, endDate);
+        ReplicaRouter.readsThrough(endDate);
+
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        if (columnarStore.covers(startDate)) {
+            return TopNPartial.merge(List.of(TopNPartial.of(columnarStore.getMostViewedProducts(startDate, endDate, limit),
+                    limit, columnarStore.countProductViews(startDate, endDate))), limit);
+        }
+        if (limit <= partialRangeCache.getTopCandidates()) {
+            List<TopNPartial> partials = partialRangeCache.load("mostViewed", startDate, endDate,
+                    (from, to) -> loadMostViewedPartial(from, to, partialRangeCache.getTopCandidates()));
+            List<TopProductDto> merged = TopNPartial.merge(partials, limit);
+            if (merged != null) {
+                return merged;
+            }
+            log.debug("Most viewed candidates inconclusive for {} to {}, querying full range", startDate, endDate);
+        }
+
+        return partialRangeCache.loadRange("mostViewed", startDate, endDate, String.valueOf(limit),
+                () -> TopNPartial.merge(List.of(loadMostViewedPartial(startDate, endDate, limit)), limit));
+    }
+
+    /**
+     * Get unique users count. Unless {@code exact} is set, the count is estimated by merging
+     * per-day HyperLogLog sketches (about 0.81% standard error).
+     */
+    @Cacheable(value = "uniqueUsers", key = "#startDate + '-' + #endDate + '-' + #exact", sync = true)
+    public Long getUniqueUsersCount(LocalDate startDate, LocalDate endDate, boolean exact) {
+        log.info("Fetching {} unique users count from {} to {}", exact ? "exact" : "estimated", startDate, endDate);
+        ReplicaRouter.readsThrough(endDate);
+
+        if (columnarStore.covers(startDate)) {
+            return columnarStore.getUniqueUsersCount(startDate, endDate); // exact, and cheaper than the sketches
+        }
+
+        if (!exact) {
+            Long estimate = uniqueUserSketchService.estimateUniqueUsers(startDate, endDate);
+            if (estimate != null) {
+                return estimate;
+            }
+        }
 
         LocalDateTime start = startDate.atStartOfDay();
         LocalDateTime end = endDate.atTime(23, 59, 59);
 
-        List<Object[]> results = userActivityRepository.getMostViewedProducts(start, end);
+        return userActivityRepository.getUniqueUsersCount(start, end);
+    }
+
+    private CategorySalesPartial loadCategorySalesPartial(LocalDate startDate, LocalDate endDate) {
+        LocalDateTime end = endDate.atTime(23, 59, 59);
+        LocalDate closedThrough = salesRollupService.closedThroughFor(startDate);
+        return CategorySalesPartial.of(closedThrough != null
+                ? salesDailyRollupRepository.getSalesByCategoryAndProduct(startDate, min(endDate, closedThrough),
+                        closedThrough.plusDays(1).atStartOfDay(), end)
+                : saleRepository.getSalesByCategoryAndProduct(startDate.atStartOfDay(), end));
+    }
+
+    /**
+     * Top {@code capacity} products by quantity; the limit and the grand total are both computed by the database.
+     */
+    private TopNPartial loadTopSellingPartial(LocalDate startDate, LocalDate endDate, int capacity) {
+        LocalDateTime end = endDate.atTime(23, 59, 59);
+        LocalDate closedThrough = salesRollupService.closedThroughFor(startDate);
+        if (closedThrough != null) {
+            LocalDate rollupEnd = min(endDate, closedThrough);
+            LocalDateTime rawStart = closedThrough.plusDays(1).atStartOfDay();
+            return TopNPartial.of(
+                    salesDailyRollupRepository.getTopSellingProducts(startDate, rollupEnd, rawStart, end, capacity),
+                    capacity,
+                    salesDailyRollupRepository.getTotalQuantity(startDate, rollupEnd, rawStart, end));
+        }
+        LocalDateTime start = startDate.atStartOfDay();
+        return TopNPartial.of(
+                saleRepository.getTopSellingProducts(start, end, PageRequest.of(0, capacity)),
+                capacity,
+                saleRepository.getTotalQuantityBetween(start, end));
+    }
 
-        Long total = results.stream()
-                .mapToLong(r -> ((Number) r[1]).longValue())
-                .sum();
+    private List<DailySalesDto> loadDailySales(LocalDate startDate, LocalDate endDate) {
+        LocalDateTime start = startDate.atStartOfDay();
+        LocalDateTime end = endDate.atTime(23, 59, 59);
 
+        LocalDate closedThrough = salesRollupService.closedThroughFor(startDate);
+        return toDailySales(closedThrough != null
+                ? salesDailyRollupRepository.getDailySales(startDate, min(endDate, closedThrough),
+                        closedThrough.plusDays(1).atStartOfDay(), end)
+                : saleRepository.getDailySales(start, end));
+    }
+
+    private static List<DailySalesDto> toDailySales(List<Object[]> results) {
         return results.stream()
-                .limit(limit)
-                .map(result -> new TopProductDto(
-                        (String) result[0],
-                        ((Number) result[1]).longValue(),
-                        total > 0 ? (((Number) result[1]).doubleValue() / total) * 100 : 0.0
+                .map(result -> new DailySalesDto(
+                        toLocalDate(result[0]),
+                        (BigDecimal) result[1],
+                        ((Number) result[2]).longValue()
                 ))
-                .collect(Collectors.toList());
+                .collect(Collectors.toCollection(ArrayList::new));
     }
 
-    /**
-     * Get unique users count
-     */
-    @Cacheable(value = "uniqueUsers", key = "#startDate + '-' + #endDate")
-    public Long getUniqueUsersCount(LocalDate startDate, LocalDate endDate) {
-        log.info("Fetching unique users count from {} to {}", startDate, endDate);
+    private BigDecimal loadTotalSales(LocalDate startDate, LocalDate endDate) {
+        LocalDateTime start = startDate.atStartOfDay();
+        LocalDateTime end = endDate.atTime(23, 59, 59);
 
+        LocalDate closedThrough = salesRollupService.closedThroughFor(startDate);
+        BigDecimal total = closedThrough != null
+                ? salesDailyRollupRepository.getTotalSales(startDate, min(endDate, closedThrough),
+                        closedThrough.plusDays(1).atStartOfDay(), end)
+                : saleRepository.getTotalSalesBetween(start, end);
+        return total != null ? total : BigDecimal.ZERO;
+    }
+
+    private LinkedHashMap<String, Long> loadActivityCounts(LocalDate startDate, LocalDate endDate) {
+        LinkedHashMap<String, Long> counts = new LinkedHashMap<>();
+        userActivityRepository.getActivityCountByType(startDate.atStartOfDay(), endDate.atTime(23, 59, 59))
+                .forEach(r -> counts.put((String) r[0], ((Number) r[1]).longValue()));
+        return counts;
+    }
+
+    private TopNPartial loadMostViewedPartial(LocalDate startDate, LocalDate endDate, int capacity) {
         LocalDateTime start = startDate.atStartOfDay();
         LocalDateTime end = endDate.atTime(23, 59, 59);
+        return TopNPartial.of(
+                userActivityRepository.getMostViewedProducts(start, end, PageRequest.of(0, capacity)),
+                capacity,
+                userActivityRepository.countProductViewsBetween(start, end));
+    }
 
-        return userActivityRepository.getUniqueUsersCount(start, end);
+    private static LocalDate min(LocalDate a, LocalDate b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        return value instanceof java.sql.Date date ? date.toLocalDate() : (LocalDate) value;
     }
 
     private String determineStockStatus(Integer quantity) {
-        if (quantity < 20) return "LOW";
-        if (quantity < 50) return "MEDIUM";
-        return "ADEQUATE";
+        return StockStatus.of(quantity).name();
     }
 }
@@ -0,0 +1,244 @@
+package com.ecommerce.analytics.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Precomputes the dashboard's default windows so that the first users after a deploy or a Redis flush
+ * do not pay for every aggregate. A pass runs at startup and every {@code analytics.cache.warmup.interval-ms};
+ * it calls {@link AnalyticsService} for
+ * <ul>
+ *   <li>each configured window ({@code windows}, days ending today) with each of the configured {@code limits},</li>
+ *   <li>the {@code recent-keys.max-keys} windows requested most often within {@code recent-keys.retention},
+ *       as reported by {@link #observe} (relative to today, so "last 7 days" stays "last 7 days" tomorrow),</li>
+ *   <li>the inventory status and the low-stock list for each of the {@code low-stock-thresholds}.</li>
+ * </ul>
+ * Queries run on {@code concurrency} threads, which should stay well below the connection pool size, and
+ * each waits while live requests are queued for a connection. The first pass completing is what
+ * {@link #isWarm()} reports, for the readiness check.
+ */
+@Service
+@Slf4j
+public class CacheWarmupService {
+
+    /**
+     * A window of {@code days} ending {@code endOffset} days before today; {@code limit} is null for
+     * endpoints without one.
+     */
+    record Window(int days, int endOffset, Integer limit) {
+    }
+
+    private record Query(String name, Runnable call) {
+    }
+
+    static final List<String> CONTENTION_GAUGES = List.of("hikaricp.connections.pending", "analytics.db.permits.waiting");
+    private static final long CONTENTION_BACKOFF_MILLIS = 50;
+
+    private final AnalyticsService analyticsService;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final List<Integer> windows;
+    private final List<Integer> limits;
+    private final List<Integer> lowStockThresholds;
+    private final int recentKeys;
+    private final Cache<Window, LongAdder> observed;
+    private final ExecutorService executor;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Counter warmed;
+    private final Counter failed;
+
+    private volatile boolean warm;
+
+    public CacheWarmupService(AnalyticsService analyticsService,
+                              MeterRegistry meterRegistry,
+                              @Value("${analytics.cache.warmup.enabled:true}") boolean enabled,
+                              @Value("${analytics.cache.warmup.windows:30}") List<Integer> windows,
+                              @Value("${analytics.cache.warmup.limits:10,5}") List<Integer> limits,
+                              @Value("${analytics.cache.warmup.low-stock-thresholds:50}") List<Integer> lowStockThresholds,
+                              @Value("${analytics.cache.warmup.recent-keys.max-keys:10}") int recentKeys,
+                              @Value("${analytics.cache.warmup.recent-keys.retention:1h}") Duration recentKeyRetention,
+                              @Value("${analytics.cache.warmup.concurrency:2}") int concurrency) {
+        this.analyticsService = analyticsService;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.windows = windows;
+        this.limits = limits;
+        this.lowStockThresholds = lowStockThresholds;
+        this.recentKeys = recentKeys;
+        this.observed = Caffeine.newBuilder()
+                .maximumSize(Math.max(1, recentKeys) * 10L)
+                .expireAfterAccess(recentKeyRetention)
+                .build();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, concurrency), daemon(new CustomizableThreadFactory("cache-warmup-")));
+        this.warmed = Counter.builder("analytics.cache.warmup.queries").tag("outcome", "ok")
+                .description("Queries run by cache warm-up, by outcome").register(meterRegistry);
+        this.failed = Counter.builder("analytics.cache.warmup.queries").tag("outcome", "failed")
+                .description("Queries run by cache warm-up, by outcome").register(meterRegistry);
+        Gauge.builder("analytics.cache.warmup.warm", this, service -> service.isWarm() ? 1 : 0)
+                .description("Whether the first warm-up pass has completed").register(meterRegistry);
+    }
+
+    private static CustomizableThreadFactory daemon(CustomizableThreadFactory factory) {
+        factory.setDaemon(true);
+        return factory;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Whether a warm-up pass has completed (or warm-up is disabled). Failed queries do not hold this back.
+     */
+    public boolean isWarm() {
+        return warm || !enabled;
+    }
+
+    /**
+     * Records a requested range, so that it is warmed as well while it keeps being asked for.
+     */
+    public void observe(LocalDate startDate, LocalDate endDate, Integer limit) {
+        if (!enabled || recentKeys <= 0 || endDate.isBefore(startDate)) return;
+        LocalDate today = LocalDate.now();
+        Window window = new Window((int) ChronoUnit.DAYS.between(startDate, endDate),
+                (int) Math.max(0, ChronoUnit.DAYS.between(endDate, today)), limit);
+        observed.get(window, key -> new LongAdder()).increment();
+    }
+
+    @Scheduled(initialDelayString = "${analytics.cache.warmup.initial-delay-ms:0}",
+               fixedDelayString = "${analytics.cache.warmup.interval-ms:300000}")
+    public void scheduledWarmUp() {
+        warmUp();
+    }
+
+    /**
+     * Starts a warm-up pass unless one is still running; the returned future completes with it.
+     */
+    public CompletableFuture<Void> warmUp() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(null);
+        }
+        List<Query> queries = queries(LocalDate.now());
+        long start = System.nanoTime();
+        AtomicInteger failures = new AtomicInteger();
+        CompletableFuture<?>[] futures;
+        try {
+            futures = queries.stream()
+                    .map(query -> CompletableFuture.runAsync(() -> run(query, failures), executor))
+                    .toArray(CompletableFuture[]::new);
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+        return CompletableFuture.allOf(futures).whenComplete((result, error) -> {
+            running.set(false);
+            if (!warm) {
+                warm = true;
+                log.info("Cache warm-up done: {} queries in {} ms, {} failed", queries.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failures.get());
+            } else {
+                log.debug("Cache warm-up pass: {} queries in {} ms, {} failed", queries.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), failures.get());
+            }
+        });
+    }
+
+    private void run(Query query, AtomicInteger failures) {
+        try {
+            awaitIdleConnections();
+            query.call().run();
+            warmed.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            failed.increment();
+            log.warn("Cache warm-up query {} failed: {}", query.name(), e.getMessage());
+        }
+    }
+
+    /**
+     * Holds the query back while requests are waiting for a database connection (HikariCP's pending
+     * threads, or connection permits in virtual-thread mode), so warm-up only uses idle capacity.
+     */
+    private void awaitIdleConnections() throws InterruptedException {
+        while (connectionWaiters() > 0) {
+            Thread.sleep(CONTENTION_BACKOFF_MILLIS);
+        }
+    }
+
+    private double connectionWaiters() {
+        double waiters = 0;
+        for (String name : CONTENTION_GAUGES) {
+            waiters += meterRegistry.find(name).gauges().stream().mapToDouble(Gauge::value).sum();
+        }
+        return waiters;
+    }
+
+    private List<Query> queries(LocalDate today) {
+        Set<Window> rangeWindows = new LinkedHashSet<>();
+        for (int days : windows) {
+            for (int limit : limits) {
+                rangeWindows.add(new Window(days, 0, limit));
+            }
+        }
+        observed.asMap().entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<Window, LongAdder> entry) -> entry.getValue().sum()).reversed())
+                .limit(recentKeys)
+                .forEach(entry -> rangeWindows.add(entry.getKey()));
+
+        List<Query> queries = new ArrayList<>();
+        Set<List<LocalDate>> ranges = new LinkedHashSet<>();
+        for (Window window : rangeWindows) {
+            LocalDate end = today.minusDays(window.endOffset());
+            LocalDate start = end.minusDays(window.days());
+            String range = start + ".." + end;
+            if (ranges.add(List.of(start, end))) {
+                queries.add(new Query("salesByCategory " + range, () -> analyticsService.getSalesByCategory(start, end)));
+                queries.add(new Query("dailySales " + range, () -> analyticsService.getDailySales(start, end)));
+                queries.add(new Query("totalSales " + range, () -> analyticsService.getTotalSales(start, end)));
+                queries.add(new Query("activitySummary " + range, () -> analyticsService.getActivitySummary(start, end)));
+                queries.add(new Query("uniqueUsers " + range, () -> analyticsService.getUniqueUsersCount(start, end, false)));
+            }
+            if (window.limit() != null) {
+                int limit = window.limit();
+                queries.add(new Query("topProducts " + range + " " + limit,
+                        () -> analyticsService.getTopSellingProducts(start, end, limit)));
+                queries.add(new Query("mostViewed " + range + " " + limit,
+                        () -> analyticsService.getMostViewedProducts(start, end, limit)));
+            }
+        }
+        queries.add(new Query("inventory", analyticsService::getInventoryStatus));
+        for (int threshold : lowStockThresholds) {
+            queries.add(new Query("lowStock " + threshold, () -> analyticsService.getLowStockProducts(threshold)));
+        }
+        return queries;
+    }
+}
@@ -0,0 +1,129 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.dto.DashboardDto;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Computes every dashboard widget concurrently on a bounded pool and returns whatever finished
+ * within {@code analytics.dashboard.widget-timeout}. Widgets that time out, fail, or find the pool
+ * saturated are listed in {@link DashboardDto#getUnavailable()} instead of failing the whole page;
+ * a timed-out query keeps running and still fills its cache for the next refresh.
+ *
+ * Only the widgets the dashboard renders are computed. Stock is summarised by the status counts and the
+ * low-stock list, both answered by the {@link com.ecommerce.analytics.inventory.StockIndex} once it is
+ * built, rather than by the whole catalog.
+ *
+ * Each worker holds a database connection while it runs, so the pool should stay below the
+ * connection pool size. In virtual-thread mode every widget gets its own virtual thread instead and
+ * database concurrency is bounded by {@link com.ecommerce.analytics.config.ConnectionLimitingDataSource}.
+ */
+@Service
+@Slf4j
+public class DashboardService {
+
+    private final AnalyticsService analyticsService;
+    private final InventoryService inventoryService;
+    private final Executor executor;
+    private final Duration widgetTimeout;
+
+    public DashboardService(AnalyticsService analyticsService,
+                            InventoryService inventoryService,
+                            Environment environment,
+                            @Value("${analytics.dashboard.pool-size:8}") int poolSize,
+                            @Value("${analytics.dashboard.queue-capacity:64}") int queueCapacity,
+                            @Value("${analytics.dashboard.widget-timeout:3s}") Duration widgetTimeout) {
+        this.analyticsService = analyticsService;
+        this.inventoryService = inventoryService;
+        this.executor = Threading.VIRTUAL.isActive(environment)
+                ? new VirtualThreadTaskExecutor("dashboard-")
+                : new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("dashboard-"),
+                        new ThreadPoolExecutor.AbortPolicy());
+        this.widgetTimeout = widgetTimeout;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        }
+    }
+
+    public DashboardDto getDashboard(LocalDate startDate, LocalDate endDate, int topLimit, int lowStockThreshold) {
+        log.info("Fetching dashboard from {} to {}", startDate, endDate);
+
+        DashboardDto dashboard = new DashboardDto();
+        List<Widget<?>> widgets = List.of(
+                submit("salesByCategory", () -> analyticsService.getSalesByCategory(startDate, endDate), dashboard::setSalesByCategory),
+                submit("topProducts", () -> analyticsService.getTopSellingProducts(startDate, endDate, topLimit), dashboard::setTopProducts),
+                submit("dailySales", () -> analyticsService.getDailySales(startDate, endDate), dashboard::setDailySales),
+                submit("totalSales", () -> analyticsService.getTotalSales(startDate, endDate), dashboard::setTotalSales),
+                submit("stockStatus", () -> inventoryService.getStatusCounts(null), dashboard::setStockStatus),
+                submit("lowStock", () -> analyticsService.getLowStockProducts(lowStockThreshold), dashboard::setLowStock),
+                submit("uniqueUsers", () -> analyticsService.getUniqueUsersCount(startDate, endDate, false), dashboard::setUniqueUsers));
+
+        // All widgets start together, so one deadline gives each of them the full timeout
+        long deadline = System.nanoTime() + widgetTimeout.toNanos();
+        for (Widget<?> widget : widgets) {
+            widget.collect(deadline, dashboard.getUnavailable());
+        }
+        if (!dashboard.getUnavailable().isEmpty()) {
+            log.warn("Dashboard returned without {}", dashboard.getUnavailable());
+        }
+        return dashboard;
+    }
+
+    private <T> Widget<T> submit(String name, Supplier<T> query, Consumer<T> setter) {
+        CompletableFuture<T> future;
+        try {
+            future = CompletableFuture.supplyAsync(query, executor);
+        } catch (RejectedExecutionException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        return new Widget<>(name, future, setter);
+    }
+
+    private record Widget<T>(String name, CompletableFuture<T> future, Consumer<T> setter) {
+
+        void collect(long deadline, Map<String, String> unavailable) {
+            try {
+                setter.accept(future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                unavailable.put(name, "timeout");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RejectedExecutionException) {
+                    unavailable.put(name, "busy");
+                } else {
+                    log.error("Dashboard widget {} failed", name, e.getCause());
+                    unavailable.put(name, "error");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                unavailable.put(name, "timeout");
+            }
+        }
+    }
+}
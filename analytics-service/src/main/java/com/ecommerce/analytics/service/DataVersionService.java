@@ -0,0 +1,173 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.model.RollupWatermark;
+import com.ecommerce.analytics.repository.DataVersionRepository;
+import com.ecommerce.analytics.repository.ProductRepository;
+import com.ecommerce.analytics.repository.RollupWatermarkRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Versions of the data the analytics endpoints answer from, for ETags, per data source: the
+ * {@code data_versions} counters of sales and user activities, which ingestion increments after each commit,
+ * and the latest product change. They are read every {@code analytics.etag.refresh-interval-ms} and after each
+ * local increment. All instances read the same rows, so they agree on the versions and an ETag does not depend
+ * on the instance that issued it. Each counter is spread over {@code analytics.etag.version-slots} rows, one
+ * picked at random per increment, so that commits of all instances do not queue on one row.
+ * <p>
+ * Writes to days a source's rollup has closed (the sales rollup, the user sketches) also advance its closed
+ * counter, in the writing transaction, which holds the watermark. Those days change with nothing else, so
+ * {@link #closedVersion} labels ranges ending on or before the watermark, read with the counters, without
+ * expiring; product changes are left out of it, as they are of the cached closed partials.
+ * <p>
+ * The versions are read like the data, from a replica when one is configured: a version read ahead of its
+ * data would label responses computed from older rows with it. Rows written by other means than ingestion
+ * (except products) do not change the versions; ETags of ranges that are not closed expire after
+ * {@code analytics.etag.max-staleness} regardless.
+ */
+@Service
+@Slf4j
+public class DataVersionService {
+
+    public static final String SALES = "sales";
+    public static final String USER_ACTIVITIES = "user_activities";
+    public static final String PRODUCTS = "products";
+    static final String CLOSED_SUFFIX = ".closed";
+
+    private record Versions(Map<String, Long> counters, String products, Map<String, LocalDate> closedThrough) {
+    }
+
+    private final DataVersionRepository dataVersionRepository;
+    private final ProductRepository productRepository;
+    private final RollupWatermarkRepository watermarkRepository;
+    private final Map<String, String> watermarks = new HashMap<>();
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final int slots;
+
+    private volatile Versions current;
+
+    public DataVersionService(DataVersionRepository dataVersionRepository,
+                              ProductRepository productRepository,
+                              RollupWatermarkRepository watermarkRepository,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${analytics.etag.enabled:true}") boolean enabled,
+                              @Value("${analytics.etag.version-slots:16}") int slots,
+                              @Value("${analytics.rollup.enabled:true}") boolean rollupEnabled,
+                              @Value("${analytics.unique-users.sketches-enabled:true}") boolean sketchesEnabled) {
+        this.dataVersionRepository = dataVersionRepository;
+        this.productRepository = productRepository;
+        this.watermarkRepository = watermarkRepository;
+        // Writes to closed days are only reported while the job that closes them is enabled
+        if (rollupEnabled) watermarks.put(SalesRollupService.SALES_ROLLUP, SALES);
+        if (sketchesEnabled) watermarks.put(UniqueUserSketchService.USER_SKETCHES, USER_ACTIVITIES);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // Watermarks and counters from one snapshot: the counters include every write to the days closed
+        this.readOnlyTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.enabled = enabled;
+        this.slots = slots;
+    }
+
+    /**
+     * The current version of the given sources, or null when it is disabled or could not be read.
+     */
+    public String version(Collection<String> sources) {
+        Versions versions = current;
+        if (versions == null) return null;
+        StringBuilder version = new StringBuilder();
+        for (String source : sources) {
+            version.append(source).append('=')
+                    .append(PRODUCTS.equals(source) ? versions.products() : versions.counters().getOrDefault(source, 0L))
+                    .append(';');
+        }
+        return version.toString();
+    }
+
+    /**
+     * The version of the days through {@code endDate} of the given sources, or null unless each of them (other
+     * than products) has closed those days. It only advances with writes to closed days.
+     */
+    public String closedVersion(Collection<String> sources, LocalDate endDate) {
+        Versions versions = current;
+        if (versions == null) return null;
+        StringBuilder version = new StringBuilder();
+        for (String source : sources) {
+            if (PRODUCTS.equals(source)) continue;
+            LocalDate closedThrough = versions.closedThrough().get(source);
+            if (closedThrough == null || endDate.isAfter(closedThrough)) return null;
+            version.append(source).append(CLOSED_SUFFIX).append('=')
+                    .append(versions.counters().getOrDefault(source + CLOSED_SUFFIX, 0L)).append(';');
+        }
+        return version.length() > 0 ? version.toString() : null;
+    }
+
+    /**
+     * Record that rows of {@code table} were committed. Failures are logged: the rows are written either way,
+     * and the version expires with {@code max-staleness}.
+     */
+    public void changed(String table) {
+        if (!enabled) return;
+        try {
+            transactionTemplate.executeWithoutResult(status -> increment(table));
+        } catch (RuntimeException e) {
+            log.warn("Could not advance the data version of {}: {}", table, e.getMessage());
+            return;
+        }
+        refresh();
+    }
+
+    /**
+     * Record, in the writing transaction, that rows of {@code table} are written for days its rollup has
+     * closed. Closed versions do not expire, so a failure fails the write.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void closedDaysChanged(String table) {
+        if (!enabled) return;
+        increment(table + CLOSED_SUFFIX);
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${analytics.etag.refresh-interval-ms:2000}")
+    public void refresh() {
+        if (!enabled) return;
+        try {
+            current = readOnlyTransaction.execute(status -> {
+                Map<String, LocalDate> closedThrough = new HashMap<>();
+                for (RollupWatermark watermark : watermarkRepository.findAllById(watermarks.keySet())) {
+                    closedThrough.put(watermarks.get(watermark.getName()), watermark.getLastClosedDay());
+                }
+                Map<String, Long> counters = new HashMap<>();
+                for (Object[] row : dataVersionRepository.sumByName()) {
+                    counters.put((String) row[0], ((Number) row[1]).longValue());
+                }
+                String products = "";
+                for (Object[] row : productRepository.getChangeWatermark()) {
+                    products = row[0] + "/" + row[1];
+                }
+                return new Versions(counters, products, closedThrough);
+            });
+        } catch (RuntimeException e) {
+            current = null; // no ETags rather than ones that may no longer match the data
+            log.warn("Could not read the data version: {}", e.getMessage());
+        }
+    }
+
+    private void increment(String name) {
+        dataVersionRepository.increment(name, ThreadLocalRandom.current().nextInt(slots));
+    }
+}
@@ -0,0 +1,140 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.dto.SaleExportRow;
+import com.ecommerce.analytics.dto.UserActivityExportRow;
+import com.ecommerce.analytics.repository.SaleRepository;
+import com.ecommerce.analytics.repository.UserActivityRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Writes raw sales / user activities for a date range straight to an output stream.
+ *
+ * Rows are read as flat projections through a forward-only cursor (see the {@code streamExportRows}
+ * queries), so nothing accumulates in the persistence context and the product is joined in the same
+ * statement. Memory use is bounded by the fetch size and the write buffer, not by the range.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExportService {
+
+    public enum Format {
+        CSV, NDJSON;
+
+        public static Format parse(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unsupported export format: " + value);
+            }
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final DateTimeFormatter CSV_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private static final String[] SALE_COLUMNS = {"id", "sale_date", "product_id", "product_name",
+            "category", "quantity", "total_amount", "customer_id", "status"};
+    private static final String[] ACTIVITY_COLUMNS = {"id", "activity_timestamp", "user_id",
+            "activity_type", "product_id", "ip_address", "user_agent"};
+
+    private final SaleRepository saleRepository;
+    private final UserActivityRepository userActivityRepository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Export sales from {@code startDate} through {@code endDate}; returns the number of rows written.
+     */
+    @Transactional(readOnly = true)
+    public long exportSales(LocalDate startDate, LocalDate endDate, Format format, OutputStream out) throws IOException {
+        try (Stream<SaleExportRow> rows = saleRepository.streamExportRows(
+                startDate.atStartOfDay(), endDate.plusDays(1).atStartOfDay())) {
+            return write(rows, format, SaleExportRow.class, SALE_COLUMNS, row -> new Object[]{
+                    row.getId(), row.getSaleDate(), row.getProductId(), row.getProductName(), row.getCategory(),
+                    row.getQuantity(), row.getTotalAmount(), row.getCustomerId(), row.getStatus()}, out);
+        }
+    }
+
+    /**
+     * Export user activities from {@code startDate} through {@code endDate}; returns the number of rows written.
+     */
+    @Transactional(readOnly = true)
+    public long exportActivities(LocalDate startDate, LocalDate endDate, Format format, OutputStream out) throws IOException {
+        try (Stream<UserActivityExportRow> rows = userActivityRepository.streamExportRows(
+                startDate.atStartOfDay(), endDate.plusDays(1).atStartOfDay())) {
+            return write(rows, format, UserActivityExportRow.class, ACTIVITY_COLUMNS, row -> new Object[]{
+                    row.getId(), row.getActivityTimestamp(), row.getUserId(), row.getActivityType(),
+                    row.getProductId(), row.getIpAddress(), row.getUserAgent()}, out);
+        }
+    }
+
+    private <T> long write(Stream<T> rows, Format format, Class<T> type, String[] columns,
+                           Function<T, Object[]> values, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        ObjectWriter json = objectMapper.writerFor(type);
+        long[] count = {0};
+        if (format == Format.CSV) {
+            writeCsvLine(writer, columns);
+        }
+        try {
+            rows.forEach(row -> {
+                try {
+                    if (format == Format.CSV) {
+                        writeCsvLine(writer, values.apply(row));
+                    } else {
+                        writer.write(json.writeValueAsString(row));
+                        writer.write('\n');
+                    }
+                    count[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // Typically the client went away; stop reading from the cursor
+            log.debug("Export aborted after {} rows: {}", count[0], e.getMessage());
+            throw e.getCause();
+        }
+        writer.flush();
+        return count[0];
+    }
+
+    private static void writeCsvLine(Writer writer, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) writer.write(',');
+            Object value = values[i];
+            if (value instanceof LocalDateTime timestamp) {
+                writer.write(CSV_TIMESTAMP.format(timestamp));
+            } else if (value != null) {
+                writer.write(csvEscape(value.toString()));
+            }
+        }
+        writer.write('\n');
+    }
+
+    private static String csvEscape(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
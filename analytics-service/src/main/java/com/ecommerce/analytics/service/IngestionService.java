@@ -0,0 +1,350 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.cache.PartialRangeCache;
+import com.ecommerce.analytics.columnar.ColumnarStore;
+import com.ecommerce.analytics.dto.SaleEventDto;
+import com.ecommerce.analytics.dto.UserActivityEventDto;
+import com.ecommerce.analytics.live.LiveSalesService;
+import com.ecommerce.analytics.live.LiveUpdateService;
+import com.ecommerce.analytics.model.Product;
+import com.ecommerce.analytics.model.Sale;
+import com.ecommerce.analytics.model.UserActivity;
+import com.ecommerce.analytics.repository.ProductRepository;
+import com.ecommerce.analytics.repository.SaleRepository;
+import com.ecommerce.analytics.repository.UserActivityRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Writes sales and user activity events in chunks of {@code analytics.ingest.batch-size}, one
+ * transaction per chunk. Hibernate sends each chunk as JDBC batches, which the MySQL driver
+ * rewrites into multi-row INSERTs.
+ *
+ * Events are read lazily, so an NDJSON upload is never held in memory as a whole. A chunk that is
+ * not yet full is still written once its first event is older than {@code analytics.ingest.flush-interval}
+ * (checked as events arrive), so slow streams do not sit uncommitted.
+ *
+ * Writes for days already closed by the rollup / sketch jobs are folded into those tables in the same
+ * transaction, which holds their watermarks so that no day is closed while it runs, and advance the closed
+ * data version. After commit, the cached partials of every past day written, and all cached results of past
+ * ranges, are evicted.
+ * With read replicas, a query racing the eviction may cache them again from a replica that has not applied the
+ * write yet, so they are evicted again, and the data versions advanced again, once
+ * {@code analytics.datasource.replicas.catch-up-time} has passed.
+ * Committed rows are also appended to the in-memory {@link ColumnarStore}, committed sales are pushed to live
+ * update subscribers by {@link LiveUpdateService} and counted in the {@link LiveSalesService} windows, and the
+ * {@link DataVersionService} version is advanced so that ETags issued before the write no longer match.
+ */
+@Service
+@Slf4j
+public class IngestionService {
+
+    static final String[] SALES_PARTIALS = {"salesByCategory", "topProducts", "dailySales", "totalSales"};
+    static final String[] ACTIVITY_PARTIALS = {"activitySummary", "mostViewed"};
+
+    private record FollowUp(long dueNanos, Runnable task) {
+    }
+
+    private final SaleRepository saleRepository;
+    private final UserActivityRepository userActivityRepository;
+    private final ProductRepository productRepository;
+    private final SalesRollupService salesRollupService;
+    private final UniqueUserSketchService uniqueUserSketchService;
+    private final PartialRangeCache partialRangeCache;
+    private final ColumnarStore columnarStore;
+    private final LiveUpdateService liveUpdateService;
+    private final LiveSalesService liveSalesService;
+    private final DataVersionService dataVersionService;
+    private final EntityManager entityManager;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long catchUpNanos;
+    // Due in the order they were added, as they all wait catchUpNanos
+    private final Queue<FollowUp> followUps = new ConcurrentLinkedQueue<>();
+
+    public IngestionService(SaleRepository saleRepository,
+                            UserActivityRepository userActivityRepository,
+                            ProductRepository productRepository,
+                            SalesRollupService salesRollupService,
+                            UniqueUserSketchService uniqueUserSketchService,
+                            PartialRangeCache partialRangeCache,
+                            ColumnarStore columnarStore,
+                            LiveUpdateService liveUpdateService,
+                            LiveSalesService liveSalesService,
+                            DataVersionService dataVersionService,
+                            EntityManager entityManager,
+                            Validator validator,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${analytics.ingest.batch-size:500}") int batchSize,
+                            @Value("${analytics.ingest.flush-interval:1s}") Duration flushInterval,
+                            @Value("${analytics.datasource.replicas.enabled:false}") boolean replicas,
+                            @Value("${analytics.datasource.replicas.catch-up-time:35s}") Duration catchUpTime) {
+        this.saleRepository = saleRepository;
+        this.userActivityRepository = userActivityRepository;
+        this.productRepository = productRepository;
+        this.salesRollupService = salesRollupService;
+        this.uniqueUserSketchService = uniqueUserSketchService;
+        this.partialRangeCache = partialRangeCache;
+        this.columnarStore = columnarStore;
+        this.liveUpdateService = liveUpdateService;
+        this.liveSalesService = liveSalesService;
+        this.dataVersionService = dataVersionService;
+        this.entityManager = entityManager;
+        this.validator = validator;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.catchUpNanos = replicas ? catchUpTime.toNanos() : 0;
+    }
+
+    /**
+     * Write all sales; returns how many were committed. Chunks written before an invalid event stay committed.
+     */
+    public long ingestSales(Iterator<SaleEventDto> events) {
+        return ingest(events, this::writeSales);
+    }
+
+    /**
+     * Write all activities; returns how many were committed. Chunks written before an invalid event stay committed.
+     */
+    public long ingestActivities(Iterator<UserActivityEventDto> events) {
+        return ingest(events, this::writeActivities);
+    }
+
+    private <T> long ingest(Iterator<T> events, Consumer<List<T>> writer) {
+        List<T> chunk = new ArrayList<>(batchSize);
+        long chunkStarted = 0;
+        long accepted = 0;
+        try {
+            while (events.hasNext()) {
+                T event = validate(events.next());
+                if (chunk.isEmpty()) {
+                    chunkStarted = System.nanoTime();
+                }
+                chunk.add(event);
+                if (chunk.size() >= batchSize || System.nanoTime() - chunkStarted >= flushIntervalNanos) {
+                    accepted += write(chunk, writer);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                accepted += write(chunk, writer);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(e.getMessage() + " (" + accepted + " earlier events were committed)", e);
+        }
+        log.debug("Ingested {} events", accepted);
+        return accepted;
+    }
+
+    private <T> int write(List<T> chunk, Consumer<List<T>> writer) {
+        int size = chunk.size();
+        writer.accept(chunk);
+        chunk.clear();
+        return size;
+    }
+
+    /**
+     * Write one chunk of already validated sales in a single transaction.
+     */
+    public void writeSales(List<SaleEventDto> events) {
+        AtomicBoolean closedDays = new AtomicBoolean();
+        List<Sale> written = transactionTemplate.execute(status -> {
+            LocalDate closedThrough = salesRollupService.lockClosedThrough();
+            Function<Long, Product> products = productReferences(events.stream().map(SaleEventDto::getProductId));
+            List<Sale> sales = new ArrayList<>(events.size());
+            for (SaleEventDto event : events) {
+                Sale sale = new Sale();
+                sale.setProduct(products.apply(event.getProductId()));
+                sale.setQuantity(event.getQuantity());
+                sale.setTotalAmount(event.getTotalAmount());
+                sale.setSaleDate(event.getSaleDate());
+                sale.setCustomerId(event.getCustomerId());
+                if (event.getStatus() != null) {
+                    sale.setStatus(event.getStatus());
+                }
+                sales.add(sale);
+            }
+            saleRepository.saveAll(sales);
+            entityManager.flush();
+            salesRollupService.applyLateSales(sales, closedThrough);
+            if (onClosedDays(sales.stream().map(s -> s.getSaleDate().toLocalDate()), closedThrough)) {
+                dataVersionService.closedDaysChanged(DataVersionService.SALES);
+                closedDays.set(true);
+            }
+            entityManager.clear();
+            return sales;
+        });
+        columnarStore.appendSales(written);
+        liveUpdateService.salesCommitted(written);
+        liveSalesService.record(written);
+        committed(daysBefore(written.stream().map(s -> s.getSaleDate().toLocalDate())), closedDays.get(),
+                DataVersionService.SALES, SALES_PARTIALS);
+    }
+
+    /**
+     * Write one chunk of already validated activities in a single transaction.
+     */
+    public void writeActivities(List<UserActivityEventDto> events) {
+        AtomicBoolean closedDays = new AtomicBoolean();
+        List<UserActivity> written = transactionTemplate.execute(status -> {
+            LocalDate closedThrough = uniqueUserSketchService.lockClosedThrough();
+            Function<Long, Product> products = productReferences(events.stream().map(UserActivityEventDto::getProductId));
+            List<UserActivity> activities = new ArrayList<>(events.size());
+            for (UserActivityEventDto event : events) {
+                UserActivity activity = new UserActivity();
+                activity.setUserId(event.getUserId());
+                activity.setActivityType(event.getActivityType());
+                activity.setProduct(event.getProductId() != null ? products.apply(event.getProductId()) : null);
+                activity.setActivityTimestamp(event.getActivityTimestamp());
+                activity.setIpAddress(event.getIpAddress());
+                activity.setUserAgent(event.getUserAgent());
+                activities.add(activity);
+            }
+            userActivityRepository.saveAll(activities);
+            entityManager.flush();
+            uniqueUserSketchService.applyLateActivities(activities, closedThrough);
+            if (onClosedDays(activities.stream().map(a -> a.getActivityTimestamp().toLocalDate()), closedThrough)) {
+                dataVersionService.closedDaysChanged(DataVersionService.USER_ACTIVITIES);
+                closedDays.set(true);
+            }
+            entityManager.clear();
+            return activities;
+        });
+        columnarStore.appendActivities(written);
+        committed(daysBefore(written.stream().map(a -> a.getActivityTimestamp().toLocalDate())), closedDays.get(),
+                DataVersionService.USER_ACTIVITIES, ACTIVITY_PARTIALS);
+    }
+
+    /**
+     * Evict what rows committed for {@code pastDays} made stale and advance the data version of {@code table};
+     * with replicas, once more after the catch-up time.
+     */
+    private void committed(Set<LocalDate> pastDays, boolean closedDays, String table, String[] regions) {
+        evict(pastDays, regions);
+        dataVersionService.changed(table);
+        if (catchUpNanos > 0 && !pastDays.isEmpty()) {
+            followUps.add(new FollowUp(System.nanoTime() + catchUpNanos, () -> {
+                evict(pastDays, regions);
+                if (closedDays) {
+                    transactionTemplate.executeWithoutResult(status -> dataVersionService.closedDaysChanged(table));
+                }
+                dataVersionService.changed(table);
+            }));
+        }
+    }
+
+    private void evict(Set<LocalDate> pastDays, String[] regions) {
+        if (pastDays.isEmpty()) return;
+        pastDays.forEach(day -> partialRangeCache.evictDay(day, regions));
+        partialRangeCache.evictRanges(regions); // any of them may cover the days
+    }
+
+    /**
+     * Run the second evictions of late writes that are due, see {@link #committed}.
+     */
+    @Scheduled(fixedDelayString = "${analytics.datasource.replicas.health-check-interval-ms:5000}")
+    public void followUpLateWrites() {
+        long now = System.nanoTime();
+        for (FollowUp followUp = followUps.peek(); followUp != null && now - followUp.dueNanos() >= 0;
+             followUp = followUps.peek()) {
+            if (!followUps.remove(followUp)) continue;
+            try {
+                followUp.task().run();
+            } catch (RuntimeException e) {
+                log.warn("Could not evict the partials of a late write again: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Product proxies for the referenced ids, checked with one query so unknown ids fail the chunk
+     * with a clear message instead of a foreign key violation.
+     */
+    private Function<Long, Product> productReferences(Stream<Long> productIds) {
+        return requireProducts(productIds) ? productRepository::getReferenceById : id -> null;
+    }
+
+    /**
+     * Fail like a write would when a sale or activity event references an unknown product, so queued
+     * events can be rejected before they are acknowledged.
+     */
+    public void checkProducts(List<?> events) {
+        requireProducts(events.stream().map(event -> event instanceof SaleEventDto sale
+                ? sale.getProductId() : ((UserActivityEventDto) event).getProductId()));
+    }
+
+    /**
+     * Returns false when no product is referenced.
+     */
+    private boolean requireProducts(Stream<Long> productIds) {
+        Set<Long> ids = productIds.filter(Objects::nonNull).collect(Collectors.toSet());
+        if (ids.isEmpty()) {
+            return false;
+        }
+        Set<Long> missing = new HashSet<>(ids);
+        productRepository.findExistingIds(ids).forEach(missing::remove);
+        if (!missing.isEmpty()) {
+            throw new IllegalArgumentException("Unknown product ids: " + new TreeSet<>(missing));
+        }
+        return true;
+    }
+
+    /**
+     * Whether any day is at or before the locked watermark.
+     */
+    private static boolean onClosedDays(Stream<LocalDate> days, LocalDate closedThrough) {
+        return closedThrough != null && days.anyMatch(day -> !day.isAfter(closedThrough));
+    }
+
+    /**
+     * Days before today touched by the chunk; their closed partials may now be stale.
+     */
+    private static Set<LocalDate> daysBefore(Stream<LocalDate> days) {
+        LocalDate today = LocalDate.now();
+        return days.filter(day -> day.isBefore(today)).collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    /**
+     * Check the bean validation constraints of one event; returns it unchanged.
+     */
+    public <T> T validate(T event) {
+        if (event == null) {
+            throw new IllegalArgumentException("Event must not be null");
+        }
+        Set<ConstraintViolation<T>> violations = validator.validate(event);
+        if (!violations.isEmpty()) {
+            String message = violations.stream()
+                    .map(v -> v.getPropertyPath() + " " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", "));
+            throw new IllegalArgumentException("Invalid event: " + message);
+        }
+        return event;
+    }
+}
@@ -0,0 +1,182 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.config.ReplicaRouter;
+import com.ecommerce.analytics.dto.InventoryDto;
+import com.ecommerce.analytics.dto.InventoryPageDto;
+import com.ecommerce.analytics.dto.StockStatus;
+import com.ecommerce.analytics.inventory.StockIndex;
+import com.ecommerce.analytics.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inventory in pages, for catalogs too large for {@link AnalyticsService#getInventoryStatus()}. Pages are
+ * read with keyset pagination (the cursor is the last product id, or the last (updatedAt, id) for changes)
+ * into plain rows, so no entities are loaded and a page costs the same however deep it is.
+ * <p>
+ * {@link #getChanges} lists products in the order they were last updated; its cursor doubles as a
+ * watermark that a client polls with to receive what changed since. Updates are stamped by the application
+ * before they commit, so one can become visible behind the watermark: once a client has caught up, its
+ * watermark is moved back to {@code analytics.inventory.changes-overlap} before now, and the next poll
+ * returns the changes since then again. Clients drop repeats by (productId, updatedAt). Deleted products are
+ * not reported; clients that need them gone re-read the catalog with {@link #getInventoryPage} from time to time.
+ * <p>
+ * Low-stock lists and counts per status are answered by the {@link StockIndex} once it is built, and by
+ * the database before that.
+ */
+@Service
+@Transactional(readOnly = true)
+@RequiredArgsConstructor
+@Slf4j
+public class InventoryService {
+
+    private final ProductRepository productRepository;
+    private final StockIndex stockIndex;
+
+    @Value("${analytics.inventory.max-page-size:1000}")
+    private int maxPageSize;
+
+    @Value("${analytics.inventory.changes-overlap:30s}")
+    private Duration changesOverlap;
+
+    /**
+     * Products in id order, optionally of one category and status, after {@code cursor} (null for the first page).
+     */
+    public InventoryPageDto getInventoryPage(String category, StockStatus status, String cursor, int limit) {
+        log.info("Fetching inventory page after {} (category {}, status {})", cursor, category, status);
+        int size = pageSize(limit);
+        long afterId = cursor != null ? parseId(cursor) : 0L;
+        int minStock = status != null ? status.getMinQuantity() : Integer.MIN_VALUE;
+        int maxStock = status != null ? status.getMaxQuantity() : Integer.MAX_VALUE;
+
+        // One row more than asked for tells whether another page follows
+        PageRequest page = PageRequest.of(0, size + 1);
+        List<Object[]> rows = category != null
+                ? productRepository.findInventoryPageByCategory(category, afterId, minStock, maxStock, page)
+                : productRepository.findInventoryPage(afterId, minStock, maxStock, page);
+
+        boolean hasMore = rows.size() > size;
+        List<InventoryDto> items = toItems(rows, size);
+        String nextCursor = hasMore ? String.valueOf(items.get(items.size() - 1).getProductId()) : null;
+        return new InventoryPageDto(items, nextCursor, hasMore);
+    }
+
+    /**
+     * Products updated after {@code cursor}, or after {@code since} when no cursor is given (both null: every
+     * product). While {@code hasMore}, the next cursor continues right after the last item; after the last
+     * page it is at most {@code changes-overlap} before now (see the class comment). Changes are read from
+     * the primary: on a lagging replica, rows older than the watermark could still be on their way.
+     */
+    public InventoryPageDto getChanges(LocalDateTime since, String cursor, int limit) {
+        log.info("Fetching inventory changes after {}", cursor != null ? cursor : since);
+        ReplicaRouter.requirePrimary();
+        int size = pageSize(limit);
+        LocalDateTime updatedAt = since != null ? since : LocalDateTime.of(1970, 1, 1, 0, 0);
+        long afterId = 0L;
+        if (cursor != null) {
+            int separator = cursor.lastIndexOf('_');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            try {
+                updatedAt = LocalDateTime.parse(cursor.substring(0, separator));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+            afterId = parseId(cursor.substring(separator + 1));
+        }
+
+        List<Object[]> rows = productRepository.findInventoryChanges(updatedAt, afterId, PageRequest.of(0, size + 1));
+        boolean hasMore = rows.size() > size;
+        List<InventoryDto> items = toItems(rows, size);
+        for (int i = 0; i < items.size(); i++) {
+            items.get(i).setUpdatedAt((LocalDateTime) rows.get(i)[4]);
+        }
+        if (!items.isEmpty()) {
+            Object[] last = rows.get(items.size() - 1);
+            updatedAt = (LocalDateTime) last[4];
+            afterId = ((Number) last[0]).longValue();
+        }
+        LocalDateTime settled = LocalDateTime.now().minus(changesOverlap);
+        if (!hasMore && updatedAt.isAfter(settled)) {
+            // Updates stamped after `settled` may still commit; read them again next time
+            updatedAt = settled;
+            afterId = 0L;
+        }
+        return new InventoryPageDto(items, updatedAt + "_" + afterId, hasMore);
+    }
+
+    /**
+     * Products of one category with less than {@code threshold} in stock, lowest stock first.
+     */
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public List<InventoryDto> getLowStock(int threshold, String category) {
+        log.info("Fetching low stock products of {} with threshold {}", category, threshold);
+        if (stockIndex.isReady()) {
+            return stockIndex.lowStock(threshold, category);
+        }
+        return productRepository.findLowStockProductsByCategory(category, threshold).stream()
+                .map(p -> new InventoryDto(p.getId(), p.getName(), p.getCategory(), p.getStockQuantity(),
+                        StockStatus.LOW.name()))
+                .toList();
+    }
+
+    /**
+     * Number of products per stock status, optionally of one category.
+     */
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public Map<String, Long> getStatusCounts(String category) {
+        log.info("Fetching stock status counts (category {})", category);
+        Map<String, Long> counts = new LinkedHashMap<>();
+        if (stockIndex.isReady()) {
+            stockIndex.countByStatus(category).forEach((status, count) -> counts.put(status.name(), count.longValue()));
+            return counts;
+        }
+        for (StockStatus status : StockStatus.values()) {
+            counts.put(status.name(), category != null
+                    ? productRepository.countByCategoryAndStockQuantityGreaterThanEqualAndStockQuantityLessThan(
+                            category, status.getMinQuantity(), status.getMaxQuantity())
+                    : productRepository.countByStockQuantityGreaterThanEqualAndStockQuantityLessThan(
+                            status.getMinQuantity(), status.getMaxQuantity()));
+        }
+        return counts;
+    }
+
+    private int pageSize(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive: " + limit);
+        }
+        return Math.min(limit, maxPageSize);
+    }
+
+    private static long parseId(String id) {
+        try {
+            return Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + id);
+        }
+    }
+
+    private static List<InventoryDto> toItems(List<Object[]> rows, int size) {
+        List<InventoryDto> items = new ArrayList<>(Math.min(rows.size(), size));
+        for (Object[] row : rows.subList(0, Math.min(rows.size(), size))) {
+            int stock = ((Number) row[3]).intValue();
+            items.add(new InventoryDto(((Number) row[0]).longValue(), (String) row[1], (String) row[2], stock,
+                    StockStatus.of(stock).name()));
+        }
+        return items;
+    }
+}
@@ -0,0 +1,239 @@
+package com.ecommerce.analytics.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.function.Predicate;
+
+/**
+ * Keeps the monthly {@code RANGE COLUMNS} partitions of {@code sales} and {@code user_activities} in shape
+ * (MySQL only; tables that are not partitioned are left alone):
+ * <ul>
+ *   <li>partitions exist through {@code analytics.partitions.months-ahead} months from now, split off the
+ *       {@code MAXVALUE} catch-all while it is still (nearly) empty;</li>
+ *   <li>with {@code analytics.partitions.retention-months} set, months older than that are exchanged into
+ *       a standalone {@code <table>_archive_<partition>} table (ARCHIVE) or dropped (DROP). A month is only
+ *       expired once the sales rollup / user sketches have closed it, so aggregates over it stay available.</li>
+ * </ul>
+ * Runs under a MySQL named lock so that only one instance changes partitions at a time.
+ */
+@Service
+@Slf4j
+public class PartitionMaintenanceService {
+
+    public enum Expiry { ARCHIVE, DROP }
+
+    /**
+     * One partition; {@code bound} is its exclusive upper bound, null for {@code MAXVALUE}.
+     */
+    record Partition(String name, LocalDate bound) {
+    }
+
+    private record PartitionedTable(String table, String column, Predicate<LocalDate> closed) {
+    }
+
+    static final String LOCK_NAME = "analytics_partition_maintenance";
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final List<PartitionedTable> tables;
+    private final boolean enabled;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final Expiry expiry;
+
+    public PartitionMaintenanceService(JdbcTemplate jdbcTemplate,
+                                       SalesRollupService salesRollupService,
+                                       UniqueUserSketchService uniqueUserSketchService,
+                                       @Value("${analytics.partitions.enabled:true}") boolean enabled,
+                                       @Value("${analytics.partitions.months-ahead:3}") int monthsAhead,
+                                       @Value("${analytics.partitions.retention-months:0}") int retentionMonths,
+                                       @Value("${analytics.partitions.expiry:ARCHIVE}") Expiry expiry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tables = List.of(
+                new PartitionedTable("sales", "sale_date", day -> salesRollupService.closedThroughFor(day) != null),
+                new PartitionedTable("user_activities", "activity_timestamp",
+                        day -> uniqueUserSketchService.closedThroughFor(day) != null));
+        this.enabled = enabled;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.expiry = expiry;
+    }
+
+    @Scheduled(initialDelayString = "${analytics.partitions.initial-delay-ms:60000}",
+               fixedDelayString = "${analytics.partitions.interval-ms:21600000}")
+    public void maintain() {
+        if (!enabled) return;
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                // Named locks belong to the session, so everything runs on this one connection
+                JdbcTemplate session = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+                if (!isMySql(session)) {
+                    return null;
+                }
+                Integer locked = session.queryForObject("SELECT GET_LOCK(?, 0)", Integer.class, LOCK_NAME);
+                if (locked == null || locked != 1) {
+                    log.debug("Partition maintenance is running on another instance");
+                    return null;
+                }
+                try {
+                    for (PartitionedTable table : tables) {
+                        maintain(session, table);
+                    }
+                } finally {
+                    session.queryForObject("SELECT RELEASE_LOCK(?)", Integer.class, LOCK_NAME);
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Partition maintenance failed: {}", e.getMessage());
+        }
+    }
+
+    private void maintain(JdbcTemplate session, PartitionedTable table) {
+        List<Partition> partitions = partitions(session, table.table());
+        if (partitions.isEmpty()) {
+            log.debug("{} is not partitioned, skipping partition maintenance", table.table());
+            return;
+        }
+        LocalDate today = LocalDate.now();
+
+        Partition catchAll = partitions.stream().filter(p -> p.bound() == null).findFirst().orElse(null);
+        LocalDate earliestUnsplit = null;
+        if (catchAll != null) {
+            earliestUnsplit = session.queryForObject("SELECT DATE(MIN(" + table.column() + ")) FROM "
+                    + table.table() + " PARTITION (" + catchAll.name() + ")", LocalDate.class);
+        }
+        String create = createStatement(table.table(), partitions, earliestUnsplit, today, monthsAhead);
+        if (create != null) {
+            log.info("Adding partitions to {}: {}", table.table(), create);
+            session.execute(create);
+        }
+
+        Set<String> existingTables = new HashSet<>(session.queryForList(
+                "SELECT LOWER(table_name) FROM information_schema.tables WHERE table_schema = DATABASE()", String.class));
+        for (Partition partition : expired(partitions, today, retentionMonths)) {
+            if (!table.closed().test(partition.bound().minusDays(1))) {
+                log.info("Keeping expired partition {}.{}: not yet closed by the rollup", table.table(), partition.name());
+                break;
+            }
+            String archive = archiveTable(table.table(), partition);
+            boolean archived = expiry == Expiry.ARCHIVE && existingTables.contains(archive);
+            if (archived && rowCount(session, table.table(), partition) > 0) {
+                // An earlier run exchanged this month into its archive; exchanging again would swap the rows back
+                log.warn("Not expiring {}.{}: archive table {} already exists", table.table(), partition.name(), archive);
+                break;
+            }
+            List<String> statements = expiryStatements(table.table(), partition, expiry, archived);
+            log.info("Expiring partition {}.{} ({}): {}", table.table(), partition.name(), expiry, statements);
+            statements.forEach(session::execute);
+        }
+    }
+
+    private static long rowCount(JdbcTemplate session, String table, Partition partition) {
+        Long rows = session.queryForObject("SELECT COUNT(*) FROM " + table + " PARTITION (" + partition.name() + ")", Long.class);
+        return rows != null ? rows : 0;
+    }
+
+    private static boolean isMySql(JdbcTemplate session) {
+        String product = session.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        return product != null && product.toLowerCase().contains("mysql");
+    }
+
+    private static List<Partition> partitions(JdbcTemplate session, String table) {
+        return session.query("SELECT partition_name, partition_description FROM information_schema.partitions " +
+                        "WHERE table_schema = DATABASE() AND table_name = ? AND partition_name IS NOT NULL " +
+                        "ORDER BY partition_ordinal_position",
+                (rs, i) -> new Partition(rs.getString(1), bound(rs.getString(2))), table);
+    }
+
+    /**
+     * Parse a {@code RANGE COLUMNS} partition description such as {@code '2024-02-01 00:00:00'} or {@code MAXVALUE}.
+     */
+    static LocalDate bound(String description) {
+        String value = description.replace("'", "").trim();
+        return value.equalsIgnoreCase("MAXVALUE") ? null : LocalDate.parse(value.substring(0, 10));
+    }
+
+    /**
+     * The statement adding monthly partitions through {@code monthsAhead} months after the current one,
+     * or null when they all exist. New months are split off the {@code MAXVALUE} partition when there is one;
+     * they start at the month of its earliest row, so a backlog in it is spread over proper months.
+     */
+    static String createStatement(String table, List<Partition> partitions, LocalDate earliestUnsplit,
+                                  LocalDate today, int monthsAhead) {
+        LocalDate lastBound = partitions.stream().map(Partition::bound).filter(b -> b != null)
+                .max(Comparator.naturalOrder()).orElse(null);
+        LocalDate through = today.withDayOfMonth(1).plusMonths(monthsAhead + 1L);
+        if (lastBound != null && !lastBound.isBefore(through)) {
+            return null;
+        }
+
+        LocalDate first = earliestUnsplit != null ? earliestUnsplit : today;
+        if (lastBound != null && first.isBefore(lastBound)) {
+            first = lastBound;
+        }
+        StringJoiner definitions = new StringJoiner(", ");
+        for (LocalDate bound = first.withDayOfMonth(1).plusMonths(1); !bound.isAfter(through); bound = bound.plusMonths(1)) {
+            definitions.add("PARTITION p" + MONTH.format(bound.minusMonths(1)) + " VALUES LESS THAN ('" + bound + "')");
+        }
+        if (definitions.length() == 0) {
+            return null;
+        }
+        Partition catchAll = partitions.stream().filter(p -> p.bound() == null).findFirst().orElse(null);
+        if (catchAll == null) {
+            return "ALTER TABLE " + table + " ADD PARTITION (" + definitions + ")";
+        }
+        definitions.add("PARTITION " + catchAll.name() + " VALUES LESS THAN (MAXVALUE)");
+        return "ALTER TABLE " + table + " REORGANIZE PARTITION " + catchAll.name() + " INTO (" + definitions + ")";
+    }
+
+    /**
+     * Partitions holding only months before the retention period, oldest first; never the last bounded one.
+     */
+    static List<Partition> expired(List<Partition> partitions, LocalDate today, int retentionMonths) {
+        List<Partition> expired = new ArrayList<>();
+        if (retentionMonths <= 0) return expired;
+        LocalDate keepFrom = today.withDayOfMonth(1).minusMonths(retentionMonths);
+        List<Partition> bounded = partitions.stream().filter(p -> p.bound() != null)
+                .sorted(Comparator.comparing(Partition::bound)).toList();
+        for (int i = 0; i < bounded.size() - 1; i++) {
+            if (!bounded.get(i).bound().isAfter(keepFrom)) {
+                expired.add(bounded.get(i));
+            }
+        }
+        return expired;
+    }
+
+    static String archiveTable(String table, Partition partition) {
+        return (table + "_archive_" + partition.name()).toLowerCase();
+    }
+
+    /**
+     * Statements expiring one partition; {@code archived} means its rows were already exchanged into the archive table.
+     */
+    static List<String> expiryStatements(String table, Partition partition, Expiry expiry, boolean archived) {
+        List<String> statements = new ArrayList<>();
+        if (expiry == Expiry.ARCHIVE && !archived) {
+            String archive = archiveTable(table, partition);
+            statements.add("CREATE TABLE " + archive + " LIKE " + table);
+            statements.add("ALTER TABLE " + archive + " REMOVE PARTITIONING");
+            statements.add("ALTER TABLE " + table + " EXCHANGE PARTITION " + partition.name() + " WITH TABLE " + archive);
+        }
+        statements.add("ALTER TABLE " + table + " DROP PARTITION " + partition.name());
+        return statements;
+    }
+}
@@ -0,0 +1,199 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.model.RollupWatermark;
+import com.ecommerce.analytics.model.Sale;
+import com.ecommerce.analytics.repository.RollupWatermarkRepository;
+import com.ecommerce.analytics.repository.SaleRepository;
+import com.ecommerce.analytics.repository.SalesDailyRollupRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * Maintains the {@code sales_daily_rollup} table.
+ *
+ * Completed days are aggregated from raw sales once and the watermark advanced; sales that
+ * arrive late for an already closed day are folded in incrementally by {@link #applyLateSales}.
+ * Whether a day is closed is decided by the watermark row, locked in the writing transaction, not by the
+ * copy this instance reads for queries: that copy lags behind closes made here and on other instances.
+ * With read replicas, a day closed after startup is only answered from the rollup once
+ * {@code analytics.datasource.replicas.catch-up-time} has passed since the watermark was read, as replicas may
+ * not have them before; it is read from raw rows until then.
+ */
+@Service
+@Slf4j
+public class SalesRollupService {
+
+    static final String SALES_ROLLUP = "sales_daily_rollup";
+
+    /**
+     * A watermark read from the primary that queries wait for the replicas to catch up with.
+     */
+    private record Advance(LocalDate closedThrough, long readAt) {
+    }
+
+    private final SaleRepository saleRepository;
+    private final SalesDailyRollupRepository rollupRepository;
+    private final RollupWatermarkRepository watermarkRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long catchUpNanos;
+
+    private volatile LocalDate closedThrough;
+    private volatile Advance advance;
+    private volatile boolean watermarkLoaded;
+
+    public SalesRollupService(SaleRepository saleRepository,
+                              SalesDailyRollupRepository rollupRepository,
+                              RollupWatermarkRepository watermarkRepository,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${analytics.rollup.enabled:true}") boolean enabled,
+                              @Value("${analytics.datasource.replicas.enabled:false}") boolean replicas,
+                              @Value("${analytics.datasource.replicas.catch-up-time:35s}") Duration catchUpTime) {
+        this.saleRepository = saleRepository;
+        this.rollupRepository = rollupRepository;
+        this.watermarkRepository = watermarkRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.catchUpNanos = replicas ? catchUpTime.toNanos() : 0;
+    }
+
+    /**
+     * Create the watermark row, with no day closed, unless it exists: while it does not, {@link #lockClosedThrough}
+     * locks nothing and the first close could run without the sales of a concurrent write.
+     */
+    @PostConstruct
+    public void createWatermark() {
+        if (!enabled) return;
+        try {
+            transactionTemplate.executeWithoutResult(status -> watermarkRepository.insertIfAbsent(SALES_ROLLUP));
+        } catch (RuntimeException e) {
+            log.warn("Could not create the sales rollup watermark: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Last day answered from the rollup for a range starting at {@code startDate},
+     * or null when the range must be read entirely from raw sales.
+     */
+    public LocalDate closedThroughFor(LocalDate startDate) {
+        if (!enabled) return null;
+        if (!watermarkLoaded) {
+            reloadWatermark();
+        }
+        Advance pending = advance;
+        if (pending != null && System.nanoTime() - pending.readAt() >= catchUpNanos) {
+            closedThrough = pending.closedThrough();
+            advance = null;
+        }
+        LocalDate day = closedThrough;
+        return day != null && !day.isBefore(startDate) ? day : null;
+    }
+
+    /**
+     * Aggregate every completed day after the watermark, one transaction per day.
+     */
+    @Scheduled(initialDelayString = "${analytics.rollup.initial-delay-ms:30000}",
+               fixedDelayString = "${analytics.rollup.refresh-interval-ms:900000}")
+    public void closeCompletedDays() {
+        if (!enabled) return;
+
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        LocalDate next = nextDayToClose();
+        try {
+            while (next != null && !next.isAfter(yesterday)) {
+                LocalDate day = next;
+                transactionTemplate.executeWithoutResult(status -> closeDay(day));
+                next = day.plusDays(1);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Sales rollup stopped before {}: {}", next, e.getMessage());
+        } finally {
+            reloadWatermark();
+        }
+    }
+
+    /**
+     * The last closed day, or null when none is, read with a shared lock on the watermark that is held until
+     * the calling transaction ends. No day can be closed meanwhile, so each sale the transaction writes is
+     * either read when its day is closed or passed to {@link #applyLateSales}. Call it before writing the
+     * sales: a close holding the watermark must not have to wait for them.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public LocalDate lockClosedThrough() {
+        if (!enabled) return null;
+        return watermarkRepository.findByNameForShare(SALES_ROLLUP)
+                .map(RollupWatermark::getLastClosedDay)
+                .orElse(null);
+    }
+
+    /**
+     * Fold sales for days closed through {@code lastClosedDay}, as returned by {@link #lockClosedThrough} in
+     * the same transaction, into the rollup. Sales for open days are picked up when the day is closed.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void applyLateSales(Collection<Sale> sales, LocalDate lastClosedDay) {
+        if (!enabled || lastClosedDay == null) return;
+
+        for (Sale sale : sales) {
+            LocalDate day = sale.getSaleDate().toLocalDate();
+            if (day.isAfter(lastClosedDay)) continue;
+            rollupRepository.increment(day, sale.getProduct().getId(),
+                    sale.getStatus() != null ? sale.getStatus() : "UNKNOWN",
+                    sale.getTotalAmount(), sale.getQuantity());
+        }
+    }
+
+    private void closeDay(LocalDate day) {
+        RollupWatermark watermark = watermarkRepository.findByNameForUpdate(SALES_ROLLUP)
+                .orElseGet(() -> new RollupWatermark(SALES_ROLLUP, null));
+        if (watermark.getLastClosedDay() != null && !watermark.getLastClosedDay().isBefore(day)) {
+            return; // closed concurrently by another instance
+        }
+
+        rollupRepository.deleteDay(day);
+        int rows = rollupRepository.rollupRange(day.atStartOfDay(), day.plusDays(1).atStartOfDay());
+        watermark.setLastClosedDay(day);
+        watermarkRepository.save(watermark);
+        log.debug("Closed sales rollup for {} ({} rows)", day, rows);
+    }
+
+    private LocalDate nextDayToClose() {
+        return watermarkRepository.findById(SALES_ROLLUP)
+                .map(RollupWatermark::getLastClosedDay)
+                .map(day -> day.plusDays(1))
+                .orElseGet(() -> {
+                    LocalDateTime earliest = saleRepository.findEarliestSaleDate();
+                    return earliest != null ? earliest.toLocalDate() : null;
+                });
+    }
+
+    private void reloadWatermark() {
+        try {
+            LocalDate read = watermarkRepository.findById(SALES_ROLLUP)
+                    .map(RollupWatermark::getLastClosedDay)
+                    .orElse(null);
+            LocalDate current = closedThrough;
+            if (!watermarkLoaded || catchUpNanos == 0 || read == null || current != null && !read.isAfter(current)) {
+                closedThrough = read;
+                advance = null;
+            } else if (advance == null || !read.equals(advance.closedThrough())) {
+                advance = new Advance(read, System.nanoTime());
+            }
+            watermarkLoaded = true;
+        } catch (RuntimeException e) {
+            log.warn("Could not read sales rollup watermark: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.aggregate.HyperLogLog;
+import com.ecommerce.analytics.model.RollupWatermark;
+import com.ecommerce.analytics.model.UserActivity;
+import com.ecommerce.analytics.model.UserActivityDailySketch;
+import com.ecommerce.analytics.repository.RollupWatermarkRepository;
+import com.ecommerce.analytics.repository.UserActivityDailySketchRepository;
+import com.ecommerce.analytics.repository.UserActivityRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Maintains one HyperLogLog sketch of active user ids per day in {@code user_activity_daily_hll}
+ * and answers unique-user counts for any range by merging them.
+ *
+ * Completed days are sketched from raw activities once and the watermark advanced; activities
+ * that arrive late for a closed day are added to its stored sketch by {@link #applyLateActivities}.
+ * Days after the watermark are sketched from raw rows at query time. Whether a day is closed is decided by
+ * the watermark row, locked in the writing transaction, not by the copy this instance reads for queries.
+ * With read replicas, a day closed after startup is only answered from its stored sketch once
+ * {@code analytics.datasource.replicas.catch-up-time} has passed since the watermark was read, as replicas may
+ * not have the sketch before; it is sketched from raw rows until then.
+ */
+@Service
+@Slf4j
+public class UniqueUserSketchService {
+
+    static final String USER_SKETCHES = "user_activity_daily_hll";
+
+    /**
+     * A watermark read from the primary that queries wait for the replicas to catch up with.
+     */
+    private record Advance(LocalDate closedThrough, long readAt) {
+    }
+
+    private final UserActivityRepository userActivityRepository;
+    private final UserActivityDailySketchRepository sketchRepository;
+    private final RollupWatermarkRepository watermarkRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long catchUpNanos;
+
+    private volatile LocalDate closedThrough;
+    private volatile Advance advance;
+    private volatile boolean watermarkLoaded;
+
+    public UniqueUserSketchService(UserActivityRepository userActivityRepository,
+                                   UserActivityDailySketchRepository sketchRepository,
+                                   RollupWatermarkRepository watermarkRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${analytics.unique-users.sketches-enabled:true}") boolean enabled,
+                                   @Value("${analytics.datasource.replicas.enabled:false}") boolean replicas,
+                                   @Value("${analytics.datasource.replicas.catch-up-time:35s}") Duration catchUpTime) {
+        this.userActivityRepository = userActivityRepository;
+        this.sketchRepository = sketchRepository;
+        this.watermarkRepository = watermarkRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.catchUpNanos = replicas ? catchUpTime.toNanos() : 0;
+    }
+
+    /**
+     * Create the watermark row, with no day closed, unless it exists; see {@link SalesRollupService#createWatermark}.
+     */
+    @PostConstruct
+    public void createWatermark() {
+        if (!enabled) return;
+        try {
+            transactionTemplate.executeWithoutResult(status -> watermarkRepository.insertIfAbsent(USER_SKETCHES));
+        } catch (RuntimeException e) {
+            log.warn("Could not create the unique user sketch watermark: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Estimated number of distinct users active in the range, or null when no stored sketch
+     * covers its start and the exact query is just as cheap.
+     */
+    @Transactional(readOnly = true)
+    public Long estimateUniqueUsers(LocalDate startDate, LocalDate endDate) {
+        LocalDate closed = closedThroughFor(startDate);
+        if (closed == null) return null;
+
+        HyperLogLog union = new HyperLogLog();
+        LocalDate sketchEnd = endDate.isBefore(closed) ? endDate : closed;
+        for (UserActivityDailySketch day : sketchRepository.findByActivityDayBetween(startDate, sketchEnd)) {
+            union.merge(HyperLogLog.fromBytes(day.getSketch()));
+        }
+        if (endDate.isAfter(closed)) {
+            try (Stream<Long> userIds = userActivityRepository.streamDistinctUserIds(
+                    closed.plusDays(1).atStartOfDay(), endDate.plusDays(1).atStartOfDay())) {
+                userIds.forEach(union::add);
+            }
+        }
+        return union.estimate();
+    }
+
+    /**
+     * Sketch every completed day after the watermark, one transaction per day.
+     */
+    @Scheduled(initialDelayString = "${analytics.rollup.initial-delay-ms:30000}",
+               fixedDelayString = "${analytics.rollup.refresh-interval-ms:900000}")
+    public void closeCompletedDays() {
+        if (!enabled) return;
+
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        LocalDate next = nextDayToClose();
+        try {
+            while (next != null && !next.isAfter(yesterday)) {
+                LocalDate day = next;
+                transactionTemplate.executeWithoutResult(status -> closeDay(day));
+                next = day.plusDays(1);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Unique user sketching stopped before {}: {}", next, e.getMessage());
+        } finally {
+            reloadWatermark();
+        }
+    }
+
+    /**
+     * The last sketched day, or null when none is, read with a shared lock on the watermark that is held
+     * until the calling transaction ends; see {@link SalesRollupService#lockClosedThrough}. Call it before
+     * writing the activities.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public LocalDate lockClosedThrough() {
+        if (!enabled) return null;
+        return watermarkRepository.findByNameForShare(USER_SKETCHES)
+                .map(RollupWatermark::getLastClosedDay)
+                .orElse(null);
+    }
+
+    /**
+     * Add users of days closed through {@code lastClosedDay}, as returned by {@link #lockClosedThrough} in the
+     * same transaction, to the stored sketches. Re-adding a user is a no-op, so retried batches cannot
+     * inflate the count.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void applyLateActivities(Collection<UserActivity> activities, LocalDate lastClosedDay) {
+        if (!enabled || lastClosedDay == null) return;
+
+        Map<LocalDate, HyperLogLog> byDay = new TreeMap<>();
+        for (UserActivity activity : activities) {
+            LocalDate day = activity.getActivityTimestamp().toLocalDate();
+            if (!day.isAfter(lastClosedDay)) {
+                byDay.computeIfAbsent(day, d -> new HyperLogLog()).add(activity.getUserId());
+            }
+        }
+        byDay.forEach((day, delta) -> {
+            UserActivityDailySketch stored = sketchRepository.findByDayForUpdate(day)
+                    .orElseGet(() -> new UserActivityDailySketch(day, new HyperLogLog().toBytes()));
+            HyperLogLog sketch = HyperLogLog.fromBytes(stored.getSketch());
+            sketch.merge(delta);
+            stored.setSketch(sketch.toBytes());
+            sketchRepository.saveAndFlush(stored); // written now: the caller clears the persistence context
+        });
+    }
+
+    /**
+     * Last day with a stored sketch for a range starting at {@code startDate},
+     * or null when the range must be read entirely from raw activities.
+     */
+    public LocalDate closedThroughFor(LocalDate startDate) {
+        if (!enabled) return null;
+        if (!watermarkLoaded) {
+            reloadWatermark();
+        }
+        Advance pending = advance;
+        if (pending != null && System.nanoTime() - pending.readAt() >= catchUpNanos) {
+            closedThrough = pending.closedThrough();
+            advance = null;
+        }
+        LocalDate day = closedThrough;
+        return day != null && !day.isBefore(startDate) ? day : null;
+    }
+
+    private void closeDay(LocalDate day) {
+        RollupWatermark watermark = watermarkRepository.findByNameForUpdate(USER_SKETCHES)
+                .orElseGet(() -> new RollupWatermark(USER_SKETCHES, null));
+        if (watermark.getLastClosedDay() != null && !watermark.getLastClosedDay().isBefore(day)) {
+            return; // closed concurrently by another instance
+        }
+
+        HyperLogLog sketch = new HyperLogLog();
+        try (Stream<Long> userIds = userActivityRepository.streamDistinctUserIds(
+                day.atStartOfDay(), day.plusDays(1).atStartOfDay())) {
+            userIds.forEach(sketch::add);
+        }
+        sketchRepository.save(new UserActivityDailySketch(day, sketch.toBytes()));
+        watermark.setLastClosedDay(day);
+        watermarkRepository.save(watermark);
+        log.debug("Closed unique user sketch for {} (~{} users)", day, sketch.estimate());
+    }
+
+    private LocalDate nextDayToClose() {
+        return watermarkRepository.findById(USER_SKETCHES)
+                .map(RollupWatermark::getLastClosedDay)
+                .map(day -> day.plusDays(1))
+                .orElseGet(() -> {
+                    LocalDateTime earliest = userActivityRepository.findEarliestActivityTimestamp();
+                    return earliest != null ? earliest.toLocalDate() : null;
+                });
+    }
+
+    private void reloadWatermark() {
+        try {
+            LocalDate read = watermarkRepository.findById(USER_SKETCHES)
+                    .map(RollupWatermark::getLastClosedDay)
+                    .orElse(null);
+            LocalDate current = closedThrough;
+            if (!watermarkLoaded || catchUpNanos == 0 || read == null || current != null && !read.isAfter(current)) {
+                closedThrough = read;
+                advance = null;
+            } else if (advance == null || !read.equals(advance.closedThrough())) {
+                advance = new Advance(read, System.nanoTime());
+            }
+            watermarkLoaded = true;
+        } catch (RuntimeException e) {
+            log.warn("Could not read unique user sketch watermark: {}", e.getMessage());
+        }
+    }
+}
@@ -1,16 +1,27 @@
 package com.ecommerce.analytics;
 
+import com.ecommerce.analytics.cache.PartialRangeCache;
+import com.ecommerce.analytics.columnar.ColumnarStore;
 import com.ecommerce.analytics.dto.*;
+import com.ecommerce.analytics.inventory.StockIndex;
 import com.ecommerce.analytics.model.Product;
 import com.ecommerce.analytics.repository.ProductRepository;
 import com.ecommerce.analytics.repository.SaleRepository;
+import com.ecommerce.analytics.repository.SalesDailyRollupRepository;
 import com.ecommerce.analytics.repository.UserActivityRepository;
+import com.ecommerce.analytics.service.AnalyticsService;
+import com.ecommerce.analytics.service.SalesRollupService;
+import com.ecommerce.analytics.service.UniqueUserSketchService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.data.domain.Pageable;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -35,6 +46,24 @@ class AnalyticsServiceTest {
     @Mock
     private UserActivityRepository userActivityRepository;
 
+    @Mock
+    private SalesDailyRollupRepository salesDailyRollupRepository;
+
+    @Mock
+    private SalesRollupService salesRollupService;
+
+    @Mock
+    private UniqueUserSketchService uniqueUserSketchService;
+
+    @Mock
+    private ColumnarStore columnarStore;
+
+    @Mock
+    private StockIndex stockIndex;
+
+    @Spy
+    private PartialRangeCache partialRangeCache = new PartialRangeCache(new NoOpCacheManager(), true, 100);
+
     @InjectMocks
     private AnalyticsService analyticsService;
 
@@ -50,11 +79,12 @@ class AnalyticsServiceTest {
     @Test
     void testGetSalesByCategory_ReturnsCorrectData() {
         // Arrange
-        Object[] result1 = new Object[]{"Electronics", new BigDecimal("5000.00")};
-        Object[] result2 = new Object[]{"Furniture", new BigDecimal("3000.00")};
-        List<Object[]> mockResults = Arrays.asList(result1, result2);
+        List<Object[]> mockResults = Arrays.asList(
+                new Object[]{"Electronics", 1L, new BigDecimal("3000.00")},
+                new Object[]{"Electronics", 2L, new BigDecimal("2000.00")},
+                new Object[]{"Furniture", 3L, new BigDecimal("3000.00")});
 
-        when(saleRepository.getSalesByCategory(any(LocalDateTime.class), any(LocalDateTime.class)))
+        when(saleRepository.getSalesByCategoryAndProduct(any(LocalDateTime.class), any(LocalDateTime.class)))
                 .thenReturn(mockResults);
 
         // Act
@@ -64,21 +94,48 @@ class AnalyticsServiceTest {
         assertThat(results).hasSize(2);
         assertThat(results.get(0).getCategory()).isEqualTo("Electronics");
         assertThat(results.get(0).getTotalSales()).isEqualTo(new BigDecimal("5000.00"));
+        assertThat(results.get(0).getProductCount()).isEqualTo(2L);
         assertThat(results.get(1).getCategory()).isEqualTo("Furniture");
 
-        verify(saleRepository, times(1)).getSalesByCategory(any(LocalDateTime.class), any(LocalDateTime.class));
+        verify(saleRepository, times(1)).getSalesByCategoryAndProduct(any(LocalDateTime.class), any(LocalDateTime.class));
+    }
+
+    @Test
+    void testGetDailySales_UsesRollupForClosedDays() {
+        // Arrange
+        LocalDate closedThrough = LocalDate.of(2024, 12, 30);
+        Object[] day = new Object[]{java.sql.Date.valueOf("2024-12-30"), new BigDecimal("1200.00"), 7L};
+        List<Object[]> mockResults = new java.util.ArrayList<>();
+        mockResults.add(day);
+
+        when(salesRollupService.closedThroughFor(startDate)).thenReturn(closedThrough);
+        when(salesDailyRollupRepository.getDailySales(startDate, closedThrough,
+                LocalDate.of(2024, 12, 31).atStartOfDay(), endDate.atTime(23, 59, 59)))
+                .thenReturn(mockResults);
+
+        // Act
+        List<DailySalesDto> results = analyticsService.getDailySales(startDate, endDate);
+
+        // Assert
+        assertThat(results).hasSize(1);
+        assertThat(results.get(0).getDate()).isEqualTo(closedThrough);
+        assertThat(results.get(0).getTransactionCount()).isEqualTo(7L);
+
+        verify(saleRepository, never()).getDailySales(any(LocalDateTime.class), any(LocalDateTime.class));
     }
 
     @Test
     void testGetTopSellingProducts_ReturnsLimitedResults() {
         // Arrange
-        Object[] result1 = new Object[]{"Laptop", 100L};
-        Object[] result2 = new Object[]{"Mouse", 50L};
-        Object[] result3 = new Object[]{"Chair", 30L};
+        Object[] result1 = new Object[]{1L, "Laptop", 100L};
+        Object[] result2 = new Object[]{2L, "Mouse", 50L};
+        Object[] result3 = new Object[]{3L, "Chair", 30L};
         List<Object[]> mockResults = Arrays.asList(result1, result2, result3);
 
-        when(saleRepository.getTopSellingProducts(any(LocalDateTime.class), any(LocalDateTime.class)))
-                .thenReturn(mockResults);
+        when(saleRepository.getTopSellingProducts(any(LocalDateTime.class), any(LocalDateTime.class),
+                any(Pageable.class))).thenReturn(mockResults);
+        when(saleRepository.getTotalQuantityBetween(any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(180L);
 
         // Act
         List<TopProductDto> results = analyticsService.getTopSellingProducts(startDate, endDate, 2);
@@ -87,9 +144,33 @@ class AnalyticsServiceTest {
         assertThat(results).hasSize(2);
         assertThat(results.get(0).getProductName()).isEqualTo("Laptop");
         assertThat(results.get(0).getQuantitySold()).isEqualTo(100L);
-        assertThat(results.get(0).getPercentageOfTotal()).isGreaterThan(0);
+        assertThat(results.get(0).getPercentageOfTotal()).isCloseTo(55.56, within(0.1));
 
-        verify(saleRepository, times(1)).getTopSellingProducts(any(LocalDateTime.class), any(LocalDateTime.class));
+        verify(saleRepository, times(1)).getTopSellingProducts(any(LocalDateTime.class), any(LocalDateTime.class),
+                any(Pageable.class));
+    }
+
+    @Test
+    void testGetTopSellingProducts_CachesLimitsBeyondThePartials() {
+        // Arrange
+        AnalyticsService cached = new AnalyticsService(saleRepository, productRepository, userActivityRepository,
+                salesDailyRollupRepository, salesRollupService,
+                new PartialRangeCache(new ConcurrentMapCacheManager(), true, 100),
+                uniqueUserSketchService, columnarStore, stockIndex);
+        List<Object[]> mockResults = List.<Object[]>of(new Object[]{1L, "Laptop", 100L});
+        when(saleRepository.getTopSellingProducts(any(LocalDateTime.class), any(LocalDateTime.class),
+                any(Pageable.class))).thenReturn(mockResults);
+        when(saleRepository.getTotalQuantityBetween(any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(100L);
+
+        // Act
+        List<TopProductDto> first = cached.getTopSellingProducts(startDate, endDate, 500);
+        List<TopProductDto> second = cached.getTopSellingProducts(startDate, endDate, 500);
+
+        // Assert
+        assertThat(second).isEqualTo(first).hasSize(1);
+        verify(saleRepository, times(1)).getTopSellingProducts(any(LocalDateTime.class), any(LocalDateTime.class),
+                any(Pageable.class));
     }
 
     @Test
@@ -200,23 +281,40 @@ class AnalyticsServiceTest {
                 .thenReturn(250L);
 
         // Act
-        Long result = analyticsService.getUniqueUsersCount(startDate, endDate);
+        Long result = analyticsService.getUniqueUsersCount(startDate, endDate, true);
 
         // Assert
         assertThat(result).isEqualTo(250L);
         verify(userActivityRepository, times(1))
                 .getUniqueUsersCount(any(LocalDateTime.class), any(LocalDateTime.class));
+        verifyNoInteractions(uniqueUserSketchService);
+    }
+
+    @Test
+    void testGetUniqueUsersCount_UsesSketchEstimateByDefault() {
+        // Arrange
+        when(uniqueUserSketchService.estimateUniqueUsers(startDate, endDate)).thenReturn(248L);
+
+        // Act
+        Long result = analyticsService.getUniqueUsersCount(startDate, endDate, false);
+
+        // Assert
+        assertThat(result).isEqualTo(248L);
+        verify(userActivityRepository, never())
+                .getUniqueUsersCount(any(LocalDateTime.class), any(LocalDateTime.class));
     }
 
     @Test
     void testGetMostViewedProducts_ReturnsLimitedResults() {
         // Arrange
-        Object[] result1 = new Object[]{"Laptop", 500L};
-        Object[] result2 = new Object[]{"Mouse", 300L};
+        Object[] result1 = new Object[]{1L, "Laptop", 500L};
+        Object[] result2 = new Object[]{2L, "Mouse", 300L};
         List<Object[]> mockResults = Arrays.asList(result1, result2);
 
-        when(userActivityRepository.getMostViewedProducts(any(LocalDateTime.class), any(LocalDateTime.class)))
-                .thenReturn(mockResults);
+        when(userActivityRepository.getMostViewedProducts(any(LocalDateTime.class), any(LocalDateTime.class),
+                any(Pageable.class))).thenReturn(mockResults);
+        when(userActivityRepository.countProductViewsBetween(any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(800L);
 
         // Act
         List<TopProductDto> results = analyticsService.getMostViewedProducts(startDate, endDate, 5);
@@ -227,6 +325,29 @@ class AnalyticsServiceTest {
         assertThat(results.get(0).getQuantitySold()).isEqualTo(500L);
 
         verify(userActivityRepository, times(1))
-                .getMostViewedProducts(any(LocalDateTime.class), any(LocalDateTime.class));
+                .getMostViewedProducts(any(LocalDateTime.class), any(LocalDateTime.class), any(Pageable.class));
+    }
+
+    @Test
+    void testGetMostViewedProducts_CachesLimitsBeyondThePartials() {
+        // Arrange
+        AnalyticsService cached = new AnalyticsService(saleRepository, productRepository, userActivityRepository,
+                salesDailyRollupRepository, salesRollupService,
+                new PartialRangeCache(new ConcurrentMapCacheManager(), true, 100),
+                uniqueUserSketchService, columnarStore, stockIndex);
+        List<Object[]> mockResults = List.<Object[]>of(new Object[]{1L, "Laptop", 500L});
+        when(userActivityRepository.getMostViewedProducts(any(LocalDateTime.class), any(LocalDateTime.class),
+                any(Pageable.class))).thenReturn(mockResults);
+        when(userActivityRepository.countProductViewsBetween(any(LocalDateTime.class), any(LocalDateTime.class)))
+                .thenReturn(500L);
+
+        // Act
+        List<TopProductDto> first = cached.getMostViewedProducts(startDate, endDate, 500);
+        List<TopProductDto> second = cached.getMostViewedProducts(startDate, endDate, 500);
+
+        // Assert
+        assertThat(second).isEqualTo(first).hasSize(1);
+        verify(userActivityRepository, times(1))
+                .getMostViewedProducts(any(LocalDateTime.class), any(LocalDateTime.class), any(Pageable.class));
     }
 }
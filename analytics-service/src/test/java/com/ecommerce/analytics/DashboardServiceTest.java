@@ -0,0 +1,77 @@
+package com.ecommerce.analytics;
+
+import com.ecommerce.analytics.dto.DashboardDto;
+import com.ecommerce.analytics.dto.TopProductDto;
+import com.ecommerce.analytics.service.AnalyticsService;
+import com.ecommerce.analytics.service.DashboardService;
+import com.ecommerce.analytics.service.InventoryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DashboardServiceTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+    private static final LocalDate END = LocalDate.of(2024, 1, 31);
+
+    @Mock
+    private AnalyticsService analyticsService;
+
+    @Mock
+    private InventoryService inventoryService;
+
+    private DashboardService dashboardService;
+
+    @BeforeEach
+    void setUp() {
+        dashboardService = new DashboardService(analyticsService, inventoryService, new MockEnvironment(), 4, 16, Duration.ofMillis(300));
+    }
+
+    @AfterEach
+    void tearDown() {
+        dashboardService.shutdown();
+    }
+
+    @Test
+    void testGetDashboard_ReturnsPartialResultsForSlowAndFailingWidgets() {
+        lenient().when(analyticsService.getTotalSales(START, END)).thenReturn(new BigDecimal("1500.00"));
+        lenient().when(analyticsService.getTopSellingProducts(START, END, 5))
+                .thenReturn(List.of(new TopProductDto("Laptop", 10L, 100.0)));
+        lenient().when(analyticsService.getUniqueUsersCount(START, END, false)).thenAnswer(invocation -> {
+            Thread.sleep(2_000);
+            return 42L;
+        });
+        when(inventoryService.getStatusCounts(null)).thenThrow(new IllegalStateException("database unavailable"));
+
+        long start = System.nanoTime();
+        DashboardDto dashboard = dashboardService.getDashboard(START, END, 5, 50);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(dashboard.getTotalSales()).isEqualByComparingTo("1500.00");
+        assertThat(dashboard.getTopProducts()).hasSize(1);
+        assertThat(dashboard.getUniqueUsers()).isNull();
+        assertThat(dashboard.getStockStatus()).isNull();
+        assertThat(dashboard.getUnavailable())
+                .containsEntry("uniqueUsers", "timeout")
+                .containsEntry("stockStatus", "error")
+                .hasSize(2);
+        assertThat(elapsedMillis).isLessThan(1_500);
+        verify(analyticsService, never()).getInventoryStatus();
+    }
+}
@@ -0,0 +1,96 @@
+package com.ecommerce.analytics;
+
+import com.ecommerce.analytics.model.Product;
+import com.ecommerce.analytics.model.Sale;
+import com.ecommerce.analytics.model.UserActivity;
+import com.ecommerce.analytics.service.ExportService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(showSql = false, properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import({ExportService.class, JacksonAutoConfiguration.class})
+class ExportServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2024, 3, 15);
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @BeforeEach
+    void setUp() {
+        Product laptop = product("Laptop, 15\"", "Electronics");
+        Product chair = product("Chair", "Furniture");
+        entityManager.persist(new Sale(null, laptop, 1, new BigDecimal("999.99"), DAY.atTime(10, 0), 101L, "COMPLETED"));
+        entityManager.persist(new Sale(null, chair, 2, new BigDecimal("398.00"), DAY.atTime(11, 0), null, "PENDING"));
+        entityManager.persist(new Sale(null, chair, 1, new BigDecimal("199.00"), DAY.plusDays(1).atTime(9, 0), 102L, "COMPLETED"));
+        entityManager.persist(new UserActivity(null, 7L, "VIEW", laptop, DAY.atTime(8, 0), "10.0.0.1", null));
+        entityManager.persist(new UserActivity(null, 8L, "SEARCH", null, DAY.atTime(8, 5), null, null));
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void testExportSales_CsvWithOneQuery() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = exportService.exportSales(DAY, DAY, ExportService.Format.CSV, out);
+
+        assertThat(rows).isEqualTo(2);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(3);
+        assertThat(lines[0]).isEqualTo("id,sale_date,product_id,product_name,category,quantity,total_amount,customer_id,status");
+        assertThat(lines[1]).matches("\\d+,2024-03-15T10:00:00,\\d+,\"Laptop, 15\"\"\",Electronics,1,999.99,101,COMPLETED");
+        assertThat(lines[2]).matches("\\d+,2024-03-15T11:00:00,\\d+,Chair,Furniture,2,398.00,,PENDING");
+    }
+
+    @Test
+    void testExportActivities_Ndjson() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = exportService.exportActivities(DAY, DAY, ExportService.Format.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(rows).isEqualTo(2);
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).contains("\"userId\":7", "\"activityType\":\"VIEW\"", "\"activityTimestamp\":\"2024-03-15T08:00:00\"");
+        assertThat(lines[1]).contains("\"userId\":8", "\"productId\":null");
+    }
+
+    private Product product(String name, String category) {
+        Product product = new Product();
+        product.setName(name);
+        product.setCategory(category);
+        product.setPrice(BigDecimal.TEN);
+        product.setStockQuantity(5);
+        entityManager.persist(product);
+        return product;
+    }
+}
@@ -0,0 +1,290 @@
+package com.ecommerce.analytics;
+
+import com.ecommerce.analytics.aggregate.HyperLogLog;
+import com.ecommerce.analytics.cache.PartialRangeCache;
+import com.ecommerce.analytics.columnar.ColumnarStore;
+import com.ecommerce.analytics.dto.SaleEventDto;
+import com.ecommerce.analytics.dto.UserActivityEventDto;
+import com.ecommerce.analytics.inventory.StockIndex;
+import com.ecommerce.analytics.live.LiveSalesService;
+import com.ecommerce.analytics.live.LiveUpdateService;
+import com.ecommerce.analytics.model.Product;
+import com.ecommerce.analytics.model.RollupWatermark;
+import com.ecommerce.analytics.model.SalesDailyRollup;
+import com.ecommerce.analytics.repository.DataVersionRepository;
+import com.ecommerce.analytics.repository.ProductRepository;
+import com.ecommerce.analytics.repository.RollupWatermarkRepository;
+import com.ecommerce.analytics.repository.SaleRepository;
+import com.ecommerce.analytics.repository.SalesDailyRollupRepository;
+import com.ecommerce.analytics.repository.UserActivityDailySketchRepository;
+import com.ecommerce.analytics.repository.UserActivityRepository;
+import com.ecommerce.analytics.service.DataVersionService;
+import com.ecommerce.analytics.service.IngestionService;
+import com.ecommerce.analytics.service.SalesRollupService;
+import com.ecommerce.analytics.service.UniqueUserSketchService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Batched ingestion against an embedded database. Chunks commit in their own transactions,
+ * so the test itself runs without one.
+ */
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import({IngestionService.class, SalesRollupService.class, UniqueUserSketchService.class, PartialRangeCache.class,
+        ColumnarStore.class, StockIndex.class, LiveUpdateService.class, LiveSalesService.class, DataVersionService.class, JacksonAutoConfiguration.class,
+        ValidationAutoConfiguration.class, IngestionServiceTest.TestBeans.class})
+@TestPropertySource(properties = {"analytics.datasource.replicas.enabled=true",
+        "analytics.datasource.replicas.catch-up-time=500ms"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IngestionServiceTest {
+
+    @TestConfiguration
+    static class TestBeans {
+        @Bean
+        CacheManager cacheManager() {
+            return new ConcurrentMapCacheManager();
+        }
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private IngestionService ingestionService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private SaleRepository saleRepository;
+
+    @Autowired
+    private UserActivityRepository userActivityRepository;
+
+    @Autowired
+    private SalesDailyRollupRepository salesDailyRollupRepository;
+
+    @Autowired
+    private RollupWatermarkRepository rollupWatermarkRepository;
+
+    @Autowired
+    private UserActivityDailySketchRepository userActivityDailySketchRepository;
+
+    @Autowired
+    private DataVersionRepository dataVersionRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private UniqueUserSketchService uniqueUserSketchService;
+
+    private Product product;
+
+    @BeforeEach
+    void setUp() {
+        Product p = new Product();
+        p.setName("Laptop");
+        p.setCategory("Electronics");
+        p.setPrice(new BigDecimal("999.99"));
+        p.setStockQuantity(10);
+        product = productRepository.save(p);
+    }
+
+    @Test
+    void testIngestSales_WritesAllChunks() {
+        long before = saleRepository.count();
+
+        long accepted = ingestionService.ingestSales(sales(1_200).iterator());
+
+        assertThat(accepted).isEqualTo(1_200);
+        assertThat(saleRepository.count()).isEqualTo(before + 1_200);
+    }
+
+    @Test
+    void testIngestActivities_WritesActivitiesWithAndWithoutProduct() {
+        long before = userActivityRepository.count();
+        List<UserActivityEventDto> activities = List.of(
+                new UserActivityEventDto(1L, "VIEW", product.getId(), LocalDateTime.now(), null, null),
+                new UserActivityEventDto(2L, "SEARCH", null, null, "10.0.0.1", "test"));
+
+        long accepted = ingestionService.ingestActivities(activities.iterator());
+
+        assertThat(accepted).isEqualTo(2);
+        assertThat(userActivityRepository.count()).isEqualTo(before + 2);
+    }
+
+    @Test
+    void testIngestSales_RejectsUnknownProductWithoutWritingTheChunk() {
+        long before = saleRepository.count();
+        SaleEventDto unknown = new SaleEventDto(Long.MAX_VALUE, 1, BigDecimal.ONE, null, null, null);
+
+        assertThatThrownBy(() -> ingestionService.ingestSales(List.of(unknown).iterator()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unknown product ids");
+        assertThat(saleRepository.count()).isEqualTo(before);
+    }
+
+    @Test
+    void testIngestSales_RejectsInvalidEvent() {
+        SaleEventDto invalid = new SaleEventDto(product.getId(), 0, null, null, null, null);
+
+        assertThatThrownBy(() -> ingestionService.ingestSales(List.of(invalid).iterator()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("quantity")
+                .hasMessageContaining("totalAmount");
+    }
+
+    @Test
+    void testIngestSales_FoldsSalesOfADayClosedByAnotherInstanceIntoTheRollup() {
+        // Closed elsewhere: this instance has not read the watermark since
+        LocalDate closed = LocalDate.now().minusDays(3);
+        rollupWatermarkRepository.save(new RollupWatermark("sales_daily_rollup", closed));
+        try {
+            ingestionService.ingestSales(List.of(
+                    new SaleEventDto(product.getId(), 2, new BigDecimal("30.00"), closed.atTime(12, 0), 1L, "COMPLETED"),
+                    new SaleEventDto(product.getId(), 1, new BigDecimal("5.00"), LocalDateTime.now(), 1L, "COMPLETED"))
+                    .iterator());
+
+            List<SalesDailyRollup> rows = salesDailyRollupRepository.findAll();
+            assertThat(rows).singleElement().satisfies(row -> {
+                assertThat(row.getSaleDay()).isEqualTo(closed);
+                assertThat(row.getRevenue()).isEqualByComparingTo("30.00");
+                assertThat(row.getQuantity()).isEqualTo(2);
+            });
+        } finally {
+            salesDailyRollupRepository.deleteAll();
+            rollupWatermarkRepository.deleteAll();
+        }
+    }
+
+    @Test
+    void testIngestActivities_AddsUsersOfADayClosedByAnotherInstanceToItsSketch() {
+        LocalDate closed = LocalDate.now().minusDays(3);
+        rollupWatermarkRepository.save(new RollupWatermark("user_activity_daily_hll", closed));
+        try {
+            ingestionService.ingestActivities(List.of(
+                    new UserActivityEventDto(7L, "VIEW", product.getId(), closed.atTime(12, 0), null, null),
+                    new UserActivityEventDto(8L, "VIEW", product.getId(), closed.atTime(13, 0), null, null))
+                    .iterator());
+
+            assertThat(userActivityDailySketchRepository.findById(closed))
+                    .hasValueSatisfying(day -> assertThat(HyperLogLog.fromBytes(day.getSketch()).estimate()).isEqualTo(2));
+        } finally {
+            userActivityDailySketchRepository.deleteAll();
+            rollupWatermarkRepository.deleteAll();
+        }
+    }
+
+    @Test
+    void testWatermarks_ExistWithNoDayClosedBeforeTheFirstClose() {
+        rollupWatermarkRepository.deleteAll();
+        salesRollupService.createWatermark();
+        salesRollupService.createWatermark();
+        uniqueUserSketchService.createWatermark();
+
+        assertThat(rollupWatermarkRepository.findAll())
+                .extracting(RollupWatermark::getName, RollupWatermark::getLastClosedDay)
+                .containsExactlyInAnyOrder(tuple("sales_daily_rollup", null), tuple("user_activity_daily_hll", null));
+        rollupWatermarkRepository.deleteAll();
+    }
+
+    @Test
+    void testIngestSales_EvictsAPastDayAgainOnceReplicasCaughtUp() throws InterruptedException {
+        LocalDate closed = LocalDate.now().minusDays(3);
+        rollupWatermarkRepository.save(new RollupWatermark("sales_daily_rollup", closed));
+        // A day no other test writes, so that their follow-ups do not evict it
+        LocalDate day = closed.minusDays(2);
+        Cache partials = cacheManager.getCache("totalSales.closed");
+        try {
+            partials.put(day.toString(), BigDecimal.ONE);
+            ingestionService.ingestSales(List.of(
+                    new SaleEventDto(product.getId(), 2, new BigDecimal("30.00"), day.atTime(12, 0), 1L, "COMPLETED"))
+                    .iterator());
+            assertThat(partials.get(day.toString())).isNull();
+            long closedVersion = closedSalesVersion();
+
+            // A query racing the eviction read the day from a replica that had not applied the sale yet
+            partials.put(day.toString(), BigDecimal.ONE);
+            ingestionService.followUpLateWrites();
+            assertThat(partials.get(day.toString())).isNotNull();
+
+            Thread.sleep(600);
+            ingestionService.followUpLateWrites();
+            assertThat(partials.get(day.toString())).isNull();
+            assertThat(closedSalesVersion()).isGreaterThan(closedVersion);
+        } finally {
+            salesDailyRollupRepository.deleteAll();
+            rollupWatermarkRepository.deleteAll();
+        }
+    }
+
+    /**
+     * Run with {@code mvn test -Dtest=IngestionServiceTest -Dbenchmark=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkSalesIngestion() {
+        int events = 200_000;
+        ingestionService.ingestSales(sales(10_000).iterator()); // warm-up
+
+        long start = System.nanoTime();
+        long accepted = ingestionService.ingestSales(sales(events).iterator());
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("ingested %d sales in %.2f s: %.0f events/s%n", accepted, seconds, accepted / seconds);
+        assertThat(accepted).isEqualTo(events);
+    }
+
+    private long closedSalesVersion() {
+        return dataVersionRepository.sumByName().stream()
+                .filter(row -> "sales.closed".equals(row[0]))
+                .mapToLong(row -> ((Number) row[1]).longValue())
+                .sum();
+    }
+
+    private Iterable<SaleEventDto> sales(int count) {
+        LocalDateTime now = LocalDateTime.now();
+        Iterator<SaleEventDto> iterator = IntStream.range(0, count)
+                .mapToObj(i -> new SaleEventDto(product.getId(), 1 + i % 5, BigDecimal.valueOf(10 + i % 100),
+                        now.minusSeconds(i % 3600), (long) (i % 1000), "COMPLETED"))
+                .iterator();
+        return () -> iterator;
+    }
+}
@@ -0,0 +1,104 @@
+package com.ecommerce.analytics;
+
+import com.ecommerce.analytics.config.ConnectionLimitingDataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.system.JavaVersion;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Platform request threads (Tomcat's default 200) against one virtual thread per request, for a mix
+ * of slow endpoints that hold one of 10 connections for 20 ms and fast endpoints that only wait 1 ms
+ * on a cache. Both modes go through {@link ConnectionLimitingDataSource}. Virtual threads are skipped
+ * on runtimes older than Java 21.
+ * Run with {@code mvn test -Dtest=ThreadingBenchmarkTest -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ThreadingBenchmarkTest {
+
+    private static final int REQUESTS = 4_000;
+    private static final int SLOW_EVERY = 4; // one in four requests queries the database
+    private static final int CONNECTIONS = 10;
+    private static final int PLATFORM_THREADS = 200;
+
+    @Test
+    void benchmarkPlatformAgainstVirtualThreads() throws Exception {
+        ThreadPoolExecutor platform = new ThreadPoolExecutor(PLATFORM_THREADS, PLATFORM_THREADS, 0L,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        Result platformResult;
+        try {
+            platformResult = run("platform", platform);
+        } finally {
+            platform.shutdownNow();
+        }
+
+        if (!JavaVersion.getJavaVersion().isEqualOrNewerThan(JavaVersion.TWENTY_ONE)) {
+            System.out.println("virtual threads need Java 21; only the platform mode was measured");
+            return;
+        }
+        Result virtualResult = run("virtual", new VirtualThreadTaskExecutor("bench-"));
+        assertThat(virtualResult.fastP99Millis()).isLessThan(platformResult.fastP99Millis());
+    }
+
+    private Result run(String mode, Executor executor) throws Exception {
+        ConnectionLimitingDataSource dataSource = new ConnectionLimitingDataSource(stubPool(), CONNECTIONS, Duration.ofMinutes(1));
+        long[] fastLatencies = new long[REQUESTS - REQUESTS / SLOW_EVERY];
+        AtomicInteger fast = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(REQUESTS);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) {
+            boolean slow = i % SLOW_EVERY == 0;
+            long submitted = System.nanoTime();
+            executor.execute(() -> {
+                try {
+                    if (slow) {
+                        try (Connection ignored = dataSource.getConnection()) {
+                            Thread.sleep(20);
+                        }
+                    } else {
+                        Thread.sleep(1);
+                        fastLatencies[fast.getAndIncrement()] = System.nanoTime() - submitted;
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        assertThat(done.await(5, TimeUnit.MINUTES)).isTrue();
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(fastLatencies);
+        Result result = new Result(elapsed / 1e6, fastLatencies[fastLatencies.length / 2] / 1e6,
+                fastLatencies[(int) (fastLatencies.length * 0.99)] / 1e6);
+        System.out.printf("%-8s %d requests in %.0f ms, fast endpoint p50=%.1f ms p99=%.1f ms%n",
+                mode, REQUESTS, result.totalMillis(), result.fastP50Millis(), result.fastP99Millis());
+        return result;
+    }
+
+    private static DataSource stubPool() {
+        Connection connection = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> null);
+        return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+                new Class<?>[]{DataSource.class}, (proxy, method, args) -> connection);
+    }
+
+    private record Result(double totalMillis, double fastP50Millis, double fastP99Millis) {
+    }
+}
@@ -0,0 +1,85 @@
+package com.ecommerce.analytics;
+
+import com.ecommerce.analytics.repository.UserActivityRepository;
+import com.ecommerce.analytics.service.UniqueUserSketchService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Compares the exact COUNT(DISTINCT) query with merged per-day sketches on an embedded database.
+ * Run with {@code mvn test -Dtest=UniqueUsersBenchmarkTest -Dbenchmark=true}.
+ */
+@DataJpaTest(showSql = false, properties = "analytics.unique-users.sketches-enabled=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import(UniqueUserSketchService.class)
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class UniqueUsersBenchmarkTest {
+
+    private static final int DAYS = 30;
+    private static final int ACTIVITIES_PER_DAY = 20_000;
+    private static final int USERS = 150_000;
+    private static final int ROUNDS = 5;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private UserActivityRepository userActivityRepository;
+
+    @Autowired
+    private UniqueUserSketchService uniqueUserSketchService;
+
+    @Test
+    void benchmarkSketchesAgainstExactQuery() {
+        LocalDate endDate = LocalDate.now().minusDays(1);
+        LocalDate startDate = endDate.minusDays(DAYS - 1);
+        seed(startDate);
+        uniqueUserSketchService.closeCompletedDays();
+
+        long exact = 0, estimate = 0, exactNanos = Long.MAX_VALUE, sketchNanos = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long t0 = System.nanoTime();
+            exact = userActivityRepository.getUniqueUsersCount(startDate.atStartOfDay(), endDate.atTime(23, 59, 59));
+            long t1 = System.nanoTime();
+            estimate = uniqueUserSketchService.estimateUniqueUsers(startDate, endDate);
+            long t2 = System.nanoTime();
+            exactNanos = Math.min(exactNanos, t1 - t0);
+            sketchNanos = Math.min(sketchNanos, t2 - t1);
+        }
+
+        System.out.printf("unique users over %d days / %d activities: exact=%d (%.1f ms) sketch=%d (%.1f ms) error=%.3f%%%n",
+                DAYS, DAYS * ACTIVITIES_PER_DAY, exact, exactNanos / 1e6, estimate, sketchNanos / 1e6,
+                100.0 * (estimate - exact) / exact);
+        assertThat((double) estimate).isCloseTo(exact, within(exact * 3 * 0.0081));
+    }
+
+    private void seed(LocalDate startDate) {
+        Random random = new Random(42);
+        String sql = "INSERT INTO user_activities (id, user_id, activity_type, activity_timestamp) VALUES (?, ?, 'VIEW', ?)";
+        for (int day = 0; day < DAYS; day++) {
+            List<Object[]> rows = new ArrayList<>(ACTIVITIES_PER_DAY);
+            for (int i = 0; i < ACTIVITIES_PER_DAY; i++) {
+                long userId = 1 + random.nextInt(USERS);
+                long id = (long) day * ACTIVITIES_PER_DAY + i + 1;
+                rows.add(new Object[]{id, userId, Timestamp.valueOf(startDate.plusDays(day).atTime(i % 24, i % 60))});
+            }
+            jdbcTemplate.batchUpdate(sql, rows);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.ecommerce.analytics.aggregate;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HyperLogLogTest {
+
+    // Three standard errors for precision 14 (1.04 / sqrt(16384))
+    private static final double MAX_RELATIVE_ERROR = 3 * 0.0081;
+
+    @ParameterizedTest
+    @ValueSource(ints = {100, 10_000, 1_000_000})
+    void testEstimate_StaysWithinErrorBound(int cardinality) {
+        HyperLogLog sketch = new HyperLogLog();
+        for (long userId = 1; userId <= cardinality; userId++) {
+            sketch.add(userId);
+            sketch.add(userId); // duplicates must not count
+        }
+
+        assertThat((double) sketch.estimate()).isCloseTo(cardinality, within(cardinality * MAX_RELATIVE_ERROR));
+    }
+
+    @Test
+    void testMerge_EstimatesUnionOfOverlappingDays() {
+        HyperLogLog day1 = new HyperLogLog();
+        HyperLogLog day2 = new HyperLogLog();
+        for (long userId = 0; userId < 60_000; userId++) day1.add(userId);
+        for (long userId = 40_000; userId < 100_000; userId++) day2.add(userId);
+
+        day1.merge(HyperLogLog.fromBytes(day2.toBytes()));
+
+        assertThat((double) day1.estimate()).isCloseTo(100_000, within(100_000 * MAX_RELATIVE_ERROR));
+    }
+}
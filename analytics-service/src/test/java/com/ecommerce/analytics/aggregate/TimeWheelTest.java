@@ -0,0 +1,56 @@
+package com.ecommerce.analytics.aggregate;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TimeWheelTest {
+
+    @Test
+    void testAdvance_DropsSecondsLeavingEachWindow() {
+        TimeWheel wheel = new TimeWheel(new int[]{5, 60}, 2);
+        wheel.advance(1000);
+        wheel.add(1000, 0, 100);
+        wheel.add(998, 1, 50);
+        wheel.add(950, 1, 7); // only in the longer window
+
+        assertThat(wheel.amount(0)).isEqualTo(150);
+        assertThat(wheel.count(0)).isEqualTo(2);
+        assertThat(wheel.amount(1)).isEqualTo(157);
+        assertThat(wheel.categoryAmount(1, 1)).isEqualTo(57);
+
+        wheel.advance(1003); // 998 leaves the 5 second window
+        assertThat(wheel.amount(0)).isEqualTo(100);
+        assertThat(wheel.categoryAmount(0, 1)).isZero();
+        assertThat(wheel.amount(1)).isEqualTo(157);
+
+        wheel.advance(1010); // 950 leaves the minute
+        assertThat(wheel.count(0)).isZero();
+        assertThat(wheel.amount(1)).isEqualTo(150);
+        assertThat(wheel.categoryAmount(1, 0)).isEqualTo(100);
+    }
+
+    @Test
+    void testAdd_ReusesBucketsFromEarlierLapsAndClampsOutOfRangeSeconds() {
+        TimeWheel wheel = new TimeWheel(new int[]{10}, 1);
+        wheel.advance(100);
+        wheel.add(100, 0, 5);
+
+        wheel.advance(110); // same bucket, next lap
+        wheel.add(110, 0, 3);
+        wheel.add(120, -1, 2); // from the future: counted now
+        wheel.add(100, 0, 1000); // too old for any window
+
+        assertThat(wheel.amount(0)).isEqualTo(5);
+        assertThat(wheel.count(0)).isEqualTo(2);
+        assertThat(wheel.categoryAmount(0, 0)).isEqualTo(3);
+
+        wheel.advance(500); // far beyond the span
+        assertThat(wheel.amount(0)).isZero();
+        wheel.add(495, 0, 4);
+        assertThat(wheel.amount(0)).isEqualTo(4);
+        wheel.advance(505);
+        assertThat(wheel.amount(0)).isZero();
+        assertThat(wheel.now()).isEqualTo(505);
+    }
+}
@@ -0,0 +1,31 @@
+package com.ecommerce.analytics.aggregate;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopKTest {
+
+    @Test
+    void testOffer_KeepsOnlyGreatestElements() {
+        TopK<Integer> top = new TopK<>(3, Comparator.naturalOrder());
+
+        IntStream.of(5, 1, 9, 7, 3, 8).forEach(top::offer);
+
+        assertThat(top.size()).isEqualTo(3);
+        assertThat(top.toSortedList()).containsExactly(9, 8, 7);
+    }
+
+    @Test
+    void testOffer_ReturnsDroppedElement() {
+        TopK<Integer> top = new TopK<>(2, Comparator.naturalOrder());
+
+        assertThat(top.offer(4)).isNull();
+        assertThat(top.offer(6)).isNull();
+        assertThat(top.offer(1)).isEqualTo(1);
+        assertThat(top.offer(10)).isEqualTo(4);
+    }
+}
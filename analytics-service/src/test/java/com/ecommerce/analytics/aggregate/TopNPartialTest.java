@@ -0,0 +1,45 @@
+package com.ecommerce.analytics.aggregate;
+
+import com.ecommerce.analytics.dto.TopProductDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TopNPartialTest {
+
+    @Test
+    void testMerge_SumsCountsAcrossCompleteBuckets() {
+        TopNPartial day1 = TopNPartial.of(rows(row(1, "Laptop", 5), row(2, "Mouse", 3)), 10, 8L);
+        TopNPartial day2 = TopNPartial.of(rows(row(2, "Mouse", 4), row(3, "Chair", 1)), 10, 5L);
+
+        List<TopProductDto> result = TopNPartial.merge(Arrays.asList(day1, day2), 2);
+
+        assertThat(result).extracting(TopProductDto::getProductName).containsExactly("Mouse", "Laptop");
+        assertThat(result.get(0).getQuantitySold()).isEqualTo(7L);
+        assertThat(result.get(0).getPercentageOfTotal()).isEqualTo(7 * 100.0 / 13);
+    }
+
+    @Test
+    void testMerge_ReturnsNullWhenTruncatedBucketCouldHideWinner() {
+        // Each bucket kept only its top 2; product 3 may have up to 4 in day1 and 4 in day2
+        TopNPartial day1 = TopNPartial.of(rows(row(1, "Laptop", 9), row(2, "Mouse", 4)), 2, 20L);
+        TopNPartial day2 = TopNPartial.of(rows(row(2, "Mouse", 9), row(1, "Laptop", 4)), 2, 20L);
+
+        assertThat(TopNPartial.merge(Arrays.asList(day1, day2), 2)).isNotNull();
+        assertThat(TopNPartial.merge(Arrays.asList(day1, day2), 1)).isNotNull();
+
+        TopNPartial day3 = TopNPartial.of(rows(row(3, "Chair", 12), row(4, "Desk", 11)), 2, 40L);
+        assertThat(TopNPartial.merge(Arrays.asList(day1, day2, day3), 2)).isNull();
+    }
+
+    private static Object[] row(long id, String name, long count) {
+        return new Object[]{id, name, count};
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return Arrays.asList(rows);
+    }
+}
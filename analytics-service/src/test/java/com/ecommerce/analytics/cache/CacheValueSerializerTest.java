@@ -0,0 +1,108 @@
+package com.ecommerce.analytics.cache;
+
+import com.ecommerce.analytics.aggregate.CategorySalesPartial;
+import com.ecommerce.analytics.aggregate.TopNPartial;
+import com.ecommerce.analytics.dto.ActivitySummaryDto;
+import com.ecommerce.analytics.dto.CategorySalesDto;
+import com.ecommerce.analytics.dto.DailySalesDto;
+import com.ecommerce.analytics.dto.InventoryDto;
+import com.ecommerce.analytics.dto.TopProductDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CacheValueSerializerTest {
+
+    private final CacheValueSerializer serializer = new CacheValueSerializer(CacheValueSerializer.Format.BINARY, 1024);
+
+    @Test
+    void testRoundTrip_PreservesEveryCachedValueType() {
+        LinkedHashMap<String, Long> counts = new LinkedHashMap<>();
+        counts.put("VIEW", 1200L);
+        counts.put("PURCHASE", 35L);
+        List<Object> values = List.of(
+                42L,
+                new BigDecimal("-12345678901234567890.99"),
+                new BigDecimal("1500.00"),
+                new ArrayList<>(List.of(new InventoryDto(1L, "Laptop", "Electronics", 4, "LOW"),
+                        new InventoryDto(2L, "Phone", "Electronics", null, "LOW"))),
+                new ArrayList<>(List.of(new TopProductDto("Laptop", 10L, 33.3))),
+                new ArrayList<>(List.of(new DailySalesDto(LocalDate.of(2024, 1, 1), new BigDecimal("99.90"), 3L))),
+                new ArrayList<>(List.of(new CategorySalesDto("Books", new BigDecimal("10.50"), 2L))),
+                new ArrayList<>(List.of(new ActivitySummaryDto("VIEW", 1200L, 97.2))),
+                new TopNPartial(new ArrayList<>(List.of(new TopNPartial.Candidate(7L, "Laptop", 12),
+                        new TopNPartial.Candidate(3L, null, 5))), 5, 40),
+                counts,
+                new StampedValue(List.of("a", "b"), 1_700_000_000_000L, 15));
+
+        for (Object value : values) {
+            assertThat(serializer.deserialize(serializer.serialize(value))).as(value.toString()).isEqualTo(value);
+        }
+
+        CategorySalesPartial partial = CategorySalesPartial.of(List.of(
+                new Object[]{"Books", 12L, new BigDecimal("10.00")},
+                new Object[]{"Books", 3L, new BigDecimal("5.25")},
+                new Object[]{"Toys", 40L, new BigDecimal("1.00")}));
+        CategorySalesPartial read = (CategorySalesPartial) serializer.deserialize(serializer.serialize(partial));
+        assertThat(read.getRevenue()).isEqualTo(partial.getRevenue());
+        assertThat(read.getProductIds()).containsOnlyKeys("Books", "Toys");
+        assertThat(read.getProductIds().get("Books")).containsExactly(3L, 12L);
+        assertThat(read.getProductIds().get("Toys")).containsExactly(40L);
+    }
+
+    @Test
+    void testLargeValues_AreCompressedAndSmallerThanJdkSerialization() {
+        List<InventoryDto> inventory = new ArrayList<>();
+        for (long id = 1; id <= 1000; id++) {
+            inventory.add(new InventoryDto(id, "Product " + id, "Category " + id % 8, (int) (id % 300), "ADEQUATE"));
+        }
+
+        byte[] binary = serializer.serialize(inventory);
+        byte[] uncompressed = new CacheValueSerializer(CacheValueSerializer.Format.BINARY, -1).serialize(inventory);
+        byte[] jdk = new JdkSerializationRedisSerializer().serialize(inventory);
+
+        assertThat(binary[2]).as("deflated flag").isEqualTo((byte) 1);
+        assertThat(uncompressed[2]).isZero();
+        assertThat(binary.length).isLessThan(uncompressed.length);
+        assertThat(uncompressed.length).isLessThan(jdk.length / 2);
+        assertThat(serializer.deserialize(binary)).isEqualTo(inventory);
+    }
+
+    @Test
+    void testOtherFormats_JdkIsReadAndUnknownVersionIsAMiss() {
+        Map<String, Long> value = new LinkedHashMap<>(Map.of("VIEW", 3L));
+        byte[] jdk = new CacheValueSerializer(CacheValueSerializer.Format.JDK, 1024).serialize(value);
+        assertThat(serializer.deserialize(jdk)).isEqualTo(value);
+
+        byte[] future = serializer.serialize(value);
+        future[1] = CacheValueSerializer.VERSION + 1;
+        assertThat(serializer.deserialize(future)).isNull();
+        assertThat(serializer.deserialize(null)).isNull();
+        assertThat(serializer.deserialize(new byte[]{'{', '}', 0})).as("unknown leading byte").isNull();
+    }
+
+    @Test
+    void testErrorHandler_EvictsUnreadableValues() {
+        Cache cache = new ConcurrentMapCache("dailySales");
+        cache.put("k", "damaged");
+
+        new EvictingCacheErrorHandler().handleCacheGetError(
+                new SerializationException("Cannot read cache value", new IllegalStateException()), cache, "k");
+
+        assertThat(cache.get("k")).isNull();
+        assertThatThrownBy(() -> new EvictingCacheErrorHandler().handleCacheGetError(
+                new IllegalStateException("Redis is down"), cache, "k")).isInstanceOf(IllegalStateException.class);
+    }
+}
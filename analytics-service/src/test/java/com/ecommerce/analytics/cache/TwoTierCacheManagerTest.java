@@ -0,0 +1,206 @@
+package com.ecommerce.analytics.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.endsWith;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TwoTierCacheManagerTest {
+
+    private ConcurrentMapCacheManager remote;
+    private StringRedisTemplate redisTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private TwoTierCacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        remote = new ConcurrentMapCacheManager();
+        redisTemplate = mock(StringRedisTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        cacheManager = new TwoTierCacheManager(remote, redisTemplate, meterRegistry,
+                "invalidation", 100, name -> Duration.ofMinutes(1));
+    }
+
+    @Test
+    void testGet_ServesSecondReadFromLocalTier() {
+        remote.getCache("dailySales").put("2024-01-01-2024-01-31", "value");
+        Cache cache = cacheManager.getCache("dailySales");
+
+        assertThat(cache.get("2024-01-01-2024-01-31").get()).isEqualTo("value");
+        remote.getCache("dailySales").clear();
+        assertThat(cache.get("2024-01-01-2024-01-31").get()).isEqualTo("value");
+
+        assertThat(count("l1", "hit")).isEqualTo(1.0);
+        assertThat(count("l2", "hit")).isEqualTo(1.0);
+    }
+
+    @Test
+    void testEvict_ClearsBothTiersAndBroadcasts() {
+        Cache cache = cacheManager.getCache("dailySales");
+        cache.put("k", "value");
+        clearInvocations(redisTemplate);
+
+        cache.evict("k");
+
+        assertThat(cache.get("k")).isNull();
+        verify(redisTemplate).convertAndSend(eq("invalidation"), endsWith("|dailySales|k"));
+    }
+
+    @Test
+    void testPut_WritesBothTiersAndBroadcasts() {
+        Cache cache = cacheManager.getCache("dailySales");
+
+        cache.put("k", "value");
+
+        assertThat(remote.getCache("dailySales").get("k")).isNotNull();
+        assertThat(cache.get("k").get()).isEqualTo("value");
+        verify(redisTemplate).convertAndSend(eq("invalidation"), endsWith("|dailySales|k"));
+    }
+
+    @Test
+    void testOnMessage_DropsLocalCopyFromOtherInstance() {
+        Cache cache = cacheManager.getCache("dailySales");
+        cache.put("k", "value");
+        remote.getCache("dailySales").evict("k");
+
+        cacheManager.onMessage(new DefaultMessage("invalidation".getBytes(StandardCharsets.UTF_8),
+                "other-instance|dailySales|k".getBytes(StandardCharsets.UTF_8)), null);
+
+        assertThat(cache.get("k")).isNull();
+    }
+
+    @Test
+    void testGetWithLoader_CoalescesConcurrentMisses() throws Exception {
+        Cache cache = cacheManager.getCache("dailySales");
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService callers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(callers.submit(() -> cache.get("k", () -> {
+                    loads.incrementAndGet();
+                    release.await();
+                    return "value";
+                })));
+            }
+            while (coalesced("local") < 7 && loads.get() <= 1) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(coalesced("local")).isEqualTo(7.0);
+    }
+
+    @Test
+    void testGetWithLoader_RefreshesExpiringEntryInBackground() throws Exception {
+        cacheManager = new TwoTierCacheManager(remote, redisTemplate, meterRegistry, "invalidation", 100,
+                name -> Duration.ofMinutes(1), new TwoTierCacheManager.Loading(name -> Duration.ofMinutes(1), 1.0, false, Duration.ZERO));
+        // Written a full TTL ago: due for refresh whatever the random draw
+        remote.getCache("dailySales").put("k", new StampedValue("stale", System.currentTimeMillis() - 60_000, 100));
+        Cache cache = cacheManager.getCache("dailySales");
+
+        assertThat(cache.get("k", () -> "fresh")).isEqualTo("stale");
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!"fresh".equals(cache.get("k").get()) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(cache.get("k").get()).isEqualTo("fresh");
+        assertThat(meterRegistry.get("analytics.cache.early-refreshes").tag("cache", "dailySales").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void testGetWithLoader_DropsRefreshOfKeyEvictedWhileLoading() throws Exception {
+        cacheManager = new TwoTierCacheManager(remote, redisTemplate, meterRegistry, "invalidation", 100,
+                name -> Duration.ofMinutes(1), new TwoTierCacheManager.Loading(name -> Duration.ofMinutes(1), 1.0, false, Duration.ZERO));
+        List<String> decorated = new ArrayList<>();
+        cacheManager.setRefreshDecorator(task -> {
+            decorated.add(Thread.currentThread().getName());
+            return task;
+        });
+        remote.getCache("dailySales").put("k", new StampedValue("stale", System.currentTimeMillis() - 60_000, 100));
+        Cache cache = cacheManager.getCache("dailySales");
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch evicted = new CountDownLatch(1);
+
+        assertThat(cache.get("k", () -> {
+            loading.countDown();
+            evicted.await(5, TimeUnit.SECONDS);
+            return "loaded before the eviction";
+        })).isEqualTo("stale");
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        cache.evict("k");
+        evicted.countDown();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (System.nanoTime() < deadline) {
+            assertThat(cache.get("k")).isNull();
+            Thread.sleep(20);
+        }
+        assertThat(decorated).containsExactly(Thread.currentThread().getName());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGetWithLoader_WaitsForInstanceHoldingTheLock() {
+        ValueOperations<String, String> values = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(values);
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenAnswer(invocation -> {
+            // Another instance holds the lock and stores its result while we wait
+            new Thread(() -> remote.getCache("dailySales").put("k", "loaded elsewhere")).start();
+            return false;
+        });
+        cacheManager = new TwoTierCacheManager(remote, redisTemplate, meterRegistry, "invalidation", 100,
+                name -> Duration.ofMinutes(1), new TwoTierCacheManager.Loading(name -> Duration.ofMinutes(1), 0, true, Duration.ofSeconds(5)));
+        Cache cache = cacheManager.getCache("dailySales");
+
+        assertThat(cache.get("k", () -> "loaded here")).isEqualTo("loaded elsewhere");
+        assertThat(coalesced("remote")).isEqualTo(1.0);
+    }
+
+    private double coalesced(String scope) {
+        return meterRegistry.get("analytics.cache.coalesced")
+                .tag("cache", "dailySales").tag("scope", scope)
+                .counter().count();
+    }
+
+    private double count(String tier, String result) {
+        return meterRegistry.get("analytics.cache.requests")
+                .tag("cache", "dailySales").tag("tier", tier).tag("result", result)
+                .counter().count();
+    }
+}
@@ -0,0 +1,200 @@
+package com.ecommerce.analytics.columnar;
+
+import com.ecommerce.analytics.model.Product;
+import com.ecommerce.analytics.model.Sale;
+import com.ecommerce.analytics.model.UserActivity;
+import com.ecommerce.analytics.repository.ProductRepository;
+import com.ecommerce.analytics.repository.SaleRepository;
+import com.ecommerce.analytics.repository.UserActivityRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The columnar store must give the same answers as the repository queries it replaces.
+ */
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+class ColumnarStoreTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    @Autowired
+    private SaleRepository saleRepository;
+
+    @Autowired
+    private UserActivityRepository userActivityRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private ColumnarStore store;
+    private Product laptop;
+    private Product chair;
+
+    @BeforeEach
+    void setUp() {
+        laptop = product("Laptop", "Electronics");
+        Product phone = product("Phone", "Electronics");
+        chair = product("Chair", "Furniture");
+        sale(laptop, 1, "999.99", TODAY.minusDays(2).atTime(10, 0), "COMPLETED");
+        sale(phone, 3, "1500.00", TODAY.minusDays(2).atTime(23, 59, 59), "PENDING");
+        sale(chair, 2, "398.00", TODAY.minusDays(1).atTime(0, 0), "COMPLETED");
+        sale(chair, 1, "199.00", TODAY.atTime(9, 30), "REFUNDED");
+        sale(laptop, 5, "5000.00", TODAY.minusDays(40).atTime(12, 0), "COMPLETED"); // outside the window
+        activity(7L, "VIEW", laptop, TODAY.minusDays(2).atTime(8, 0));
+        activity(7L, "VIEW", laptop, TODAY.minusDays(1).atTime(8, 0));
+        activity(8L, "VIEW", chair, TODAY.minusDays(1).atTime(9, 0));
+        activity(8L, "SEARCH", null, TODAY.atTime(9, 5));
+        activity(9L, "ADD_TO_CART", phone, TODAY.atTime(10, 0));
+        entityManager.flush();
+        entityManager.clear();
+
+        store = new ColumnarStore(saleRepository, userActivityRepository, productRepository, transactionManager,
+                new SimpleMeterRegistry(), true, Duration.ofDays(30), Duration.ofHours(6), 1000);
+    }
+
+    @Test
+    void testCovers_OnlyOnceLoadedAndInsideWindow() {
+        assertThat(store.covers(TODAY.minusDays(2))).isFalse();
+
+        store.maintain();
+
+        assertThat(store.covers(TODAY.minusDays(29))).isTrue();
+        assertThat(store.covers(TODAY.minusDays(30))).isFalse();
+    }
+
+    @Test
+    void testQueries_MatchRepositories() {
+        store.maintain();
+
+        for (LocalDate start = TODAY.minusDays(2); !start.isAfter(TODAY); start = start.plusDays(1)) {
+            for (LocalDate end = start; !end.isAfter(TODAY.plusDays(1)); end = end.plusDays(1)) {
+                LocalDateTime from = start.atStartOfDay();
+                LocalDateTime to = end.atTime(23, 59, 59);
+                String range = start + ".." + end;
+
+                assertThat(rows(store.getSalesByCategoryAndProduct(start, end)))
+                        .as(range).isEqualTo(rows(saleRepository.getSalesByCategoryAndProduct(from, to)));
+                assertThat(rows(store.getTopSellingProducts(start, end, 10)))
+                        .as(range).isEqualTo(rows(saleRepository.getTopSellingProducts(from, to, PageRequest.of(0, 10))));
+                assertThat(store.getTotalQuantity(start, end))
+                        .as(range).isEqualTo(orZero(saleRepository.getTotalQuantityBetween(from, to)));
+                assertThat(rows(store.getDailySales(start, end)))
+                        .as(range).isEqualTo(rows(saleRepository.getDailySales(from, to)));
+                assertThat(store.getTotalSales(start, end))
+                        .as(range).isEqualByComparingTo(orZero(saleRepository.getTotalSalesBetween(from, to)));
+                assertThat(rows(store.getActivityCountByType(start, end)))
+                        .as(range).isEqualTo(rows(userActivityRepository.getActivityCountByType(from, to)));
+                assertThat(rows(store.getMostViewedProducts(start, end, 10)))
+                        .as(range).isEqualTo(rows(userActivityRepository.getMostViewedProducts(from, to, PageRequest.of(0, 10))));
+                assertThat(store.countProductViews(start, end))
+                        .as(range).isEqualTo(userActivityRepository.countProductViewsBetween(from, to));
+                assertThat(store.getUniqueUsersCount(start, end))
+                        .as(range).isEqualTo(userActivityRepository.getUniqueUsersCount(from, to));
+            }
+        }
+    }
+
+    @Test
+    void testAppend_AfterLoadIsVisibleAndOldRowsIgnored() {
+        store.maintain();
+        BigDecimal before = store.getTotalSales(TODAY.minusDays(29), TODAY);
+
+        store.appendSales(List.of(
+                new Sale(1_000L, chair, 1, new BigDecimal("10.50"), TODAY.atTime(12, 0), 1L, "COMPLETED"),
+                new Sale(1_001L, chair, 1, new BigDecimal("99.00"), TODAY.minusDays(31).atTime(12, 0), 1L, "COMPLETED")));
+        store.appendActivities(List.of(new UserActivity(1_000L, 42L, "VIEW", chair, TODAY.atTime(12, 0), null, null)));
+
+        assertThat(store.getTotalSales(TODAY.minusDays(29), TODAY)).isEqualByComparingTo(before.add(new BigDecimal("10.50")));
+        assertThat(store.getUniqueUsersCount(TODAY, TODAY)).isEqualTo(3);
+        assertThat(store.countProductViews(TODAY, TODAY)).isEqualTo(1);
+    }
+
+    @Test
+    void testTail_AppendsRowsWrittenElsewhereOnce() {
+        store.maintain();
+        BigDecimal before = store.getTotalSales(TODAY.minusDays(29), TODAY);
+        Sale written = new Sale(null, chair, 1, new BigDecimal("20.00"), TODAY.atTime(13, 0), 1L, "COMPLETED");
+        entityManager.persist(written);
+        entityManager.persist(new UserActivity(null, 43L, "VIEW", chair, TODAY.atTime(13, 0), null, null));
+        entityManager.flush();
+
+        store.tail();
+        store.tail();
+        store.appendSales(List.of(written));
+
+        assertThat(store.getTotalSales(TODAY.minusDays(29), TODAY)).isEqualByComparingTo(before.add(new BigDecimal("20.00")));
+        assertThat(store.getUniqueUsersCount(TODAY, TODAY)).isEqualTo(3);
+        assertThat(store.countProductViews(TODAY, TODAY)).isEqualTo(1);
+    }
+
+    /**
+     * Rows as comparable strings; amounts are normalized to two decimals and dates to ISO days.
+     */
+    private static List<String> rows(List<Object[]> rows) {
+        return rows.stream()
+                .map(row -> {
+                    StringBuilder out = new StringBuilder();
+                    for (Object value : row) {
+                        Object normalized = value instanceof BigDecimal amount ? amount.setScale(2)
+                                : value instanceof java.sql.Date date ? date.toLocalDate()
+                                : value instanceof Number number ? number.longValue()
+                                : value;
+                        out.append(normalized).append('|');
+                    }
+                    return out.toString();
+                })
+                .sorted(Comparator.naturalOrder())
+                .toList();
+    }
+
+    private static long orZero(Long value) {
+        return value != null ? value : 0L;
+    }
+
+    private static BigDecimal orZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    private Product product(String name, String category) {
+        Product product = new Product();
+        product.setName(name);
+        product.setCategory(category);
+        product.setPrice(BigDecimal.TEN);
+        product.setStockQuantity(10);
+        entityManager.persist(product);
+        return product;
+    }
+
+    private void sale(Product product, int quantity, String amount, LocalDateTime when, String status) {
+        entityManager.persist(new Sale(null, product, quantity, new BigDecimal(amount), when, 100L, status));
+    }
+
+    private void activity(long userId, String type, Product product, LocalDateTime when) {
+        entityManager.persist(new UserActivity(null, userId, type, product, when, null, null));
+    }
+}
@@ -0,0 +1,74 @@
+package com.ecommerce.analytics.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A virtual thread that blocks while holding a monitor pins its carrier thread, so our own code
+ * must guard shared state with {@code java.util.concurrent} locks instead of {@code synchronized}.
+ * Scans the compiled main classes for synchronized methods and blocks.
+ */
+class PinningSafetyTest {
+
+    @Test
+    void testNoSynchronizedInApplicationCode() throws IOException {
+        List<String> offenders = new ArrayList<>();
+        Resource[] classes = new PathMatchingResourcePatternResolver()
+                .getResources("classpath*:com/ecommerce/analytics/**/*.class");
+        int scanned = 0;
+        for (Resource resource : classes) {
+            if (resource.getURL().getPath().contains("/test-classes/")) continue;
+            try (InputStream in = resource.getInputStream()) {
+                new ClassReader(in).accept(new SynchronizedFinder(offenders), ClassReader.SKIP_DEBUG);
+            }
+            scanned++;
+        }
+
+        assertThat(scanned).isPositive();
+        assertThat(offenders).as("synchronized methods/blocks").isEmpty();
+    }
+
+    private static final class SynchronizedFinder extends ClassVisitor {
+
+        private final List<String> offenders;
+        private String className;
+
+        SynchronizedFinder(List<String> offenders) {
+            super(Opcodes.ASM9);
+            this.offenders = offenders;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            className = name.replace('/', '.');
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            String method = className + "." + name;
+            if ((access & Opcodes.ACC_SYNCHRONIZED) != 0) {
+                offenders.add(method);
+            }
+            return new MethodVisitor(Opcodes.ASM9) {
+                @Override
+                public void visitInsn(int opcode) {
+                    if (opcode == Opcodes.MONITORENTER) {
+                        offenders.add(method + " (synchronized block)");
+                    }
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.ecommerce.analytics.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Two embedded databases stand in for the primary and a replica; each knows its own name.
+ */
+class ReplicaRouterTest {
+
+    private DataSource primary;
+    private DataSource replica;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replica = database("replica");
+    }
+
+    @Test
+    void testReadOnlyTransactions_GoToHealthyReplica() {
+        ReplicaRouter router = new ReplicaRouter(primary, Map.of("replica-0", replica), true, Duration.ZERO,
+                new SimpleMeterRegistry());
+
+        assertThat(read(router, true)).as("replica not checked yet").isEqualTo("primary");
+
+        router.checkReplicas();
+
+        assertThat(read(router, true)).isEqualTo("replica");
+        assertThat(read(router, false)).isEqualTo("primary");
+        assertThat(new JdbcTemplate(lazy(router)).queryForObject("SELECT name FROM node", String.class))
+                .as("outside a transaction").isEqualTo("primary");
+    }
+
+    @Test
+    void testCurrentDayAndRequiredPrimary_StayOnPrimary() {
+        ReplicaRouter router = new ReplicaRouter(primary, Map.of("replica-0", replica), true, Duration.ZERO,
+                new SimpleMeterRegistry());
+        router.checkReplicas();
+        LocalDate today = LocalDate.now();
+
+        assertThat(read(router, true, () -> ReplicaRouter.readsThrough(today.minusDays(1)))).isEqualTo("replica");
+        assertThat(read(router, true, () -> ReplicaRouter.readsThrough(today))).isEqualTo("primary");
+        assertThat(read(router, true, ReplicaRouter::requirePrimary)).isEqualTo("primary");
+        assertThat(read(router, true)).as("hints end with their transaction").isEqualTo("replica");
+
+        ReplicaRouter unpinned = new ReplicaRouter(primary, Map.of("replica-0", replica), false, Duration.ZERO,
+                new SimpleMeterRegistry());
+        unpinned.checkReplicas();
+        assertThat(read(unpinned, true, () -> ReplicaRouter.readsThrough(today))).isEqualTo("replica");
+    }
+
+    @Test
+    void testWrappedPools_AreHandedOutButNotHealthChecked() {
+        ReplicaRouter router = new ReplicaRouter(primary, Map.of("replica-0", replica), true, Duration.ZERO,
+                new SimpleMeterRegistry());
+        Map<String, ConnectionLimitingDataSource> limited = new HashMap<>();
+        router.wrapPools((name, pool) -> limited.computeIfAbsent(name,
+                n -> new ConnectionLimitingDataSource(pool, 1, Duration.ofMillis(100))));
+        router.checkReplicas();
+
+        assertThat(limited).containsOnlyKeys("primary", "replica-0");
+        assertThat(read(router, true)).isEqualTo("replica");
+        assertThat(read(router, false)).isEqualTo("primary");
+        assertThat(limited.get("replica-0").availablePermits()).isEqualTo(1);
+        assertThat(ReplicaRouter.isRouting(lazy(router))).isTrue();
+        assertThat(ReplicaRouter.isRouting(primary)).isFalse();
+    }
+
+    @Test
+    void testCarriedRouting_AppliesToTasksOnOtherThreads() throws InterruptedException {
+        ReplicaRouter router = new ReplicaRouter(primary, Map.of("replica-0", replica), true, Duration.ZERO,
+                new SimpleMeterRegistry());
+        router.checkReplicas();
+        LocalDate today = LocalDate.now();
+
+        assertThat(readElsewhere(router, true, () -> ReplicaRouter.readsThrough(today.minusDays(1)))).isEqualTo("replica");
+        assertThat(readElsewhere(router, true, () -> ReplicaRouter.readsThrough(today))).isEqualTo("primary");
+        assertThat(readElsewhere(router, true, ReplicaRouter::requirePrimary)).isEqualTo("primary");
+        assertThat(readElsewhere(router, false, () -> { })).isEqualTo("primary");
+    }
+
+    @Test
+    void testFailedHealthCheck_FallsBackToOtherReplicaOrPrimary() throws SQLException {
+        DataSource down = mock(DataSource.class);
+        when(down.getConnection()).thenThrow(new SQLException("connection refused"));
+        ReplicaRouter router = new ReplicaRouter(primary, Map.of("replica-0", down), true, Duration.ZERO,
+                new SimpleMeterRegistry());
+        router.checkReplicas();
+
+        assertThat(read(router, true)).isEqualTo("primary");
+
+        ReplicaRouter mixed = new ReplicaRouter(primary, Map.of("replica-0", down, "replica-1", replica), true,
+                Duration.ZERO, new SimpleMeterRegistry());
+        mixed.checkReplicas();
+        for (int i = 0; i < 4; i++) {
+            assertThat(read(mixed, true)).isEqualTo("replica");
+        }
+    }
+
+    private static String read(ReplicaRouter router, boolean readOnly) {
+        return read(router, readOnly, () -> { });
+    }
+
+    private static String read(ReplicaRouter router, boolean readOnly, Runnable hint) {
+        DataSource dataSource = lazy(router);
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transaction.setReadOnly(readOnly);
+        return transaction.execute(status -> {
+            hint.run();
+            return new JdbcTemplate(dataSource).queryForObject("SELECT name FROM node", String.class);
+        });
+    }
+
+    /**
+     * Reads outside a transaction on another thread, from a task decorated inside a transaction.
+     */
+    private static String readElsewhere(ReplicaRouter router, boolean readOnly, Runnable hint) throws InterruptedException {
+        DataSource dataSource = lazy(router);
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transaction.setReadOnly(readOnly);
+        AtomicReference<String> answer = new AtomicReference<>();
+        Runnable task = transaction.execute(status -> {
+            hint.run();
+            return ReplicaRouter.carryRouting(() ->
+                    answer.set(new JdbcTemplate(dataSource).queryForObject("SELECT name FROM node", String.class)));
+        });
+        Thread thread = new Thread(task);
+        thread.start();
+        thread.join();
+        return answer.get();
+    }
+
+    private static DataSource lazy(ReplicaRouter router) {
+        return new LazyConnectionDataSourceProxy(router.dataSource());
+    }
+
+    private static DataSource database(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:replica-router-" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(20))");
+        jdbc.update("DELETE FROM node");
+        jdbc.update("INSERT INTO node VALUES (?)", name);
+        return dataSource;
+    }
+}
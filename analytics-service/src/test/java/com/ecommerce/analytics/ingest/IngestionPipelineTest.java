@@ -0,0 +1,108 @@
+package com.ecommerce.analytics.ingest;
+
+import com.ecommerce.analytics.dto.SaleEventDto;
+import com.ecommerce.analytics.service.IngestionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IngestionPipelineTest {
+
+    @Mock
+    private IngestionService ingestionService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private IngestionPipeline pipeline;
+
+    @AfterEach
+    void tearDown() {
+        pipeline.stop();
+    }
+
+    @Test
+    void testCommitMode_WaitsForCommitAndFailsOnlyBadEvents() {
+        when(ingestionService.validate(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        doAnswer(invocation -> {
+            List<SaleEventDto> sales = invocation.getArgument(0);
+            if (sales.stream().anyMatch(s -> s.getProductId() == 99)) {
+                throw new IllegalArgumentException("Unknown product ids: [99]");
+            }
+            return null;
+        }).when(ingestionService).writeSales(anyList());
+        pipeline = pipeline(DurabilityMode.COMMIT, 1024, Duration.ofMillis(50));
+
+        assertThat(pipeline.ingestSales(List.of(sale(1), sale(2)).iterator())).isEqualTo(2);
+        assertThat(pipeline.isAckOnEnqueue()).isFalse();
+        assertThatThrownBy(() -> pipeline.ingestSales(List.of(sale(1), sale(99)).iterator()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("99");
+        assertThat(meterRegistry.counter("analytics.ingest.pipeline.failed").count()).isEqualTo(1);
+    }
+
+    @Test
+    void testEnqueueMode_RejectsWhenBufferStaysFull() throws Exception {
+        when(ingestionService.validate(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        CountDownLatch writerBlocked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            writerBlocked.countDown();
+            release.await();
+            return null;
+        }).when(ingestionService).writeSales(anyList());
+        pipeline = pipeline(DurabilityMode.ENQUEUE, 2, Duration.ofMillis(20));
+
+        pipeline.ingestSales(List.of(sale(1)).iterator());
+        writerBlocked.await();
+        assertThatThrownBy(() -> pipeline.ingestSales(List.of(sale(2), sale(3), sale(4)).iterator()))
+                .isInstanceOf(IngestionRejectedException.class)
+                .satisfies(e -> assertThat(((IngestionRejectedException) e).getAccepted()).isEqualTo(2));
+        assertThat(meterRegistry.counter("analytics.ingest.pipeline.rejected").count()).isEqualTo(1);
+        release.countDown();
+    }
+
+    @Test
+    void testEnqueueMode_RejectsUnknownProductsBeforeAcknowledging() {
+        when(ingestionService.validate(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        doAnswer(invocation -> {
+            List<SaleEventDto> sales = invocation.getArgument(0);
+            if (sales.stream().anyMatch(s -> s.getProductId() == 99)) {
+                throw new IllegalArgumentException("Unknown product ids: [99]");
+            }
+            return null;
+        }).when(ingestionService).checkProducts(anyList());
+        pipeline = pipeline(DurabilityMode.ENQUEUE, 1024, Duration.ofMillis(50));
+
+        assertThatThrownBy(() -> pipeline.ingestSales(List.of(sale(1), sale(99)).iterator()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("99");
+        pipeline.stop();
+        verify(ingestionService, never()).writeSales(argThat(sales -> sales.stream().anyMatch(s -> s.getProductId() == 99)));
+    }
+
+    private IngestionPipeline pipeline(DurabilityMode durability, int capacity, Duration enqueueTimeout) {
+        IngestionPipeline pipeline = new IngestionPipeline(ingestionService, meterRegistry, true, durability,
+                capacity, 1, 100, Duration.ofMillis(1), enqueueTimeout, Duration.ofSeconds(10));
+        pipeline.start();
+        return pipeline;
+    }
+
+    private static SaleEventDto sale(long productId) {
+        return new SaleEventDto(productId, 1, BigDecimal.TEN, null, null, null);
+    }
+}
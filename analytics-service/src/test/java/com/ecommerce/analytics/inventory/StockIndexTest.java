@@ -0,0 +1,130 @@
+package com.ecommerce.analytics.inventory;
+
+import com.ecommerce.analytics.dto.InventoryDto;
+import com.ecommerce.analytics.model.Product;
+import com.ecommerce.analytics.repository.ProductRepository;
+import com.ecommerce.analytics.service.InventoryService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+class StockIndexTest {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Long> ids = new ArrayList<>();
+    private StockIndex stockIndex;
+    private InventoryService inventoryService;
+
+    @BeforeEach
+    void setUp() {
+        // Disabled so that nothing but the test builds and refreshes it
+        stockIndex = new StockIndex(productRepository, transactionManager, new SimpleMeterRegistry(), false,
+                Duration.ofHours(1), Duration.ofSeconds(30));
+        inventoryService = new InventoryService(productRepository, stockIndex);
+        int[] stock = {5, 80, 30, 10, 200, 45, 15, 10};
+        for (int i = 0; i < stock.length; i++) {
+            ids.add(save("Product " + i, i % 2 == 0 ? "Books" : "Toys", stock[i]));
+        }
+    }
+
+    @Test
+    void testIndex_AnswersLikeTheDatabaseForAnyThresholdAndCategory() {
+        stockIndex.rebuild();
+        assertThat(stockIndex.isReady()).isTrue();
+        assertThat(productIds(inventoryService.getLowStock(31, "Books"))).isEqualTo(
+                productRepository.findLowStockProductsByCategory("Books", 31).stream().map(Product::getId).toList());
+        assertThat(inventoryService.getStatusCounts("Toys"))
+                .containsExactly(Map.entry("LOW", 2L), Map.entry("MEDIUM", 1L), Map.entry("ADEQUATE", 1L));
+
+        // Lowest stock first, equal stock in id order
+        assertThat(productIds(stockIndex.lowStock(16, null)))
+                .containsExactly(ids.get(0), ids.get(3), ids.get(7), ids.get(6));
+        assertThat(stockIndex.lowStock(16, null)).extracting(InventoryDto::getStatus).containsOnly("LOW");
+        assertThat(stockIndex.countBelow(0, null)).isZero();
+        assertThat(stockIndex.countBelow(1000, null)).isEqualTo(ids.size());
+        assertThat(stockIndex.countBelow(50, "Games")).isZero();
+    }
+
+    @Test
+    void testApplyChanges_PicksUpUpdatedAndNewProducts() {
+        stockIndex.rebuild();
+        LocalDateTime recently = LocalDateTime.now().minusSeconds(10);
+        jdbcTemplate.update("UPDATE products SET stock_quantity = 2, updated_at = ? WHERE id = ?", recently, ids.get(4));
+        long added = save("Product new", "Games", 7);
+        jdbcTemplate.update("UPDATE products SET updated_at = ? WHERE id = ?", recently, added);
+
+        stockIndex.applyChanges();
+
+        assertThat(productIds(stockIndex.lowStock(8, null))).containsExactly(ids.get(4), ids.get(0), added);
+        assertThat(productIds(stockIndex.lowStock(8, "Games"))).containsExactly(added);
+        assertThat(stockIndex.countByStatus(null).values().stream().mapToInt(Integer::intValue).sum())
+                .isEqualTo(ids.size() + 1);
+    }
+
+    @Test
+    void testApplyChanges_CatchesLateCommitsAndPatchesLikeARebuild() {
+        stockIndex.rebuild();
+        List<List<InventoryDto>> notified = new ArrayList<>();
+        stockIndex.onStockChange(notified::add);
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update("UPDATE products SET stock_quantity = 3, updated_at = ? WHERE id = ?", now.minusSeconds(1), ids.get(1));
+        stockIndex.applyChanges();
+
+        // Stamped before the last change read, committed after it; and one moved to another category
+        jdbcTemplate.update("UPDATE products SET stock_quantity = 60, updated_at = ? WHERE id = ?", now.minusSeconds(5), ids.get(0));
+        jdbcTemplate.update("UPDATE products SET category = 'Games', updated_at = ? WHERE id = ?", now.minusSeconds(5), ids.get(3));
+        long added = save("Product new", "Books", 10);
+        stockIndex.applyChanges();
+        stockIndex.applyChanges(); // reads the same changes again, finds nothing new
+
+        assertThat(notified).extracting(changes -> productIds(changes))
+                .containsExactly(List.of(ids.get(1)), List.of(ids.get(0), added));
+        List<InventoryDto> patchedLow = stockIndex.lowStock(100, null);
+        List<InventoryDto> patchedGames = stockIndex.lowStock(100, "Games");
+        Map<?, ?> patchedBooks = stockIndex.countByStatus("Books");
+        stockIndex.rebuild();
+        assertThat(patchedLow).isEqualTo(stockIndex.lowStock(100, null));
+        assertThat(patchedGames).isEqualTo(stockIndex.lowStock(100, "Games")).extracting(InventoryDto::getProductId)
+                .containsExactly(ids.get(3));
+        assertThat(patchedBooks).isEqualTo(stockIndex.countByStatus("Books"));
+    }
+
+    private long save(String name, String category, int stock) {
+        Product product = new Product();
+        product.setName(name);
+        product.setCategory(category);
+        product.setPrice(BigDecimal.TEN);
+        product.setStockQuantity(stock);
+        return productRepository.saveAndFlush(product).getId();
+    }
+
+    private static List<Long> productIds(List<InventoryDto> items) {
+        return items.stream().map(InventoryDto::getProductId).toList();
+    }
+}
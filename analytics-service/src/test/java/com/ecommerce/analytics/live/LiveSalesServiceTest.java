@@ -0,0 +1,144 @@
+package com.ecommerce.analytics.live;
+
+import com.ecommerce.analytics.controller.SalesAnalyticsController;
+import com.ecommerce.analytics.dto.LiveSalesWindowDto;
+import com.ecommerce.analytics.inventory.StockIndex;
+import com.ecommerce.analytics.model.Product;
+import com.ecommerce.analytics.model.Sale;
+import com.ecommerce.analytics.repository.SaleRepository;
+import com.ecommerce.analytics.service.AnalyticsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+class LiveSalesServiceTest {
+
+    private static final Map<Long, String> CATEGORIES = Map.of(1L, "Books", 2L, "Toys", 3L, "Games");
+
+    @Mock
+    private SaleRepository saleRepository;
+
+    @Mock
+    private StockIndex stockIndex;
+
+    private LiveSalesService service;
+
+    @BeforeEach
+    void setUp() {
+        // Room for two categories; the third is summed under Other
+        service = new LiveSalesService(saleRepository, stockIndex, new NoOpTransactionManager(), true,
+                List.of(Duration.ofHours(1), Duration.ofMinutes(5)), 3, 1000);
+    }
+
+    @Test
+    void testWindows_CountLoadedAndRecordedSales() {
+        LocalDateTime now = LocalDateTime.now();
+        when(stockIndex.categories(any())).thenAnswer(invocation -> invocation.<Collection<Long>>getArgument(0)
+                .stream().collect(Collectors.toMap(Function.identity(), CATEGORIES::get)));
+        when(saleRepository.streamColumnsSince(any())).thenReturn(Stream.of(
+                new Object[]{1L, now.minusSeconds(10), 1L, 1, new BigDecimal("10.00"), "COMPLETED"},
+                new Object[]{2L, now.minusMinutes(10), 2L, 2, new BigDecimal("20.00"), "COMPLETED"}));
+        service.load();
+
+        service.record(List.of(sale(3L, 3L, now, "4.50"), sale(4L, 1L, now.minusHours(2), "99.00")));
+
+        List<LiveSalesWindowDto> windows = service.getSales(5);
+        assertThat(windows).extracting(LiveSalesWindowDto::getWindowSeconds).containsExactly(300L, 3600L);
+        assertThat(windows.get(0).getRevenue()).isEqualByComparingTo("14.50");
+        assertThat(windows.get(0).getOrders()).isEqualTo(2);
+        assertThat(windows.get(0).getTopCategories())
+                .containsExactly(Map.entry("Books", new BigDecimal("10.00")), Map.entry("Other", new BigDecimal("4.50")));
+        assertThat(windows.get(1).getRevenue()).isEqualByComparingTo("34.50");
+        assertThat(windows.get(1).getTopCategories().keySet()).containsExactly("Toys", "Books", "Other");
+
+        LiveSalesWindowDto hour = service.getSales(Duration.ofHours(1), 1);
+        assertThat(hour.getTopCategories()).containsOnlyKeys("Toys");
+        assertThat(Duration.between(hour.getFrom(), hour.getTo())).isEqualTo(Duration.ofSeconds(3599));
+        assertThatThrownBy(() -> service.getSales(Duration.ofMinutes(10), 5))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testTail_CountsSalesWrittenElsewhereOnce() {
+        LocalDateTime now = LocalDateTime.now();
+        when(stockIndex.categories(any())).thenAnswer(invocation -> invocation.<Collection<Long>>getArgument(0)
+                .stream().collect(Collectors.toMap(Function.identity(), CATEGORIES::get)));
+        when(saleRepository.streamColumnsSince(any())).thenReturn(Stream.<Object[]>of(
+                new Object[]{1L, now.minusSeconds(10), 1L, 1, new BigDecimal("10.00"), "COMPLETED"}));
+        service.load();
+        service.record(List.of(sale(3L, 1L, now, "3.00")));
+
+        // Sale 2 was written by another instance; 1 and 3 are read again within the overlap
+        List<Object[]> tailed = List.of(
+                new Object[]{1L, now.minusSeconds(10), 1L, 1, new BigDecimal("10.00"), "COMPLETED"},
+                new Object[]{2L, now.minusSeconds(5), 2L, 1, new BigDecimal("20.00"), "COMPLETED"},
+                new Object[]{3L, now, 1L, 1, new BigDecimal("3.00"), "COMPLETED"});
+        when(saleRepository.findColumnsAfter(eq(0L), any(), any())).thenReturn(tailed);
+        service.tail();
+        service.tail();
+
+        LiveSalesWindowDto window = service.getSales(Duration.ofMinutes(5), 5);
+        assertThat(window.getRevenue()).isEqualByComparingTo("33.00");
+        assertThat(window.getOrders()).isEqualTo(3);
+        assertThat(window.getTopCategories())
+                .containsExactly(Map.entry("Toys", new BigDecimal("20.00")), Map.entry("Books", new BigDecimal("13.00")));
+    }
+
+    @Test
+    void testEndpoints_RejectUnknownWindowsAndAnswer503UntilLoaded() throws Exception {
+        MockMvc mockMvc = MockMvcBuilders
+                .standaloneSetup(new SalesAnalyticsController(mock(AnalyticsService.class), service))
+                .build();
+        mockMvc.perform(get("/api/analytics/sales/live"))
+                .andExpect(status().isServiceUnavailable());
+
+        when(saleRepository.streamColumnsSince(any())).thenReturn(Stream.empty());
+        service.load();
+
+        mockMvc.perform(get("/api/analytics/sales/live/5m"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.windowSeconds").value(300))
+                .andExpect(jsonPath("$.orders").value(0));
+        mockMvc.perform(get("/api/analytics/sales/live/10m"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/analytics/sales/live/soon"))
+                .andExpect(status().isBadRequest());
+    }
+
+    private static Sale sale(long id, long productId, LocalDateTime date, String amount) {
+        Product product = new Product();
+        product.setId(productId);
+        Sale sale = new Sale();
+        sale.setId(id);
+        sale.setProduct(product);
+        sale.setQuantity(1);
+        sale.setTotalAmount(new BigDecimal(amount));
+        sale.setSaleDate(date);
+        return sale;
+    }
+}
@@ -0,0 +1,223 @@
+package com.ecommerce.analytics.live;
+
+import com.ecommerce.analytics.controller.LiveUpdateController;
+import com.ecommerce.analytics.dto.InventoryDto;
+import com.ecommerce.analytics.inventory.StockIndex;
+import com.ecommerce.analytics.model.Product;
+import com.ecommerce.analytics.model.Sale;
+import com.ecommerce.analytics.repository.SaleRepository;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@ExtendWith(MockitoExtension.class)
+class LiveUpdateServiceTest {
+
+    private static final Pattern EVENT = Pattern.compile("id:(\\S+)\\nevent:(\\w+)\\ndata:(.*)\\n");
+
+    @Mock
+    private SaleRepository saleRepository;
+
+    @Mock
+    private StockIndex stockIndex;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private LiveUpdateService service;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        LocalDate today = LocalDate.now();
+        when(saleRepository.getDailySales(any(), any())).thenReturn(List.<Object[]>of(
+                new Object[]{today, new BigDecimal("100.00"), 2L}));
+        when(saleRepository.getSalesByCategory(any(), any())).thenReturn(List.<Object[]>of(
+                new Object[]{"Books", new BigDecimal("60.00"), 1L}, new Object[]{"Toys", new BigDecimal("40.00"), 1L}));
+
+        service = service(Duration.ofMinutes(5));
+        mockMvc = MockMvcBuilders.standaloneSetup(new LiveUpdateController(service)).build();
+        service.flush(); // reads the day's totals: version 1
+    }
+
+    // Flushed by the tests, not on a schedule
+    private LiveUpdateService service(Duration resyncInterval) {
+        return new LiveUpdateService(saleRepository, stockIndex,
+                JsonMapper.builder().findAndAddModules().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS).build(),
+                new NoOpTransactionManager(), meterRegistry, true, 10, 2, 60_000,
+                Duration.ofMinutes(1), resyncInterval, Duration.ofMinutes(30), 3, Duration.ofMinutes(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void testStream_SendsTheDayThenFoldedSalesAndStockChanges() throws Exception {
+        MockHttpServletResponse response = open(null);
+        List<String[]> events = awaitEvents(response, 1);
+        assertThat(events.get(0)[1]).isEqualTo("sales");
+        assertThat(events.get(0)[2]).contains("\"version\":1", "\"totalSales\":100.00", "\"transactionCount\":2",
+                "\"Books\":60.00", "\"Toys\":40.00");
+
+        when(stockIndex.categories(any())).thenReturn(Map.of(1L, "Books"));
+        service.salesCommitted(List.of(sale(LocalDateTime.now(), "15.50"), sale(LocalDateTime.now().minusDays(2), "99.00")));
+        service.stockChanged(List.of(new InventoryDto(7L, "Laptop", "Electronics", 3, "LOW")));
+        service.flush();
+
+        events = awaitEvents(response, 3);
+        assertThat(events.get(1)[1]).isEqualTo("stock");
+        assertThat(events.get(1)[2]).contains("\"version\":2", "\"productId\":7", "\"stockQuantity\":3");
+        assertThat(events.get(2)[1]).isEqualTo("sales");
+        // Only today's sale is folded in, and only the category that changed is listed
+        assertThat(events.get(2)[2]).contains("\"version\":3", "\"totalSales\":115.50", "\"transactionCount\":3",
+                "\"Books\":75.50").doesNotContain("Toys");
+    }
+
+    @Test
+    void testReconnect_ReplaysMissedEventsOrAsksForAReset() throws Exception {
+        String firstId = awaitEvents(open(null), 1).get(0)[0];
+        String stream = firstId.substring(0, firstId.lastIndexOf('-'));
+        for (int i = 0; i < 3; i++) {
+            service.stockChanged(List.of(new InventoryDto((long) i, "Product " + i, "Toys", i, "LOW")));
+            service.flush();
+        }
+
+        // Versions 2 to 4 were sent; two are kept for replay
+        List<String[]> replayed = awaitEvents(open(stream + "-2"), 2);
+        assertThat(replayed).extracting(event -> event[0]).containsExactly(stream + "-3", stream + "-4");
+
+        assertThat(awaitEvents(open(stream + "-1"), 1).get(0)[1]).isEqualTo("reset");
+        assertThat(awaitEvents(open("otherstream-3"), 1).get(0)[1]).isEqualTo("reset");
+    }
+
+    @Test
+    void testSlowSubscriber_IsDroppedWithoutHoldingUpTheOthers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch completed = new CountDownLatch(1);
+        SseEmitter slow = new SseEmitter() {
+            @Override
+            public void send(Set<DataWithMediaType> items) throws IOException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.send(items);
+            }
+
+            @Override
+            public synchronized void complete() {
+                completed.countDown();
+                super.complete();
+            }
+        };
+        service.subscribe(null, slow);
+        MockHttpServletResponse fast = open(null);
+        awaitEvents(fast, 1);
+
+        // The slow client is stuck in its first send; three more events fill its queue, the fourth drops it
+        for (int i = 0; i < 5; i++) {
+            service.stockChanged(List.of(new InventoryDto((long) i, "Product " + i, "Toys", i, "LOW")));
+            service.flush();
+        }
+
+        assertThat(awaitEvents(fast, 6)).extracting(event -> event[1]).containsOnly("sales", "stock");
+        assertThat(completed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(meterRegistry.counter("analytics.live.dropped").count()).isEqualTo(1);
+        release.countDown();
+    }
+
+    @Test
+    void testResync_KeepsSalesFoldedInWhileReading() throws Exception {
+        LiveUpdateService resyncing = service(Duration.ZERO); // resyncs on every flush
+        try {
+            resyncing.flush();
+            LocalDate today = LocalDate.now();
+            Sale seen = sale(LocalDateTime.now(), "5.00");
+            seen.setId(10L);
+            Sale missed = sale(LocalDateTime.now(), "7.00");
+            missed.setId(11L);
+            when(stockIndex.categories(any())).thenReturn(Map.of(1L, "Books"));
+            // Both are committed while the day is read; the read includes the first only
+            when(saleRepository.getDailySales(any(), any())).thenAnswer(invocation -> {
+                resyncing.salesCommitted(List.of(seen, missed));
+                return List.<Object[]>of(new Object[]{today, new BigDecimal("105.00"), 3L});
+            });
+            when(saleRepository.getSalesByCategory(any(), any())).thenReturn(List.<Object[]>of(
+                    new Object[]{"Books", new BigDecimal("65.00"), 1L}, new Object[]{"Toys", new BigDecimal("40.00"), 1L}));
+            when(saleRepository.findIdsBetween(any(), any(), any())).thenReturn(List.of(10L));
+            resyncing.flush();
+
+            MockMvc resyncingMvc = MockMvcBuilders.standaloneSetup(new LiveUpdateController(resyncing)).build();
+            List<String[]> events = awaitEvents(resyncingMvc.perform(get("/api/analytics/live/stream"))
+                    .andReturn().getResponse(), 1);
+            assertThat(events.get(0)[2]).contains("\"totalSales\":112.00", "\"transactionCount\":4",
+                    "\"Books\":72.00", "\"Toys\":40.00");
+        } finally {
+            resyncing.shutdown();
+        }
+    }
+
+    private MockHttpServletResponse open(String lastEventId) throws Exception {
+        return mockMvc.perform(lastEventId != null
+                        ? get("/api/analytics/live/stream").header("Last-Event-ID", lastEventId)
+                        : get("/api/analytics/live/stream"))
+                .andReturn().getResponse();
+    }
+
+    private static List<String[]> awaitEvents(MockHttpServletResponse response, int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (true) {
+            List<String[]> events = new ArrayList<>();
+            Matcher matcher = EVENT.matcher(response.getContentAsString());
+            while (matcher.find()) {
+                events.add(new String[]{matcher.group(1), matcher.group(2), matcher.group(3)});
+            }
+            if (events.size() >= count || System.currentTimeMillis() > deadline) {
+                assertThat(events).hasSize(count);
+                return events;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static Sale sale(LocalDateTime date, String amount) {
+        Product product = new Product();
+        product.setId(1L);
+        Sale sale = new Sale();
+        sale.setProduct(product);
+        sale.setQuantity(1);
+        sale.setTotalAmount(new BigDecimal(amount));
+        sale.setSaleDate(date);
+        return sale;
+    }
+}
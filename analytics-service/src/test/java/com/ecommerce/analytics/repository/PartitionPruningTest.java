@@ -0,0 +1,76 @@
+package com.ecommerce.analytics.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.Query;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * {@code sales} and {@code user_activities} are partitioned by month on their timestamp (see
+ * database/init/01-schema.sql). MySQL can only prune partitions for a query that constrains that
+ * column, so every repository query reading those tables must do so, unless it is listed here
+ * with the reason it may touch every partition.
+ */
+class PartitionPruningTest {
+
+    private static final Map<String, String> UNPRUNED = Map.of(
+            "SaleRepository.findEarliestSaleDate", "MIN over the sale_date index reads one entry per partition",
+            "SaleRepository.countByStatus", "administrative count, not on a request path",
+            "UserActivityRepository.findEarliestActivityTimestamp", "MIN over the timestamp index reads one entry per partition",
+            "UserActivityRepository.findByUserId", "lookup by user across all history",
+            "UserActivityRepository.findByActivityType", "lookup by type across all history");
+
+    private static final Pattern SALES = Pattern.compile("\\b(FROM|JOIN)\\s+(Sale|sales)\\s", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SALES_RANGE = Pattern.compile("\\b(saleDate|sale_date)\\s*(BETWEEN|>=|>|<=|<)\\s");
+    private static final Pattern ACTIVITIES = Pattern.compile("\\b(FROM|JOIN)\\s+(UserActivity|user_activities)\\s",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern ACTIVITIES_RANGE = Pattern.compile(
+            "\\b(activityTimestamp|activity_timestamp)\\s*(BETWEEN|>=|>|<=|<)\\s");
+
+    @Test
+    void testQueriesOnPartitionedTables_ConstrainThePartitionColumn() {
+        List<String> offenders = new ArrayList<>();
+        int checked = 0;
+        for (Class<?> repository : List.of(SaleRepository.class, UserActivityRepository.class,
+                SalesDailyRollupRepository.class, UserActivityDailySketchRepository.class)) {
+            for (Method method : repository.getDeclaredMethods()) {
+                String name = repository.getSimpleName() + "." + method.getName();
+                Query query = method.getAnnotation(Query.class);
+                if (query == null) {
+                    // Derived queries on the partitioned repositories: the method name holds the predicate
+                    boolean partitioned = repository == SaleRepository.class || repository == UserActivityRepository.class;
+                    if (partitioned && method.getName().startsWith("find")
+                            && !method.getName().matches(".*(SaleDate|ActivityTimestamp)Between.*")
+                            && !UNPRUNED.containsKey(name)) {
+                        offenders.add(name);
+                    }
+                    continue;
+                }
+                checked++;
+                String sql = query.value();
+                if (count(SALES, sql) > count(SALES_RANGE, sql) || count(ACTIVITIES, sql) > count(ACTIVITIES_RANGE, sql)) {
+                    if (!UNPRUNED.containsKey(name)) {
+                        offenders.add(name + ": " + sql);
+                    }
+                }
+            }
+        }
+
+        assertThat(checked).isPositive();
+        assertThat(offenders).as("queries that scan every partition").isEmpty();
+    }
+
+    private static int count(Pattern pattern, String sql) {
+        Matcher matcher = pattern.matcher(sql);
+        int count = 0;
+        while (matcher.find()) count++;
+        return count;
+    }
+}
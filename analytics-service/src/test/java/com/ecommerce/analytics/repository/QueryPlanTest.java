@@ -0,0 +1,448 @@
+package com.ecommerce.analytics.repository;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.MountableFile;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs {@code EXPLAIN} on the SQL of every repository query against MySQL 8 with the schema of
+ * database/init and a few months of generated rows, and fails when
+ * <ul>
+ *   <li>a table that grows with traffic is read in full (access type {@code ALL} or {@code index}),</li>
+ *   <li>a plan needs a filesort that is not listed in {@link #SORTED} with the reason it cannot be avoided, or</li>
+ *   <li>a query listed in {@link #COVERING} is no longer answered from its covering index alone.</li>
+ * </ul>
+ * Each query is executed once through its repository while the connections record the statements and
+ * bind values Hibernate sends; those are explained on a separate connection. Needs Docker; skipped without it.
+ */
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(QueryPlanTest.RecordingConfig.class)
+@Testcontainers(disabledWithoutDocker = true)
+class QueryPlanTest {
+
+    private static final Set<String> GROWING = Set.of("sales", "user_activities", "sales_daily_rollup", "user_activity_daily_hll");
+
+    private static final Map<String, String> SORTED = Map.of(
+            "SaleRepository.getSalesByCategory", "ordered by revenue, an aggregate",
+            "SaleRepository.getTopSellingProducts", "ordered by quantity sold, an aggregate",
+            "SaleRepository.getDailySales", "ordered by DATE(sale_date) after grouping, one row per day",
+            "UserActivityRepository.getMostViewedProducts", "ordered by view count, an aggregate",
+            "SalesDailyRollupRepository.getTopSellingProducts", "ordered by quantity sold, an aggregate",
+            "SalesDailyRollupRepository.getDailySales", "ordered by day after grouping the union, one row per day");
+
+    private static final Map<String, String> UNBOUNDED = Map.of(
+            "SaleRepository.countByStatus", "administrative count, not on a request path");
+
+    private static final Map<String, String> COVERING = Map.ofEntries(
+            Map.entry("SaleRepository.streamColumnsSince", "idx_sale_date_covering"),
+            Map.entry("SaleRepository.getTotalSalesBetween", "idx_sale_date_covering"),
+            Map.entry("SaleRepository.getSalesByCategory", "idx_sale_date_covering"),
+            Map.entry("SaleRepository.getSalesByCategoryAndProduct", "idx_sale_date_covering"),
+            Map.entry("SaleRepository.getTopSellingProducts", "idx_sale_date_covering"),
+            Map.entry("SaleRepository.getTotalQuantityBetween", "idx_sale_date_covering"),
+            Map.entry("SaleRepository.getDailySales", "idx_sale_date_covering"),
+            Map.entry("SalesDailyRollupRepository.rollupRange", "idx_sale_date_covering"),
+            Map.entry("UserActivityRepository.getMostViewedProducts", "idx_activity_type_timestamp"),
+            Map.entry("UserActivityRepository.countProductViewsBetween", "idx_activity_type_timestamp"),
+            Map.entry("UserActivityRepository.getActivityCountByType", "idx_activity_timestamp_covering"),
+            Map.entry("UserActivityRepository.getUniqueUsersCount", "idx_activity_timestamp_covering"),
+            Map.entry("UserActivityRepository.streamDistinctUserIds", "idx_activity_timestamp_covering"),
+            Map.entry("UserActivityRepository.streamColumnsSince", "idx_activity_timestamp_covering"));
+
+    private static final LocalDate TODAY = LocalDate.now();
+    private static final int DAYS = 120;
+
+    @Container
+    static MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.0")
+            .withDatabaseName("ecommerce_analytics")
+            .withUsername("test")
+            .withPassword("test")
+            .withUrlParam("rewriteBatchedStatements", "true")
+            // The entrypoint runs these with the mysql client, which understands the DELIMITER blocks
+            .withCopyFileToContainer(MountableFile.forHostPath("../database/init/"), "/docker-entrypoint-initdb.d/");
+
+    private static final List<Recorded> recorded = new CopyOnWriteArrayList<>();
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", mysql::getJdbcUrl);
+        registry.add("spring.datasource.username", mysql::getUsername);
+        registry.add("spring.datasource.password", mysql::getPassword);
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+    }
+
+    @Autowired
+    private SaleRepository saleRepository;
+
+    @Autowired
+    private UserActivityRepository userActivityRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private SalesDailyRollupRepository salesDailyRollupRepository;
+
+    @Autowired
+    private UserActivityDailySketchRepository userActivityDailySketchRepository;
+
+    @Autowired
+    private RollupWatermarkRepository rollupWatermarkRepository;
+
+    @Autowired
+    private DataVersionRepository dataVersionRepository;
+
+    @BeforeAll
+    static void seed() throws SQLException {
+        Random random = new Random(42);
+        try (Connection c = connect()) {
+            try (PreparedStatement ps = c.prepareStatement(
+                    "INSERT INTO products (name, category, price, stock_quantity) VALUES (?, ?, ?, ?)")) {
+                for (int i = 0; i < 500; i++) {
+                    ps.setString(1, "Product " + i);
+                    ps.setString(2, "Category " + i % 12);
+                    ps.setBigDecimal(3, BigDecimal.valueOf(100 + random.nextInt(100_000), 2));
+                    ps.setInt(4, random.nextInt(1_000));
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            long[] productIds = ids(c, "SELECT id FROM products");
+
+            String[] statuses = {"COMPLETED", "COMPLETED", "COMPLETED", "PENDING", "REFUNDED"};
+            try (PreparedStatement ps = c.prepareStatement("INSERT INTO sales " +
+                    "(product_id, quantity, total_amount, sale_date, customer_id, status) VALUES (?, ?, ?, ?, ?, ?)")) {
+                for (int i = 0; i < 60_000; i++) {
+                    ps.setLong(1, productIds[random.nextInt(productIds.length)]);
+                    ps.setInt(2, 1 + random.nextInt(5));
+                    ps.setBigDecimal(3, BigDecimal.valueOf(100 + random.nextInt(500_000), 2));
+                    ps.setTimestamp(4, randomTime(random));
+                    ps.setLong(5, 1 + random.nextInt(20_000));
+                    ps.setString(6, statuses[random.nextInt(statuses.length)]);
+                    ps.addBatch();
+                    if (i % 5_000 == 4_999) ps.executeBatch();
+                }
+            }
+
+            try (PreparedStatement ps = c.prepareStatement("INSERT INTO user_activities " +
+                    "(user_id, activity_type, product_id, activity_timestamp) VALUES (?, ?, ?, ?)")) {
+                for (int i = 0; i < 60_000; i++) {
+                    int roll = random.nextInt(100);
+                    String type = roll < 70 ? "VIEW" : roll < 80 ? "SEARCH" : roll < 95 ? "ADD_TO_CART" : "PURCHASE";
+                    ps.setLong(1, 1 + random.nextInt(20_000));
+                    ps.setString(2, type);
+                    if (type.equals("SEARCH")) {
+                        ps.setNull(3, java.sql.Types.BIGINT);
+                    } else {
+                        ps.setLong(3, productIds[random.nextInt(productIds.length)]);
+                    }
+                    ps.setTimestamp(4, randomTime(random));
+                    ps.addBatch();
+                    if (i % 5_000 == 4_999) ps.executeBatch();
+                }
+            }
+
+            try (Statement statement = c.createStatement()) {
+                // Days older than a month are closed into the rollup and the sketches, as in production
+                LocalDate closedThrough = TODAY.minusDays(31);
+                statement.execute("INSERT INTO sales_daily_rollup " +
+                        "(sale_day, product_id, category, status, revenue, quantity, transaction_count) " +
+                        "SELECT DATE(s.sale_date), s.product_id, p.category, COALESCE(s.status, 'UNKNOWN'), " +
+                        "SUM(s.total_amount), SUM(s.quantity), COUNT(*) FROM sales s JOIN products p ON p.id = s.product_id " +
+                        "WHERE s.sale_date < '" + closedThrough.plusDays(1) + "' " +
+                        "GROUP BY DATE(s.sale_date), s.product_id, p.category, s.status");
+                for (LocalDate day = TODAY.minusDays(DAYS); day.isBefore(closedThrough); day = day.plusDays(1)) {
+                    statement.execute("INSERT INTO user_activity_daily_hll (activity_day, sketch) VALUES ('" + day + "', x'00')");
+                }
+                statement.execute("INSERT INTO rollup_watermarks (name, last_closed_day) VALUES ('sales', '" + closedThrough + "')");
+                statement.execute("ANALYZE TABLE products, sales, user_activities, sales_daily_rollup, user_activity_daily_hll");
+            }
+        }
+    }
+
+    @Test
+    void testEveryRepositoryQuery_HasAPlanCase() {
+        List<String> missing = new ArrayList<>();
+        for (Class<?> repository : List.of(SaleRepository.class, UserActivityRepository.class, ProductRepository.class,
+                SalesDailyRollupRepository.class, UserActivityDailySketchRepository.class, RollupWatermarkRepository.class,
+                DataVersionRepository.class)) {
+            for (Method method : repository.getDeclaredMethods()) {
+                String name = repository.getSimpleName() + "." + method.getName();
+                if (!method.isSynthetic() && !cases().containsKey(name)) {
+                    missing.add(name);
+                }
+            }
+        }
+        assertThat(missing).as("repository queries without a plan case").isEmpty();
+    }
+
+    @Test
+    void testQueryPlans_UseIndexesWithoutFilesort() throws Exception {
+        List<String> offenders = new ArrayList<>();
+        try (Connection c = connect()) {
+            for (Map.Entry<String, Runnable> entry : cases().entrySet()) {
+                String name = entry.getKey();
+                recorded.clear();
+                entry.getValue().run();
+                assertThat(recorded).as(name + " sent no statement").isNotEmpty();
+
+                boolean covered = false;
+                for (Recorded statement : recorded) {
+                    for (PlanRow row : explain(c, statement)) {
+                        if (GROWING.contains(row.table()) && (row.type().equals("ALL") || row.type().equals("index"))
+                                && !UNBOUNDED.containsKey(name)) {
+                            offenders.add(name + ": full scan of " + row.table() + " " + row);
+                        }
+                        if (row.extra().contains("Using filesort") && !SORTED.containsKey(name)) {
+                            offenders.add(name + ": filesort " + row);
+                        }
+                        covered |= row.extra().contains("Using index") && row.key().equals(COVERING.get(name));
+                    }
+                }
+                if (COVERING.containsKey(name) && !covered) {
+                    offenders.add(name + ": not answered from " + COVERING.get(name) + " alone");
+                }
+            }
+        }
+        assertThat(offenders).as("query plan regressions").isEmpty();
+    }
+
+    /**
+     * One execution of every query the repositories declare, with arguments shaped like the service's.
+     */
+    private Map<String, Runnable> cases() {
+        LocalDateTime start = TODAY.minusDays(6).atStartOfDay();
+        LocalDateTime end = TODAY.atTime(23, 59, 59);
+        LocalDate startDay = TODAY.minusDays(60);
+        LocalDate closedThrough = TODAY.minusDays(31);
+        LocalDateTime rawStart = closedThrough.plusDays(1).atStartOfDay();
+
+        Map<String, Runnable> cases = new LinkedHashMap<>();
+        cases.put("SaleRepository.findBySaleDateBetween", () -> saleRepository.findBySaleDateBetween(start, end));
+        cases.put("SaleRepository.streamExportRows", () -> drain(saleRepository.streamExportRows(start, end)));
+        cases.put("SaleRepository.streamColumnsSince", () -> drain(saleRepository.streamColumnsSince(rawStart)));
+        cases.put("SaleRepository.findColumnsAfter",
+                () -> saleRepository.findColumnsAfter(1_000L, rawStart, PageRequest.of(0, 5000)));
+        cases.put("SaleRepository.findIdsBetween", () -> saleRepository.findIdsBetween(List.of(1L, 2L, 3L), start, end));
+        cases.put("SaleRepository.getTotalSalesBetween", () -> saleRepository.getTotalSalesBetween(start, end));
+        cases.put("SaleRepository.getSalesByCategory", () -> saleRepository.getSalesByCategory(start, end));
+        cases.put("SaleRepository.getSalesByCategoryAndProduct", () -> saleRepository.getSalesByCategoryAndProduct(start, end));
+        cases.put("SaleRepository.getTopSellingProducts",
+                () -> saleRepository.getTopSellingProducts(start, end, PageRequest.of(0, 10)));
+        cases.put("SaleRepository.getTotalQuantityBetween", () -> saleRepository.getTotalQuantityBetween(start, end));
+        cases.put("SaleRepository.getDailySales", () -> saleRepository.getDailySales(start, end));
+        cases.put("SaleRepository.findEarliestSaleDate", saleRepository::findEarliestSaleDate);
+        cases.put("SaleRepository.countByStatus", () -> saleRepository.countByStatus("REFUNDED"));
+
+        cases.put("UserActivityRepository.findByUserId", () -> userActivityRepository.findByUserId(7L));
+        cases.put("UserActivityRepository.findByActivityType", () -> userActivityRepository.findByActivityType("PURCHASE"));
+        cases.put("UserActivityRepository.getActivityCountByType", () -> userActivityRepository.getActivityCountByType(start, end));
+        cases.put("UserActivityRepository.getMostViewedProducts",
+                () -> userActivityRepository.getMostViewedProducts(start, end, PageRequest.of(0, 10)));
+        cases.put("UserActivityRepository.countProductViewsBetween", () -> userActivityRepository.countProductViewsBetween(start, end));
+        cases.put("UserActivityRepository.getUniqueUsersCount", () -> userActivityRepository.getUniqueUsersCount(start, end));
+        cases.put("UserActivityRepository.streamDistinctUserIds",
+                () -> drain(userActivityRepository.streamDistinctUserIds(start, end)));
+        cases.put("UserActivityRepository.streamExportRows", () -> drain(userActivityRepository.streamExportRows(start, end)));
+        cases.put("UserActivityRepository.streamColumnsSince", () -> drain(userActivityRepository.streamColumnsSince(rawStart)));
+        cases.put("UserActivityRepository.findColumnsAfter",
+                () -> userActivityRepository.findColumnsAfter(1_000L, rawStart, PageRequest.of(0, 5000)));
+        cases.put("UserActivityRepository.findEarliestActivityTimestamp", userActivityRepository::findEarliestActivityTimestamp);
+
+        cases.put("ProductRepository.findByCategory", () -> productRepository.findByCategory("Category 3"));
+        cases.put("ProductRepository.findLowStockProducts", () -> productRepository.findLowStockProducts(10));
+        cases.put("ProductRepository.findLowStockProductsByCategory",
+                () -> productRepository.findLowStockProductsByCategory("Electronics", 10));
+        cases.put("ProductRepository.countByStockQuantityGreaterThanEqualAndStockQuantityLessThan",
+                () -> productRepository.countByStockQuantityGreaterThanEqualAndStockQuantityLessThan(20, 50));
+        cases.put("ProductRepository.countByCategoryAndStockQuantityGreaterThanEqualAndStockQuantityLessThan",
+                () -> productRepository.countByCategoryAndStockQuantityGreaterThanEqualAndStockQuantityLessThan(
+                        "Electronics", 20, 50));
+        cases.put("ProductRepository.countProductsByCategory", productRepository::countProductsByCategory);
+        cases.put("ProductRepository.findNamesAndCategories", productRepository::findNamesAndCategories);
+        cases.put("ProductRepository.findNamesAndCategoriesByIds",
+                () -> productRepository.findNamesAndCategoriesByIds(List.of(1L, 2L, 3L)));
+        cases.put("ProductRepository.findExistingIds", () -> productRepository.findExistingIds(List.of(1L, 2L, 3L)));
+        cases.put("ProductRepository.findInventoryPage",
+                () -> productRepository.findInventoryPage(100L, 0, 20, PageRequest.of(0, 101)));
+        cases.put("ProductRepository.findInventoryPageByCategory",
+                () -> productRepository.findInventoryPageByCategory("Category 3", 100L, Integer.MIN_VALUE,
+                        Integer.MAX_VALUE, PageRequest.of(0, 101)));
+        cases.put("ProductRepository.findInventoryChanges",
+                () -> productRepository.findInventoryChanges(end.minusHours(1), 0L, PageRequest.of(0, 101)));
+        cases.put("ProductRepository.getChangeWatermark", productRepository::getChangeWatermark);
+
+        cases.put("SalesDailyRollupRepository.deleteDay", () -> salesDailyRollupRepository.deleteDay(closedThrough));
+        cases.put("SalesDailyRollupRepository.rollupRange",
+                () -> salesDailyRollupRepository.rollupRange(rawStart, rawStart.plusDays(1)));
+        cases.put("SalesDailyRollupRepository.increment",
+                () -> salesDailyRollupRepository.increment(TODAY, 1L, "COMPLETED", BigDecimal.TEN, 1));
+        cases.put("SalesDailyRollupRepository.getSalesByCategoryAndProduct",
+                () -> salesDailyRollupRepository.getSalesByCategoryAndProduct(startDay, closedThrough, rawStart, end));
+        cases.put("SalesDailyRollupRepository.getTopSellingProducts",
+                () -> salesDailyRollupRepository.getTopSellingProducts(startDay, closedThrough, rawStart, end, 10));
+        cases.put("SalesDailyRollupRepository.getTotalQuantity",
+                () -> salesDailyRollupRepository.getTotalQuantity(startDay, closedThrough, rawStart, end));
+        cases.put("SalesDailyRollupRepository.getDailySales",
+                () -> salesDailyRollupRepository.getDailySales(startDay, closedThrough, rawStart, end));
+        cases.put("SalesDailyRollupRepository.getTotalSales",
+                () -> salesDailyRollupRepository.getTotalSales(startDay, closedThrough, rawStart, end));
+
+        cases.put("UserActivityDailySketchRepository.findByActivityDayBetween",
+                () -> userActivityDailySketchRepository.findByActivityDayBetween(startDay, closedThrough));
+        cases.put("UserActivityDailySketchRepository.findByDayForUpdate",
+                () -> userActivityDailySketchRepository.findByDayForUpdate(closedThrough));
+
+        cases.put("RollupWatermarkRepository.findByNameForUpdate", () -> rollupWatermarkRepository.findByNameForUpdate("sales"));
+        cases.put("RollupWatermarkRepository.findByNameForShare", () -> rollupWatermarkRepository.findByNameForShare("sales"));
+
+        cases.put("DataVersionRepository.increment", () -> dataVersionRepository.increment("sales", 3));
+        cases.put("DataVersionRepository.sumByName", dataVersionRepository::sumByName);
+        return cases;
+    }
+
+    private static List<PlanRow> explain(Connection c, Recorded statement) throws Exception {
+        List<PlanRow> rows = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement("EXPLAIN " + statement.sql())) {
+            for (Bind bind : statement.binds()) {
+                bind.method().invoke(ps, bind.args());
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    rows.add(new PlanRow(value(rs, "table"), value(rs, "type"), value(rs, "key"), value(rs, "Extra")));
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static String value(ResultSet rs, String column) throws SQLException {
+        String value = rs.getString(column);
+        return value != null ? value : "";
+    }
+
+    private static void drain(Stream<?> stream) {
+        try (stream) {
+            stream.forEach(row -> { });
+        }
+    }
+
+    private static Connection connect() throws SQLException {
+        return DriverManager.getConnection(mysql.getJdbcUrl(), mysql.getUsername(), mysql.getPassword());
+    }
+
+    private static long[] ids(Connection c, String sql) throws SQLException {
+        List<Long> ids = new ArrayList<>();
+        try (Statement statement = c.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+            while (rs.next()) ids.add(rs.getLong(1));
+        }
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static Timestamp randomTime(Random random) {
+        return Timestamp.valueOf(TODAY.minusDays(random.nextInt(DAYS)).atStartOfDay().plusSeconds(random.nextInt(86_400)));
+    }
+
+    private record PlanRow(String table, String type, String key, String extra) {
+    }
+
+    private record Bind(Method method, Object[] args) {
+    }
+
+    private record Recorded(String sql, List<Bind> binds) {
+    }
+
+    /**
+     * Records each statement prepared on the application's connections with the values bound to it.
+     */
+    @TestConfiguration
+    static class RecordingConfig {
+
+        @Bean
+        static BeanPostProcessor recordingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof DataSource dataSource)) return bean;
+                    return new DelegatingDataSource(dataSource) {
+                        @Override
+                        public Connection getConnection() throws SQLException {
+                            return recording(super.getConnection());
+                        }
+                    };
+                }
+            };
+        }
+
+        private static Connection recording(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                    (proxy, method, args) -> {
+                        Object result = invoke(connection, method, args);
+                        if (method.getName().equals("prepareStatement")) {
+                            return recording((PreparedStatement) result, (String) args[0]);
+                        }
+                        return result;
+                    });
+        }
+
+        private static PreparedStatement recording(PreparedStatement statement, String sql) {
+            List<Bind> binds = new ArrayList<>();
+            recorded.add(new Recorded(sql, binds));
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                        if (method.getName().startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                            binds.add(new Bind(method, args.clone()));
+                        }
+                        return invoke(statement, method, args);
+                    });
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
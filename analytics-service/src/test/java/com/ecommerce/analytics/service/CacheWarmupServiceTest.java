@@ -0,0 +1,88 @@
+package com.ecommerce.analytics.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class CacheWarmupServiceTest {
+
+    @Mock
+    private AnalyticsService analyticsService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CacheWarmupService warmupService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        warmupService = new CacheWarmupService(analyticsService, meterRegistry, true, List.of(30), List.of(10, 5),
+                List.of(50), 1, Duration.ofHours(1), 2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        warmupService.shutdown();
+    }
+
+    @Test
+    void testWarmUp_CoversDefaultWindowsAndMostRequestedRecentWindow() throws Exception {
+        LocalDate today = LocalDate.now();
+        warmupService.observe(today.minusDays(7), today, 20);
+        warmupService.observe(today.minusDays(7), today, 20);
+        warmupService.observe(today.minusDays(90), today, null);
+        assertThat(warmupService.isWarm()).isFalse();
+
+        warmupService.warmUp().get(5, TimeUnit.SECONDS);
+
+        assertThat(warmupService.isWarm()).isTrue();
+        verify(analyticsService).getSalesByCategory(today.minusDays(30), today);
+        verify(analyticsService).getDailySales(today.minusDays(30), today);
+        verify(analyticsService).getUniqueUsersCount(today.minusDays(30), today, false);
+        verify(analyticsService).getTopSellingProducts(today.minusDays(30), today, 10);
+        verify(analyticsService).getMostViewedProducts(today.minusDays(30), today, 5);
+        verify(analyticsService).getTopSellingProducts(today.minusDays(7), today, 20);
+        verify(analyticsService).getTotalSales(today.minusDays(7), today);
+        verify(analyticsService, never()).getTotalSales(today.minusDays(90), today);
+        verify(analyticsService).getInventoryStatus();
+        verify(analyticsService).getLowStockProducts(50);
+        verify(analyticsService, times(2)).getSalesByCategory(any(), any());
+        verify(analyticsService, times(3)).getTopSellingProducts(any(), any(), anyInt());
+    }
+
+    @Test
+    void testWarmUp_WaitsWhileRequestsQueueForConnections() throws Exception {
+        AtomicInteger pending = new AtomicInteger(1);
+        Gauge.builder("hikaricp.connections.pending", pending, AtomicInteger::get).register(meterRegistry);
+
+        CompletableFuture<Void> pass = warmupService.warmUp();
+        Thread.sleep(200);
+
+        assertThat(pass).isNotDone();
+        verify(analyticsService, never()).getInventoryStatus();
+
+        pending.set(0);
+        pass.get(5, TimeUnit.SECONDS);
+        verify(analyticsService).getInventoryStatus();
+        assertThat(warmupService.isWarm()).isTrue();
+    }
+}
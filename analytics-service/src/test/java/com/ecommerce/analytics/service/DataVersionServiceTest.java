@@ -0,0 +1,170 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.config.EtagInterceptor;
+import com.ecommerce.analytics.controller.SalesAnalyticsController;
+import com.ecommerce.analytics.live.LiveSalesService;
+import com.ecommerce.analytics.model.Product;
+import com.ecommerce.analytics.model.RollupWatermark;
+import com.ecommerce.analytics.repository.ProductRepository;
+import com.ecommerce.analytics.repository.RollupWatermarkRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@DataJpaTest(showSql = false)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import(DataVersionService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DataVersionServiceTest {
+
+    private static final String TOTAL = "/api/analytics/sales/total?startDate=2024-01-01&endDate=2024-01-31";
+    private static final List<String> ALL = List.of(DataVersionService.SALES, DataVersionService.USER_ACTIVITIES,
+            DataVersionService.PRODUCTS);
+
+    @Autowired
+    private DataVersionService dataVersionService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private RollupWatermarkRepository watermarkRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final AnalyticsService analyticsService = mock(AnalyticsService.class);
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        when(analyticsService.getTotalSales(any(), any())).thenReturn(new BigDecimal("42.00"));
+        mockMvc = MockMvcBuilders
+                .standaloneSetup(new SalesAnalyticsController(analyticsService, mock(LiveSalesService.class)))
+                .addInterceptors(new EtagInterceptor(dataVersionService, Duration.ofHours(1),
+                        List.of(DataVersionService.SALES, DataVersionService.PRODUCTS), true))
+                .build();
+        dataVersionService.refresh();
+    }
+
+    @Test
+    void testVersion_AdvancesWithIngestionAndProductChanges() {
+        String initial = dataVersionService.version(ALL);
+        assertThat(initial).isNotNull();
+        String activities = dataVersionService.version(List.of(DataVersionService.USER_ACTIVITIES));
+
+        // Spread over slots, the counter still advances by one per commit
+        for (int i = 0; i < 20; i++) {
+            dataVersionService.changed(DataVersionService.SALES);
+        }
+        String afterSales = dataVersionService.version(ALL);
+        assertThat(afterSales).isNotEqualTo(initial).contains("sales=");
+        assertThat(dataVersionService.version(List.of(DataVersionService.USER_ACTIVITIES))).isEqualTo(activities);
+        assertThat(count(afterSales, "sales") - count(initial, "sales")).isEqualTo(20);
+
+        Product product = new Product();
+        product.setName("Versioned");
+        product.setCategory("Books");
+        product.setPrice(BigDecimal.ONE);
+        product = productRepository.saveAndFlush(product);
+        try {
+            dataVersionService.refresh();
+            assertThat(dataVersionService.version(ALL)).isNotEqualTo(afterSales);
+        } finally {
+            productRepository.delete(product);
+        }
+    }
+
+    @Test
+    void testEtag_AnswersUnchangedDataWith304WithoutCallingTheHandler() throws Exception {
+        String etag = mockMvc.perform(get(TOTAL))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "no-cache"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).matches("\"[0-9a-f]{32}\"");
+
+        mockMvc.perform(get(TOTAL).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+        verify(analyticsService, times(1)).getTotalSales(any(), any());
+
+        // Writes to data the endpoint does not read keep the ETag
+        dataVersionService.changed(DataVersionService.USER_ACTIVITIES);
+        mockMvc.perform(get(TOTAL).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        // Another range, or the same one after a write, is a different representation
+        mockMvc.perform(get(TOTAL.replace("01-31", "02-29")).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        dataVersionService.changed(DataVersionService.SALES);
+        mockMvc.perform(get(TOTAL).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+    }
+
+    @Test
+    void testEtag_OfAClosedRangeOnlyChangesWithWritesToClosedDays() throws Exception {
+        watermarkRepository.save(new RollupWatermark(SalesRollupService.SALES_ROLLUP, LocalDate.of(2024, 1, 31)));
+        try {
+            dataVersionService.refresh();
+            String etag = mockMvc.perform(get(TOTAL))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+            dataVersionService.changed(DataVersionService.SALES);
+            mockMvc.perform(get(TOTAL).header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isNotModified());
+            // February is not closed yet
+            String open = mockMvc.perform(get(TOTAL.replace("01-31", "02-29")))
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+            dataVersionService.changed(DataVersionService.SALES);
+            mockMvc.perform(get(TOTAL.replace("01-31", "02-29")).header(HttpHeaders.IF_NONE_MATCH, open))
+                    .andExpect(status().isOk());
+
+            new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                    dataVersionService.closedDaysChanged(DataVersionService.SALES));
+            dataVersionService.refresh();
+            mockMvc.perform(get(TOTAL).header(HttpHeaders.IF_NONE_MATCH, etag))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, not(etag)));
+        } finally {
+            watermarkRepository.deleteById(SalesRollupService.SALES_ROLLUP);
+        }
+    }
+
+    private static long count(String version, String source) {
+        Matcher matcher = Pattern.compile("(?:^|;)" + source + "=(\\d+);").matcher(version);
+        assertThat(matcher.find()).isTrue();
+        return Long.parseLong(matcher.group(1));
+    }
+}
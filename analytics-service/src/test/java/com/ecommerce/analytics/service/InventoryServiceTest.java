@@ -0,0 +1,146 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.dto.InventoryDto;
+import com.ecommerce.analytics.dto.InventoryPageDto;
+import com.ecommerce.analytics.dto.StockStatus;
+import com.ecommerce.analytics.inventory.StockIndex;
+import com.ecommerce.analytics.model.Product;
+import com.ecommerce.analytics.repository.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(showSql = false, properties = "analytics.inventory.index.enabled=false")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("h2")
+@Import({InventoryService.class, StockIndex.class, SimpleMeterRegistry.class})
+class InventoryServiceTest {
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        int[] stock = {5, 80, 30, 10, 200, 45, 15};
+        for (int i = 0; i < stock.length; i++) {
+            Product product = new Product();
+            product.setName("Product " + i);
+            product.setCategory(i % 2 == 0 ? "Books" : "Toys");
+            product.setPrice(BigDecimal.TEN);
+            product.setStockQuantity(stock[i]);
+            ids.add(productRepository.saveAndFlush(product).getId());
+        }
+    }
+
+    @Test
+    void testInventoryPages_WalkTheCatalogInIdOrderWithFilters() {
+        List<Long> seen = new ArrayList<>();
+        InventoryPageDto page = inventoryService.getInventoryPage(null, null, null, 3);
+        seen.addAll(productIds(page));
+        while (page.isHasMore()) {
+            assertThat(page.getItems()).hasSize(3);
+            page = inventoryService.getInventoryPage(null, null, page.getNextCursor(), 3);
+            seen.addAll(productIds(page));
+        }
+        assertThat(page.getNextCursor()).isNull();
+        assertThat(seen).isEqualTo(ids);
+
+        InventoryPageDto lowBooks = inventoryService.getInventoryPage("Books", StockStatus.LOW, null, 10);
+        assertThat(productIds(lowBooks)).containsExactly(ids.get(0), ids.get(6));
+        assertThat(lowBooks.getItems()).extracting(InventoryDto::getStatus).containsOnly("LOW");
+        assertThat(lowBooks.isHasMore()).isFalse();
+
+        assertThatThrownBy(() -> inventoryService.getInventoryPage(null, null, "abc", 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testChanges_ReturnOnlyWhatChangedSinceTheWatermark() {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        for (int i = 0; i < ids.size(); i++) {
+            touch(ids.get(i), now.minusDays(1));
+        }
+        touch(ids.get(1), now.minusHours(2));
+        touch(ids.get(2), now.minusHours(2));
+        touch(ids.get(3), now.minusHours(1));
+
+        InventoryPageDto page = inventoryService.getChanges(now.minusHours(3), null, 2);
+        assertThat(productIds(page)).containsExactly(ids.get(1), ids.get(2));
+        assertThat(page.isHasMore()).isTrue();
+
+        page = inventoryService.getChanges(null, page.getNextCursor(), 2);
+        assertThat(productIds(page)).containsExactly(ids.get(3));
+        assertThat(page.getItems().get(0).getUpdatedAt()).isEqualTo(now.minusHours(1));
+        assertThat(page.isHasMore()).isFalse();
+
+        String watermark = page.getNextCursor();
+        page = inventoryService.getChanges(null, watermark, 2);
+        assertThat(page.getItems()).isEmpty();
+        assertThat(page.getNextCursor()).isEqualTo(watermark);
+
+        touch(ids.get(2), now.minusMinutes(10));
+        page = inventoryService.getChanges(null, watermark, 2);
+        assertThat(productIds(page)).containsExactly(ids.get(2));
+    }
+
+    @Test
+    void testChanges_ReturnRecentChangesAgainToCatchLateCommits() {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        for (int i = 0; i < ids.size(); i++) {
+            touch(ids.get(i), now.minusDays(1));
+        }
+        touch(ids.get(4), now.plusMinutes(5)); // stamped by an instance whose clock is ahead
+
+        InventoryPageDto page = inventoryService.getChanges(now.minusHours(1), null, 10);
+        assertThat(productIds(page)).containsExactly(ids.get(4));
+
+        // Stamped before the change already returned, committed after it
+        touch(ids.get(5), now.minusSeconds(5));
+        page = inventoryService.getChanges(null, page.getNextCursor(), 10);
+        assertThat(productIds(page)).containsExactly(ids.get(5), ids.get(4));
+        assertThat(page.getItems().get(1).getUpdatedAt()).as("a repeat").isEqualTo(now.plusMinutes(5));
+    }
+
+    @Test
+    void testLowStockAndCounts_ComeFromTheDatabaseUntilTheIndexIsBuilt() {
+        assertThat(productIds(inventoryService.getLowStock(31, "Books"))).containsExactly(ids.get(0), ids.get(6), ids.get(2));
+        assertThat(inventoryService.getStatusCounts(null))
+                .containsExactly(Map.entry("LOW", 3L), Map.entry("MEDIUM", 2L), Map.entry("ADEQUATE", 2L));
+    }
+
+    private void touch(long id, LocalDateTime updatedAt) {
+        jdbcTemplate.update("UPDATE products SET updated_at = ? WHERE id = ?", updatedAt, id);
+    }
+
+    private static List<Long> productIds(InventoryPageDto page) {
+        return productIds(page.getItems());
+    }
+
+    private static List<Long> productIds(List<InventoryDto> items) {
+        return items.stream().map(InventoryDto::getProductId).toList();
+    }
+}
@@ -0,0 +1,80 @@
+package com.ecommerce.analytics.service;
+
+import com.ecommerce.analytics.service.PartitionMaintenanceService.Expiry;
+import com.ecommerce.analytics.service.PartitionMaintenanceService.Partition;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PartitionMaintenanceServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 5, 17);
+
+    @Test
+    void testCreateStatement_SplitsCatchAllFromItsEarliestRowThroughMonthsAhead() {
+        List<Partition> partitions = List.of(
+                new Partition("p_history", LocalDate.of(2024, 1, 1)),
+                new Partition("pmax", null));
+
+        String statement = PartitionMaintenanceService.createStatement("sales", partitions,
+                LocalDate.of(2024, 3, 9), TODAY, 2);
+
+        assertThat(statement).isEqualTo("ALTER TABLE sales REORGANIZE PARTITION pmax INTO (" +
+                "PARTITION p202403 VALUES LESS THAN ('2024-04-01'), " +
+                "PARTITION p202404 VALUES LESS THAN ('2024-05-01'), " +
+                "PARTITION p202405 VALUES LESS THAN ('2024-06-01'), " +
+                "PARTITION p202406 VALUES LESS THAN ('2024-07-01'), " +
+                "PARTITION p202407 VALUES LESS THAN ('2024-08-01'), " +
+                "PARTITION pmax VALUES LESS THAN (MAXVALUE))");
+    }
+
+    @Test
+    void testCreateStatement_NothingWhenMonthsAheadExist() {
+        List<Partition> partitions = List.of(
+                new Partition("p202407", LocalDate.of(2024, 8, 1)),
+                new Partition("pmax", null));
+
+        assertThat(PartitionMaintenanceService.createStatement("sales", partitions, null, TODAY, 2)).isNull();
+        assertThat(PartitionMaintenanceService.createStatement("sales", partitions, null, TODAY, 3))
+                .isEqualTo("ALTER TABLE sales REORGANIZE PARTITION pmax INTO (" +
+                        "PARTITION p202408 VALUES LESS THAN ('2024-09-01'), PARTITION pmax VALUES LESS THAN (MAXVALUE))");
+    }
+
+    @Test
+    void testExpired_OnlyWholeMonthsBeforeRetention() {
+        List<Partition> partitions = List.of(
+                new Partition("p_history", LocalDate.of(2024, 1, 1)),
+                new Partition("p202401", LocalDate.of(2024, 2, 1)),
+                new Partition("p202402", LocalDate.of(2024, 3, 1)),
+                new Partition("p202403", LocalDate.of(2024, 4, 1)),
+                new Partition("pmax", null));
+
+        assertThat(PartitionMaintenanceService.expired(partitions, TODAY, 0)).isEmpty();
+        assertThat(PartitionMaintenanceService.expired(partitions, TODAY, 3)).extracting(Partition::name)
+                .containsExactly("p_history", "p202401");
+    }
+
+    @Test
+    void testExpiryStatements_ArchiveExchangesBeforeDropping() {
+        Partition partition = new Partition("p202401", LocalDate.of(2024, 2, 1));
+
+        assertThat(PartitionMaintenanceService.expiryStatements("sales", partition, Expiry.ARCHIVE, false)).containsExactly(
+                "CREATE TABLE sales_archive_p202401 LIKE sales",
+                "ALTER TABLE sales_archive_p202401 REMOVE PARTITIONING",
+                "ALTER TABLE sales EXCHANGE PARTITION p202401 WITH TABLE sales_archive_p202401",
+                "ALTER TABLE sales DROP PARTITION p202401");
+        assertThat(PartitionMaintenanceService.expiryStatements("sales", partition, Expiry.ARCHIVE, true))
+                .containsExactly("ALTER TABLE sales DROP PARTITION p202401");
+        assertThat(PartitionMaintenanceService.expiryStatements("sales", partition, Expiry.DROP, false))
+                .containsExactly("ALTER TABLE sales DROP PARTITION p202401");
+    }
+
+    @Test
+    void testBound_ParsesRangeColumnsDescriptions() {
+        assertThat(PartitionMaintenanceService.bound("'2024-02-01 00:00:00'")).isEqualTo(LocalDate.of(2024, 2, 1));
+        assertThat(PartitionMaintenanceService.bound("MAXVALUE")).isNull();
+    }
+}
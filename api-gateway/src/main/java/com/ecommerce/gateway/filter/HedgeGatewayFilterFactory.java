@@ -0,0 +1,324 @@
+package com.ecommerce.gateway.filter;
+
+import com.ecommerce.gateway.loadbalancer.LatencyTracker;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerUriTools;
+import org.springframework.cloud.client.loadbalancer.RequestData;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.filter.headers.HttpHeadersFilter;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.cloud.gateway.support.NotFoundException;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Route filter for {@code lb://} routes that sends a GET to a second instance when the first has not answered
+ * within a percentile of the route's recent response times, and passes on whichever answer arrives first;
+ * the other request is cancelled. {@code Hedge=<percentile>,<minDelay>,<maxDelay>,<budget>}, e.g.
+ * {@code Hedge=95,20ms,1s,0.1}.
+ * <p>
+ * The delay is the {@code percentile} of the last {@value #SAMPLES} response times, kept between
+ * {@code minDelay} and {@code maxDelay}; until enough responses were timed it is {@code maxDelay}. Each request
+ * earns {@code budget} of a second request, saved up to {@value #MAX_SAVED_HEDGES}, so that at most that
+ * share of requests is sent twice even when every instance is slow. The second request goes to another
+ * instance, chosen by {@link LatencyTracker} like the first; with one instance nothing is hedged. Response
+ * times and budget are kept when routes are refreshed, unless the route's arguments changed.
+ * <p>
+ * The filter forwards GET requests itself, with the gateway's HTTP client and header filters, and buffers
+ * the response: it is meant for short JSON responses, not for streams or exports. Other methods are
+ * passed on along the chain.
+ */
+@Component
+public class HedgeGatewayFilterFactory extends AbstractGatewayFilterFactory<HedgeGatewayFilterFactory.Config> {
+
+    private static final int SAMPLES = 512;
+    private static final int MIN_SAMPLES = 32;
+    private static final int RECOMPUTE_EVERY = 32;
+    private static final long MAX_SAVED_HEDGES = 10;
+    private static final byte[] EMPTY = new byte[0];
+
+    private record Attempt(URI uri, int status, HttpHeaders headers, byte[] body, boolean hedge) {
+    }
+
+    private final HttpClient httpClient;
+    private final LoadBalancerClientFactory clientFactory;
+    private final LatencyTracker tracker;
+    private final ObjectProvider<List<HttpHeadersFilter>> headersFilters;
+    private final MeterRegistry meterRegistry;
+    // By route id: the filters are built again on every route refresh
+    private final Map<String, RouteState> states = new ConcurrentHashMap<>();
+
+    public HedgeGatewayFilterFactory(HttpClient httpClient,
+                                     LoadBalancerClientFactory clientFactory,
+                                     LatencyTracker tracker,
+                                     ObjectProvider<List<HttpHeadersFilter>> headersFilters,
+                                     MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.httpClient = httpClient;
+        this.clientFactory = clientFactory;
+        this.tracker = tracker;
+        this.headersFilters = headersFilters;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("percentile", "minDelay", "maxDelay", "budget");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        RouteState state = config.getRouteId() == null ? new RouteState(config)
+                : states.compute(config.getRouteId(), (id, existing) ->
+                        existing != null && existing.matches(config) ? existing : new RouteState(config));
+        return (exchange, chain) -> {
+            ServerHttpRequest request = exchange.getRequest();
+            Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+            if (request.getMethod() != HttpMethod.GET || route == null || !"lb".equals(route.getUri().getScheme())) {
+                return chain.filter(exchange);
+            }
+            String serviceId = route.getUri().getHost();
+            ServiceInstanceListSupplier supplier = clientFactory
+                    .getLazyProvider(serviceId, ServiceInstanceListSupplier.class)
+                    .getIfAvailable(NoopServiceInstanceListSupplier::new);
+            HttpHeaders headers = HttpHeadersFilter.filterRequest(headersFilters.getIfAvailable(), exchange);
+            state.earn();
+
+            return supplier.get(new DefaultRequest<>(new RequestDataContext(new RequestData(request))))
+                    .next()
+                    .defaultIfEmpty(List.of())
+                    .flatMap(instances -> {
+                        ServiceInstance first = tracker.choose(instances, null);
+                        if (first == null) {
+                            return Mono.error(NotFoundException.create(true, "Unable to find instance for " + serviceId));
+                        }
+                        Mono<Attempt> hedge = Mono.delay(state.delay()).flatMap(t -> {
+                            ServiceInstance second = tracker.choose(instances, first);
+                            if (second == null) return Mono.empty();
+                            if (!state.spend()) {
+                                count(route, "throttled");
+                                return Mono.empty();
+                            }
+                            count(route, "sent");
+                            return attempt(request, headers, second, true, state);
+                        });
+                        return Mono.firstWithValue(attempt(request, headers, first, false, state), hedge)
+                                .onErrorMap(NoSuchElementException.class, HedgeGatewayFilterFactory::firstError);
+                    })
+                    .flatMap(attempt -> {
+                        if (attempt.hedge()) {
+                            count(route, "won");
+                        }
+                        return write(exchange, attempt);
+                    });
+        };
+    }
+
+    private Mono<Attempt> attempt(ServerHttpRequest request, HttpHeaders headers, ServiceInstance instance,
+                                  boolean hedge, RouteState state) {
+        URI uri = LoadBalancerUriTools.reconstructURI(instance, request.getURI());
+        return Mono.defer(() -> {
+            LatencyTracker.Call call = tracker.start(instance);
+            long started = System.nanoTime();
+            return httpClient
+                    .headers(h -> {
+                        headers.forEach((name, values) -> h.set(name, values));
+                        h.remove(HttpHeaders.HOST);
+                    })
+                    .get()
+                    .uri(uri)
+                    .responseSingle((response, body) -> {
+                        call.complete(response.status().code() >= 500);
+                        HttpHeaders responseHeaders = new HttpHeaders();
+                        response.responseHeaders().forEach(e -> responseHeaders.add(e.getKey(), e.getValue()));
+                        return body.asByteArray().defaultIfEmpty(EMPTY).map(bytes ->
+                                new Attempt(uri, response.status().code(), responseHeaders, bytes, hedge));
+                    })
+                    .doOnNext(a -> state.record(System.nanoTime() - started))
+                    .doOnError(e -> call.complete(true))
+                    .doOnCancel(call::cancel);
+        });
+    }
+
+    private Mono<Void> write(ServerWebExchange exchange, Attempt attempt) {
+        ServerWebExchangeUtils.setAlreadyRouted(exchange);
+        exchange.getAttributes().put(ServerWebExchangeUtils.GATEWAY_REQUEST_URL_ATTR, attempt.uri());
+        ServerHttpResponse response = exchange.getResponse();
+        HttpHeaders headers = response.getHeaders();
+        headers.addAll(HttpHeadersFilter.filter(headersFilters.getIfAvailable(), attempt.headers(), exchange,
+                HttpHeadersFilter.Type.RESPONSE));
+        headers.remove(HttpHeaders.TRANSFER_ENCODING);
+        headers.remove(HttpHeaders.CONTENT_LENGTH);
+        response.setStatusCode(HttpStatusCode.valueOf(attempt.status()));
+        // Empty bodies (a 304) go through writeWith too, not setComplete, so that decorating filters see them
+        if (attempt.body().length == 0) {
+            return response.writeWith(Flux.empty());
+        }
+        headers.setContentLength(attempt.body().length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(attempt.body())));
+    }
+
+    // Mono.firstWithValue fails with NoSuchElementException when no attempt succeeded; pass on the first failure
+    private static Throwable firstError(NoSuchElementException e) {
+        if (e.getCause() != null) {
+            List<Throwable> causes = Exceptions.unwrapMultiple(e.getCause());
+            if (!causes.isEmpty()) return causes.get(0);
+        }
+        return e.getSuppressed().length > 0 ? e.getSuppressed()[0] : e;
+    }
+
+    private void count(Route route, String result) {
+        meterRegistry.counter("gateway.hedge", "route", route.getId(), "result", result).increment();
+    }
+
+    /**
+     * Recent response times and hedge budget of one route.
+     */
+    private static final class RouteState {
+
+        private final double percentile;
+        private final long minDelayNanos;
+        private final long maxDelayNanos;
+        private final double budgetShare;
+        private final long earnedPerRequest;
+        private final AtomicLong budget = new AtomicLong(MAX_SAVED_HEDGES * 1000); // thousandths of a hedge
+        private volatile long delayNanos;
+
+        private final ReentrantLock lock = new ReentrantLock();
+        // Guarded by lock
+        private final long[] samples = new long[SAMPLES];
+        private int next;
+        private int count;
+        private int sinceComputed;
+
+        RouteState(Config config) {
+            this.percentile = config.getPercentile();
+            this.minDelayNanos = config.getMinDelay().toNanos();
+            this.maxDelayNanos = config.getMaxDelay().toNanos();
+            this.budgetShare = config.getBudget();
+            this.earnedPerRequest = Math.round(config.getBudget() * 1000);
+            this.delayNanos = maxDelayNanos;
+        }
+
+        boolean matches(Config config) {
+            return percentile == config.getPercentile() && minDelayNanos == config.getMinDelay().toNanos()
+                    && maxDelayNanos == config.getMaxDelay().toNanos() && budgetShare == config.getBudget();
+        }
+
+        Duration delay() {
+            return Duration.ofNanos(delayNanos);
+        }
+
+        void record(long nanos) {
+            lock.lock();
+            try {
+                samples[next] = nanos;
+                next = (next + 1) % SAMPLES;
+                count = Math.min(count + 1, SAMPLES);
+                if (++sinceComputed >= RECOMPUTE_EVERY && count >= MIN_SAMPLES) {
+                    sinceComputed = 0;
+                    long[] sorted = Arrays.copyOf(samples, count);
+                    Arrays.sort(sorted);
+                    int rank = (int) Math.ceil(percentile / 100 * count) - 1;
+                    long value = sorted[Math.max(0, Math.min(rank, count - 1))];
+                    delayNanos = Math.max(minDelayNanos, Math.min(value, maxDelayNanos));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void earn() {
+            budget.accumulateAndGet(earnedPerRequest, (b, e) -> Math.min(b + e, MAX_SAVED_HEDGES * 1000));
+        }
+
+        boolean spend() {
+            long b = budget.get();
+            while (b >= 1000) {
+                if (budget.compareAndSet(b, b - 1000)) return true;
+                b = budget.get();
+            }
+            return false;
+        }
+    }
+
+    public static class Config implements HasRouteId {
+
+        private String routeId;
+        private double percentile = 95;
+        private Duration minDelay = Duration.ofMillis(20);
+        private Duration maxDelay = Duration.ofSeconds(1);
+        private double budget = 0.1;
+
+        @Override
+        public String getRouteId() {
+            return routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+
+        public double getPercentile() {
+            return percentile;
+        }
+
+        public void setPercentile(double percentile) {
+            this.percentile = percentile;
+        }
+
+        public Duration getMinDelay() {
+            return minDelay;
+        }
+
+        public void setMinDelay(Duration minDelay) {
+            this.minDelay = minDelay;
+        }
+
+        public Duration getMaxDelay() {
+            return maxDelay;
+        }
+
+        public void setMaxDelay(Duration maxDelay) {
+            this.maxDelay = maxDelay;
+        }
+
+        public double getBudget() {
+            return budget;
+        }
+
+        public void setBudget(double budget) {
+            this.budget = budget;
+        }
+    }
+}
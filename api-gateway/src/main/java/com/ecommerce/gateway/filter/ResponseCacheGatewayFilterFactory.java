@@ -0,0 +1,263 @@
+package com.ecommerce.gateway.filter;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.reactivestreams.Publisher;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.NettyWriteResponseFilter;
+import org.springframework.cloud.gateway.filter.OrderedGatewayFilter;
+import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.HasRouteId;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Route filter that keeps GET responses carrying an ETag in memory, in a cache of its own per route:
+ * {@code ResponseCache=<timeToLive>,<size>,<staleFor>}, e.g. {@code ResponseCache=10s,32MB,10m}.
+ * <p>
+ * For {@code timeToLive} after a response was stored or last revalidated, requests for it are answered
+ * from the cache without being forwarded: with 304 when their {@code If-None-Match} lists its ETag, with
+ * the cached body otherwise. After that the request is forwarded with the cached ETag added to
+ * {@code If-None-Match}; a 304 from the backend makes the entry fresh again and it is served as above,
+ * a 200 replaces it. A request with {@code Cache-Control: no-cache} is always forwarded that way.
+ * <p>
+ * Only 200 responses with an ETag, and without {@code no-store} or {@code private}, are kept. Entries
+ * unused for {@code staleFor} are dropped, and the least recently used ones when the bodies would exceed
+ * {@code size}. Requests are told apart by path, query, {@code Accept} and {@code Accept-Encoding}. A route's
+ * cache is kept when routes are refreshed (on discovery heartbeats), unless its arguments changed.
+ * <p>
+ * Spring Cloud Gateway's LocalResponseCache neither answers conditional requests nor revalidates with
+ * the backend's ETag, which is where most of the saving is for dashboards that refresh on a timer.
+ */
+@Component
+public class ResponseCacheGatewayFilterFactory
+        extends AbstractGatewayFilterFactory<ResponseCacheGatewayFilterFactory.Config> {
+
+    /**
+     * Response headers kept with the body; the others (CORS, Date, connection headers) belong to one exchange.
+     */
+    private static final List<String> STORED_HEADERS = List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.CONTENT_ENCODING,
+            HttpHeaders.CONTENT_LANGUAGE, HttpHeaders.ETAG, HttpHeaders.CACHE_CONTROL, HttpHeaders.LAST_MODIFIED,
+            HttpHeaders.VARY);
+
+    private record Entry(HttpHeaders headers, byte[] body, String etag, long storedAt) {
+
+        Entry revalidated() {
+            return new Entry(headers, body, etag, System.nanoTime());
+        }
+    }
+
+    private record RouteCache(Duration timeToLive, DataSize size, Duration staleFor, Cache<String, Entry> cache) {
+
+        boolean matches(Config config) {
+            return timeToLive.equals(config.getTimeToLive()) && size.equals(config.getSize())
+                    && staleFor.equals(config.getStaleFor());
+        }
+    }
+
+    private final MeterRegistry meterRegistry;
+    // By route id: the filters are built again on every route refresh
+    private final Map<String, RouteCache> caches = new ConcurrentHashMap<>();
+
+    public ResponseCacheGatewayFilterFactory(MeterRegistry meterRegistry) {
+        super(Config.class);
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public List<String> shortcutFieldOrder() {
+        return List.of("timeToLive", "size", "staleFor");
+    }
+
+    @Override
+    public GatewayFilter apply(Config config) {
+        long timeToLiveNanos = config.getTimeToLive().toNanos();
+        long maxBytes = config.getSize().toBytes();
+        Cache<String, Entry> cache = config.getRouteId() == null ? newCache(config)
+                : caches.compute(config.getRouteId(), (id, existing) -> existing != null && existing.matches(config)
+                        ? existing
+                        : new RouteCache(config.getTimeToLive(), config.getSize(), config.getStaleFor(), newCache(config)))
+                .cache();
+
+        // Before NettyWriteResponseFilter, so that it writes the backend's response through the decorator
+        return new OrderedGatewayFilter((exchange, chain) -> {
+            ServerHttpRequest request = exchange.getRequest();
+            if (request.getMethod() != HttpMethod.GET) {
+                return chain.filter(exchange);
+            }
+            String key = key(request);
+            List<String> ifNoneMatch = request.getHeaders().getIfNoneMatch();
+            Entry entry = cache.getIfPresent(key);
+            boolean noCache = String.valueOf(request.getHeaders().getCacheControl()).contains("no-cache");
+            if (entry != null && !noCache && System.nanoTime() - entry.storedAt() < timeToLiveNanos) {
+                count(exchange, "hit");
+                return writeEntry(exchange.getResponse(), ifNoneMatch, entry);
+            }
+
+            ServerWebExchange forwarded = exchange;
+            if (entry != null) {
+                // The builder shares the request's headers, so the client's If-None-Match was read above
+                List<String> etags = new ArrayList<>(ifNoneMatch);
+                if (!etags.contains(entry.etag())) {
+                    etags.add(entry.etag());
+                }
+                forwarded = exchange.mutate().request(r -> r.headers(h -> h.setIfNoneMatch(etags))).build();
+            }
+            ServerHttpResponse response = new ServerHttpResponseDecorator(exchange.getResponse()) {
+                @Override
+                public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+                    String etag = getHeaders().getETag();
+                    int status = getStatusCode() != null ? getStatusCode().value() : 0;
+                    if (status == HttpStatus.NOT_MODIFIED.value() && entry != null) {
+                        if (entry.etag().equals(etag)) {
+                            // Still current; answer from the entry as if it had been fresh
+                            Entry revalidated = entry.revalidated();
+                            cache.put(key, revalidated);
+                            count(exchange, "revalidated");
+                            return Flux.from(body).doOnNext(DataBufferUtils::release)
+                                    .then(Mono.defer(() -> writeEntry(getDelegate(), ifNoneMatch, revalidated)));
+                        }
+                        cache.invalidate(key); // the client's copy is current, the cached one is not
+                    } else if (status == HttpStatus.OK.value() && cacheable(getHeaders(), maxBytes)) {
+                        count(exchange, "miss");
+                        return Flux.from(body).collectList().flatMap(buffers -> {
+                            DataBuffer joined = bufferFactory().join(buffers);
+                            byte[] bytes = new byte[joined.readableByteCount()];
+                            joined.read(bytes);
+                            DataBufferUtils.release(joined);
+                            cache.put(key, new Entry(storedHeaders(getHeaders()), bytes, etag, System.nanoTime()));
+                            return getDelegate().writeWith(Mono.just(bufferFactory().wrap(bytes)));
+                        });
+                    }
+                    return super.writeWith(body);
+                }
+            };
+            return chain.filter(forwarded.mutate().response(response).build());
+        }, NettyWriteResponseFilter.WRITE_RESPONSE_FILTER_ORDER - 1);
+    }
+
+    private static Cache<String, Entry> newCache(Config config) {
+        return Caffeine.newBuilder()
+                .maximumWeight(config.getSize().toBytes())
+                .weigher((String key, Entry entry) -> key.length() + entry.body().length)
+                .expireAfterAccess(config.getStaleFor().compareTo(config.getTimeToLive()) > 0
+                        ? config.getStaleFor() : config.getTimeToLive())
+                .build();
+    }
+
+    private static Mono<Void> writeEntry(ServerHttpResponse response, List<String> ifNoneMatch, Entry entry) {
+        HttpHeaders headers = response.getHeaders();
+        headers.remove(HttpHeaders.CONTENT_LENGTH);
+        headers.remove(HttpHeaders.TRANSFER_ENCODING);
+        headers.putAll(entry.headers());
+        headers.set(HttpHeaders.AGE, String.valueOf(Duration.ofNanos(System.nanoTime() - entry.storedAt()).toSeconds()));
+        if (matches(ifNoneMatch, entry.etag())) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            return response.setComplete();
+        }
+        response.setStatusCode(HttpStatus.OK);
+        headers.setContentLength(entry.body().length);
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(entry.body())));
+    }
+
+    private static boolean cacheable(HttpHeaders headers, long maxBytes) {
+        String cacheControl = String.valueOf(headers.getCacheControl());
+        return headers.getETag() != null && !cacheControl.contains("no-store") && !cacheControl.contains("private")
+                && headers.getContentLength() <= maxBytes;
+    }
+
+    private static boolean matches(List<String> ifNoneMatch, String etag) {
+        String opaque = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String candidate : ifNoneMatch) {
+            if (candidate.equals("*") || (candidate.startsWith("W/") ? candidate.substring(2) : candidate).equals(opaque)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static HttpHeaders storedHeaders(HttpHeaders headers) {
+        HttpHeaders stored = new HttpHeaders();
+        for (String name : STORED_HEADERS) {
+            List<String> values = headers.get(name);
+            if (values != null) {
+                stored.put(name, List.copyOf(values));
+            }
+        }
+        return HttpHeaders.readOnlyHttpHeaders(stored);
+    }
+
+    private static String key(ServerHttpRequest request) {
+        HttpHeaders headers = request.getHeaders();
+        return request.getURI().getRawPath() + '?' + request.getURI().getRawQuery()
+                + '\n' + headers.getFirst(HttpHeaders.ACCEPT) + '\n' + headers.getFirst(HttpHeaders.ACCEPT_ENCODING);
+    }
+
+    private void count(ServerWebExchange exchange, String result) {
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        meterRegistry.counter("gateway.response.cache", "route", route != null ? route.getId() : "unknown",
+                "result", result).increment();
+    }
+
+    public static class Config implements HasRouteId {
+
+        private String routeId;
+        private Duration timeToLive = Duration.ofSeconds(10);
+        private DataSize size = DataSize.ofMegabytes(16);
+        private Duration staleFor = Duration.ofMinutes(10);
+
+        @Override
+        public String getRouteId() {
+            return routeId;
+        }
+
+        @Override
+        public void setRouteId(String routeId) {
+            this.routeId = routeId;
+        }
+
+        public Duration getTimeToLive() {
+            return timeToLive;
+        }
+
+        public void setTimeToLive(Duration timeToLive) {
+            this.timeToLive = timeToLive;
+        }
+
+        public DataSize getSize() {
+            return size;
+        }
+
+        public void setSize(DataSize size) {
+            this.size = size;
+        }
+
+        public Duration getStaleFor() {
+            return staleFor;
+        }
+
+        public void setStaleFor(Duration staleFor) {
+            this.staleFor = staleFor;
+        }
+    }
+}
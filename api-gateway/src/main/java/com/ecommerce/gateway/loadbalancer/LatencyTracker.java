@@ -0,0 +1,181 @@
+package com.ecommerce.gateway.loadbalancer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Latency and in-flight requests of every backend instance, and the choice of an instance from them:
+ * of two instances picked at random, the one with the lower cost, its latency times one more than its
+ * requests in flight ("power of two choices").
+ * <p>
+ * Latency is a peak-sensitive moving average of the time to the response headers: a sample above it
+ * replaces it at once, one below it pulls it down with a weight that grows with the time since the previous
+ * sample ({@code gateway.load-balancer.decay-time}). The average also decays while an instance gets no
+ * requests, so an instance that was avoided for being slow is tried again after a while. Failures and 5xx
+ * responses count as at least {@code gateway.load-balancer.failure-penalty}, so that an instance failing
+ * fast is not mistaken for a fast one. An instance without samples is free while it has nothing in flight
+ * and the most expensive one after that: it gets one request, and more once that was answered.
+ * <p>
+ * Instances are told apart by host and port.
+ */
+@Component
+public class LatencyTracker {
+
+    private static final double UNKNOWN_COST = Double.MAX_VALUE / 1024;
+
+    private final double decayNanos;
+    private final long failurePenaltyNanos;
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    public LatencyTracker(@Value("${gateway.load-balancer.decay-time:10s}") Duration decayTime,
+                          @Value("${gateway.load-balancer.failure-penalty:1s}") Duration failurePenalty) {
+        this.decayNanos = decayTime.toNanos();
+        this.failurePenaltyNanos = failurePenalty.toNanos();
+    }
+
+    /**
+     * A request to {@code instance}, in flight until it is completed or cancelled.
+     */
+    public final class Call {
+
+        private final Stats target;
+        private final long startedAt = System.nanoTime();
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Call(Stats target) {
+            this.target = target;
+            target.inFlight.incrementAndGet();
+        }
+
+        /**
+         * The response headers arrived, or the request failed. Only the first completion or cancellation counts.
+         */
+        public void complete(boolean failed) {
+            if (!done.compareAndSet(false, true)) return;
+            target.inFlight.decrementAndGet();
+            long now = System.nanoTime();
+            long latency = now - startedAt;
+            target.observe(failed ? Math.max(latency, failurePenaltyNanos) : latency, now);
+        }
+
+        /**
+         * The request was abandoned. Its latency is at least the time it ran, which is recorded if that
+         * raises the average.
+         */
+        public void cancel() {
+            if (!done.compareAndSet(false, true)) return;
+            target.inFlight.decrementAndGet();
+            long now = System.nanoTime();
+            target.observePeak(now - startedAt, now);
+        }
+    }
+
+    public Call start(ServiceInstance instance) {
+        return new Call(stats(instance));
+    }
+
+    /**
+     * The instance to send the next request to, other than {@code excluded}, or null when there is none.
+     */
+    public ServiceInstance choose(List<ServiceInstance> instances, ServiceInstance excluded) {
+        List<ServiceInstance> candidates = excluded == null ? instances
+                : instances.stream().filter(i -> !key(i).equals(key(excluded))).toList();
+        if (candidates.isEmpty()) return null;
+        if (stats.size() > 2 * instances.size() + 16) {
+            prune(instances);
+        }
+        if (candidates.size() == 1) return candidates.get(0);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) second++;
+        long now = System.nanoTime();
+        ServiceInstance a = candidates.get(first);
+        ServiceInstance b = candidates.get(second);
+        return stats(a).cost(now) <= stats(b).cost(now) ? a : b;
+    }
+
+    // Forget instances no longer registered, once nothing is in flight to them
+    private void prune(List<ServiceInstance> instances) {
+        Set<String> current = instances.stream().map(LatencyTracker::key).collect(Collectors.toSet());
+        stats.entrySet().removeIf(e -> !current.contains(e.getKey()) && e.getValue().inFlight.get() == 0);
+    }
+
+    private Stats stats(ServiceInstance instance) {
+        return stats.computeIfAbsent(key(instance), k -> new Stats());
+    }
+
+    private static String key(ServiceInstance instance) {
+        return instance.getHost() + ':' + instance.getPort();
+    }
+
+    private final class Stats {
+
+        final AtomicInteger inFlight = new AtomicInteger();
+        private final ReentrantLock lock = new ReentrantLock();
+        // Guarded by lock
+        private boolean sampled;
+        private double latency;
+        private long sampledAt;
+
+        double cost(long now) {
+            int pending = inFlight.get();
+            lock.lock();
+            try {
+                if (!sampled) {
+                    return pending == 0 ? 0 : UNKNOWN_COST + pending;
+                }
+                return decayed(now) * (pending + 1);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void observe(long sample, long now) {
+            lock.lock();
+            try {
+                if (!sampled || sample > latency) {
+                    latency = sample;
+                } else {
+                    double weight = Math.exp(-Math.max(now - sampledAt, 0) / decayNanos);
+                    latency = latency * weight + sample * (1 - weight);
+                }
+                sampled = true;
+                sampledAt = now;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void observePeak(long sample, long now) {
+            lock.lock();
+            try {
+                if (!sampled || sample > decayed(now)) {
+                    latency = sample;
+                    sampled = true;
+                    sampledAt = now;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Callers hold the lock
+        private double decayed(long now) {
+            return latency * Math.exp(-Math.max(now - sampledAt, 0) / decayNanos);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.ecommerce.gateway;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Routes through the gateway to stub instances registered with the simple discovery client.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"eureka.client.enabled=false", "gateway.load-balancer.decay-time=1m"})
+class LatencyAwareRoutingTest {
+
+    // Whichever stub receives the next request answers it after STALL
+    private static final AtomicBoolean stallNext = new AtomicBoolean();
+    private static final Duration STALL = Duration.ofSeconds(3);
+
+    // The stubs answer this path with an ETag, and with 304 when If-None-Match lists it
+    private static final String CACHED = "/api/analytics/sales/daily";
+    private static final String ETAG = "\"v1\"";
+
+    private static final Stub fastStub = new Stub("fast", Duration.ZERO);
+    private static final Stub slowStub = new Stub("slow", Duration.ofMillis(300));
+    private static final Stub analytics1 = new Stub("analytics-1", Duration.ZERO);
+    private static final Stub analytics2 = new Stub("analytics-2", Duration.ZERO);
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @DynamicPropertySource
+    static void instances(DynamicPropertyRegistry registry) {
+        registry.add("spring.cloud.discovery.client.simple.instances.stub-service[0].uri", fastStub::uri);
+        registry.add("spring.cloud.discovery.client.simple.instances.stub-service[1].uri", slowStub::uri);
+        registry.add("spring.cloud.discovery.client.simple.instances.analytics-service[0].uri", analytics1::uri);
+        registry.add("spring.cloud.discovery.client.simple.instances.analytics-service[1].uri", analytics2::uri);
+    }
+
+    @BeforeAll
+    static void startStubs() {
+        List.of(fastStub, slowStub, analytics1, analytics2).forEach(Stub::start);
+    }
+
+    @AfterAll
+    static void stopStubs() {
+        List.of(fastStub, slowStub, analytics1, analytics2).forEach(Stub::stop);
+    }
+
+    @BeforeEach
+    void setUp() {
+        stallNext.set(false);
+        List.of(fastStub, slowStub, analytics1, analytics2).forEach(s -> s.hits.set(0));
+    }
+
+    @Test
+    void testLoadBalancer_SendsMostRequestsToTheFasterInstance() {
+        for (int i = 0; i < 30; i++) {
+            webTestClient.get().uri("/stub-service/ping").exchange().expectStatus().isOk();
+        }
+        assertThat(fastStub.hits.get() + slowStub.hits.get()).isEqualTo(30);
+        assertThat(slowStub.hits.get()).isLessThanOrEqualTo(3);
+    }
+
+    @Test
+    void testHedge_AnswersFromTheOtherInstanceWhenTheFirstStalls() {
+        for (int i = 0; i < 40; i++) {
+            webTestClient.get().uri("/api/analytics/sales/total?warmup=" + i).exchange().expectStatus().isOk();
+        }
+        double won = meterRegistry.counter("gateway.hedge", "route", "analytics-service", "result", "won").count();
+
+        stallNext.set(true);
+        long started = System.nanoTime();
+        String answeredBy = webTestClient.get().uri("/api/analytics/sales/total").accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .returnResult(String.class).getResponseHeaders().getFirst("X-Instance");
+
+        assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(STALL.dividedBy(2));
+        assertThat(stallNext).isFalse();
+        assertThat(answeredBy).isIn("analytics-1", "analytics-2");
+        assertThat(analytics1.hits.get() + analytics2.hits.get()).isEqualTo(42);
+        assertThat(meterRegistry.counter("gateway.hedge", "route", "analytics-service", "result", "won").count())
+                .isEqualTo(won + 1);
+    }
+
+    @Test
+    void testResponseCache_RevalidatesThroughTheHedgedRoute() {
+        double revalidated = meterRegistry.counter("gateway.response.cache", "route", "analytics-service",
+                "result", "revalidated").count();
+        String cached = webTestClient.get().uri(CACHED).exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, ETAG)
+                .expectBody(String.class).returnResult().getResponseBody();
+
+        // Forwarded with the cached ETag; the instance's 304 is answered with the cached body
+        webTestClient.get().uri(CACHED).header(HttpHeaders.CACHE_CONTROL, "no-cache").exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo(cached);
+        assertThat(meterRegistry.counter("gateway.response.cache", "route", "analytics-service",
+                "result", "revalidated").count()).isEqualTo(revalidated + 1);
+    }
+
+    private static final class Stub {
+
+        final String name;
+        final Duration delay;
+        final AtomicInteger hits = new AtomicInteger();
+        DisposableServer server;
+
+        Stub(String name, Duration delay) {
+            this.name = name;
+            this.delay = delay;
+        }
+
+        void start() {
+            server = HttpServer.create().host("localhost").port(0)
+                    .handle((request, response) -> {
+                        hits.incrementAndGet();
+                        if (request.uri().startsWith(CACHED)) {
+                            response.header(HttpHeaders.ETAG, ETAG).header(HttpHeaders.CACHE_CONTROL, "no-cache");
+                            if (String.valueOf(request.requestHeaders().get(HttpHeaders.IF_NONE_MATCH)).contains(ETAG)) {
+                                return response.status(304).send();
+                            }
+                        }
+                        return Mono.delay(stallNext.getAndSet(false) ? STALL : delay)
+                                .then(response.header("Content-Type", MediaType.APPLICATION_JSON_VALUE)
+                                        .header("X-Instance", name)
+                                        .sendString(Mono.just("{\"instance\":\"" + name + "\"}"))
+                                        .then());
+                    })
+                    .bindNow();
+        }
+
+        void stop() {
+            server.disposeNow();
+        }
+
+        String uri() {
+            return "http://localhost:" + server.port();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.ecommerce.gateway.filter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the filter against a stub backend that answers like analytics-service: 200 with an ETag, or 304 when
+ * {@code If-None-Match} lists the current one.
+ */
+class ResponseCacheGatewayFilterFactoryTest {
+
+    private static final String TOTAL = "/api/analytics/sales/total?startDate=2024-01-01&endDate=2024-01-31";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<ServerHttpRequest> forwarded = new ArrayList<>();
+    private String etag;
+    private String body;
+    private String cacheControl;
+
+    private final GatewayFilterChain backend = exchange -> {
+        ServerHttpRequest request = exchange.getRequest();
+        forwarded.add(request);
+        ServerHttpResponse response = exchange.getResponse();
+        if (etag != null) {
+            response.getHeaders().setETag(etag);
+        }
+        if (etag != null && request.getHeaders().getIfNoneMatch().contains(etag)) {
+            response.setStatusCode(HttpStatus.NOT_MODIFIED);
+            return response.writeWith(Flux.empty());
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        response.setStatusCode(HttpStatus.OK);
+        response.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        response.getHeaders().setContentLength(bytes.length);
+        if (cacheControl != null) {
+            response.getHeaders().setCacheControl(cacheControl);
+        }
+        return response.writeWith(Mono.just(response.bufferFactory().wrap(bytes)));
+    };
+
+    @BeforeEach
+    void setUp() {
+        etag = "\"v1\"";
+        body = "{\"total\":1}";
+        cacheControl = "no-cache";
+    }
+
+    @Test
+    void testHit_IsAnsweredFromMemoryWithinTheTimeToLive() {
+        GatewayFilter filter = filter(Duration.ofMinutes(1), DataSize.ofMegabytes(1));
+
+        MockServerWebExchange first = get(filter, MockServerHttpRequest.get(TOTAL));
+        body = "{\"total\":2}"; // not seen until the entry is revalidated
+        MockServerWebExchange second = get(filter, MockServerHttpRequest.get(TOTAL));
+
+        assertThat(forwarded).hasSize(1);
+        assertThat(first.getResponse().getBodyAsString().block()).isEqualTo("{\"total\":1}");
+        assertThat(second.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(second.getResponse().getBodyAsString().block()).isEqualTo("{\"total\":1}");
+        assertThat(second.getResponse().getHeaders().getETag()).isEqualTo("\"v1\"");
+        assertThat(second.getResponse().getHeaders().getFirst(HttpHeaders.AGE)).isEqualTo("0");
+        assertThat(count("miss")).isEqualTo(1);
+        assertThat(count("hit")).isEqualTo(1);
+
+        // A different query is another entry
+        get(filter, MockServerHttpRequest.get(TOTAL.replace("01-31", "02-29")));
+        assertThat(forwarded).hasSize(2);
+    }
+
+    @Test
+    void testRevalidation_A304FromTheBackendServesTheCachedBody() {
+        GatewayFilter filter = filter(Duration.ZERO, DataSize.ofMegabytes(1)); // every request is revalidated
+
+        get(filter, MockServerHttpRequest.get(TOTAL));
+        MockServerWebExchange revalidated = get(filter, MockServerHttpRequest.get(TOTAL));
+
+        assertThat(forwarded).hasSize(2);
+        assertThat(forwarded.get(0).getHeaders().getIfNoneMatch()).isEmpty();
+        assertThat(forwarded.get(1).getHeaders().getIfNoneMatch()).containsExactly("\"v1\"");
+        assertThat(revalidated.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(revalidated.getResponse().getBodyAsString().block()).isEqualTo("{\"total\":1}");
+        assertThat(count("revalidated")).isEqualTo(1);
+
+        // Changed data: the backend's 200 replaces the entry
+        etag = "\"v2\"";
+        body = "{\"total\":2}";
+        MockServerWebExchange changed = get(filter, MockServerHttpRequest.get(TOTAL));
+        assertThat(changed.getResponse().getBodyAsString().block()).isEqualTo("{\"total\":2}");
+        get(filter, MockServerHttpRequest.get(TOTAL));
+        assertThat(forwarded.get(3).getHeaders().getIfNoneMatch()).containsExactly("\"v2\"");
+    }
+
+    @Test
+    void testIfNoneMatch_IsAnsweredWith304OrPassedOnWithTheCachedEtag() {
+        GatewayFilter filter = filter(Duration.ofMinutes(1), DataSize.ofMegabytes(1));
+
+        // Nothing cached: the client's condition reaches the backend unchanged, and so does its 304
+        MockServerWebExchange passedOn = get(filter, MockServerHttpRequest.get(TOTAL).ifNoneMatch("\"v1\""));
+        assertThat(forwarded.get(0).getHeaders().getIfNoneMatch()).containsExactly("\"v1\"");
+        assertThat(passedOn.getResponse().getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+
+        get(filter, MockServerHttpRequest.get(TOTAL));
+        MockServerWebExchange current = get(filter, MockServerHttpRequest.get(TOTAL).ifNoneMatch("\"v1\""));
+        MockServerWebExchange outdated = get(filter, MockServerHttpRequest.get(TOTAL).ifNoneMatch("\"v0\""));
+        assertThat(forwarded).hasSize(2);
+        assertThat(current.getResponse().getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(current.getResponse().getBodyAsString().block()).isEmpty();
+        assertThat(outdated.getResponse().getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(outdated.getResponse().getBodyAsString().block()).isEqualTo("{\"total\":1}");
+
+        // Cache-Control: no-cache revalidates with the client's ETag and the cached one
+        get(filter, MockServerHttpRequest.get(TOTAL).ifNoneMatch("\"v0\"").header(HttpHeaders.CACHE_CONTROL, "no-cache"));
+        assertThat(forwarded).hasSize(3);
+        assertThat(forwarded.get(2).getHeaders().getIfNoneMatch()).containsExactly("\"v0\"", "\"v1\"");
+    }
+
+    @Test
+    void testBypass_OtherMethodsAndUncacheableResponsesAreNotStored() {
+        GatewayFilter filter = filter(Duration.ofMinutes(1), DataSize.ofMegabytes(1));
+
+        MockServerWebExchange posted = get(filter, MockServerHttpRequest.method(HttpMethod.POST, TOTAL));
+        assertThat(posted.getResponse().getBodyAsString().block()).isEqualTo("{\"total\":1}");
+        get(filter, MockServerHttpRequest.get(TOTAL.replace("sales/total", "inventory/status")));
+        cacheControl = "no-store";
+        get(filter, MockServerHttpRequest.get(TOTAL.replace("sales/total", "sales/daily")));
+        cacheControl = "private";
+        get(filter, MockServerHttpRequest.get(TOTAL.replace("sales/total", "sales/by-category")));
+        etag = null;
+        get(filter, MockServerHttpRequest.get(TOTAL));
+        assertThat(forwarded).hasSize(5);
+
+        // Only the inventory response, with an ETag and no-cache, was kept
+        etag = "\"v1\"";
+        cacheControl = "no-cache";
+        get(filter, MockServerHttpRequest.get(TOTAL));
+        get(filter, MockServerHttpRequest.get(TOTAL.replace("sales/total", "sales/daily")));
+        get(filter, MockServerHttpRequest.get(TOTAL.replace("sales/total", "sales/by-category")));
+        get(filter, MockServerHttpRequest.get(TOTAL.replace("sales/total", "inventory/status")));
+        assertThat(forwarded).hasSize(8);
+        assertThat(count("hit")).isEqualTo(1);
+    }
+
+    @Test
+    void testEviction_KeepsTheBodiesWithinTheSize() throws Exception {
+        body = "x".repeat(600);
+        GatewayFilter filter = filter(Duration.ofMinutes(1), DataSize.ofBytes(1000));
+        String other = TOTAL.replace("01-31", "02-29");
+        get(filter, MockServerHttpRequest.get(TOTAL));
+        get(filter, MockServerHttpRequest.get(other));
+
+        // Both do not fit; the cache evicts one of them in the background
+        long deadline = System.currentTimeMillis() + 5000;
+        int before;
+        do {
+            Thread.sleep(10);
+            before = forwarded.size();
+            get(filter, MockServerHttpRequest.get(TOTAL));
+            get(filter, MockServerHttpRequest.get(other));
+        } while (forwarded.size() == before && System.currentTimeMillis() < deadline);
+        assertThat(forwarded.size()).isGreaterThan(before);
+
+        // A body larger than the whole cache is never kept
+        body = "x".repeat(1001);
+        String large = TOTAL.replace("sales/total", "sales/daily");
+        get(filter, MockServerHttpRequest.get(large));
+        int afterLarge = forwarded.size();
+        get(filter, MockServerHttpRequest.get(large));
+        assertThat(forwarded).hasSize(afterLarge + 1);
+    }
+
+    @Test
+    void testRouteRefresh_KeepsTheCacheOfTheRoute() {
+        ResponseCacheGatewayFilterFactory factory = new ResponseCacheGatewayFilterFactory(meterRegistry);
+        get(factory.apply(config("analytics-service", Duration.ofMinutes(1))), MockServerHttpRequest.get(TOTAL));
+
+        // Built again on a refresh: the same route finds its entries, another route or new arguments do not
+        get(factory.apply(config("analytics-service", Duration.ofMinutes(1))), MockServerHttpRequest.get(TOTAL));
+        assertThat(forwarded).hasSize(1);
+        get(factory.apply(config("other", Duration.ofMinutes(1))), MockServerHttpRequest.get(TOTAL));
+        get(factory.apply(config("analytics-service", Duration.ofMinutes(2))), MockServerHttpRequest.get(TOTAL));
+        assertThat(forwarded).hasSize(3);
+    }
+
+    private GatewayFilter filter(Duration timeToLive, DataSize size) {
+        ResponseCacheGatewayFilterFactory.Config config = config(null, timeToLive);
+        config.setSize(size);
+        return new ResponseCacheGatewayFilterFactory(meterRegistry).apply(config);
+    }
+
+    private static ResponseCacheGatewayFilterFactory.Config config(String routeId, Duration timeToLive) {
+        ResponseCacheGatewayFilterFactory.Config config = new ResponseCacheGatewayFilterFactory.Config();
+        config.setRouteId(routeId);
+        config.setTimeToLive(timeToLive);
+        config.setSize(DataSize.ofMegabytes(1));
+        config.setStaleFor(Duration.ofMinutes(10));
+        return config;
+    }
+
+    private MockServerWebExchange get(GatewayFilter filter, MockServerHttpRequest.BaseBuilder<?> request) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(request);
+        filter.filter(exchange, backend).block(Duration.ofSeconds(5));
+        return exchange;
+    }
+
+    private double count(String result) {
+        return meterRegistry.counter("gateway.response.cache", "route", "unknown", "result", result).count();
+    }
+}
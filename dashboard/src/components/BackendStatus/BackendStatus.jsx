@@ -1,27 +1,28 @@
 import React, { useState, useEffect } from 'react';
+import { useLiveStatus } from '../../hooks/useLiveUpdates';
 import './BackendStatus.css';
 
+// Follows the live update stream instead of polling: the backend is online while the stream is open.
+// When it is closed, one cheap request tells a down backend from a refused stream
 const BackendStatus = () => {
+  const liveStatus = useLiveStatus();
   const [status, setStatus] = useState('checking');
 
   useEffect(() => {
-    const checkBackend = async () => {
-      try {
-        const response = await fetch('/api/analytics/inventory/status');
-        if (response.ok) {
-          setStatus('online');
-        } else {
-          setStatus('offline');
-        }
-      } catch (error) {
-        setStatus('offline');
-      }
-    };
+    if (liveStatus === 'open') {
+      setStatus('online');
+      return undefined;
+    }
+    if (liveStatus !== 'closed') return undefined;
 
-    checkBackend();
-    const interval = setInterval(checkBackend, 10000);
-    return () => clearInterval(interval);
-  }, []);
+    let isMounted = true;
+    fetch('/api/analytics/inventory/status-counts')
+      .then((response) => isMounted && setStatus(response.ok ? 'online' : 'offline'))
+      .catch(() => isMounted && setStatus('offline'));
+    return () => {
+      isMounted = false;
+    };
+  }, [liveStatus]);
 
   if (status === 'online') return null;
 
@@ -12,17 +12,9 @@ import {
 import Card from '../Card/Card';
 import Loading from '../Loading/Loading';
 import ErrorMessage from '../ErrorMessage/ErrorMessage';
-import { useFetch } from '../../hooks/useFetch';
-import { salesAPI } from '../../services/api';
 import { TrendingUp } from 'lucide-react';
 
-const DailySalesChart = ({ startDate, endDate }) => {
-  const { data, loading, error } = useFetch(
-    () => salesAPI.getDailySales(startDate, endDate),
-    [startDate, endDate],
-    30000 // Refresh every 30 seconds
-  );
-
+const DailySalesChart = ({ data, loading, error }) => {
   if (loading) return <Loading message="Loading daily sales..." />;
   if (error) return <ErrorMessage message={error} />;
   if (!data || data.length === 0) {
@@ -2,21 +2,20 @@ import React from 'react';
 import Card from '../Card/Card';
 import Loading from '../Loading/Loading';
 import ErrorMessage from '../ErrorMessage/ErrorMessage';
-import { useFetch } from '../../hooks/useFetch';
-import { inventoryAPI } from '../../services/api';
 import { Package } from 'lucide-react';
 import './InventoryStatus.css';
 
-const InventoryStatus = () => {
-  const { data, loading, error } = useFetch(
-    () => inventoryAPI.getInventoryStatus(),
-    [],
-    60000 // Refresh every 60 seconds
-  );
+const STATUSES = [
+  { status: 'LOW', label: 'Low', className: 'status-danger' },
+  { status: 'MEDIUM', label: 'Medium', className: 'status-warning' },
+  { status: 'ADEQUATE', label: 'Adequate', className: 'status-success' },
+];
 
+// Products per stock status, and the products running low
+const InventoryStatus = ({ data, lowStock, loading, error }) => {
   if (loading) return <Loading message="Loading inventory..." />;
   if (error) return <ErrorMessage message={error} />;
-  if (!data || data.length === 0) {
+  if (!data) {
     return (
       <Card title="Inventory Status" icon={<Package size={20} />}>
         <div style={{ padding: '2rem', textAlign: 'center', color: '#6b7280' }}>
@@ -26,21 +25,15 @@ const InventoryStatus = () => {
     );
   }
 
-  const getStatusColor = (status) => {
-    switch (status) {
-      case 'IN_STOCK':
-        return 'status-success';
-      case 'LOW_STOCK':
-        return 'status-warning';
-      case 'OUT_OF_STOCK':
-        return 'status-danger';
-      default:
-        return '';
-    }
-  };
-
   return (
     <Card title="Inventory Status" icon={<Package size={20} />}>
+      <div className="inventory-counts">
+        {STATUSES.map(({ status, label, className }) => (
+          <span key={status} className={`status-badge ${className}`}>
+            {label}: {data[status] ?? 0}
+          </span>
+        ))}
+      </div>
       <div className="inventory-table-container">
         <table className="inventory-table">
           <thead>
@@ -48,20 +41,14 @@ const InventoryStatus = () => {
               <th>Product</th>
               <th>Category</th>
               <th>Stock</th>
-              <th>Status</th>
             </tr>
           </thead>
           <tbody>
-            {data?.map((item) => (
-              <tr key={item.id}>
-                <td>{item.name}</td>
+            {(lowStock || []).map((item) => (
+              <tr key={item.productId}>
+                <td>{item.productName}</td>
                 <td>{item.category}</td>
                 <td>{item.stockQuantity}</td>
-                <td>
-                  <span className={`status-badge ${getStatusColor(item.status)}`}>
-                    {item.status.replace('_', ' ')}
-                  </span>
-                </td>
               </tr>
             ))}
           </tbody>
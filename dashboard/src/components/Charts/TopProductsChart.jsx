@@ -10,19 +10,11 @@ import {
 import Card from '../Card/Card';
 import Loading from '../Loading/Loading';
 import ErrorMessage from '../ErrorMessage/ErrorMessage';
-import { useFetch } from '../../hooks/useFetch';
-import { salesAPI } from '../../services/api';
 import { Award } from 'lucide-react';
 
 const COLORS = ['#3b82f6', '#8b5cf6', '#10b981', '#f59e0b', '#ef4444', '#06b6d4'];
 
-const TopProductsChart = ({ startDate, endDate, limit = 5 }) => {
-  const { data, loading, error } = useFetch(
-    () => salesAPI.getTopProducts(startDate, endDate, limit),
-    [startDate, endDate, limit],
-    30000 // Refresh every 30 seconds
-  );
-
+const TopProductsChart = ({ data, loading, error }) => {
   if (loading) return <Loading message="Loading top products..." />;
   if (error) return <ErrorMessage message={error} />;
   if (!data || data.length === 0) {
@@ -1,6 +1,7 @@
 import React from 'react';
 import { useFetch } from '../../hooks/useFetch';
-import { salesAPI, inventoryAPI, userActivityAPI } from '../../services/api';
+import { useLiveStatus, useLiveUpdates } from '../../hooks/useLiveUpdates';
+import { dashboardAPI, inventoryAPI } from '../../services/api';
 import Stat from '../Stat/Stat';
 import SalesByCategory from '../Charts/SalesByCategory';
 import DailySalesChart from '../Charts/DailySalesChart';
@@ -9,6 +10,39 @@ import InventoryStatus from '../Charts/InventoryStatus';
 import { DollarSign, Package, Users, TrendingUp, RefreshCw } from 'lucide-react';
 import './Dashboard.css';
 
+const LOW_STOCK_THRESHOLD = 50;
+
+// Folds a pushed stock change into the low-stock list
+const applyStock = (dashboard, products) => {
+  const changed = new Map(products.map((product) => [product.productId, product]));
+  const lowStock = (dashboard.lowStock || [])
+    .filter((item) => !changed.has(item.productId))
+    .concat(products.filter((product) => product.stockQuantity < LOW_STOCK_THRESHOLD).map((product) => ({ ...product, status: 'LOW' })))
+    .sort((a, b) => a.stockQuantity - b.stockQuantity);
+  return { ...dashboard, lowStock };
+};
+
+// Folds the current day's pushed totals into the range totals. Category sums are only moved by what
+// changed since the previous update of the same day, as the loaded ones cover the whole range.
+const applySales = (dashboard, update, previous) => {
+  const dailySales = [...(dashboard.dailySales || [])];
+  const index = dailySales.findIndex((day) => day.date === update.date);
+  const before = index >= 0 ? dailySales[index].totalSales : 0;
+  const today = { date: update.date, totalSales: update.totalSales, transactionCount: update.transactionCount };
+  if (index >= 0) dailySales[index] = today;
+  else dailySales.push(today);
+
+  let salesByCategory = dashboard.salesByCategory || [];
+  if (previous?.date === update.date) {
+    salesByCategory = salesByCategory.map((category) => {
+      const now = update.categorySales[category.category];
+      const was = previous.categorySales[category.category];
+      return now !== undefined && was !== undefined ? { ...category, totalSales: category.totalSales + now - was } : category;
+    });
+  }
+  return { ...dashboard, dailySales, salesByCategory, totalSales: (dashboard.totalSales || 0) + update.totalSales - before };
+};
+
 const Dashboard = () => {
   const [refreshKey, setRefreshKey] = React.useState(0);
   const [dateRange] = React.useState({
@@ -16,23 +50,50 @@ const Dashboard = () => {
     endDate: new Date().toISOString().split('T')[0],
   });
 
-  const { data: totalSales, loading: salesLoading, error: salesError } = useFetch(
-    () => salesAPI.getTotalSales(dateRange.startDate, dateRange.endDate),
-    [dateRange.startDate, dateRange.endDate, refreshKey],
-    30000
+  // One request for every widget; the backend computes them in parallel and
+  // lists any widget it could not compute in time under `unavailable`.
+  // Afterwards stock and today's sales are pushed; the dashboard is only polled while the push stream
+  // is down, and reloaded when it comes back
+  const polling = useLiveStatus() === 'closed';
+  const { data: dashboard, loading, error, setData } = useFetch(
+    () => dashboardAPI.getDashboard(dateRange.startDate, dateRange.endDate, { topLimit: 5, lowStockThreshold: LOW_STOCK_THRESHOLD }),
+    [dateRange.startDate, dateRange.endDate, refreshKey, polling],
+    polling ? 30000 : 0
   );
 
-  const { data: lowStock, loading: inventoryLoading, error: inventoryError } = useFetch(
-    () => inventoryAPI.getLowStockProducts(50),
-    [refreshKey],
-    60000
-  );
+  const lastSales = React.useRef(null);
+  useLiveUpdates('stock', (products) => {
+    setData((current) => current && applyStock(current, products));
+    // The status counts come from the backend's stock index, so rereading them costs no query
+    inventoryAPI.getStatusCounts()
+      .then((stockStatus) => setData((current) => current && { ...current, stockStatus }))
+      .catch(() => {});
+  });
+  useLiveUpdates('sales', (update) => {
+    const previous = lastSales.current;
+    lastSales.current = {
+      date: update.date,
+      categorySales: { ...(previous?.date === update.date ? previous.categorySales : {}), ...update.categorySales },
+    };
+    if (update.date === dateRange.endDate) {
+      setData((current) => current && applySales(current, update, previous));
+    }
+  });
+  useLiveUpdates('reset', () => setRefreshKey((prev) => prev + 1));
 
-  const { data: uniqueUsers, loading: usersLoading, error: usersError } = useFetch(
-    () => userActivityAPI.getUniqueUsersCount(dateRange.startDate, dateRange.endDate),
-    [dateRange.startDate, dateRange.endDate, refreshKey],
-    30000
-  );
+  const widget = (name) => {
+    const reason = dashboard?.unavailable?.[name];
+    return {
+      data: dashboard?.[name],
+      loading: loading && !dashboard,
+      error: error || (reason ? `Data temporarily unavailable (${reason})` : null),
+    };
+  };
+
+  const totalSales = dashboard?.totalSales;
+  const lowStock = dashboard?.lowStock;
+  const uniqueUsers = dashboard?.uniqueUsers;
+  const statsLoading = loading && !dashboard;
 
   const handleRefresh = () => {
     setRefreshKey((prev) => prev + 1);
@@ -54,26 +115,26 @@ const Dashboard = () => {
       <div className="stats-grid">
         <Stat
           label="Total Sales"
-          value={salesLoading ? '...' : `$${totalSales?.toFixed(2) || '0.00'}`}
+          value={statsLoading ? '...' : `$${totalSales?.toFixed(2) || '0.00'}`}
           icon={<DollarSign size={24} />}
           color="primary"
         />
         <Stat
           label="Low Stock Items"
-          value={inventoryLoading ? '...' : lowStock?.length || 0}
+          value={statsLoading ? '...' : lowStock?.length || 0}
           icon={<Package size={24} />}
           color="warning"
         />
         <Stat
           label="Unique Users"
-          value={usersLoading ? '...' : uniqueUsers || 0}
+          value={statsLoading ? '...' : uniqueUsers || 0}
           icon={<Users size={24} />}
           color="success"
         />
         <Stat
           label="Avg. Daily Sales"
           value={
-            salesLoading
+            statsLoading
               ? '...'
               : `$${totalSales ? (totalSales / 30).toFixed(2) : '0.00'}`
           }
@@ -84,20 +145,16 @@ const Dashboard = () => {
 
       <div className="charts-grid">
         <div className="chart-item-wide">
-          <DailySalesChart startDate={dateRange.startDate} endDate={dateRange.endDate} />
+          <DailySalesChart {...widget('dailySales')} />
         </div>
         <div className="chart-item">
-          <SalesByCategory startDate={dateRange.startDate} endDate={dateRange.endDate} />
+          <SalesByCategory {...widget('salesByCategory')} />
         </div>
         <div className="chart-item">
-          <TopProductsChart
-            startDate={dateRange.startDate}
-            endDate={dateRange.endDate}
-            limit={5}
-          />
+          <TopProductsChart {...widget('topProducts')} />
         </div>
         <div className="chart-item-wide">
-          <InventoryStatus />
+          <InventoryStatus {...widget('stockStatus')} lowStock={dashboard?.lowStock} />
         </div>
       </div>
     </div>
@@ -5,6 +5,7 @@ import { useState, useEffect } from 'react';
  * @param {Function} fetchFunction - The API function to call
  * @param {Array} dependencies - Dependencies array for useEffect
  * @param {number} refreshInterval - Auto-refresh interval in milliseconds (0 = disabled)
+ * @returns {{data, loading, error, setData}} setData patches the data in place, e.g. with live updates
  */
 export const useFetch = (fetchFunction, dependencies = [], refreshInterval = 0) => {
   const [data, setData] = useState(null);
@@ -50,7 +51,7 @@ export const useFetch = (fetchFunction, dependencies = [], refreshInterval = 0)
     };
   }, dependencies);
 
-  return { data, loading, error };
+  return { data, loading, error, setData };
 };
 
 /**
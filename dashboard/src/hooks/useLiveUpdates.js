@@ -0,0 +1,25 @@
+import { useEffect, useRef, useState } from 'react';
+import { subscribeLive } from '../services/live';
+
+/**
+ * Custom hook for live update events pushed by the backend
+ * @param {string} type - 'stock', 'sales' or 'reset'
+ * @param {Function} listener - Called with the event's data and the event ({ version, type, data })
+ */
+export const useLiveUpdates = (type, listener) => {
+  const listenerRef = useRef(listener);
+  listenerRef.current = listener;
+
+  useEffect(() => subscribeLive(type, (data, event) => listenerRef.current(data, event)), [type]);
+};
+
+/**
+ * Custom hook for the state of the live update connection: 'connecting', 'open' or 'closed'
+ */
+export const useLiveStatus = () => {
+  const [status, setStatus] = useState('connecting');
+
+  useEffect(() => subscribeLive('status', setStatus), []);
+
+  return status;
+};
@@ -72,9 +72,33 @@ export const inventoryAPI = {
     return response.data;
   },
 
-  getLowStockProducts: async (threshold = 50) => {
+  getLowStockProducts: async (threshold = 50, category) => {
     const response = await api.get('/inventory/low-stock', {
-      params: { threshold },
+      params: { threshold, category },
+    });
+    return response.data;
+  },
+
+  // { LOW: n, MEDIUM: n, ADEQUATE: n }, optionally of one category
+  getStatusCounts: async (category) => {
+    const response = await api.get('/inventory/status-counts', {
+      params: { category },
+    });
+    return response.data;
+  },
+
+  // One page of { items, nextCursor, hasMore }; pass nextCursor back for the following page
+  getInventoryPage: async ({ category, status, cursor, limit = 500 } = {}) => {
+    const response = await api.get('/inventory/items', {
+      params: { category, status, cursor, limit },
+    });
+    return response.data;
+  },
+
+  // Products updated since `since` (ISO date-time), or since the nextCursor of the previous call
+  getInventoryChanges: async ({ since, cursor, limit = 500 } = {}) => {
+    const response = await api.get('/inventory/changes', {
+      params: cursor ? { cursor, limit } : { since, limit },
     });
     return response.data;
   },
@@ -107,4 +131,15 @@ export const userActivityAPI = {
   },
 };
 
+// Composite dashboard API: every widget in one request, computed in parallel server-side
+export const dashboardAPI = {
+  getDashboard: async (startDate, endDate, { topLimit = 5, lowStockThreshold = 50 } = {}) => {
+    const params = startDate && endDate
+      ? { startDate, endDate, topLimit, lowStockThreshold }
+      : { ...getDefaultDateRange(), topLimit, lowStockThreshold };
+    const response = await api.get('/dashboard', { params });
+    return response.data;
+  },
+};
+
 export default api;
@@ -0,0 +1,70 @@
+// Live updates pushed by analytics-service as server-sent events, instead of polling.
+// One EventSource per tab is shared by every listener and closed when the last one leaves.
+// EventSource reconnects by itself and resumes after the last event id; when the server refused the
+// stream (e.g. too many subscribers) it is reopened after a pause with that id passed explicitly.
+
+const STREAM_URL = '/api/analytics/live/stream';
+const REOPEN_DELAY = 10000;
+const EVENT_TYPES = ['stock', 'sales', 'reset'];
+
+const listeners = { stock: new Set(), sales: new Set(), reset: new Set(), status: new Set() };
+let source = null;
+let status = 'connecting'; // 'connecting' | 'open' | 'closed'
+let lastEventId = null;
+let reopenTimer = null;
+
+const listenerCount = () => Object.values(listeners).reduce((count, set) => count + set.size, 0);
+
+const setStatus = (next) => {
+  if (status === next) return;
+  status = next;
+  listeners.status.forEach((listener) => listener(status));
+};
+
+const open = () => {
+  const url = lastEventId ? `${STREAM_URL}?lastEventId=${encodeURIComponent(lastEventId)}` : STREAM_URL;
+  source = new EventSource(url);
+  source.onopen = () => setStatus('open');
+  source.onerror = () => {
+    if (source.readyState !== EventSource.CLOSED) {
+      setStatus('connecting'); // EventSource retries by itself
+      return;
+    }
+    source.close();
+    source = null;
+    setStatus('closed');
+    reopenTimer = setTimeout(() => {
+      reopenTimer = null;
+      if (!source && listenerCount() > 0) open();
+    }, REOPEN_DELAY);
+  };
+  EVENT_TYPES.forEach((type) =>
+    source.addEventListener(type, (message) => {
+      lastEventId = message.lastEventId || lastEventId;
+      const event = JSON.parse(message.data);
+      listeners[type].forEach((listener) => listener(event.data, event));
+    })
+  );
+};
+
+const close = () => {
+  if (source) source.close();
+  if (reopenTimer) clearTimeout(reopenTimer);
+  source = null;
+  reopenTimer = null;
+  setStatus('connecting');
+};
+
+/**
+ * Calls `listener(data, event)` for every live event of `type` ('stock', 'sales' or 'reset'), or
+ * `listener(status)` on connection changes for 'status'. Returns the function that unsubscribes.
+ */
+export const subscribeLive = (type, listener) => {
+  listeners[type].add(listener);
+  if (!source && !reopenTimer) open();
+  if (type === 'status') listener(status);
+  return () => {
+    listeners[type].delete(listener);
+    if (listenerCount() === 0) close();
+  };
+};
@@ -9,33 +9,163 @@ CREATE TABLE IF NOT EXISTS products (
     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
     INDEX idx_category (category),
-    INDEX idx_name (name)
+    INDEX idx_name (name),
+    INDEX idx_stock_quantity (stock_quantity),
+    -- Inventory changes are read in (updated_at, id) order from a client's watermark
+    INDEX idx_updated_at (updated_at, id)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
 
+-- sales and user_activities are range-partitioned by month on their timestamp so that date-range
+-- queries touch only the months they cover and expired months can be archived or dropped as a whole.
+-- analytics-service (PartitionMaintenanceService) splits pmax into monthly partitions ahead of time.
+-- MySQL requires the partitioning column in every unique key and allows no foreign keys on
+-- partitioned tables: product references are checked by triggers (below) and by the ingestion API.
 CREATE TABLE IF NOT EXISTS sales (
-    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    id BIGINT AUTO_INCREMENT,
     product_id BIGINT NOT NULL,
     quantity INT NOT NULL,
     total_amount DECIMAL(10, 2) NOT NULL,
-    sale_date TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    sale_date DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
     customer_id BIGINT,
     status VARCHAR(50) DEFAULT 'COMPLETED',
-    FOREIGN KEY (product_id) REFERENCES products(id) ON DELETE CASCADE,
-    INDEX idx_sale_date (sale_date),
+    PRIMARY KEY (id, sale_date),
+    INDEX idx_sale_date (sale_date), -- (sale_date, id) with the key suffix: export order
+    INDEX idx_sale_date_covering (sale_date, product_id, quantity, total_amount, status),
     INDEX idx_product_id (product_id),
     INDEX idx_customer_id (customer_id)
-) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+PARTITION BY RANGE COLUMNS (sale_date) (
+    PARTITION p_history VALUES LESS THAN ('2024-01-01'),
+    PARTITION pmax VALUES LESS THAN (MAXVALUE)
+);
 
 CREATE TABLE IF NOT EXISTS user_activities (
-    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    id BIGINT AUTO_INCREMENT,
     user_id BIGINT NOT NULL,
     activity_type VARCHAR(50) NOT NULL,
     product_id BIGINT,
-    activity_timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    activity_timestamp DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
     ip_address VARCHAR(45),
     user_agent VARCHAR(255),
-    FOREIGN KEY (product_id) REFERENCES products(id) ON DELETE SET NULL,
+    PRIMARY KEY (id, activity_timestamp),
     INDEX idx_user_id (user_id),
-    INDEX idx_activity_type (activity_type),
-    INDEX idx_activity_timestamp (activity_timestamp)
+    INDEX idx_activity_type_timestamp (activity_type, activity_timestamp, product_id),
+    INDEX idx_activity_timestamp (activity_timestamp), -- (activity_timestamp, id): export order
+    INDEX idx_activity_timestamp_covering (activity_timestamp, activity_type, user_id, product_id),
+    INDEX idx_activity_product_id (product_id) -- was created implicitly by the foreign key
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4
+PARTITION BY RANGE COLUMNS (activity_timestamp) (
+    PARTITION p_history VALUES LESS THAN ('2024-01-01'),
+    PARTITION pmax VALUES LESS THAN (MAXVALUE)
+);
+
+-- Referential integrity in place of the former foreign keys: inserts, and updates changing
+-- product_id, must reference an existing product. The check reads the product FOR SHARE, so a
+-- concurrent delete of it waits for the referencing transaction (and then sees its row) instead of
+-- leaving an orphan. Products still referenced by sales cannot be deleted (sales feed the rollups
+-- and exports, which a cascade would silently rewrite); deleting a product detaches its activities
+-- (ON DELETE SET NULL, as before).
+DELIMITER //
+
+CREATE TRIGGER sales_product_exists BEFORE INSERT ON sales FOR EACH ROW
+BEGIN
+    DECLARE found INT;
+    SELECT COUNT(*) INTO found FROM products WHERE id = NEW.product_id FOR SHARE;
+    IF found = 0 THEN
+        SIGNAL SQLSTATE '23000' SET MESSAGE_TEXT = 'sales.product_id references no product';
+    END IF;
+END//
+
+CREATE TRIGGER sales_product_exists_on_update BEFORE UPDATE ON sales FOR EACH ROW
+BEGIN
+    DECLARE found INT;
+    IF NOT (NEW.product_id <=> OLD.product_id) THEN
+        SELECT COUNT(*) INTO found FROM products WHERE id = NEW.product_id FOR SHARE;
+        IF found = 0 THEN
+            SIGNAL SQLSTATE '23000' SET MESSAGE_TEXT = 'sales.product_id references no product';
+        END IF;
+    END IF;
+END//
+
+CREATE TRIGGER user_activities_product_exists BEFORE INSERT ON user_activities FOR EACH ROW
+BEGIN
+    DECLARE found INT;
+    IF NEW.product_id IS NOT NULL THEN
+        SELECT COUNT(*) INTO found FROM products WHERE id = NEW.product_id FOR SHARE;
+        IF found = 0 THEN
+            SIGNAL SQLSTATE '23000' SET MESSAGE_TEXT = 'user_activities.product_id references no product';
+        END IF;
+    END IF;
+END//
+
+CREATE TRIGGER user_activities_product_exists_on_update BEFORE UPDATE ON user_activities FOR EACH ROW
+BEGIN
+    DECLARE found INT;
+    IF NEW.product_id IS NOT NULL AND NOT (NEW.product_id <=> OLD.product_id) THEN
+        SELECT COUNT(*) INTO found FROM products WHERE id = NEW.product_id FOR SHARE;
+        IF found = 0 THEN
+            SIGNAL SQLSTATE '23000' SET MESSAGE_TEXT = 'user_activities.product_id references no product';
+        END IF;
+    END IF;
+END//
+
+CREATE TRIGGER products_delete_guard BEFORE DELETE ON products FOR EACH ROW
+BEGIN
+    IF EXISTS (SELECT 1 FROM sales WHERE product_id = OLD.id) THEN
+        SIGNAL SQLSTATE '23000' SET MESSAGE_TEXT = 'products row is still referenced by sales';
+    END IF;
+END//
+
+CREATE TRIGGER products_delete_references AFTER DELETE ON products FOR EACH ROW
+BEGIN
+    UPDATE user_activities SET product_id = NULL WHERE product_id = OLD.id;
+END//
+
+DELIMITER ;
+
+-- Daily sales rollup (day x product x category x status), maintained by analytics-service
+CREATE TABLE IF NOT EXISTS sales_daily_rollup (
+    sale_day DATE NOT NULL,
+    product_id BIGINT NOT NULL,
+    category VARCHAR(100) NOT NULL,
+    status VARCHAR(50) NOT NULL,
+    revenue DECIMAL(14, 2) NOT NULL DEFAULT 0,
+    quantity BIGINT NOT NULL DEFAULT 0,
+    transaction_count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (sale_day, product_id, category, status),
+    INDEX idx_rollup_day_category (sale_day, category)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+CREATE TABLE IF NOT EXISTS rollup_watermarks (
+    name VARCHAR(50) PRIMARY KEY,
+    last_closed_day DATE NULL -- NULL until the first day is closed
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Present before the first close: writers of late rows lock them against a concurrent close
+INSERT IGNORE INTO rollup_watermarks (name, last_closed_day)
+VALUES ('sales_daily_rollup', NULL), ('user_activity_daily_hll', NULL);
+
+-- Change counters per table, advanced by analytics-service after each ingestion commit (ETags).
+-- Each counter is spread over slots, one picked at random per commit, and read as their sum
+CREATE TABLE IF NOT EXISTS data_versions (
+    name VARCHAR(50) NOT NULL,
+    slot SMALLINT NOT NULL,
+    version BIGINT NOT NULL,
+    PRIMARY KEY (name, slot)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Per-day HyperLogLog sketches of active user ids, maintained by analytics-service
+CREATE TABLE IF NOT EXISTS user_activity_daily_hll (
+    activity_day DATE PRIMARY KEY,
+    sketch MEDIUMBLOB NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Id pools for sales / user_activities rows written by analytics-service (pooled-lo, 500 ids per fetch).
+-- next_val must stay above MAX(id) of the target table; see 02-sample-data.sql.
+CREATE TABLE IF NOT EXISTS sales_seq (
+    next_val BIGINT NOT NULL
+) ENGINE=InnoDB;
+
+CREATE TABLE IF NOT EXISTS user_activities_seq (
+    next_val BIGINT NOT NULL
+) ENGINE=InnoDB;
@@ -38,3 +38,7 @@ INSERT INTO user_activities (user_id, activity_type, product_id, activity_timest
 (105, 'VIEW', 5, DATE_SUB(NOW(), INTERVAL 5 DAY), '192.168.1.104'),
 (106, 'VIEW', 6, DATE_SUB(NOW(), INTERVAL 6 DAY), '192.168.1.105'),
 (107, 'PURCHASE', 7, DATE_SUB(NOW(), INTERVAL 7 DAY), '192.168.1.106');
+
+-- Start the id pools after the sample rows
+INSERT INTO sales_seq (next_val) SELECT COALESCE(MAX(id), 0) + 1 FROM sales;
+INSERT INTO user_activities_seq (next_val) SELECT COALESCE(MAX(id), 0) + 1 FROM user_activities;
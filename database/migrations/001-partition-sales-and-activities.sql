@@ -0,0 +1,88 @@
+-- Converts sales and user_activities of an existing database to the monthly-partitioned layout of
+-- init/01-schema.sql. Fresh databases get it from the init scripts and need nothing from here.
+--
+-- Every ALTER below rebuilds its table: run it in a maintenance window, with analytics-service
+-- stopped. The service splits pmax into monthly partitions on its first maintenance run.
+--
+-- Foreign key names are the ones MySQL generates for the original schema; check them with
+-- SHOW CREATE TABLE if the tables were created differently. The triggers replacing them are
+-- described in init/01-schema.sql.
+
+ALTER TABLE sales DROP FOREIGN KEY sales_ibfk_1;
+ALTER TABLE sales
+    MODIFY sale_date DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, sale_date);
+ALTER TABLE sales PARTITION BY RANGE COLUMNS (sale_date) (
+    PARTITION p_history VALUES LESS THAN ('2024-01-01'),
+    PARTITION pmax VALUES LESS THAN (MAXVALUE)
+);
+
+ALTER TABLE user_activities DROP FOREIGN KEY user_activities_ibfk_1;
+ALTER TABLE user_activities
+    MODIFY activity_timestamp DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, activity_timestamp),
+    RENAME INDEX product_id TO idx_activity_product_id;
+ALTER TABLE user_activities PARTITION BY RANGE COLUMNS (activity_timestamp) (
+    PARTITION p_history VALUES LESS THAN ('2024-01-01'),
+    PARTITION pmax VALUES LESS THAN (MAXVALUE)
+);
+
+DELIMITER //
+
+CREATE TRIGGER sales_product_exists BEFORE INSERT ON sales FOR EACH ROW
+BEGIN
+    DECLARE found INT;
+    SELECT COUNT(*) INTO found FROM products WHERE id = NEW.product_id FOR SHARE;
+    IF found = 0 THEN
+        SIGNAL SQLSTATE '23000' SET MESSAGE_TEXT = 'sales.product_id references no product';
+    END IF;
+END//
+
+CREATE TRIGGER sales_product_exists_on_update BEFORE UPDATE ON sales FOR EACH ROW
+BEGIN
+    DECLARE found INT;
+    IF NOT (NEW.product_id <=> OLD.product_id) THEN
+        SELECT COUNT(*) INTO found FROM products WHERE id = NEW.product_id FOR SHARE;
+        IF found = 0 THEN
+            SIGNAL SQLSTATE '23000' SET MESSAGE_TEXT = 'sales.product_id references no product';
+        END IF;
+    END IF;
+END//
+
+CREATE TRIGGER user_activities_product_exists BEFORE INSERT ON user_activities FOR EACH ROW
+BEGIN
+    DECLARE found INT;
+    IF NEW.product_id IS NOT NULL THEN
+        SELECT COUNT(*) INTO found FROM products WHERE id = NEW.product_id FOR SHARE;
+        IF found = 0 THEN
+            SIGNAL SQLSTATE '23000' SET MESSAGE_TEXT = 'user_activities.product_id references no product';
+        END IF;
+    END IF;
+END//
+
+CREATE TRIGGER user_activities_product_exists_on_update BEFORE UPDATE ON user_activities FOR EACH ROW
+BEGIN
+    DECLARE found INT;
+    IF NEW.product_id IS NOT NULL AND NOT (NEW.product_id <=> OLD.product_id) THEN
+        SELECT COUNT(*) INTO found FROM products WHERE id = NEW.product_id FOR SHARE;
+        IF found = 0 THEN
+            SIGNAL SQLSTATE '23000' SET MESSAGE_TEXT = 'user_activities.product_id references no product';
+        END IF;
+    END IF;
+END//
+
+CREATE TRIGGER products_delete_guard BEFORE DELETE ON products FOR EACH ROW
+BEGIN
+    IF EXISTS (SELECT 1 FROM sales WHERE product_id = OLD.id) THEN
+        SIGNAL SQLSTATE '23000' SET MESSAGE_TEXT = 'products row is still referenced by sales';
+    END IF;
+END//
+
+CREATE TRIGGER products_delete_references AFTER DELETE ON products FOR EACH ROW
+BEGIN
+    UPDATE user_activities SET product_id = NULL WHERE product_id = OLD.id;
+END//
+
+DELIMITER ;
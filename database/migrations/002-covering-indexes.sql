@@ -0,0 +1,20 @@
+-- Adds the covering indexes of init/01-schema.sql to an existing database (after 001).
+-- Fresh databases get them from the init scripts and need nothing from here.
+--
+-- InnoDB builds secondary indexes in place without blocking reads or writes, but each statement
+-- still reads the whole table: prefer a quiet period on large tables.
+
+ALTER TABLE products
+    ADD INDEX idx_stock_quantity (stock_quantity),
+    ALGORITHM = INPLACE, LOCK = NONE;
+
+ALTER TABLE sales
+    ADD INDEX idx_sale_date_covering (sale_date, product_id, quantity, total_amount, status),
+    ALGORITHM = INPLACE, LOCK = NONE;
+
+-- idx_activity_type is a prefix of idx_activity_type_timestamp and is dropped in the same statement
+ALTER TABLE user_activities
+    ADD INDEX idx_activity_type_timestamp (activity_type, activity_timestamp, product_id),
+    ADD INDEX idx_activity_timestamp_covering (activity_timestamp, activity_type, user_id, product_id),
+    DROP INDEX idx_activity_type,
+    ALGORITHM = INPLACE, LOCK = NONE;
@@ -0,0 +1,6 @@
+-- Adds the index behind the inventory changes endpoint (GET /api/analytics/inventory/changes) to an
+-- existing database (after 002). Fresh databases get it from the init scripts.
+
+ALTER TABLE products
+    ADD INDEX idx_updated_at (updated_at, id),
+    ALGORITHM = INPLACE, LOCK = NONE;
@@ -0,0 +1,9 @@
+-- Creates the rollup watermark rows of init/01-schema.sql in an existing database (after 003), with no
+-- day closed, for tables that were never closed. Fresh databases get them from the init scripts, and
+-- analytics-service inserts missing rows on startup once the column allows NULL.
+
+ALTER TABLE rollup_watermarks
+    MODIFY last_closed_day DATE NULL;
+
+INSERT IGNORE INTO rollup_watermarks (name, last_closed_day)
+VALUES ('sales_daily_rollup', NULL), ('user_activity_daily_hll', NULL);